@@ -36,6 +36,23 @@ public abstract class BaseLiaison implements DatabaseLiaison
     // from DatabaseLiaison
     public abstract boolean isTransientException (SQLException sqe);
 
+    /**
+     * Configures the supplied (forward-only, read-only) query statement to stream its results
+     * from the database, rather than having the driver read the entire result set into memory
+     * before returning the first row. This is not part of {@link DatabaseLiaison}, so that
+     * liaisons implemented elsewhere need not provide it; callers holding some other liaison
+     * should simply set the statement's fetch size.
+     *
+     * @param fetchSize the desired number of rows to be fetched from the database at a time,
+     * which the liaison may adjust to suit its database's driver.
+     */
+    public void configureStreaming (Statement stmt, int fetchSize) throws SQLException
+    {
+        // most drivers honor the fetch size (PostgreSQL only does so outside of auto-commit mode,
+        // which is how repository operations are executed)
+        stmt.setFetchSize(fetchSize);
+    }
+
     @Deprecated
     public int lastInsertedId (Connection conn, String table, String column) throws SQLException {
         return lastInsertedId(conn, null, table, column);
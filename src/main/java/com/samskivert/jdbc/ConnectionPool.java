@@ -0,0 +1,645 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import com.samskivert.io.PersistenceException;
+import com.samskivert.util.BasicRunQueue;
+import com.samskivert.util.ConcurrentHistogram;
+import com.samskivert.util.Interval;
+import com.samskivert.util.RunQueue;
+import com.samskivert.util.StringUtil;
+
+import static com.samskivert.jdbc.Log.log;
+
+/**
+ * Maintains a bounded pool of connections to a single database. Connections are borrowed via
+ * {@link #borrow}, handed back via {@link #release} and discarded via {@link #invalidate} if they
+ * have failed. When the pool is exhausted, borrowers wait (up to a configurable limit) in a FIFO
+ * queue, and connections that are released or capacity that is freed up is handed directly to the
+ * longest waiting borrower so that newcomers cannot barge ahead of it. Idle connections are
+ * optionally validated on borrow, and connections that have sat idle too long or outlived their
+ * maximum lifetime are periodically closed (and the pool topped back up to its minimum size).
+ *
+ * @see StaticConnectionProvider
+ */
+public class ConnectionPool
+{
+    /** Opens new connections on behalf of a pool. */
+    public static interface Factory
+    {
+        /** Opens and returns a new connection. */
+        public Connection openConnection () throws PersistenceException;
+
+        /** Creates the state for a newly borrowed connection, see {@link #getState}. */
+        public ConnectionState createState (Connection conn) throws SQLException;
+    }
+
+    /**
+     * The configuration of a pool. The defaults may be overridden via the following properties
+     * (see {@link #Config(Properties)}):
+     *
+     * <pre>
+     * pool.minSize=[connections kept open even when idle, default 0]
+     * pool.maxSize=[maximum connections open at once, default 10]
+     * pool.validate=[whether to validate connections on borrow, default true]
+     * pool.validateTimeout=[seconds to wait for validation, default 5]
+     * pool.idleTimeout=[millis after which idle connections are closed, 0 for never, default 10m]
+     * pool.maxLifetime=[millis after which connections are retired, 0 for never, default 30m]
+     * pool.maxWait=[millis to wait for a connection before failing, default 30s]
+     * pool.evictInterval=[millis between idle/lifetime checks, default 30s]
+     * </pre>
+     */
+    public static class Config
+    {
+        public int minSize = 0;
+        public int maxSize = 10;
+        public boolean validate = true;
+        public int validateTimeout = 5;
+        public long idleTimeout = 10 * 60 * 1000L;
+        public long maxLifetime = 30 * 60 * 1000L;
+        public long maxWait = 30 * 1000L;
+        public long evictInterval = 30 * 1000L;
+
+        /** Creates a config with the default settings. */
+        public Config ()
+        {
+        }
+
+        /** Creates a config from the <code>pool.*</code> properties in the supplied properties. */
+        public Config (Properties props)
+        {
+            minSize = getInt(props, "minSize", minSize);
+            maxSize = getInt(props, "maxSize", maxSize);
+            validate = Boolean.valueOf(props.getProperty("pool.validate", "" + validate));
+            validateTimeout = getInt(props, "validateTimeout", validateTimeout);
+            idleTimeout = getLong(props, "idleTimeout", idleTimeout);
+            maxLifetime = getLong(props, "maxLifetime", maxLifetime);
+            maxWait = getLong(props, "maxWait", maxWait);
+            evictInterval = getLong(props, "evictInterval", evictInterval);
+        }
+
+        @Override public String toString () {
+            return StringUtil.fieldsToString(this);
+        }
+
+        protected static int getInt (Properties props, String key, int defval) {
+            return (int)getLong(props, key, defval);
+        }
+
+        protected static long getLong (Properties props, String key, long defval) {
+            String value = props.getProperty("pool." + key);
+            if (StringUtil.isBlank(value)) {
+                return defval;
+            }
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException nfe) {
+                log.warning("Invalid connection pool setting", "key", "pool." + key,
+                            "value", value);
+                return defval;
+            }
+        }
+    }
+
+    /**
+     * A snapshot of a pool's state and metrics. Times are in nanoseconds.
+     */
+    public static class Stats
+    {
+        /** The number of connections that are borrowed, idle and open (borrowed or idle, plus
+         * those being opened). */
+        public int active, idle, total;
+
+        /** The number of borrowers waiting for a connection. */
+        public int waiting;
+
+        /** The number of connections borrowed, opened and closed, the number of borrows that
+         * timed out and the number of connections that failed validation. */
+        public long borrowed, opened, closed, timeouts, invalid;
+
+        /** The time spent waiting to borrow a connection, by percentile. */
+        public long waitP50, waitP99, waitMax;
+
+        @Override public String toString () {
+            return StringUtil.fieldsToString(this);
+        }
+    }
+
+    /**
+     * Creates a connection pool which will open connections with the supplied factory.
+     *
+     * @param name a name for this pool, used when logging.
+     */
+    public ConnectionPool (String name, Config config, Factory factory)
+    {
+        this(name, config, factory, null);
+    }
+
+    /**
+     * Creates a connection pool which will open connections with the supplied factory.
+     *
+     * @param name a name for this pool, used when logging.
+     * @param evictQueue the queue on which to periodically {@link #evict} connections, or null to
+     * use a daemon thread shared by all pools. Eviction opens and closes connections, which can
+     * block for as long as it takes the database to respond, so it must not be run directly on
+     * the timer thread (i.e. {@link Interval#RUN_DIRECT}) that all intervals share.
+     */
+    public ConnectionPool (String name, Config config, Factory factory, RunQueue evictQueue)
+    {
+        if (config.maxSize < 1 || config.minSize > config.maxSize) {
+            throw new IllegalArgumentException("Invalid pool size " + config);
+        }
+        _name = name;
+        _config = config;
+        _factory = factory;
+
+        if (config.evictInterval > 0 &&
+            (config.idleTimeout > 0 || config.maxLifetime > 0 || config.minSize > 0)) {
+            _evicter = new Interval(evictQueue == null ? getSharedEvictQueue() : evictQueue) {
+                @Override public void expired () {
+                    evict();
+                }
+                @Override public String toString () {
+                    return "ConnectionPool.evict(" + _name + ")";
+                }
+            };
+            _evicter.schedule(config.evictInterval, true);
+        }
+    }
+
+    /**
+     * Returns this pool's configuration.
+     */
+    public Config getConfig ()
+    {
+        return _config;
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if none are idle and the pool is not
+     * full, or waiting for one to be released otherwise. The connection must be handed back via
+     * {@link #release} or {@link #invalidate}.
+     *
+     * @exception PersistenceException thrown if no connection could be obtained within the
+     * configured maximum wait, a new connection could not be opened or the pool is shut down.
+     */
+    public Connection borrow ()
+        throws PersistenceException
+    {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(_config.maxWait);
+        while (true) {
+            Pooled pc = null;
+            synchronized (this) {
+                if (_shutdown) {
+                    throw new PersistenceException(
+                        "Connection pool shut down [pool=" + _name + "]");
+                }
+                if (_waiters.isEmpty() && !_idle.isEmpty()) {
+                    // we take the most recently used connection, letting the others age out
+                    pc = _idle.pollLast();
+                    _active++;
+                } else if (_waiters.isEmpty() && _total < _config.maxSize) {
+                    _total++;
+                    _active++;
+                } else {
+                    pc = await(deadline);
+                }
+            }
+
+            if (pc == null) {
+                pc = open();
+            } else if (!check(pc)) {
+                continue;
+            }
+
+            _wait.record(System.nanoTime() - start);
+            synchronized (this) {
+                _borrowed.put(pc.conn, pc);
+                _borrows++;
+            }
+            return pc.conn;
+        }
+    }
+
+    /**
+     * Returns a connection borrowed from this pool to the pool.
+     */
+    public void release (Connection conn)
+    {
+        Pooled pc;
+        boolean retire;
+        synchronized (this) {
+            pc = _borrowed.remove(conn);
+            if (pc == null) {
+                log.warning("Released unknown connection", "pool", _name, "conn", conn);
+                return;
+            }
+            _active--;
+            retire = _shutdown || isExpired(pc, System.currentTimeMillis());
+            if (!retire) {
+                pc.lastUsed = System.currentTimeMillis();
+                if (_waiters.isEmpty()) {
+                    _idle.addLast(pc);
+                } else {
+                    // hand the connection straight to the longest waiting borrower
+                    _active++;
+                    _waiters.poll().grant(pc);
+                    notifyAll();
+                }
+            }
+        }
+        if (retire) {
+            discard(pc);
+        }
+    }
+
+    /**
+     * Discards a connection borrowed from this pool, which is presumed to have failed.
+     */
+    public void invalidate (Connection conn)
+    {
+        Pooled pc;
+        synchronized (this) {
+            pc = _borrowed.remove(conn);
+            if (pc == null) {
+                log.warning("Invalidated unknown connection", "pool", _name, "conn", conn);
+                return;
+            }
+            _active--;
+        }
+        discard(pc);
+    }
+
+    /**
+     * Returns the cached state of a connection borrowed from this pool, creating it if necessary.
+     * The state lives as long as the connection, across borrowers.
+     */
+    public ConnectionState getState (Connection conn)
+        throws SQLException
+    {
+        Pooled pc;
+        synchronized (this) {
+            pc = _borrowed.get(conn);
+        }
+        if (pc == null) {
+            log.warning("Requested state of unknown connection", "pool", _name, "conn", conn);
+            return ConnectionState.forConnection(conn);
+        }
+        // the connection is ours alone while borrowed, so we need not lock to set its state
+        if (pc.state == null) {
+            pc.state = _factory.createState(conn);
+        }
+        return pc.state;
+    }
+
+    /**
+     * Closes idle connections that have exceeded the idle timeout or maximum lifetime, and then
+     * opens connections as needed to bring the pool back up to its minimum size. This is called
+     * periodically by the pool itself, on its evict queue.
+     */
+    public void evict ()
+    {
+        List<Pooled> expired = new ArrayList<Pooled>();
+        int needed;
+        synchronized (this) {
+            if (_shutdown) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (Iterator<Pooled> iter = _idle.iterator(); iter.hasNext(); ) {
+                Pooled pc = iter.next();
+                boolean idle = _config.idleTimeout > 0 &&
+                    now - pc.lastUsed >= _config.idleTimeout &&
+                    _total - expired.size() > _config.minSize;
+                if (idle || isExpired(pc, now)) {
+                    iter.remove();
+                    expired.add(pc);
+                }
+            }
+            _total -= expired.size();
+            // we'll reserve space for the connections needed to top up to our minimum
+            needed = Math.max(_config.minSize - _total, 0);
+            _total += needed;
+        }
+
+        for (Pooled pc : expired) {
+            closeConnection(pc);
+        }
+        if (!expired.isEmpty()) {
+            // any freed capacity (unlikely while there are idle connections) goes to waiters
+            synchronized (this) {
+                grantCapacity();
+            }
+        }
+
+        for (int ii = 0; ii < needed; ii++) {
+            Pooled pc;
+            try {
+                pc = openConnection();
+            } catch (PersistenceException pe) {
+                log.warning("Failed to open connection for pool", "pool", _name, pe);
+                synchronized (this) {
+                    _total -= (needed - ii);
+                    grantCapacity();
+                }
+                return;
+            }
+            synchronized (this) {
+                if (_shutdown) {
+                    _total--;
+                } else if (_waiters.isEmpty()) {
+                    _idle.addLast(pc);
+                    pc = null;
+                } else {
+                    _active++;
+                    _waiters.poll().grant(pc);
+                    notifyAll();
+                    pc = null;
+                }
+            }
+            if (pc != null) {
+                closeConnection(pc);
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of this pool's state and metrics.
+     */
+    public synchronized Stats getStats ()
+    {
+        Stats stats = new Stats();
+        stats.active = _active;
+        stats.idle = _idle.size();
+        stats.total = _total;
+        stats.waiting = _waiters.size();
+        stats.borrowed = _borrows;
+        stats.opened = _opened;
+        stats.closed = _closed;
+        stats.timeouts = _timeouts;
+        stats.invalid = _invalid;
+        stats.waitP50 = _wait.getPercentile(50);
+        stats.waitP99 = _wait.getPercentile(99);
+        stats.waitMax = _wait.getMax();
+        return stats;
+    }
+
+    /**
+     * Closes all idle connections and causes borrowed connections to be closed when they are
+     * released. Waiting and future borrowers will fail.
+     */
+    public void shutdown ()
+    {
+        List<Pooled> idle;
+        synchronized (this) {
+            if (_shutdown) {
+                return;
+            }
+            _shutdown = true;
+            idle = new ArrayList<Pooled>(_idle);
+            _idle.clear();
+            _total -= idle.size();
+            notifyAll();
+        }
+        if (_evicter != null) {
+            _evicter.cancel();
+        }
+        for (Pooled pc : idle) {
+            closeConnection(pc);
+        }
+    }
+
+    @Override
+    public String toString ()
+    {
+        return "[name=" + _name + ", stats=" + getStats() + "]";
+    }
+
+    /**
+     * Waits for a connection (or the capacity to open one) to be handed to us. Must be called
+     * while synchronized on this pool.
+     *
+     * @return the connection handed to us or null if we were granted capacity to open one.
+     */
+    protected Pooled await (long deadline)
+        throws PersistenceException
+    {
+        Waiter waiter = new Waiter();
+        _waiters.add(waiter);
+        boolean interrupted = false;
+        try {
+            while (!waiter.granted && !_shutdown) {
+                long remain = deadline - System.nanoTime();
+                if (remain <= 0) {
+                    break;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remain);
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (waiter.granted) {
+            return waiter.conn;
+        }
+        _waiters.remove(waiter);
+        if (_shutdown) {
+            throw new PersistenceException("Connection pool shut down [pool=" + _name + "]");
+        }
+        _timeouts++;
+        throw new PersistenceException(
+            "Timed out waiting for connection [pool=" + _name + ", maxWait=" + _config.maxWait +
+            ", active=" + _active + ", total=" + _total + ", waiting=" + _waiters.size() + "]");
+    }
+
+    /**
+     * Opens a connection for which capacity has already been reserved (and which has been counted
+     * as active), releasing that capacity if the open fails.
+     */
+    protected Pooled open ()
+        throws PersistenceException
+    {
+        try {
+            return openConnection();
+        } catch (PersistenceException pe) {
+            synchronized (this) {
+                _total--;
+                _active--;
+                grantCapacity();
+            }
+            throw pe;
+        }
+    }
+
+    /**
+     * Checks that a connection taken from the idle list is still usable, discarding it if not.
+     */
+    protected boolean check (Pooled pc)
+    {
+        boolean valid = !isExpired(pc, System.currentTimeMillis());
+        if (valid && _config.validate) {
+            try {
+                valid = pc.conn.isValid(_config.validateTimeout);
+            } catch (SQLException sqe) {
+                valid = false;
+            } catch (AbstractMethodError ame) {
+                // the driver predates JDBC 4; we'll have to find out the hard way
+            }
+            if (!valid) {
+                synchronized (this) {
+                    _invalid++;
+                }
+            }
+        }
+        if (!valid) {
+            synchronized (this) {
+                _active--;
+            }
+            discard(pc);
+        }
+        return valid;
+    }
+
+    /**
+     * Closes a connection that was counted toward our total (but not as active), and hands the
+     * freed capacity to a waiter, if any.
+     */
+    protected void discard (Pooled pc)
+    {
+        closeConnection(pc);
+        synchronized (this) {
+            _total--;
+            grantCapacity();
+        }
+    }
+
+    /**
+     * Grants the longest waiting borrower the capacity to open a new connection, if we have
+     * capacity and waiters. Must be called while synchronized on this pool.
+     */
+    protected void grantCapacity ()
+    {
+        if (!_shutdown && !_waiters.isEmpty() && _total < _config.maxSize) {
+            _total++;
+            _active++;
+            _waiters.poll().grant(null);
+            notifyAll();
+        }
+    }
+
+    protected boolean isExpired (Pooled pc, long now)
+    {
+        return _config.maxLifetime > 0 && now - pc.created >= _config.maxLifetime;
+    }
+
+    protected Pooled openConnection ()
+        throws PersistenceException
+    {
+        Pooled pc = new Pooled(_factory.openConnection());
+        synchronized (this) {
+            _opened++;
+        }
+        return pc;
+    }
+
+    protected void closeConnection (Pooled pc)
+    {
+        try {
+            pc.conn.close();
+        } catch (SQLException sqe) {
+            log.warning("Error closing pooled connection", "pool", _name, "error", sqe);
+        }
+        synchronized (this) {
+            _closed++;
+        }
+    }
+
+    /** Tracks a pooled connection. */
+    protected static class Pooled
+    {
+        public final Connection conn;
+        public final long created = System.currentTimeMillis();
+        public long lastUsed = created;
+        public ConnectionState state;
+
+        public Pooled (Connection conn) {
+            this.conn = conn;
+        }
+    }
+
+    /** A borrower waiting for a connection. */
+    protected static class Waiter
+    {
+        /** Whether we've been handed a connection (or capacity, if {@link #conn} is null). */
+        public boolean granted;
+        public Pooled conn;
+
+        public void grant (Pooled conn) {
+            this.granted = true;
+            this.conn = conn;
+        }
+    }
+
+    /**
+     * Returns the evict queue shared by pools that were not given their own, creating and
+     * starting it if necessary.
+     */
+    protected static synchronized RunQueue getSharedEvictQueue ()
+    {
+        if (_sharedEvictQueue == null) {
+            _sharedEvictQueue = new BasicRunQueue("ConnectionPool.evict");
+            _sharedEvictQueue.setDaemon(true);
+            _sharedEvictQueue.start();
+        }
+        return _sharedEvictQueue;
+    }
+
+    protected final String _name;
+    protected final Config _config;
+    protected final Factory _factory;
+    protected Interval _evicter;
+
+    /** Idle connections, least recently used first. */
+    protected final ArrayDeque<Pooled> _idle = new ArrayDeque<Pooled>();
+
+    /** Borrowed connections. */
+    protected final IdentityHashMap<Connection, Pooled> _borrowed =
+        new IdentityHashMap<Connection, Pooled>();
+
+    /** Borrowers waiting for a connection, in order of arrival. */
+    protected final ArrayDeque<Waiter> _waiters = new ArrayDeque<Waiter>();
+
+    /** The number of connections borrowed (or being opened for a borrower) and the number of
+     * connections open or being opened. */
+    protected int _active, _total;
+
+    protected boolean _shutdown;
+
+    protected long _borrows, _opened, _closed, _timeouts, _invalid;
+
+    /** The time spent waiting to borrow a connection, in nanoseconds. */
+    protected final ConcurrentHistogram _wait = new ConcurrentHistogram();
+
+    /** The queue on which pools evict connections unless they were given their own. */
+    protected static BasicRunQueue _sharedEvictQueue;
+}
@@ -0,0 +1,183 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+/**
+ * Caches the information about a connection that a repository needs on every operation (its
+ * liaison, whether it supports transactions and its auto-commit mode), so that it need not be
+ * fetched from the connection's metadata each time. Connection states are kept by providers that
+ * implement {@link ConnectionStateProvider}. A state may also hold a {@link StatementCache} for
+ * its connection.
+ */
+public class ConnectionState
+{
+    /**
+     * Creates a state for the supplied connection, which will track its auto-commit mode. The
+     * state must only be used with the supplied connection, and its auto-commit mode must
+     * thereafter only be changed via {@link #setAutoCommit}.
+     */
+    public static ConnectionState forConnection (Connection conn)
+        throws SQLException
+    {
+        DatabaseMetaData dmd = conn.getMetaData();
+        boolean supportsTransactions = (dmd != null) && dmd.supportsTransactions();
+        ConnectionState state = new ConnectionState(
+            LiaisonRegistry.getLiaison(conn), supportsTransactions, true);
+        state._autoCommit = conn.getAutoCommit();
+        return state;
+    }
+
+    /** The liaison for our connection's database. */
+    public final DatabaseLiaison liaison;
+
+    /** Whether our connection's database supports transactions. */
+    public final boolean supportsTransactions;
+
+    /**
+     * Creates a connection state.
+     *
+     * @param trackAutoCommit if true, the auto-commit mode will be queried from the connection
+     * once and tracked thereafter, otherwise it will be queried every time it is needed (which is
+     * necessary if this state is shared by multiple connections).
+     */
+    public ConnectionState (
+        DatabaseLiaison liaison, boolean supportsTransactions, boolean trackAutoCommit)
+    {
+        this.liaison = liaison;
+        this.supportsTransactions = supportsTransactions;
+        _trackAutoCommit = trackAutoCommit;
+    }
+
+    /**
+     * Returns the auto-commit mode of the supplied connection.
+     */
+    public boolean getAutoCommit (Connection conn)
+        throws SQLException
+    {
+        if (!_trackAutoCommit) {
+            return conn.getAutoCommit();
+        }
+        if (_autoCommit == null) {
+            _autoCommit = conn.getAutoCommit();
+        }
+        return _autoCommit;
+    }
+
+    /**
+     * Configures the auto-commit mode of the supplied connection.
+     */
+    public void setAutoCommit (Connection conn, boolean autoCommit)
+        throws SQLException
+    {
+        if (_trackAutoCommit) {
+            // if we fail to set it, we no longer know what it is
+            _autoCommit = null;
+        }
+        conn.setAutoCommit(autoCommit);
+        if (_trackAutoCommit) {
+            _autoCommit = autoCommit;
+        }
+    }
+
+    /**
+     * Configures whether repositories leave this state's connection in manual-commit mode after
+     * an operation, rather than turning auto-commit back on. This saves a round trip to the
+     * database for every operation (and another for the next operation to turn it back off), but
+     * is only appropriate for a connection that has a single user at a time, all of whose users
+     * expect manual-commit mode, such as one borrowed from a {@link ConnectionPool}.
+     */
+    public void setRetainManualCommit (boolean retain)
+    {
+        _retainManualCommit = retain;
+    }
+
+    /**
+     * Returns whether repositories leave this state's connection in manual-commit mode. See
+     * {@link #setRetainManualCommit}.
+     */
+    public boolean getRetainManualCommit ()
+    {
+        return _retainManualCommit;
+    }
+
+    /**
+     * Configures a cache for the prepared statements of this state's connection.
+     */
+    public void setStatementCache (StatementCache cache)
+    {
+        _stmtCache = cache;
+        _wrapped = null;
+    }
+
+    /**
+     * Returns the cache for the prepared statements of this state's connection, or null.
+     */
+    public StatementCache getStatementCache ()
+    {
+        return _stmtCache;
+    }
+
+    /**
+     * Returns a connection that obtains its prepared statements from this state's statement cache,
+     * or the supplied connection itself if we have no cache. The returned connection must only be
+     * used while the supplied connection is held.
+     */
+    public Connection wrap (final Connection conn)
+    {
+        final StatementCache cache = _stmtCache;
+        if (cache == null) {
+            return conn;
+        }
+        if (_wrapped == null) {
+            _wrapped = (Connection)Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), PROXY_IFACES, new InvocationHandler() {
+                public Object invoke (Object proxy, Method method, Object[] args)
+                    throws Throwable {
+                    if (method.getName().equals("prepareStatement") && args != null &&
+                        args.length == 1) {
+                        return cache.prepareStatement((String)args[0]);
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException ite) {
+                        throw ite.getCause();
+                    }
+                }
+            });
+        }
+        return _wrapped;
+    }
+
+    @Override
+    public String toString ()
+    {
+        return "[liaison=" + liaison.getClass().getSimpleName() +
+            ", transactions=" + supportsTransactions + ", autoCommit=" + _autoCommit + "]";
+    }
+
+    protected final boolean _trackAutoCommit;
+
+    /** Our connection's auto-commit mode, or null if it is unknown. */
+    protected Boolean _autoCommit;
+
+    /** Whether repositories leave our connection in manual-commit mode. */
+    protected boolean _retainManualCommit;
+
+    /** Our connection's statement cache, if any, and the connection wrapped to use it. */
+    protected StatementCache _stmtCache;
+    protected Connection _wrapped;
+
+    protected static final Class<?>[] PROXY_IFACES = { Connection.class };
+}
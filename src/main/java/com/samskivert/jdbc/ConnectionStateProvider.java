@@ -0,0 +1,33 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A connection provider that caches the {@link ConnectionState} of the connections it provides.
+ * {@link SimpleRepository} uses the cached state when its provider implements this interface, and
+ * otherwise obtains the state from the connection's metadata for each operation.
+ */
+public interface ConnectionStateProvider extends ConnectionProvider
+{
+    /**
+     * Returns the cached state (liaison, transaction support and auto-commit mode) of a connection
+     * obtained via {@link #getConnection}, creating it if necessary. Providers should retain the
+     * state for as long as the connection lives so that repositories need not consult the
+     * connection's metadata on every operation.
+     *
+     * @param ident the database identifier used when obtaining this connection.
+     * @param readOnly the same value that was passed to {@link #getConnection} to obtain this
+     * connection.
+     * @param conn the connection, which the caller must not yet have released.
+     *
+     * @exception SQLException thrown if the connection's metadata could not be obtained.
+     */
+    ConnectionState getConnectionState (String ident, boolean readOnly, Connection conn)
+        throws SQLException;
+}
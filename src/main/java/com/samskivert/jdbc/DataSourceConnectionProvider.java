@@ -18,7 +18,7 @@ import static com.samskivert.jdbc.Log.log;
  * and one for read-write operations). Note: if transactions are going to be used, the data sources
  * must be pooled data sources, otherwise bad things will happen.
  */
-public class DataSourceConnectionProvider implements ConnectionProvider
+public class DataSourceConnectionProvider implements ConnectionStateProvider
 {
     /**
      * Creates a connection provider that will obtain connections from the supplied read-only and
@@ -67,6 +67,25 @@ public class DataSourceConnectionProvider implements ConnectionProvider
         }
     }
 
+    // from ConnectionStateProvider
+    public ConnectionState getConnectionState (String ident, boolean readOnly, Connection conn)
+        throws SQLException
+    {
+        // our connections are handed out anew by the data sources each time, so we can only
+        // cache the database's properties, and not the connection's auto-commit mode
+        ConnectionState state = readOnly ? _readState : _writeState;
+        if (state == null) {
+            ConnectionState cstate = ConnectionState.forConnection(conn);
+            state = new ConnectionState(cstate.liaison, cstate.supportsTransactions, false);
+            if (readOnly) {
+                _readState = state;
+            } else {
+                _writeState = state;
+            }
+        }
+        return state;
+    }
+
     // from ConnectionProvider
     public Connection getTxConnection (String ident) throws PersistenceException
     {
@@ -121,4 +140,7 @@ public class DataSourceConnectionProvider implements ConnectionProvider
 
     protected String _url;
     protected DataSource _readSource, _writeSource;
+
+    /** The (untracked) states shared by our read-only and read-write connections. */
+    protected volatile ConnectionState _readState, _writeState;
 }
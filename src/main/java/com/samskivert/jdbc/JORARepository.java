@@ -19,6 +19,18 @@ import com.samskivert.jdbc.jora.*;
  */
 public abstract class JORARepository extends SimpleRepository
 {
+    /**
+     * Processes rows streamed from the database, see {@link #streamAll}.
+     */
+    public static interface RowHandler<T>
+    {
+        /** Processes a single row. */
+        public void handle (T row) throws PersistenceException;
+    }
+
+    /** The number of rows fetched at a time by {@link #streamAll}, by default. */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
     /**
      * Creates and initializes a JORA repository which will access the
      * database identified by the supplied database identifier.
@@ -109,6 +121,51 @@ public abstract class JORARepository extends SimpleRepository
         });
     }
 
+    /**
+     * Streams all objects from the specified table that match the supplied
+     * query to the supplied handler, {@link #DEFAULT_FETCH_SIZE} rows at a
+     * time. See {@link #streamAll(Table,String,int,RowHandler)}.
+     */
+    protected <T> int streamAll (Table<T> table, String query, RowHandler<T> handler)
+        throws PersistenceException
+    {
+        return streamAll(table, query, DEFAULT_FETCH_SIZE, handler);
+    }
+
+    /**
+     * Streams all objects from the specified table that match the supplied
+     * query to the supplied handler, without loading them all into memory.
+     * Rows are fetched from the database <code>fetchSize</code> at a time
+     * (subject to the driver's capabilities, see {@link
+     * BaseLiaison#configureStreaming}). The handler is called on the
+     * calling thread while the database connection is held and must not
+     * itself perform database operations. The operation is not retried on
+     * transient failure, as rows may already have been handled.
+     *
+     * @return the number of rows handled.
+     */
+    protected <T> int streamAll (final Table<T> table, final String query, final int fetchSize,
+                                 final RowHandler<T> handler)
+        throws PersistenceException
+    {
+        return execute(new Operation<Integer>() {
+            public Integer invoke (Connection conn, DatabaseLiaison liaison)
+                throws SQLException, PersistenceException
+            {
+                Cursor<T> cursor = table.select(conn, query).setStreaming(liaison, fetchSize);
+                try {
+                    int count = 0;
+                    for (T row; (row = cursor.next()) != null; count++) {
+                        handler.handle(row);
+                    }
+                    return count;
+                } finally {
+                    cursor.close();
+                }
+            }
+        }, false, true);
+    }
+
     /**
      * Loads all objects from the specified table that match the supplied
      * query, joining with the supplied auxiliary table(s).
@@ -35,6 +35,15 @@ public class MySQLLiaison extends BaseLiaison
                                 msg.indexOf("Broken pipe") != -1));
     }
 
+    @Override // from BaseLiaison
+    public void configureStreaming (Statement stmt, int fetchSize) throws SQLException
+    {
+        // Connector/J ignores fetch sizes (unless useCursorFetch is enabled) and reads the entire
+        // result set into memory, except for this magic value, which causes it to stream rows one
+        // at a time; no other statements may be executed on the connection while streaming
+        stmt.setFetchSize(Integer.MIN_VALUE);
+    }
+
     @Override // from DatabaseLiaison
     public void createGenerator (Connection conn, String tableName, String columnName, int initValue)
         throws SQLException
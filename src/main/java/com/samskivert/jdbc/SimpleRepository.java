@@ -122,6 +122,7 @@ public class SimpleRepository extends Repository
         Connection conn = null;
         DatabaseLiaison liaison = null;
         V rv = null;
+        ConnectionState state = null;
         boolean supportsTransactions = false;
         boolean attemptedOperation = false;
         Boolean oldAutoCommit = null;
@@ -139,26 +140,32 @@ public class SimpleRepository extends Repository
         // we're done
         synchronized (conn) {
             try {
-                liaison = LiaisonRegistry.getLiaison(conn);
-
-                // find out if we support transactions
-                DatabaseMetaData dmd = conn.getMetaData();
-                if (dmd != null) {
-                    supportsTransactions = dmd.supportsTransactions();
-                }
-
-                // turn off auto-commit
-                if (supportsTransactions && conn.getAutoCommit()) {
-                    oldAutoCommit = conn.getAutoCommit();
-                    conn.setAutoCommit(false);
+                // the provider may cache our liaison, whether we support transactions and our
+                // auto-commit mode, so that we needn't fetch them from the metadata every time
+                state = (_provider instanceof ConnectionStateProvider) ?
+                    ((ConnectionStateProvider)_provider).getConnectionState(
+                        _dbident, readOnly, conn) :
+                    ConnectionState.forConnection(conn);
+                liaison = state.liaison;
+                supportsTransactions = state.supportsTransactions;
+
+                // turn off auto-commit (which the state tracks, so this is free if it's already
+                // off), restoring it afterwards unless the connection is to be left in
+                // manual-commit mode for its next operation
+                if (supportsTransactions && state.getAutoCommit(conn)) {
+                    if (!state.getRetainManualCommit()) {
+                        oldAutoCommit = true;
+                    }
+                    state.setAutoCommit(conn, false);
                 }
 
                 // let derived classes do any got-connection processing
                 gotConnection(conn);
 
-                // invoke the operation
+                // invoke the operation (on a connection that caches its prepared statements, if
+                // the provider has configured a statement cache)
                 attemptedOperation = true;
-                rv = op.invoke(conn, liaison);
+                rv = op.invoke(state.wrap(conn), liaison);
 
                 // commit the transaction
                 if (supportsTransactions) {
@@ -227,7 +234,7 @@ public class SimpleRepository extends Repository
                     try {
                         // restore our auto-commit settings
                         if (oldAutoCommit != null && !conn.isClosed()) {
-                            conn.setAutoCommit(oldAutoCommit);
+                            state.setAutoCommit(conn, oldAutoCommit);
                         }
                     } catch (SQLException sace) {
                         log.warning("Unable to restore auto-commit", "err", sace);
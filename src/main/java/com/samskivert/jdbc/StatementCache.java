@@ -0,0 +1,239 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.samskivert.jdbc.Log.log;
+
+/**
+ * A bounded, least recently used cache of the prepared statements of a single connection, keyed
+ * on their SQL. Statements obtained from the cache are wrapped such that closing them returns them
+ * to the cache (with their parameters cleared) rather than closing them, so that repeatedly
+ * executed statements need only be parsed and planned by the database once. Statements whose
+ * configuration (fetch size, max rows, etc.) was changed are closed rather than cached.
+ *
+ * <p> Statement caches are kept with a connection's {@link ConnectionState} and are used
+ * transparently by {@link SimpleRepository} operations via {@link ConnectionState#wrap}.
+ */
+public class StatementCache
+{
+    /**
+     * Tracks the hits, misses and evictions of one or more statement caches.
+     */
+    public static class Metrics
+    {
+        /** Returns the number of statements obtained from a cache. */
+        public long getHits () {
+            return _hits.get();
+        }
+
+        /** Returns the number of statements that had to be prepared. */
+        public long getMisses () {
+            return _misses.get();
+        }
+
+        /** Returns the number of statements closed to make room for others. */
+        public long getEvictions () {
+            return _evictions.get();
+        }
+
+        /** Returns the fraction of statements obtained from a cache. */
+        public double getHitRate () {
+            long hits = getHits(), total = hits + getMisses();
+            return (total == 0) ? 0 : hits / (double)total;
+        }
+
+        @Override public String toString () {
+            return "[hits=" + getHits() + ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() + "]";
+        }
+
+        protected final AtomicLong _hits = new AtomicLong(), _misses = new AtomicLong(),
+            _evictions = new AtomicLong();
+    }
+
+    /**
+     * Creates a cache of up to <code>maxSize</code> idle statements for the supplied connection.
+     *
+     * @param metrics the metrics to which to report, which may be shared by other caches.
+     */
+    public StatementCache (Connection conn, int maxSize, Metrics metrics)
+    {
+        _conn = conn;
+        _maxSize = maxSize;
+        _metrics = metrics;
+    }
+
+    /**
+     * Returns a prepared statement for the supplied SQL, from the cache if possible. The statement
+     * should be closed when it is no longer needed, which will return it to the cache.
+     */
+    public synchronized PreparedStatement prepareStatement (String sql)
+        throws SQLException
+    {
+        PreparedStatement stmt = _idle.remove(sql);
+        if (stmt != null) {
+            _metrics._hits.incrementAndGet();
+        } else {
+            _metrics._misses.incrementAndGet();
+            stmt = _conn.prepareStatement(sql);
+        }
+        return (PreparedStatement)Proxy.newProxyInstance(
+            PreparedStatement.class.getClassLoader(), PROXY_IFACES, new Handle(sql, stmt));
+    }
+
+    /**
+     * Returns the number of idle statements in the cache.
+     */
+    public synchronized int size ()
+    {
+        return _idle.size();
+    }
+
+    /**
+     * Returns the metrics to which this cache reports.
+     */
+    public Metrics getMetrics ()
+    {
+        return _metrics;
+    }
+
+    /**
+     * Closes all idle statements in the cache. Statements that are in use will be closed when
+     * they are returned.
+     */
+    public synchronized void clear ()
+    {
+        for (Iterator<PreparedStatement> iter = _idle.values().iterator(); iter.hasNext(); ) {
+            close(iter.next());
+            iter.remove();
+        }
+    }
+
+    /**
+     * Returns a statement to the cache, closing it if an equivalent statement was returned in the
+     * meanwhile.
+     */
+    protected synchronized void checkIn (String sql, PreparedStatement stmt)
+    {
+        if (_idle.containsKey(sql)) {
+            close(stmt);
+        } else {
+            _idle.put(sql, stmt);
+        }
+    }
+
+    protected static void close (PreparedStatement stmt)
+    {
+        try {
+            stmt.close();
+        } catch (SQLException sqe) {
+            log.warning("Error closing cached statement", "stmt", stmt, "error", sqe);
+        }
+    }
+
+    /** Intercepts calls to a cached statement. */
+    protected class Handle implements InvocationHandler
+    {
+        public Handle (String sql, PreparedStatement stmt) {
+            _sql = sql;
+            _stmt = stmt;
+        }
+
+        public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (!_closed) {
+                    _closed = true;
+                    release();
+                }
+                return null;
+            } else if (name.equals("isClosed")) {
+                return _closed || _stmt.isClosed();
+            } else if (_closed && method.getDeclaringClass() != Object.class) {
+                throw new SQLException("Statement is closed");
+            }
+
+            if (name.equals("addBatch")) {
+                _batched = true;
+            } else if (name.startsWith("set") && !method.getDeclaringClass().equals(
+                           PreparedStatement.class)) {
+                // a statement-level setting (fetch size, max rows, etc.) rather than a parameter
+                _configured = true;
+            }
+
+            Object result;
+            try {
+                result = method.invoke(_stmt, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+            if (result instanceof ResultSet) {
+                _results.add((ResultSet)result);
+            }
+            return result;
+        }
+
+        protected void release () {
+            if (_configured) {
+                close(_stmt);
+                return;
+            }
+            try {
+                for (ResultSet rs : _results) {
+                    rs.close();
+                }
+                _stmt.clearParameters();
+                if (_batched) {
+                    _stmt.clearBatch();
+                }
+            } catch (SQLException sqe) {
+                close(_stmt);
+                return;
+            }
+            checkIn(_sql, _stmt);
+        }
+
+        protected final String _sql;
+        protected final PreparedStatement _stmt;
+        protected final List<ResultSet> _results = new ArrayList<ResultSet>(1);
+        protected boolean _closed, _batched, _configured;
+    }
+
+    protected final Connection _conn;
+    protected final int _maxSize;
+    protected final Metrics _metrics;
+
+    /** Our idle statements, least recently used first. */
+    protected final Map<String, PreparedStatement> _idle =
+        new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry (Map.Entry<String, PreparedStatement> e) {
+            if (size() <= _maxSize) {
+                return false;
+            }
+            close(e.getValue());
+            _metrics._evictions.incrementAndGet();
+            return true;
+        }
+    };
+
+    protected static final Class<?>[] PROXY_IFACES = { PreparedStatement.class };
+}
@@ -18,8 +18,8 @@ import static com.samskivert.jdbc.Log.log;
 
 /**
  * The static connection provider generates JDBC connections based on configuration information
- * provided via a properties file. It does no connection pooling and always returns the same
- * connection for a particular identifier (unless that connection need be closed because of a
+ * provided via a properties file. By default it does no connection pooling and always returns the
+ * same connection for a particular identifier (unless that connection need be closed because of a
  * connection failure, in which case it opens a new one the next time the connection is requested).
  *
  * <p> The configuration properties file should contain the following information:
@@ -53,8 +53,20 @@ import static com.samskivert.jdbc.Log.log;
  *
  * [...]
  * </pre>
+ *
+ * <p> Connections for a particular identifier may instead be drawn from a {@link ConnectionPool},
+ * which allows them to be used by multiple threads at once, by setting
+ * <code>IDENT.pool.enabled=true</code> (or <code>default.pool.enabled=true</code>). The pool is
+ * configured by the remaining <code>IDENT.pool.*</code> properties, described in {@link
+ * ConnectionPool.Config}, and its metrics are available via {@link #getPoolStats}. Transaction
+ * connections are not pooled. Pooled connections are left in manual-commit mode once they have
+ * been used by a repository, see {@link ConnectionState#setRetainManualCommit}.
+ *
+ * <p> Setting <code>IDENT.statementCache=[size]</code> causes up to <code>size</code> prepared
+ * statements to be cached for each (non-transaction) connection for that identifier, see {@link
+ * StatementCache}. The cache's metrics are available via {@link #getStatementCacheMetrics}.
  */
-public class StaticConnectionProvider implements ConnectionProvider
+public class StaticConnectionProvider implements ConnectionStateProvider
 {
     /** Creates a provider for testing, using HSQLDB. */
     public static ConnectionProvider forTest (String dbname) {
@@ -111,22 +123,35 @@ public class StaticConnectionProvider implements ConnectionProvider
     // from ConnectionProvider
     public void releaseConnection (String ident, boolean readOnly, Connection conn)
     {
-        // nothing to do here, all is well
+        Mapping conmap = getExistingMapping(ident, readOnly);
+        if (conmap != null && conmap.pool != null) {
+            conmap.pool.release(conn);
+        }
+        // otherwise nothing to do here, all is well
     }
 
     // from ConnectionProvider
     public void connectionFailed (
         String ident, boolean readOnly, Connection conn, SQLException error)
     {
-        String mapkey = ident + ":" + readOnly;
-        Mapping conmap = _idents.get(mapkey);
+        Mapping conmap = getExistingMapping(ident, readOnly);
         if (conmap == null) {
-            log.warning("Unknown connection failed!?", "key", mapkey);
+            log.warning("Unknown connection failed!?", "key", ident + ":" + readOnly);
+        } else if (conmap.pool != null) {
+            conmap.pool.invalidate(conn);
         } else {
             conmap.closeConnection(ident);
         }
     }
 
+    // from ConnectionStateProvider
+    public ConnectionState getConnectionState (String ident, boolean readOnly, Connection conn)
+        throws SQLException
+    {
+        Mapping conmap = getExistingMapping(ident, readOnly);
+        return (conmap == null) ? ConnectionState.forConnection(conn) : conmap.getState(conn);
+    }
+
     // from ConnectionProvider
     public Connection getTxConnection (String ident) throws PersistenceException
     {
@@ -146,7 +171,7 @@ public class StaticConnectionProvider implements ConnectionProvider
     }
 
     // from ConnectionProvider
-    public void shutdown ()
+    public synchronized void shutdown ()
     {
         // close all of the connections
         for (Map.Entry<String, Mapping> entry : _keys.entrySet()) {
@@ -158,7 +183,32 @@ public class StaticConnectionProvider implements ConnectionProvider
         _idents.clear();
     }
 
-    protected Mapping getMapping (String ident, boolean readOnly) throws PersistenceException {
+    /**
+     * Returns the state and metrics of the connection pool for the specified database identifier,
+     * or null if its connections are not pooled or none have yet been requested.
+     */
+    public ConnectionPool.Stats getPoolStats (String ident, boolean readOnly)
+    {
+        Mapping conmap = getExistingMapping(ident, readOnly);
+        return (conmap == null || conmap.pool == null) ? null : conmap.pool.getStats();
+    }
+
+    /**
+     * Returns the metrics of the statement caches of the connections for the specified database
+     * identifier, or null if their statements are not cached or none have yet been requested.
+     */
+    public StatementCache.Metrics getStatementCacheMetrics (String ident, boolean readOnly)
+    {
+        Mapping conmap = getExistingMapping(ident, readOnly);
+        return (conmap == null) ? null : conmap.stmtMetrics;
+    }
+
+    protected synchronized Mapping getExistingMapping (String ident, boolean readOnly) {
+        return _idents.get(ident + ":" + readOnly);
+    }
+
+    protected synchronized Mapping getMapping (String ident, boolean readOnly)
+        throws PersistenceException {
         String mapkey = ident + ":" + readOnly;
         Mapping conmap = _idents.get(mapkey);
         if (conmap != null) return conmap;
@@ -167,8 +217,10 @@ public class StaticConnectionProvider implements ConnectionProvider
         Info info = new Info(ident, props);
 
         // if this is a read-only connection, we cache connections by username+url+readOnly to
-        // avoid making more that one connection to a particular database server
-        String key = info.username + "@" + info.url + ":" + readOnly;
+        // avoid making more that one connection to a particular database server (pooled and
+        // unpooled connections are kept separate)
+        String key = info.username + "@" + info.url + ":" + readOnly +
+            (info.pool == null ? "" : ":pooled");
         conmap = _keys.get(key);
         if (conmap == null) {
             log.debug("Creating " + key + " for " + ident + ".");
@@ -195,6 +247,8 @@ public class StaticConnectionProvider implements ConnectionProvider
     protected static class Info {
         public final String ident, driver, url, username, password;
         public final Boolean autoCommit;
+        public final ConnectionPool.Config pool;
+        public final int statementCacheSize;
 
         public Info (String ident, Properties props) throws PersistenceException {
             this.ident = ident;
@@ -204,6 +258,16 @@ public class StaticConnectionProvider implements ConnectionProvider
             this.password = props.getProperty("password", "");
             String ac = props.getProperty("autocommit");
             this.autoCommit = (ac == null) ? null : Boolean.valueOf(ac);
+            boolean pooled = Boolean.valueOf(props.getProperty("pool.enabled"));
+            this.pool = pooled ? new ConnectionPool.Config(props) : null;
+            String scsize = props.getProperty("statementCache");
+            try {
+                this.statementCacheSize = StringUtil.isBlank(scsize) ? 0 :
+                    Integer.parseInt(scsize.trim());
+            } catch (NumberFormatException nfe) {
+                throw new PersistenceException(
+                    "Invalid statementCache size [ident=" + ident + ", size=" + scsize + "]");
+            }
         }
 
         protected String requireProp (Properties props, String name,
@@ -225,18 +289,58 @@ public class StaticConnectionProvider implements ConnectionProvider
          * connection. */
         public final String key;
 
+        /** The pool from which our connections are borrowed, or null if they are not pooled. */
+        public final ConnectionPool pool;
+
+        /** The metrics of our connections' statement caches, or null if they have none. */
+        public final StatementCache.Metrics stmtMetrics;
+
         public Mapping (String key, Info info, boolean readOnly) {
             this.key = key;
             _info = info;
             _readOnly = readOnly;
+            this.stmtMetrics = (info.statementCacheSize > 0) ? new StatementCache.Metrics() : null;
+            this.pool = (info.pool == null) ? null :
+                new ConnectionPool(key, info.pool, new ConnectionPool.Factory() {
+                    public Connection openConnection () throws PersistenceException {
+                        return Mapping.this.openConnection(_info.ident, _info.autoCommit);
+                    }
+                    public ConnectionState createState (Connection conn) throws SQLException {
+                        ConnectionState state = Mapping.this.createState(conn);
+                        // a pooled connection has one user at a time, so repositories needn't
+                        // turn auto-commit back on after each operation
+                        state.setRetainManualCommit(true);
+                        return state;
+                    }
+                });
         }
 
-        /** Returns the main connection for this mapping, (re)opening it if necessary. */
+        /** Returns the main connection for this mapping, (re)opening it if necessary, or borrows
+         * a connection from our pool if we are pooled. */
         public Connection getConnection (String ident) throws PersistenceException {
+            if (pool != null) return pool.borrow();
             if (_conn == null) _conn = openConnection(ident, _info.autoCommit);
             return _conn;
         }
 
+        /** Returns the cached state of a connection obtained from {@link #getConnection}. */
+        public ConnectionState getState (Connection conn) throws SQLException {
+            if (pool != null) return pool.getState(conn);
+            if (conn != _conn) return ConnectionState.forConnection(conn);
+            if (_state == null) _state = createState(conn);
+            return _state;
+        }
+
+        /** Creates the state for one of our connections. */
+        public ConnectionState createState (Connection conn) throws SQLException {
+            ConnectionState state = ConnectionState.forConnection(conn);
+            if (stmtMetrics != null) {
+                state.setStatementCache(
+                    new StatementCache(conn, _info.statementCacheSize, stmtMetrics));
+            }
+            return state;
+        }
+
         /** Opens and returns a new connection to this mapping's database. */
         public Connection openConnection (String ident, Boolean autoCommit)
             throws PersistenceException {
@@ -292,19 +396,23 @@ public class StaticConnectionProvider implements ConnectionProvider
 
         /**
          * Closes the main connection for this mapping, causing it to be reopened on the next call
-         * to {@link #getConnection}.
+         * to {@link #getConnection}. If we are pooled, our pool is instead shut down.
          * @param ident the ident on behalf of which we are operating.
          */
         public void closeConnection (String ident) {
-            if (_conn != null) {
+            if (pool != null) {
+                pool.shutdown();
+            } else if (_conn != null) {
                 close(_conn, ident);
                 _conn = null;
+                _state = null;
             }
         }
 
         protected final Info _info;
         protected final boolean _readOnly;
         protected Connection _conn;
+        protected ConnectionState _state;
     }
 
     /** Our configuration in the form of a properties object. */
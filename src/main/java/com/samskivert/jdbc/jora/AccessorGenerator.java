@@ -0,0 +1,474 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc.jora;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.samskivert.jdbc.Log.log;
+
+/**
+ * Generates the {@link FieldAccessor}s and {@link FieldAccessor.Factory}s for a {@link Table}.
+ * Each generated accessor reads and writes its field with <code>getfield</code> and
+ * <code>putfield</code> instructions, and each generated factory creates instances with
+ * <code>new</code>, so neither goes through reflection.
+ *
+ * <p> The classes are defined in a class loader of the table's own, whose parent is that of the
+ * table's row class. Being in a different package (at runtime) than the classes they access, they
+ * can only access public fields and constructors of public classes, so we return null for
+ * anything else (and the caller falls back to reflection). We write version 49 class files, which
+ * need no stack map frames. Setting the <code>com.samskivert.jora.reflectFields</code> system
+ * property disables generation entirely.
+ */
+class AccessorGenerator
+{
+    /**
+     * Returns a generator for the table whose rows are of the supplied class, or null if
+     * generation is disabled.
+     */
+    public static AccessorGenerator forClass (Class<?> rowClass)
+    {
+        return Boolean.getBoolean("com.samskivert.jora.reflectFields") ? null :
+            new AccessorGenerator(rowClass.getClassLoader());
+    }
+
+    /**
+     * Creates a generator whose classes will be defined in a child of the supplied loader.
+     */
+    public AccessorGenerator (ClassLoader parent)
+    {
+        _loader = new Loader(parent);
+    }
+
+    /**
+     * Generates an accessor for the supplied field, or returns null if it cannot be accessed by a
+     * generated class.
+     */
+    public FieldAccessor createAccessor (Field field)
+    {
+        Class<?> owner = field.getDeclaringClass(), type = field.getType();
+        int mods = field.getModifiers();
+        if (_failed || !Modifier.isPublic(mods) || Modifier.isStatic(mods) ||
+            Modifier.isFinal(mods) || type == Character.TYPE ||
+            !isVisible(owner) || !isVisible(type)) {
+            return null;
+        }
+        try {
+            String name = GENERATED_PACKAGE + "Accessor" + _nextId.incrementAndGet();
+            FieldAccessor.Generated access = (FieldAccessor.Generated)instantiate(
+                name, generateAccessor(name, owner, field.getName(), type));
+            access._field = field.toString();
+            return access;
+        } catch (Throwable t) {
+            log.warning("Unable to generate field accessor, using reflection", "field", field, t);
+            _failed = true;
+            return null;
+        }
+    }
+
+    /**
+     * Generates a factory for the supplied class, or returns null if it cannot be instantiated by
+     * a generated class.
+     */
+    public FieldAccessor.Factory createFactory (Class<?> clazz)
+    {
+        if (_failed || clazz.isPrimitive() || clazz.isArray() || clazz.isInterface() ||
+            Modifier.isAbstract(clazz.getModifiers()) || !isVisible(clazz)) {
+            return null;
+        }
+        try {
+            Constructor<?> ctor = clazz.getDeclaredConstructor();
+            // we don't wrap exceptions as Constructor does, so avoid any that declare them
+            if (!Modifier.isPublic(ctor.getModifiers()) || ctor.getExceptionTypes().length > 0) {
+                return null;
+            }
+        } catch (NoSuchMethodException nsme) {
+            return null;
+        }
+        try {
+            String name = GENERATED_PACKAGE + "Factory" + _nextId.incrementAndGet();
+            return (FieldAccessor.Factory)instantiate(name, generateFactory(name, clazz));
+        } catch (Throwable t) {
+            log.warning("Unable to generate factory, using reflection", "class", clazz, t);
+            _failed = true;
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the supplied class (or the element class of the supplied array class) is
+     * public and our loader resolves its name to the very same class.
+     */
+    protected boolean isVisible (Class<?> clazz)
+    {
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+        if (clazz.isPrimitive()) {
+            return true;
+        }
+        if (!Modifier.isPublic(clazz.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(clazz.getName(), false, _loader) == clazz;
+        } catch (ClassNotFoundException cnfe) {
+            return false;
+        }
+    }
+
+    /**
+     * Defines the supplied class and creates an instance of it via its no-argument constructor.
+     */
+    protected Object instantiate (String name, byte[] code)
+        throws Exception
+    {
+        return _loader.define(name, code).getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Generates an accessor class for the specified field.
+     */
+    protected static byte[] generateAccessor (
+        String name, Class<?> owner, String fname, Class<?> type)
+    {
+        ClassWriter cw = new ClassWriter(name, GENERATED_SUPER);
+        String oname = internalName(owner), desc = descriptor(type);
+        int ocls = cw.classRef(oname), field = cw.fieldRef(oname, fname, desc);
+        Primitive prim = PRIMITIVES.get(type);
+
+        if (prim != null) {
+            // the typed get and set methods
+            cw.addMethod("get" + prim.suffix, "(" + OBJECT_DESC + ")" + desc, new Code().
+                         op(ALOAD_1).op2(CHECKCAST, ocls).op2(GETFIELD, field).
+                         op(prim.returnOp), true);
+            cw.addMethod("set" + prim.suffix, "(" + OBJECT_DESC + desc + ")V", new Code().
+                         op(ALOAD_1).op2(CHECKCAST, ocls).op1(prim.loadOp, 2).
+                         op2(PUTFIELD, field).op(RETURN), true);
+
+            // the boxed get and set methods
+            String box = internalName(prim.box);
+            cw.addMethod("get", "(" + OBJECT_DESC + ")" + OBJECT_DESC, new Code().
+                         op(ALOAD_1).op2(CHECKCAST, ocls).op2(GETFIELD, field).
+                         op2(INVOKESTATIC, cw.methodRef(box, "valueOf",
+                                                        "(" + desc + ")L" + box + ";")).
+                         op(ARETURN), true);
+            cw.addMethod("set", "(" + OBJECT_DESC + OBJECT_DESC + ")V", new Code().
+                         op(ALOAD_1).op2(CHECKCAST, ocls).op(ALOAD_2).
+                         op2(CHECKCAST, cw.classRef(box)).
+                         op2(INVOKEVIRTUAL, cw.methodRef(box, prim.type + "Value", "()" + desc)).
+                         op2(PUTFIELD, field).op(RETURN), true);
+
+        } else {
+            cw.addMethod("get", "(" + OBJECT_DESC + ")" + OBJECT_DESC, new Code().
+                         op(ALOAD_1).op2(CHECKCAST, ocls).op2(GETFIELD, field).
+                         op(ARETURN), true);
+            Code set = new Code().op(ALOAD_1).op2(CHECKCAST, ocls).op(ALOAD_2);
+            if (type != Object.class) {
+                set.op2(CHECKCAST, cw.classRef(internalName(type)));
+            }
+            cw.addMethod("set", "(" + OBJECT_DESC + OBJECT_DESC + ")V",
+                         set.op2(PUTFIELD, field).op(RETURN), true);
+        }
+
+        addConstructor(cw, GENERATED_SUPER);
+        return cw.toByteArray();
+    }
+
+    /**
+     * Generates a factory class for the specified class.
+     */
+    protected static byte[] generateFactory (String name, Class<?> clazz)
+    {
+        ClassWriter cw = new ClassWriter(name, FACTORY_SUPER);
+        String cname = internalName(clazz);
+        cw.addMethod("newInstance", "()" + OBJECT_DESC, new Code().
+                     op2(NEW, cw.classRef(cname)).op(DUP).
+                     op2(INVOKESPECIAL, cw.methodRef(cname, "<init>", "()V")).
+                     op(ARETURN), false);
+        addConstructor(cw, FACTORY_SUPER);
+        return cw.toByteArray();
+    }
+
+    /**
+     * Adds a no-argument constructor that calls that of the specified superclass.
+     */
+    protected static void addConstructor (ClassWriter cw, String superName)
+    {
+        cw.addMethod("<init>", "()V", new Code().
+                     op(ALOAD_0).op2(INVOKESPECIAL, cw.methodRef(superName, "<init>", "()V")).
+                     op(RETURN), false);
+    }
+
+    /**
+     * Returns the name of the supplied class as it appears in class files.
+     */
+    protected static String internalName (Class<?> clazz)
+    {
+        // this works for array classes as well, whose internal names are their descriptors
+        return clazz.getName().replace('.', '/');
+    }
+
+    /**
+     * Returns the descriptor of the supplied type.
+     */
+    protected static String descriptor (Class<?> type)
+    {
+        Primitive prim = PRIMITIVES.get(type);
+        if (prim != null) {
+            return prim.desc;
+        }
+        return type.isArray() ? internalName(type) : ("L" + internalName(type) + ";");
+    }
+
+    /** Describes how to access fields of a primitive type. */
+    protected static class Primitive
+    {
+        public final String type, suffix, desc;
+        public final int loadOp, returnOp;
+        public final Class<?> box;
+
+        public Primitive (String type, String desc, int loadOp, int returnOp, Class<?> box) {
+            this.type = type;
+            this.suffix = Character.toUpperCase(type.charAt(0)) + type.substring(1);
+            this.desc = desc;
+            this.loadOp = loadOp;
+            this.returnOp = returnOp;
+            this.box = box;
+        }
+    }
+
+    /** Accumulates the bytecode of a method. */
+    protected static class Code
+    {
+        public Code op (int opcode) {
+            _code.write(opcode);
+            return this;
+        }
+
+        public Code op1 (int opcode, int operand) {
+            _code.write(opcode);
+            _code.write(operand);
+            return this;
+        }
+
+        public Code op2 (int opcode, int operand) {
+            _code.write(opcode);
+            _code.write(operand >> 8);
+            _code.write(operand);
+            return this;
+        }
+
+        public byte[] toByteArray () {
+            return _code.toByteArray();
+        }
+
+        protected ByteArrayOutputStream _code = new ByteArrayOutputStream();
+    }
+
+    /** Writes a class file containing only methods. */
+    protected static class ClassWriter
+    {
+        public ClassWriter (String name, String superName) {
+            _this = classRef(name.replace('.', '/'));
+            _super = classRef(superName);
+            _code = utf8("Code");
+        }
+
+        public int utf8 (String value) {
+            return constant("U" + value, 1, value);
+        }
+
+        public int classRef (String name) {
+            return constant("C" + name, 7, utf8(name));
+        }
+
+        public int fieldRef (String owner, String name, String desc) {
+            return constant("F" + owner + "." + name + ":" + desc, 9,
+                            classRef(owner), nameAndType(name, desc));
+        }
+
+        public int methodRef (String owner, String name, String desc) {
+            return constant("M" + owner + "." + name + desc, 10,
+                            classRef(owner), nameAndType(name, desc));
+        }
+
+        /**
+         * Adds a public method with the supplied code.
+         *
+         * @param catchMismatch if true, a {@link ClassCastException} thrown by the code is
+         * converted to an {@link IllegalArgumentException} (as {@link Field} would throw).
+         */
+        public void addMethod (String name, String desc, Code code, boolean catchMismatch) {
+            byte[] body = code.toByteArray();
+            int handler = body.length;
+            if (catchMismatch) {
+                code.op2(INVOKESTATIC, methodRef(
+                             GENERATED_SUPER, "mismatch", "(Ljava/lang/ClassCastException;)" +
+                             "Ljava/lang/IllegalArgumentException;")).op(ATHROW);
+                body = code.toByteArray();
+            }
+            try {
+                DataOutputStream out = new DataOutputStream(_methods);
+                out.writeShort(ACC_PUBLIC);
+                out.writeShort(utf8(name));
+                out.writeShort(utf8(desc));
+                out.writeShort(1); // attributes: Code
+                out.writeShort(_code);
+                out.writeInt(12 + body.length + (catchMismatch ? 8 : 0));
+                out.writeShort(MAX_STACK);
+                out.writeShort(MAX_LOCALS);
+                out.writeInt(body.length);
+                out.write(body);
+                if (catchMismatch) {
+                    out.writeShort(1);
+                    out.writeShort(0); // start
+                    out.writeShort(handler); // end (exclusive)
+                    out.writeShort(handler);
+                    out.writeShort(classRef("java/lang/ClassCastException"));
+                } else {
+                    out.writeShort(0);
+                }
+                out.writeShort(0); // attributes
+            } catch (IOException ioe) {
+                throw new AssertionError(ioe); // not possible
+            }
+            _methodCount++;
+        }
+
+        public byte[] toByteArray () {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            try {
+                DataOutputStream out = new DataOutputStream(bout);
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0); // minor version
+                out.writeShort(49); // major version (Java 5)
+                out.writeShort(_constants.size() + 1);
+                for (byte[] constant : _constants) {
+                    out.write(constant);
+                }
+                out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+                out.writeShort(_this);
+                out.writeShort(_super);
+                out.writeShort(0); // interfaces
+                out.writeShort(0); // fields
+                out.writeShort(_methodCount);
+                out.write(_methods.toByteArray());
+                out.writeShort(0); // attributes
+            } catch (IOException ioe) {
+                throw new AssertionError(ioe); // not possible
+            }
+            return bout.toByteArray();
+        }
+
+        protected int nameAndType (String name, String desc) {
+            return constant("N" + name + ":" + desc, 12, utf8(name), utf8(desc));
+        }
+
+        protected int constant (String key, int tag, Object... values) {
+            Integer index = _indices.get(key);
+            if (index != null) {
+                return index;
+            }
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            try {
+                DataOutputStream out = new DataOutputStream(bout);
+                out.writeByte(tag);
+                for (Object value : values) {
+                    if (value instanceof String) {
+                        out.writeUTF((String)value); // the class file's modified UTF-8
+                    } else {
+                        out.writeShort((Integer)value);
+                    }
+                }
+            } catch (IOException ioe) {
+                throw new AssertionError(ioe); // not possible
+            }
+            _constants.add(bout.toByteArray());
+            _indices.put(key, index = _constants.size());
+            return index;
+        }
+
+        protected List<byte[]> _constants = new ArrayList<byte[]>();
+        protected Map<String,Integer> _indices = new HashMap<String,Integer>();
+        protected ByteArrayOutputStream _methods = new ByteArrayOutputStream();
+        protected int _methodCount;
+        protected int _this, _super, _code;
+    }
+
+    /** Defines our generated classes. */
+    protected static class Loader extends ClassLoader
+    {
+        public Loader (ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define (String name, byte[] code) {
+            return defineClass(name, code, 0, code.length);
+        }
+
+        @Override protected Class<?> loadClass (String name, boolean resolve)
+            throws ClassNotFoundException {
+            // our generated classes extend these, which the row class's loader may not see
+            if (name.equals(FieldAccessor.Generated.class.getName())) {
+                return FieldAccessor.Generated.class;
+            } else if (name.equals(FieldAccessor.Factory.class.getName())) {
+                return FieldAccessor.Factory.class;
+            } else if (name.equals(FieldAccessor.class.getName())) {
+                return FieldAccessor.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+
+    /** Defines the classes we generate. */
+    protected final Loader _loader;
+
+    /** Set if we failed to generate a class, after which we don't try again. */
+    protected volatile boolean _failed;
+
+    /** Used to give our generated classes unique names. */
+    protected static final AtomicInteger _nextId = new AtomicInteger();
+
+    protected static final String GENERATED_PACKAGE = "com.samskivert.jdbc.jora.generated.";
+    protected static final String GENERATED_SUPER =
+        internalName(FieldAccessor.Generated.class);
+    protected static final String FACTORY_SUPER = internalName(FieldAccessor.Factory.class);
+    protected static final String OBJECT_DESC = "Ljava/lang/Object;";
+
+    protected static final Map<Class<?>,Primitive> PRIMITIVES = new HashMap<Class<?>,Primitive>();
+
+    protected static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+    protected static final int MAX_STACK = 4, MAX_LOCALS = 4;
+
+    protected static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c, DUP = 0x59;
+    protected static final int ILOAD = 0x15, LLOAD = 0x16, FLOAD = 0x17, DLOAD = 0x18;
+    protected static final int IRETURN = 0xac, LRETURN = 0xad, FRETURN = 0xae, DRETURN = 0xaf;
+    protected static final int ARETURN = 0xb0, RETURN = 0xb1, ATHROW = 0xbf;
+    protected static final int GETFIELD = 0xb4, PUTFIELD = 0xb5;
+    protected static final int INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+    protected static final int NEW = 0xbb, CHECKCAST = 0xc0;
+
+    static {
+        PRIMITIVES.put(Byte.TYPE, new Primitive("byte", "B", ILOAD, IRETURN, Byte.class));
+        PRIMITIVES.put(Short.TYPE, new Primitive("short", "S", ILOAD, IRETURN, Short.class));
+        PRIMITIVES.put(Integer.TYPE, new Primitive("int", "I", ILOAD, IRETURN, Integer.class));
+        PRIMITIVES.put(Long.TYPE, new Primitive("long", "J", LLOAD, LRETURN, Long.class));
+        PRIMITIVES.put(Float.TYPE, new Primitive("float", "F", FLOAD, FRETURN, Float.class));
+        PRIMITIVES.put(Double.TYPE, new Primitive("double", "D", DLOAD, DRETURN, Double.class));
+        PRIMITIVES.put(Boolean.TYPE,
+                       new Primitive("boolean", "Z", ILOAD, IRETURN, Boolean.class));
+    }
+}
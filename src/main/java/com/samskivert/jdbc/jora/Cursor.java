@@ -8,6 +8,9 @@ package com.samskivert.jdbc.jora;
 import java.util.*;
 import java.sql.*;
 
+import com.samskivert.jdbc.BaseLiaison;
+import com.samskivert.jdbc.DatabaseLiaison;
+
 import static com.samskivert.jdbc.Log.log;
 
 /**
@@ -18,6 +21,41 @@ import static com.samskivert.jdbc.Log.log;
  */
 public class Cursor<V>
 {
+    /**
+     * Configures the number of rows this cursor fetches from the database at a time (a hint to
+     * the JDBC driver). Must be called before the first call to {@link #next}.
+     *
+     * @return this cursor, for chaining.
+     */
+    public Cursor<V> setFetchSize (int fetchSize)
+    {
+        checkUnstarted();
+        _fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Configures this cursor to stream its results: its query will be executed with a
+     * forward-only, read-only statement, configured by the supplied liaison (see {@link
+     * BaseLiaison#configureStreaming}) such that rows are fetched from the database
+     * <code>fetchSize</code> at a time, rather than the driver reading the entire result set into
+     * memory (liaisons that don't extend {@link BaseLiaison} simply set the fetch size). Rows
+     * should be processed (and discarded) as they are returned by {@link #next}, rather than via
+     * {@link #toArrayList}, and (with some drivers) no other statements may be executed on the
+     * connection until the cursor is exhausted or closed.
+     * Streaming cursors cannot {@link #update} or {@link #delete} rows. Must be called before the
+     * first call to {@link #next}.
+     *
+     * @return this cursor, for chaining.
+     */
+    public Cursor<V> setStreaming (DatabaseLiaison liaison, int fetchSize)
+    {
+        checkUnstarted();
+        _liaison = liaison;
+        _fetchSize = fetchSize;
+        return this;
+    }
+
     /**
      * A cursor is initially positioned before its first row; the first call to
      * next makes the first row the current row; the second call makes the
@@ -40,13 +78,20 @@ public class Cursor<V>
 
         if (_result == null) {
             if (_qbeObject != null) {
-                PreparedStatement qbeStmt = _conn.prepareStatement(_query);
+                PreparedStatement qbeStmt = (_liaison == null) ?
+                    _conn.prepareStatement(_query) :
+                    _conn.prepareStatement(_query, ResultSet.TYPE_FORWARD_ONLY,
+                                           ResultSet.CONCUR_READ_ONLY);
+                _stmt = qbeStmt;
+                configureFetch(qbeStmt);
                 _table.bindQueryVariables(qbeStmt, _qbeObject, _qbeMask);
                 _result = qbeStmt.executeQuery();
-                _stmt = qbeStmt;
             } else {
                 if (_stmt == null) {
-                    _stmt = _conn.createStatement();
+                    _stmt = (_liaison == null) ? _conn.createStatement() :
+                        _conn.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                                              ResultSet.CONCUR_READ_ONLY);
+                    configureFetch(_stmt);
                 }
                 _result = _stmt.executeQuery(_query);
             }
@@ -187,6 +232,24 @@ public class Cursor<V>
         return toArrayList(Integer.MAX_VALUE);
     }
 
+    protected void checkUnstarted ()
+    {
+        if (_result != null || _table == null) {
+            throw new IllegalStateException("Cursor already started");
+        }
+    }
+
+    protected void configureFetch (Statement stmt)
+        throws SQLException
+    {
+        if (_liaison instanceof BaseLiaison) {
+            ((BaseLiaison)_liaison).configureStreaming(stmt, _fetchSize);
+        } else if (_fetchSize > 0) {
+            // other liaisons know of no driver quirks, so we rely on the fetch size
+            stmt.setFetchSize(_fetchSize);
+        }
+    }
+
     protected Cursor (Table<V> table, Connection conn, String query)
     {
         _table = table;
@@ -214,5 +277,11 @@ public class Cursor<V>
     protected V _currObject, _qbeObject;
     protected FieldMask _qbeMask;
     protected boolean _like;
+
+    /** The number of rows to fetch at a time, or 0 to leave it up to the driver. */
+    protected int _fetchSize;
+
+    /** The liaison that configures our streaming statement, or null if we're not streaming. */
+    protected DatabaseLiaison _liaison;
 }
 
@@ -0,0 +1,190 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc.jora;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes a single field of a persistent object. An accessor is created once per field,
+ * and {@link FieldDescriptor} calls the typed method that matches the field's type, so that
+ * primitive values are read and written without boxing. Where possible the accessor is a class
+ * generated by {@link AccessorGenerator} that reads and writes the field with ordinary field
+ * instructions; otherwise it uses reflection.
+ *
+ * <p> This class is only public so that generated accessors (which are defined in their own class
+ * loader) can extend it. It is not intended for use outside of this package.
+ */
+public abstract class FieldAccessor
+{
+    /**
+     * Creates instances of a persistent class (or of a compound field's class). Like accessors,
+     * factories are generated where possible.
+     */
+    public static abstract class Factory
+    {
+        /** Creates a new instance via our class's no-argument constructor. */
+        public abstract Object newInstance ();
+    }
+
+    /**
+     * The superclass of generated accessors, which override the typed methods that match the type
+     * of their field (and the {@link #get} and {@link #set} methods). The rest are rejected as
+     * {@link Field} would reject them.
+     */
+    public static abstract class Generated extends FieldAccessor
+    {
+        /** Converts the exception thrown when a generated accessor is passed an object (or value)
+         * of the wrong type to the exception that {@link Field} would throw. */
+        public static IllegalArgumentException mismatch (ClassCastException cce) {
+            IllegalArgumentException iae = new IllegalArgumentException(cce.getMessage());
+            iae.initCause(cce);
+            return iae;
+        }
+
+        protected Generated () {
+        }
+
+        public byte getByte (Object obj) {
+            throw wrongType("byte");
+        }
+        public short getShort (Object obj) {
+            throw wrongType("short");
+        }
+        public int getInt (Object obj) {
+            throw wrongType("int");
+        }
+        public long getLong (Object obj) {
+            throw wrongType("long");
+        }
+        public float getFloat (Object obj) {
+            throw wrongType("float");
+        }
+        public double getDouble (Object obj) {
+            throw wrongType("double");
+        }
+        public boolean getBoolean (Object obj) {
+            throw wrongType("boolean");
+        }
+
+        public void setByte (Object obj, byte value) {
+            throw wrongType("byte");
+        }
+        public void setShort (Object obj, short value) {
+            throw wrongType("short");
+        }
+        public void setInt (Object obj, int value) {
+            throw wrongType("int");
+        }
+        public void setLong (Object obj, long value) {
+            throw wrongType("long");
+        }
+        public void setFloat (Object obj, float value) {
+            throw wrongType("float");
+        }
+        public void setDouble (Object obj, double value) {
+            throw wrongType("double");
+        }
+        public void setBoolean (Object obj, boolean value) {
+            throw wrongType("boolean");
+        }
+
+        protected IllegalArgumentException wrongType (String type) {
+            return new IllegalArgumentException("Field is not of type " + type + ": " + _field);
+        }
+
+        /** The field we access, for reporting. Set by the generator. */
+        protected String _field;
+    }
+
+    /**
+     * Creates an accessor for the supplied field, which must already have been made accessible.
+     *
+     * @param generator the generator to use to create the accessor, or null to use reflection.
+     */
+    static FieldAccessor create (Field field, AccessorGenerator generator)
+    {
+        FieldAccessor access = (generator == null) ? null : generator.createAccessor(field);
+        return (access == null) ? new ReflectAccessor(field) : access;
+    }
+
+    public abstract byte getByte (Object obj) throws IllegalAccessException;
+    public abstract short getShort (Object obj) throws IllegalAccessException;
+    public abstract int getInt (Object obj) throws IllegalAccessException;
+    public abstract long getLong (Object obj) throws IllegalAccessException;
+    public abstract float getFloat (Object obj) throws IllegalAccessException;
+    public abstract double getDouble (Object obj) throws IllegalAccessException;
+    public abstract boolean getBoolean (Object obj) throws IllegalAccessException;
+    public abstract Object get (Object obj) throws IllegalAccessException;
+
+    public abstract void setByte (Object obj, byte value) throws IllegalAccessException;
+    public abstract void setShort (Object obj, short value) throws IllegalAccessException;
+    public abstract void setInt (Object obj, int value) throws IllegalAccessException;
+    public abstract void setLong (Object obj, long value) throws IllegalAccessException;
+    public abstract void setFloat (Object obj, float value) throws IllegalAccessException;
+    public abstract void setDouble (Object obj, double value) throws IllegalAccessException;
+    public abstract void setBoolean (Object obj, boolean value) throws IllegalAccessException;
+    public abstract void set (Object obj, Object value) throws IllegalAccessException;
+
+    /** Accesses a field via reflection. */
+    protected static class ReflectAccessor extends FieldAccessor
+    {
+        public ReflectAccessor (Field field) {
+            _field = field;
+        }
+
+        public byte getByte (Object obj) throws IllegalAccessException {
+            return _field.getByte(obj);
+        }
+        public short getShort (Object obj) throws IllegalAccessException {
+            return _field.getShort(obj);
+        }
+        public int getInt (Object obj) throws IllegalAccessException {
+            return _field.getInt(obj);
+        }
+        public long getLong (Object obj) throws IllegalAccessException {
+            return _field.getLong(obj);
+        }
+        public float getFloat (Object obj) throws IllegalAccessException {
+            return _field.getFloat(obj);
+        }
+        public double getDouble (Object obj) throws IllegalAccessException {
+            return _field.getDouble(obj);
+        }
+        public boolean getBoolean (Object obj) throws IllegalAccessException {
+            return _field.getBoolean(obj);
+        }
+        public Object get (Object obj) throws IllegalAccessException {
+            return _field.get(obj);
+        }
+
+        public void setByte (Object obj, byte value) throws IllegalAccessException {
+            _field.setByte(obj, value);
+        }
+        public void setShort (Object obj, short value) throws IllegalAccessException {
+            _field.setShort(obj, value);
+        }
+        public void setInt (Object obj, int value) throws IllegalAccessException {
+            _field.setInt(obj, value);
+        }
+        public void setLong (Object obj, long value) throws IllegalAccessException {
+            _field.setLong(obj, value);
+        }
+        public void setFloat (Object obj, float value) throws IllegalAccessException {
+            _field.setFloat(obj, value);
+        }
+        public void setDouble (Object obj, double value) throws IllegalAccessException {
+            _field.setDouble(obj, value);
+        }
+        public void setBoolean (Object obj, boolean value) throws IllegalAccessException {
+            _field.setBoolean(obj, value);
+        }
+        public void set (Object obj, Object value) throws IllegalAccessException {
+            _field.set(obj, value);
+        }
+
+        protected final Field _field;
+    }
+}
@@ -11,10 +11,11 @@ import java.lang.reflect.*;
 
 class FieldDescriptor
 {
-    protected FieldDescriptor (Field field, String name)
+    protected FieldDescriptor (Field field, String name, AccessorGenerator generator)
     {
         this.name = name;
         this.field = field;
+        this.access = FieldAccessor.create(field, generator);
         this.scale = -1;
     }
 
@@ -40,86 +41,86 @@ class FieldDescriptor
         try {
             switch (outType) {
             case t_byte:
-                pstmt.setByte(column, field.getByte(obj));
+                pstmt.setByte(column, access.getByte(obj));
                 break;
             case t_short:
-                pstmt.setShort(column, field.getShort(obj));
+                pstmt.setShort(column, access.getShort(obj));
                 break;
             case t_int:
-                pstmt.setInt(column, field.getInt(obj));
+                pstmt.setInt(column, access.getInt(obj));
                 break;
             case t_long:
-                pstmt.setLong(column, field.getLong(obj));
+                pstmt.setLong(column, access.getLong(obj));
                 break;
             case t_float:
-                pstmt.setFloat(column, field.getFloat(obj));
+                pstmt.setFloat(column, access.getFloat(obj));
                 break;
             case t_double:
-                pstmt.setDouble(column, field.getDouble(obj));
+                pstmt.setDouble(column, access.getDouble(obj));
                 break;
             case t_boolean:
-                pstmt.setBoolean(column, field.getBoolean(obj));
+                pstmt.setBoolean(column, access.getBoolean(obj));
                 break;
             case tByte:
-                pstmt.setByte(column, ((Byte)field.get(obj)).byteValue());
+                pstmt.setByte(column, ((Byte)access.get(obj)).byteValue());
                 break;
 
             case tShort:
-                pstmt.setShort(column, ((Short)field.get(obj)).shortValue());
+                pstmt.setShort(column, ((Short)access.get(obj)).shortValue());
                 break;
             case tInteger:
-                pstmt.setInt(column, ((Integer)field.get(obj)).intValue());
+                pstmt.setInt(column, ((Integer)access.get(obj)).intValue());
                 break;
             case tLong:
-                pstmt.setLong(column, ((Long)field.get(obj)).longValue());
+                pstmt.setLong(column, ((Long)access.get(obj)).longValue());
                 break;
             case tFloat:
-                pstmt.setFloat(column, ((Float)field.get(obj)).floatValue());
+                pstmt.setFloat(column, ((Float)access.get(obj)).floatValue());
                 break;
             case tDouble:
-                pstmt.setDouble(column,((Double)field.get(obj)).doubleValue());
+                pstmt.setDouble(column,((Double)access.get(obj)).doubleValue());
                 break;
             case tBoolean:
-                pstmt.setBoolean(column, ((Boolean)field.get(obj)).booleanValue());
+                pstmt.setBoolean(column, ((Boolean)access.get(obj)).booleanValue());
                 break;
 
             case tDecimal:
-                pstmt.setBigDecimal(column, (BigDecimal)field.get(obj));
+                pstmt.setBigDecimal(column, (BigDecimal)access.get(obj));
                 break;
             case tString:
-                pstmt.setString(column, (String)field.get(obj));
+                pstmt.setString(column, (String)access.get(obj));
                 break;
             case tBytes:
-                pstmt.setBytes(column, (byte[])field.get(obj));
+                pstmt.setBytes(column, (byte[])access.get(obj));
                 break;
             case tDate:
-                pstmt.setDate(column, (java.sql.Date)field.get(obj));
+                pstmt.setDate(column, (java.sql.Date)access.get(obj));
                 break;
             case tTime:
-                pstmt.setTime(column, (java.sql.Time)field.get(obj));
+                pstmt.setTime(column, (java.sql.Time)access.get(obj));
                 break;
             case tTimestamp:
-                pstmt.setTimestamp(column, (java.sql.Timestamp)field.get(obj));
+                pstmt.setTimestamp(column, (java.sql.Timestamp)access.get(obj));
                 break;
             case tStream:
-                java.io.InputStream in = (java.io.InputStream)field.get(obj);
+                java.io.InputStream in = (java.io.InputStream)access.get(obj);
                 pstmt.setBinaryStream(column, in, in.available());
                 break;
             case tBlob:
-                pstmt.setBlob(column, (Blob)field.get(obj));
+                pstmt.setBlob(column, (Blob)access.get(obj));
                 break;
             case tClob:
-                pstmt.setClob(column, (Clob)field.get(obj));
+                pstmt.setClob(column, (Clob)access.get(obj));
                 break;
             case tAsString:
-                pstmt.setString(column, field.get(obj).toString());
+                pstmt.setString(column, access.get(obj).toString());
                 break;
             case tClosure:
                 // There is no reason to use piped streams because
                 // we need to pass total number of bytes to JDBC driver
                 java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
                 java.io.ObjectOutputStream clu = new java.io.ObjectOutputStream(out);
-                clu.writeObject(field.get(obj));
+                clu.writeObject(access.get(obj));
                 clu.close();
                 pstmt.setBytes(column, out.toByteArray());
                 break;
@@ -148,88 +149,88 @@ class FieldDescriptor
         try {
             switch (outType) {
             case t_byte:
-                result.updateByte(column, field.getByte(obj));
+                result.updateByte(column, access.getByte(obj));
                 break;
             case t_short:
-                result.updateShort(column, field.getShort(obj));
+                result.updateShort(column, access.getShort(obj));
                 break;
             case t_int:
-                result.updateInt(column, field.getInt(obj));
+                result.updateInt(column, access.getInt(obj));
                 break;
             case t_long:
-                result.updateLong(column, field.getLong(obj));
+                result.updateLong(column, access.getLong(obj));
                 break;
             case t_float:
-                result.updateFloat(column, field.getFloat(obj));
+                result.updateFloat(column, access.getFloat(obj));
                 break;
             case t_double:
-                result.updateDouble(column, field.getDouble(obj));
+                result.updateDouble(column, access.getDouble(obj));
                 break;
             case t_boolean:
-                result.updateBoolean(column, field.getBoolean(obj));
+                result.updateBoolean(column, access.getBoolean(obj));
                 break;
 
             case tByte:
-                result.updateByte(column, ((Byte)field.get(obj)).byteValue());
+                result.updateByte(column, ((Byte)access.get(obj)).byteValue());
                 break;
             case tShort:
-                result.updateShort(column, ((Short)field.get(obj)).shortValue());
+                result.updateShort(column, ((Short)access.get(obj)).shortValue());
                 break;
             case tInteger:
-                result.updateInt(column, ((Integer)field.get(obj)).intValue());
+                result.updateInt(column, ((Integer)access.get(obj)).intValue());
                 break;
             case tLong:
-                result.updateLong(column, ((Long)field.get(obj)).longValue());
+                result.updateLong(column, ((Long)access.get(obj)).longValue());
                 break;
             case tFloat:
-                result.updateFloat(column, ((Float)field.get(obj)).floatValue());
+                result.updateFloat(column, ((Float)access.get(obj)).floatValue());
                 break;
             case tDouble:
-                result.updateDouble(column, ((Double)field.get(obj)).doubleValue());
+                result.updateDouble(column, ((Double)access.get(obj)).doubleValue());
                 break;
             case tBoolean:
-                result.updateBoolean(column, ((Boolean)field.get(obj)).booleanValue());
+                result.updateBoolean(column, ((Boolean)access.get(obj)).booleanValue());
                 break;
 
             case tDecimal:
-                result.updateBigDecimal(column, (BigDecimal)field.get(obj));
+                result.updateBigDecimal(column, (BigDecimal)access.get(obj));
                 break;
             case tString:
-                result.updateString(column, (String)field.get(obj));
+                result.updateString(column, (String)access.get(obj));
                 break;
             case tBytes:
-                result.updateBytes(column, (byte[])field.get(obj));
+                result.updateBytes(column, (byte[])access.get(obj));
                 break;
             case tDate:
-                result.updateDate(column, (java.sql.Date)field.get(obj));
+                result.updateDate(column, (java.sql.Date)access.get(obj));
                 break;
             case tTime:
-                result.updateTime(column, (java.sql.Time)field.get(obj));
+                result.updateTime(column, (java.sql.Time)access.get(obj));
                 break;
             case tTimestamp:
-                result.updateTimestamp(column, (java.sql.Timestamp)field.get(obj));
+                result.updateTimestamp(column, (java.sql.Timestamp)access.get(obj));
                 break;
             case tStream:
-                java.io.InputStream in = (java.io.InputStream)field.get(obj);
+                java.io.InputStream in = (java.io.InputStream)access.get(obj);
                 result.updateBinaryStream(column, in, in.available());
                 break;
             case tBlob:
-                Blob blob = (Blob)field.get(obj);
+                Blob blob = (Blob)access.get(obj);
                 result.updateBinaryStream(column, blob.getBinaryStream(), (int)blob.length());
                 break;
             case tClob:
-                Clob clob = (Clob)field.get(obj);
+                Clob clob = (Clob)access.get(obj);
                 result.updateCharacterStream(column, clob.getCharacterStream(), (int)clob.length());
                 break;
             case tAsString:
-                result.updateString(column, field.get(obj).toString());
+                result.updateString(column, access.get(obj).toString());
                 break;
             case tClosure:
                 // There is no reason to use piped streams because
                 // we need to pass total number of bytes to JDBC driver
                 java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
                 java.io.ObjectOutputStream clu = new java.io.ObjectOutputStream(out);
-                clu.writeObject(field.get(obj));
+                clu.writeObject(access.get(obj));
                 clu.close();
                 result.updateBytes(column, out.toByteArray());
                 break;
@@ -258,89 +259,88 @@ class FieldDescriptor
     {
         switch (inType) {
         case t_byte:
-            field.setByte(obj, result.getByte(column));
+            access.setByte(obj, result.getByte(column));
             break;
         case t_short:
-            field.setShort(obj, result.getShort(column));
+            access.setShort(obj, result.getShort(column));
             break;
         case t_int:
-            field.setInt(obj, result.getInt(column));
+            access.setInt(obj, result.getInt(column));
             break;
         case t_long:
-            field.setLong(obj, result.getLong(column));
+            access.setLong(obj, result.getLong(column));
             break;
         case t_float:
-            field.setFloat(obj, result.getFloat(column));
+            access.setFloat(obj, result.getFloat(column));
             break;
         case t_double:
-            field.setDouble(obj, result.getDouble(column));
+            access.setDouble(obj, result.getDouble(column));
             break;
         case t_boolean:
-            field.setBoolean(obj, result.getBoolean(column));
+            access.setBoolean(obj, result.getBoolean(column));
             break;
 
         case tByte:
             byte b = result.getByte(column);
-            field.set(obj, result.wasNull() ? null : Byte.valueOf(b));
+            access.set(obj, result.wasNull() ? null : Byte.valueOf(b));
             break;
         case tShort:
             short s = result.getShort(column);
-            field.set(obj, result.wasNull() ? null : Short.valueOf(s));
+            access.set(obj, result.wasNull() ? null : Short.valueOf(s));
             break;
         case tInteger:
             int i = result.getInt(column);
-            field.set(obj, result.wasNull() ? null : Integer.valueOf(i));
+            access.set(obj, result.wasNull() ? null : Integer.valueOf(i));
             break;
         case tLong:
             long l = result.getLong(column);
-            field.set(obj, result.wasNull() ? null : Long.valueOf(l));
+            access.set(obj, result.wasNull() ? null : Long.valueOf(l));
             break;
         case tFloat:
             float f = result.getFloat(column);
-            field.set(obj, result.wasNull() ? null : Float.valueOf(f));
-            field.setFloat(obj, result.getFloat(column));
+            access.set(obj, result.wasNull() ? null : Float.valueOf(f));
             break;
         case tDouble:
             double d = result.getDouble(column);
-            field.set(obj, result.wasNull() ? null : Double.valueOf(d));
+            access.set(obj, result.wasNull() ? null : Double.valueOf(d));
             break;
         case tBoolean:
             boolean bl = result.getBoolean(column);
-            field.set(obj, result.wasNull() ? null : Boolean.valueOf(bl));
+            access.set(obj, result.wasNull() ? null : Boolean.valueOf(bl));
             break;
 
         case tDecimal:
-            field.set(obj, result.getBigDecimal(column));
+            access.set(obj, result.getBigDecimal(column));
             break;
         case tString:
-            field.set(obj, result.getString(column));
+            access.set(obj, result.getString(column));
             break;
         case tBytes:
-            field.set(obj, result.getBytes(column));
+            access.set(obj, result.getBytes(column));
             break;
         case tDate:
-            field.set(obj, result.getDate(column));
+            access.set(obj, result.getDate(column));
             break;
         case tTime:
-            field.set(obj, result.getTime(column));
+            access.set(obj, result.getTime(column));
             break;
         case tTimestamp:
-            field.set(obj, result.getTimestamp(column));
+            access.set(obj, result.getTimestamp(column));
             break;
         case tStream:
-            field.set(obj, result.getBinaryStream(column));
+            access.set(obj, result.getBinaryStream(column));
             break;
         case tBlob:
-            field.set(obj, result.getBlob(column));
+            access.set(obj, result.getBlob(column));
             break;
         case tClob:
-            field.set(obj, result.getClob(column));
+            access.set(obj, result.getClob(column));
             break;
         case tClosure:
             try {
                 java.io.InputStream input = result.getBinaryStream(column);
                 java.io.ObjectInputStream in = new java.io.ObjectInputStream(input);
-                field.set(obj, in.readObject());
+                access.set(obj, in.readObject());
                 in.close();
             } catch(ClassNotFoundException ex) {
                 throw new DataTransferError(ex);
@@ -359,8 +359,10 @@ class FieldDescriptor
     protected int    scale;   // scale for tDecimal type,
     protected String name;    // full (compound) name of component
     protected Field  field;   // field info from java.lang.reflect
+    protected FieldAccessor access; // reads and writes field
 
     protected Constructor<?> constructor; // constructor of object component
+    protected FieldAccessor.Factory factory; // generated factory of object component, or null
 
     protected static final int t_byte         = 0;
     protected static final int t_short        = 1;
@@ -426,6 +426,7 @@ public class Table<T>
         listOfFields = "";
         qualifiedListOfFields = "";
         listOfAssignments = "";
+        _generator = AccessorGenerator.forClass(clazz);
         ArrayList<FieldDescriptor> fieldsVector =
             new ArrayList<FieldDescriptor>();
         nFields = buildFieldsList(fieldsVector, _rowClass, "");
@@ -436,6 +437,9 @@ public class Table<T>
             constructor = _rowClass.getDeclaredConstructor(new Class<?>[0]);
             setBypass.invoke(constructor, bypassFlag);
         } catch(Exception ex) {}
+        if (_generator != null) {
+            _factory = _generator.createFactory(_rowClass);
+        }
 
         if (keys != null && keys.length > 0) {
             primaryKeyIndices = new int[keys.length];
@@ -500,7 +504,7 @@ public class Table<T>
                 String name = f[i].getName();
                 Class<?> fieldClass = f[i].getType();
                 String fullName = prefix + convertName(name);
-                FieldDescriptor fd = new FieldDescriptor(f[i], fullName);
+                FieldDescriptor fd = new FieldDescriptor(f[i], fullName, _generator);
                 int type;
 
                 buf.add(fd);
@@ -559,6 +563,9 @@ public class Table<T>
                             fieldClass.getDeclaredConstructor(new Class<?>[0]);
                         setBypass.invoke(fd.constructor, bypassFlag);
                     } catch(Exception ex) {}
+                    if (_generator != null) {
+                        fd.factory = _generator.createFactory(fieldClass);
+                    }
 
                     n += nComponents;
                     continue;
@@ -602,7 +609,8 @@ public class Table<T>
     {
         T obj;
         try {
-            obj = constructor.newInstance(constructorArgs);
+            obj = (_factory != null) ? _rowClass.cast(_factory.newInstance()) :
+                constructor.newInstance(constructorArgs);
         }
         catch(IllegalAccessException ex) { throw new IllegalAccessError(); }
         catch(InstantiationException ex) { throw new InstantiationError(); }
@@ -621,9 +629,9 @@ public class Table<T>
             while (i < end) {
                 FieldDescriptor fd = fields[i++];
                 if (!fd.loadVariable(result, obj, ++column)) {
-                    Object component =
+                    Object component = (fd.factory != null) ? fd.factory.newInstance() :
                         fd.constructor.newInstance(constructorArgs);
-                    fd.field.set(obj, component);
+                    fd.access.set(obj, component);
                     int nComponents = fd.inType - FieldDescriptor.tCompound;
                     column = load(component, i, i + nComponents,
                                   column-1, result);
@@ -695,7 +703,7 @@ public class Table<T>
                 if (mask != null && !mask.isModified(i-1)) {
                     continue;
                 }
-                if (!fd.isBuiltin() && (comp = fd.field.get(obj)) == null) {
+                if (!fd.isBuiltin() && (comp = fd.access.get(obj)) == null) {
                     if (fd.isCompound()) {
                         int nComponents = fd.outType-FieldDescriptor.tCompound;
                         while (--nComponents >= 0) {
@@ -754,7 +762,7 @@ public class Table<T>
                     }
 
                     // look up the value of the field
-                    comp = fd.field.get(obj);
+                    comp = fd.access.get(obj);
 
                     // if no field mask was specified, ignore builtin
                     // fields and those that are null
@@ -802,7 +810,7 @@ public class Table<T>
                     }
 
                     // look up the value of the field
-                    comp = fd.field.get(qbe);
+                    comp = fd.access.get(qbe);
 
                     // if no field mask was specified, ignore builtin
                     // fields and those that are null
@@ -839,7 +847,7 @@ public class Table<T>
             while (i < end) {
                 FieldDescriptor fd = fields[i++];
                 Object comp = null;
-                if (!fd.isBuiltin() && (comp = fd.field.get(obj)) == null) {
+                if (!fd.isBuiltin() && (comp = fd.access.get(obj)) == null) {
                     if (fd.isCompound()) {
                         int nComponents = fd.outType-FieldDescriptor.tCompound;
                         while (--nComponents >= 0) {
@@ -894,6 +902,12 @@ public class Table<T>
 
     protected Constructor<T> constructor;
 
+    /** Generates our field accessors and factories, or null if we use reflection. */
+    protected AccessorGenerator _generator;
+
+    /** Creates our rows without reflection, or null if we use {@link #constructor}. */
+    protected FieldAccessor.Factory _factory;
+
     protected static final Method setBypass = getSetBypass();
     protected static final Class<Serializable> serializableClass = Serializable.class;
     protected static final Object[] bypassFlag = { Boolean.TRUE };
@@ -17,6 +17,7 @@ import java.util.Collections;
 import java.util.Map;
 
 import com.samskivert.util.ServiceWaiter;
+import com.samskivert.util.VirtualThreads;
 
 /**
  * Contains utility methods for doing a form post.
@@ -55,8 +56,8 @@ public class HttpPostUtil
     {
         final ServiceWaiter<String> waiter = new ServiceWaiter<String>(
             (timeout < 0) ? ServiceWaiter.NO_TIMEOUT : timeout);
-        Thread tt = new Thread() {
-            @Override public void run () {
+        Runnable post = new Runnable() {
+            public void run () {
                 try {
                     HttpURLConnection conn = (HttpURLConnection) url.openConnection();
                     conn.setDoInput(true);
@@ -88,7 +89,8 @@ public class HttpPostUtil
             }
         };
 
-        tt.start();
+        // the request runs on a virtual thread if they're enabled
+        VirtualThreads.newThread("HttpPostUtil " + url, post).start();
 
         if (waiter.waitForResponse()) {
             return waiter.getArgument();
@@ -7,6 +7,7 @@ package com.samskivert.servlet.user;
 
 import java.sql.Connection;
 import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -251,14 +252,16 @@ public class UserRepository extends JORARepository
         throws PersistenceException
     {
         // look for an existing session for this user
-        final String query = "select authcode from sessions where userId = " + user.userId;
+        final int userId = user.userId;
         String authcode = execute(new Operation<String>() {
             public String invoke (Connection conn, DatabaseLiaison liaison)
                 throws PersistenceException, SQLException
             {
-                Statement stmt = conn.createStatement();
+                PreparedStatement stmt = conn.prepareStatement(
+                    "select authcode from sessions where userId = ?");
                 try {
-                    ResultSet rs = stmt.executeQuery(query);
+                    stmt.setInt(1, userId);
+                    ResultSet rs = stmt.executeQuery();
                     while (rs.next()) {
                         return rs.getString(1);
                     }
@@ -348,10 +351,9 @@ public class UserRepository extends JORARepository
             public Object invoke (Connection conn, DatabaseLiaison liaison)
                 throws PersistenceException, SQLException
             {
-                Statement stmt = conn.createStatement();
+                PreparedStatement stmt = conn.prepareStatement("select realname from users");
                 try {
-                    String query = "select realname from users";
-                    ResultSet rs = stmt.executeQuery(query);
+                    ResultSet rs = stmt.executeQuery();
                     while (rs.next()) {
                         names.add(rs.getString(1));
                     }
@@ -9,6 +9,8 @@ import java.lang.reflect.Method;
 import java.util.Hashtable;
 import javax.swing.SwingUtilities;
 
+import com.samskivert.util.VirtualThreads;
+
 import static com.samskivert.swing.Log.log;
 
 /**
@@ -22,7 +24,9 @@ import static com.samskivert.swing.Log.log;
  * infrequently run and expensive, so the overhead of creating a new
  * thread to run each task is considered acceptable. If the need arises,
  * the task master can be extended to support more sophisticated thread
- * pooling but we'll cross that bridge when we come to it.
+ * pooling but we'll cross that bridge when we come to it. If virtual
+ * threads are {@link VirtualThreads#isEnabled enabled}, each task is run on
+ * its own virtual thread instead.
  */
 public class TaskMaster
 {
@@ -38,7 +42,11 @@ public class TaskMaster
         TaskRunner runner = new TaskRunner(name, task, observer);
         _tasks.put(name, runner);
         // then start the runner up
-        runner.start();
+        if (VirtualThreads.isEnabled()) {
+            VirtualThreads.newVirtualThread(name, runner).start();
+        } else {
+            runner.start();
+        }
     }
 
     /**
@@ -0,0 +1,262 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * A base class for {@link LongSet} implementations.<p>
+ *
+ * All you really need to do is implement <tt>longerator</tt>, but you'll almost certainly want
+ * to implement <tt>size</tt> and <tt>contains</tt> for enhanced performance.<p>
+ *
+ * To implement a modifiable LongSet, the programmer must additionally override this class's
+ * <tt>add</tt> and <tt>remove</tt> methods, which will otherwise throw an
+ * <tt>UnsupportedOperationException</tt>.<p>
+ */
+public abstract class AbstractLongSet extends AbstractSet<Long>
+    implements LongSet
+{
+    /**
+     * Add all of the values in the supplied array to the set.
+     *
+     * @param values elements to be added to this set.
+     *
+     * @return <tt>true</tt> if this set did not already contain all of the specified elements.
+     */
+    public boolean add (long[] values)
+    {
+        boolean modified = false;
+        int vlength = values.length;
+        for (int i = 0; i < vlength; i++) {
+            modified = (add(values[i]) || modified);
+        }
+        return modified;
+    }
+
+    /**
+     * Removes all values in the supplied array from the set. Any values that are in the array but
+     * not in the set are simply ignored.
+     *
+     * @param values elements to be removed from the set.
+     *
+     * @return <tt>true</tt> if this set contained any of the specified elements (which will have
+     * been removed).
+     */
+    public boolean remove (long[] values)
+    {
+        boolean modified = false;
+        int vcount = values.length;
+        for (int i = 0; i < vcount; i++) {
+            modified = (remove(values[i]) || modified);
+        }
+        return modified;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation iterates over the longs in the collection, checking each one in turn
+     * to see if it's the specified value.
+     */
+    // from LongSet
+    public boolean contains (long value)
+    {
+        // dumb implementation. You should override.
+        for (Longerator it = longerator(); it.hasNext(); ) {
+            if (it.nextLong() == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation simply counts the elements in the longerator.
+     */
+    @Override
+    public int size ()
+    {
+        // dumb implementation. You should override.
+        int size = 0;
+        for (Longerator it = longerator(); (size < Integer.MAX_VALUE) && it.hasNext(); ) {
+            it.nextLong();
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation simply checks to see if the longerator has a first element.
+     */
+    @Override
+    public boolean isEmpty ()
+    {
+        // possibly dumb implementation. Override if you can do better.
+        return !longerator().hasNext();
+    }
+
+    // from LongSet
+    public boolean add (long value)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    // from LongSet
+    public boolean remove (long value)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns an array containing all the elements returned by the
+     * longerator.
+     */
+    // from LongSet
+    public long[] toLongArray ()
+    {
+        long[] vals = new long[size()];
+        int ii = 0;
+        for (Longerator it = longerator(); (ii < Integer.MAX_VALUE) && it.hasNext(); ) {
+            vals[ii++] = it.nextLong();
+        }
+        return vals;
+    }
+
+    @Override // from AbstractSet<Long>
+    public Iterator<Long> iterator ()
+    {
+        return longerator();
+    }
+
+    @Override // from AbstractSet<Long>
+    public boolean contains (Object o)
+    {
+        // cope with null or non-Long
+        return (o instanceof Long) && contains(((Long)o).longValue());
+    }
+
+    @Override // from AbstractSet<Long>
+    public boolean add (Long i)
+    {
+        return add(i.longValue()); // will NPE
+    }
+
+    @Override // from AbstractSet<Long>
+    public boolean remove (Object o)
+    {
+        // cope with null or non-Long
+        return (o instanceof Long) && remove(((Long)o).longValue());
+    }
+
+    @Override // from AbstractSet<Long>
+    public boolean equals (Object o)
+    {
+        if (o == this) {
+            return true;
+        }
+
+        if (o instanceof LongSet) {
+            LongSet that = (LongSet)o;
+            return (this.size() == that.size()) && this.containsAll(that);
+        }
+        return super.equals(o);
+    }
+
+    @Override // from AbstractSet<Long>
+    public int hashCode ()
+    {
+        int h = 0;
+        for (Longerator it = longerator(); it.hasNext(); ) {
+            long value = it.nextLong();
+            h += (int)(value ^ (value >>> 32)); // as Long.hashCode
+        }
+        return h;
+    }
+
+    @Override // from AbstractSet<Long>
+    public String toString ()
+    {
+        StringBuilder sb = new StringBuilder("[");
+        Longerator it = longerator();
+        if (it.hasNext()) {
+            sb.append(it.nextLong());
+            while (it.hasNext()) {
+                sb.append(", ").append(it.nextLong());
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    @Override // from AbstractSet<Long>
+    public boolean containsAll (Collection<?> c)
+    {
+        if (c instanceof Longerable) {
+            for (Longerator it = ((Longerable) c).longerator(); it.hasNext(); ) {
+                if (!contains(it.nextLong())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.containsAll(c);
+    }
+
+    @Override // from AbstractSet<Long>
+    public boolean addAll (Collection<? extends Long> c)
+    {
+        if (c instanceof Longerable) {
+            boolean modified = false;
+            for (Longerator it = ((Longerable) c).longerator(); it.hasNext(); ) {
+                if (add(it.nextLong())) {
+                    modified = true;
+                }
+            }
+            return modified;
+        }
+        return super.addAll(c);
+    }
+
+    @Override // from AbstractSet<Long>
+    public boolean removeAll (Collection<?> c)
+    {
+        if (c instanceof Longerable) {
+            boolean modified = false;
+            for (Longerator it = ((Longerable)c).longerator(); it.hasNext(); ) {
+                if (remove(it.nextLong())) {
+                    modified = true;
+                }
+            }
+            return modified;
+        }
+        return super.removeAll(c);
+    }
+
+    @Override // from AbstractSet<Long>
+    public boolean retainAll (Collection<?> c)
+    {
+        if (c instanceof LongSet) {
+            LongSet that = (LongSet)c;
+            boolean modified = false;
+            for (Longerator it = longerator(); it.hasNext(); ) {
+                if (!that.contains(it.nextLong())) {
+                    it.remove();
+                    modified = true;
+                }
+            }
+            return modified;
+        }
+        return super.retainAll(c);
+    }
+}
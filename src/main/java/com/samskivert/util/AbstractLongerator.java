@@ -0,0 +1,25 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+/**
+ * A building-block for writing a Longerator.
+ */
+public abstract class AbstractLongerator
+    implements Longerator
+{
+    // from super interface Iterator<Long>
+    public Long next ()
+    {
+        return Long.valueOf(nextLong());
+    }
+
+    // from super interface Iterator<Long>
+    public void remove ()
+    {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -229,9 +229,77 @@ public class ArrayIntSet extends AbstractIntSet
         return (_size == 0);
     }
 
+    /**
+     * Adds all of the values in the supplied set to this set with a single merge pass over both
+     * sorted arrays.
+     *
+     * @return true if this set was modified.
+     */
+    public boolean addAll (ArrayIntSet other)
+    {
+        if (other._size == 0) {
+            return false;
+        }
+        int[] values = new int[_size + other._size];
+        int nsize = union(_values, _size, other._values, other._size, values);
+        if (nsize == _size) {
+            return false;
+        }
+        _values = values;
+        _size = nsize;
+        return true;
+    }
+
+    /**
+     * Removes all of the values in the supplied set from this set, in place and with a single
+     * pass over both sorted arrays.
+     *
+     * @return true if this set was modified.
+     */
+    public boolean removeAll (ArrayIntSet other)
+    {
+        int osize = _size;
+        _size = difference(_values, _size, other._values, other._size, _values);
+        return (_size != osize);
+    }
+
+    /**
+     * Retains only the values in this set that are also in the supplied set, in place and with a
+     * single pass over both sorted arrays.
+     *
+     * @return true if this set was modified.
+     */
+    public boolean retainAll (ArrayIntSet other)
+    {
+        int osize = _size;
+        _size = intersect(_values, _size, other._values, other._size, _values);
+        return (_size != osize);
+    }
+
+    @Override // from AbstractIntSet
+    public boolean addAll (Collection<? extends Integer> c)
+    {
+        if (c instanceof ArrayIntSet) {
+            return addAll((ArrayIntSet)c);
+        }
+        return super.addAll(c);
+    }
+
+    @Override // from AbstractIntSet
+    public boolean removeAll (Collection<?> c)
+    {
+        if (c instanceof ArrayIntSet) {
+            return removeAll((ArrayIntSet)c);
+        }
+        return super.removeAll(c);
+    }
+
     @Override // from AbstractIntSet
     public boolean retainAll (Collection<?> c)
     {
+        if (c instanceof ArrayIntSet) {
+            return retainAll((ArrayIntSet)c);
+        }
         if (c instanceof IntSet) {
             IntSet other = (IntSet)c;
             int removals = 0;
@@ -331,6 +399,183 @@ public class ArrayIntSet extends AbstractIntSet
         return -(low + 1);  // key not found.
     }
 
+    /**
+     * Writes the values found in both of the supplied sorted arrays into <code>out</code>, which
+     * may be either of the source arrays. If one array is much smaller than the other, we gallop
+     * through the larger one rather than visiting each of its elements.
+     *
+     * @return the number of values written.
+     */
+    protected static int intersect (int[] a, int alen, int[] b, int blen, int[] out)
+    {
+        if (alen < blen / GALLOP_RATIO) {
+            return gallopIntersect(a, alen, b, blen, out);
+        } else if (blen < alen / GALLOP_RATIO) {
+            return gallopIntersect(b, blen, a, alen, out);
+        }
+
+        int ii = 0, jj = 0, count = 0;
+        while (ii < alen && jj < blen) {
+            int avalue = a[ii], bvalue = b[jj];
+            if (avalue < bvalue) {
+                ii++;
+            } else if (avalue > bvalue) {
+                jj++;
+            } else {
+                out[count++] = avalue;
+                ii++;
+                jj++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the values found in either of the supplied sorted arrays into <code>out</code>, which
+     * must be distinct from both and large enough to hold <code>alen + blen</code> values.
+     *
+     * @return the number of values written.
+     */
+    protected static int union (int[] a, int alen, int[] b, int blen, int[] out)
+    {
+        if (alen < blen / GALLOP_RATIO) {
+            return gallopUnion(a, alen, b, blen, out);
+        } else if (blen < alen / GALLOP_RATIO) {
+            return gallopUnion(b, blen, a, alen, out);
+        }
+
+        int ii = 0, jj = 0, count = 0;
+        while (ii < alen && jj < blen) {
+            int avalue = a[ii], bvalue = b[jj];
+            if (avalue < bvalue) {
+                out[count++] = avalue;
+                ii++;
+            } else if (avalue > bvalue) {
+                out[count++] = bvalue;
+                jj++;
+            } else {
+                out[count++] = avalue;
+                ii++;
+                jj++;
+            }
+        }
+        System.arraycopy(a, ii, out, count, alen - ii);
+        count += alen - ii;
+        System.arraycopy(b, jj, out, count, blen - jj);
+        return count + blen - jj;
+    }
+
+    /**
+     * Writes the values found in the first sorted array but not the second into <code>out</code>,
+     * which may be the first array.
+     *
+     * @return the number of values written.
+     */
+    protected static int difference (int[] a, int alen, int[] b, int blen, int[] out)
+    {
+        int count = 0;
+        if (alen < blen / GALLOP_RATIO) {
+            // few candidates: gallop through the removals looking for each one
+            for (int ii = 0, pos = 0; ii < alen; ii++) {
+                int value = a[ii];
+                pos = gallop(b, pos, blen, value);
+                if (pos == blen || b[pos] != value) {
+                    out[count++] = value;
+                }
+            }
+            return count;
+        }
+
+        int ii = 0;
+        if (blen < alen / GALLOP_RATIO) {
+            // few removals: copy the runs of values between them wholesale
+            for (int jj = 0; jj < blen && ii < alen; jj++) {
+                int idx = gallop(a, ii, alen, b[jj]);
+                System.arraycopy(a, ii, out, count, idx - ii);
+                count += idx - ii;
+                ii = (idx < alen && a[idx] == b[jj]) ? idx + 1 : idx;
+            }
+
+        } else {
+            for (int jj = 0; ii < alen && jj < blen; ) {
+                int avalue = a[ii], bvalue = b[jj];
+                if (avalue < bvalue) {
+                    out[count++] = avalue;
+                    ii++;
+                } else if (avalue > bvalue) {
+                    jj++;
+                } else {
+                    ii++;
+                    jj++;
+                }
+            }
+        }
+        System.arraycopy(a, ii, out, count, alen - ii);
+        return count + alen - ii;
+    }
+
+    /**
+     * Intersects a small sorted array with a much larger one by galloping through the latter.
+     */
+    protected static int gallopIntersect (
+        int[] small, int slen, int[] large, int llen, int[] out)
+    {
+        int count = 0;
+        for (int ii = 0, pos = 0; ii < slen && pos < llen; ii++) {
+            int value = small[ii];
+            pos = gallop(large, pos, llen, value);
+            if (pos < llen && large[pos] == value) {
+                out[count++] = value;
+                pos++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Unions a small sorted array with a much larger one, copying the runs of the latter between
+     * the values of the former wholesale.
+     */
+    protected static int gallopUnion (int[] small, int slen, int[] large, int llen, int[] out)
+    {
+        int count = 0, pos = 0;
+        for (int ii = 0; ii < slen; ii++) {
+            int value = small[ii];
+            int idx = gallop(large, pos, llen, value);
+            System.arraycopy(large, pos, out, count, idx - pos);
+            count += idx - pos;
+            out[count++] = value;
+            pos = (idx < llen && large[idx] == value) ? idx + 1 : idx;
+        }
+        System.arraycopy(large, pos, out, count, llen - pos);
+        return count + llen - pos;
+    }
+
+    /**
+     * Returns the index of the first value in <code>values[from, to)</code> that is greater than
+     * or equal to the supplied key (or <code>to</code> if there is none). We probe ahead in
+     * exponentially increasing steps and then binary search the bracketed range, so finding a
+     * key <code>n</code> positions ahead costs <code>O(log n)</code>.
+     */
+    protected static int gallop (int[] values, int from, int to, int key)
+    {
+        int low = from, high = from;
+        for (int step = 1; high < to && values[high] < key; step <<= 1) {
+            low = high + 1;
+            high = from + step;
+        }
+        high = Math.min(high, to);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     /**
      * Removes duplicates from our internal array. Only used by our constructors when initializing
      * from a potentially duplicate-containing source array or collection.
@@ -359,6 +604,10 @@ public class ArrayIntSet extends AbstractIntSet
     /** The default initial capacity of this set. */
     protected static final int DEFAULT_CAPACITY = 16;
 
+    /** The size ratio beyond which our bulk operations gallop through the larger set rather than
+     * merging the two sets element by element. */
+    protected static final int GALLOP_RATIO = 16;
+
     /** Change this if the fields or inheritance hierarchy ever changes (extremely unlikely). */
     private static final long serialVersionUID = 1;
 }
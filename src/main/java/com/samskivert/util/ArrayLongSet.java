@@ -0,0 +1,352 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.Serializable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Provides an {@link LongSet} implementation using a sorted array of longs to maintain the
+ * contents of the set.
+ */
+public class ArrayLongSet extends AbstractLongSet
+    implements Cloneable, Serializable
+{
+    /**
+     * Construct an ArrayLongSet with the specified starting values.
+     */
+    public ArrayLongSet (long[] values)
+    {
+        this(values.length);
+        _size = _values.length;
+        System.arraycopy(values, 0, _values, 0, _size);
+        Arrays.sort(_values);
+        removeDuplicates();
+    }
+
+    /**
+     * Construct an ArrayLongSet with the specified starting values.
+     *
+     * @throws NullPointerException if the collection contains any null values.
+     */
+    public ArrayLongSet (Collection<Long> values)
+    {
+        this(values.size());
+        _size = values.size();
+        if (values instanceof Longerable) {
+            Longerator iter = ((Longerable) values).longerator();
+            for (int ii = 0; iter.hasNext(); ii++) {
+                _values[ii] = iter.nextLong();
+            }
+
+        } else {
+            Iterator<Long> iter = values.iterator();
+            for (int ii = 0; iter.hasNext(); ii++) {
+                _values[ii] = iter.next().longValue();
+            }
+        }
+        Arrays.sort(_values);
+        removeDuplicates();
+    }
+
+    /**
+     * Construct an ArrayLongSet of the specified initial capacity.
+     */
+    public ArrayLongSet (int initialCapacity)
+    {
+        _values = new long[initialCapacity];
+    }
+
+    /**
+     * Constructs an empty set with the default initial capacity.
+     */
+    public ArrayLongSet ()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the element at the specified index. Note that the elements in the set are unordered
+     * and could change order after insertion or removal. This method is useful only for accessing
+     * elements of a static set (and has the desirable property of allowing access to the values in
+     * this set without having to create long objects).
+     */
+    public long get (int index)
+    {
+        if (index >= _size) {
+            throw new IndexOutOfBoundsException("" + index + " >= " + _size);
+        }
+        return _values[index];
+    }
+
+    /**
+     * Serializes this long set into an array at the specified offset. The array must be large
+     * enough to hold all the longs in our set at the offset specified.
+     *
+     * @return the array passed in.
+     */
+    public long[] toLongArray (long[] target, int offset)
+    {
+        System.arraycopy(_values, 0, target, offset, _size);
+        return target;
+    }
+
+    @Override // from interface LongSet
+    public boolean contains (long value)
+    {
+        return (binarySearch(value) >= 0);
+    }
+
+    @Override // from interface LongSet
+    public boolean add (long value)
+    {
+        int index = binarySearch(value);
+        if (index >= 0) {
+            return false;
+        }
+        if (_size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Cannot grow ArrayLongSet at maximum size.");
+        }
+
+        // convert the return value into the insertion point
+        index += 1;
+        index *= -1;
+
+        // expand the values array if necessary, leaving room for the newly added element
+        int valen = _values.length;
+        long[] source = _values;
+        if (valen == _size) {
+            int newLen = (valen >= Integer.MAX_VALUE/2)
+                ? Integer.MAX_VALUE
+                : Math.max(DEFAULT_CAPACITY, valen*2);
+            _values = new long[newLen];
+            System.arraycopy(source, 0, _values, 0, index);
+        }
+
+        // shift and insert
+        if (_size > index) {
+            System.arraycopy(source, index, _values, index+1, _size-index);
+        }
+        _values[index] = value;
+
+        // increment our size
+        _size += 1;
+
+        return true;
+    }
+
+    @Override // from interface LongSet
+    public boolean remove (long value)
+    {
+        int index = binarySearch(value);
+        if (index < 0) {
+            return false;
+        }
+        _size--;
+        if ((_values.length > DEFAULT_CAPACITY) && (_size < _values.length/8)) {
+            // if we're using less than 1/8 of our capacity, shrink by half
+            long[] newVals = new long[_values.length/2];
+            System.arraycopy(_values, 0, newVals, 0, index);
+            System.arraycopy(_values, index+1, newVals, index, _size-index);
+            _values = newVals;
+
+        } else {
+            // shift entries past the removed one downwards
+            System.arraycopy(_values, index+1, _values, index, _size-index);
+            //_values[_size] = 0;
+        }
+        return true;
+    }
+
+    // from interface LongSet
+    public Longerator longerator ()
+    {
+        return new AbstractLongerator() {
+            public boolean hasNext () {
+                return (_pos < _size);
+            }
+
+            public long nextLong () {
+                if (_pos >= _size) {
+                    throw new NoSuchElementException();
+                }
+                _canRemove = true;
+                return _values[_pos++];
+            }
+
+            @Override public void remove () {
+                if (!_canRemove) {
+                    throw new IllegalStateException();
+                }
+                System.arraycopy(_values, _pos, _values, _pos - 1, _size - _pos);
+                _pos--;
+                _size--; //_values[--_size] = 0;
+                _canRemove = false;
+            }
+
+            protected int _pos;
+            protected boolean _canRemove;
+        };
+    }
+
+    @Override // from interface LongSet
+    public long[] toLongArray ()
+    {
+        long[] values = new long[_size];
+        System.arraycopy(_values, 0, values, 0, _size);
+        return values;
+    }
+
+    @Override // from AbstractCollection<Long>
+    public int size ()
+    {
+        return _size;
+    }
+
+    @Override // from AbstractCollection<Long>
+    public boolean isEmpty ()
+    {
+        return (_size == 0);
+    }
+
+    @Override // from AbstractLongSet
+    public boolean retainAll (Collection<?> c)
+    {
+        if (c instanceof LongSet) {
+            LongSet other = (LongSet)c;
+            int removals = 0;
+
+            // go through our array sliding all elements in the union
+            // toward the front; overwriting any elements that were to be
+            // removed
+            for (int ii = 0; ii < _size; ii++) {
+                if (other.contains(_values[ii])) {
+                    if (removals != 0) {
+                        _values[ii - removals] = _values[ii];
+                    }
+                } else {
+                    removals++;
+                }
+            }
+
+            _size -= removals;
+            return (removals > 0);
+        }
+        return super.retainAll(c);
+    }
+
+    @Override // from AbstractSet<Long>
+    public void clear ()
+    {
+        _size = 0;
+        //Arrays.fill(_values, 0); // not necessary
+    }
+
+    @Override // from AbstractSet<Long>
+    public boolean equals (Object o)
+    {
+        // use an optimized equality test for another ArrayLongSet
+        if (o instanceof ArrayLongSet) {
+            ArrayLongSet other = (ArrayLongSet)o;
+            if (other._size != _size) {
+                return false;
+            }
+            // we can't use Arrays.equals() because we only want to compare the first _size values
+            for (int ii = 0; ii < _size; ii++) {
+                if (_values[ii] != other._values[ii]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override // from AbstractSet<Long>
+    public int hashCode ()
+    {
+        int h = 0;
+        for (int ii = 0; ii < _size; ii++) {
+            long value = _values[ii];
+            h += (int)(value ^ (value >>> 32)); // as Long.hashCode
+        }
+        return h;
+    }
+
+    @Override
+    public ArrayLongSet clone ()
+    {
+        try {
+            ArrayLongSet nset = (ArrayLongSet)super.clone();
+            nset._values = _values.clone();
+            return nset;
+
+        } catch (CloneNotSupportedException cnse) {
+            throw new AssertionError(cnse); // won't happen; we're Cloneable
+        }
+    }
+
+    /**
+     * Performs a binary search on our values array, looking for the specified value. Swiped from
+     * <code>java.util.Arrays</code> because those wankers didn't provide a means by which to
+     * perform a binary search on a subset of an array.
+     */
+    protected int binarySearch (long key)
+    {
+        int low = 0;
+        int high = _size-1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midVal = _values[mid];
+
+            if (midVal < key) {
+                low = mid + 1;
+            } else if (midVal > key) {
+                high = mid - 1;
+            } else {
+                return mid; // key found
+            }
+        }
+
+        return -(low + 1);  // key not found.
+    }
+
+    /**
+     * Removes duplicates from our internal array. Only used by our constructors when initializing
+     * from a potentially duplicate-containing source array or collection.
+     */
+    protected void removeDuplicates ()
+    {
+        if (_size > 1) {
+            long last = _values[0];
+            for (int ii = 1; ii < _size; ) {
+                if (_values[ii] == last) { // shift everything down 1
+                    _size--;
+                    System.arraycopy(_values, ii + 1, _values, ii, _size - ii);
+                } else {
+                    last = _values[ii++];
+                }
+            }
+        }
+    }
+
+    /** An array containing the values in this set. */
+    protected long[] _values;
+
+    /** The number of elements in this set. */
+    protected int _size;
+
+    /** The default initial capacity of this set. */
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    /** Change this if the fields or inheritance hierarchy ever changes (extremely unlikely). */
+    private static final long serialVersionUID = 1;
+}
@@ -5,13 +5,16 @@
 
 package com.samskivert.util;
 
+import java.util.Collection;
+import java.util.Iterator;
+
 import static com.samskivert.util.UtilLog.log;
 
 /**
  * A very basic implementation of RunQueue for general purpose use.
  */
 public class BasicRunQueue extends LoopingThread
-    implements RunQueue
+    implements RunQueue, RunQueueMetrics.Source
 {
     /**
      * Construct a BasicRunQueue with a default Queue implementation and name.
@@ -25,15 +28,44 @@ public class BasicRunQueue extends LoopingThread
      * Construct a BasicRunQueue with a default Queue implementation and the given name.
      */
     public BasicRunQueue (String name)
+    {
+        this(name, new Queue<Runnable>());
+    }
+
+    /**
+     * Construct a BasicRunQueue with the given name that runs the runnables posted to the
+     * supplied queue. Supply a {@link SingleConsumerQueue} to avoid contention between threads
+     * posting runnables.
+     */
+    public BasicRunQueue (String name, Queue<Runnable> queue)
     {
         super(name);
-        _queue = new Queue<Runnable>();
+        _queue = queue;
+        setMetricsEnabled(RunQueueMetrics.isEnabledByDefault());
     }
 
     // from interface RunQueue
     public void postRunnable (Runnable r)
     {
-        _queue.append(r);
+        RunQueueMetrics metrics = _metrics;
+        _queue.append((metrics == null) ? r : metrics.wrap(r));
+    }
+
+    /**
+     * Posts a batch of runnables, waking the dispatch thread (if need be) only once.
+     */
+    public void postRunnables (Collection<? extends Runnable> runnables)
+    {
+        RunQueueMetrics metrics = _metrics;
+        Iterator<? extends Runnable> iter = runnables.iterator();
+        while (iter.hasNext()) {
+            Runnable r = (metrics == null) ? iter.next() : metrics.wrap(iter.next());
+            if (iter.hasNext()) {
+                _queue.appendSilent(r);
+            } else {
+                _queue.appendLoud(r);
+            }
+        }
     }
 
     // from interface RunQueue
@@ -42,6 +74,18 @@ public class BasicRunQueue extends LoopingThread
         return Thread.currentThread() == _dispatcher;
     }
 
+    // from interface RunQueueMetrics.Source
+    public RunQueueMetrics getMetrics ()
+    {
+        return _metrics;
+    }
+
+    // from interface RunQueueMetrics.Source
+    public void setMetricsEnabled (boolean enabled)
+    {
+        _metrics = enabled ? new RunQueueMetrics(getName()) : null;
+    }
+
     @Override // from LoopingThread
     protected void willStart ()
     {
@@ -74,6 +118,9 @@ public class BasicRunQueue extends LoopingThread
     /** The queue of things to run. */
     protected Queue<Runnable> _queue;
 
+    /** The metrics we're recording, or null. */
+    protected volatile RunQueueMetrics _metrics;
+
     /** Our dispatcher thread (may == this or may be something else if we're being used directly
      * rather than in separate thread mode). */
     protected Thread _dispatcher;
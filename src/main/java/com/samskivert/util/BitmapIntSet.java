@@ -0,0 +1,1033 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * A compressed bitmap {@link IntSet} in the style of "Roaring" bitmaps. The 32-bit space is split
+ * into 64K chunks keyed on the high 16 bits of each value, and the low 16 bits of the values in
+ * each chunk are stored in whichever container suits their density: a sorted array for sparse
+ * chunks (2 bytes per value), a 64K bit bitmap for dense chunks (8K per chunk) or a list of runs
+ * for chunks that consist of long ranges of consecutive values. This makes large sets of dense
+ * id ranges far cheaper than {@link HashIntSet} or {@link ArrayIntSet}.
+ *
+ * <p> Single value additions and removals keep each chunk in array or bitmap form. Run
+ * containers are produced by {@link #runOptimize} and by the bulk {@link #and}, {@link #or} and
+ * {@link #andNot} operations, which combine sets a chunk at a time. {@link #size} is maintained
+ * incrementally and is constant time. Values are iterated in ascending order.
+ */
+public class BitmapIntSet extends AbstractIntSet
+    implements Cloneable, Serializable
+{
+    /**
+     * Creates an empty set.
+     */
+    public BitmapIntSet ()
+    {
+        _highs = new int[DEFAULT_CONTAINERS];
+        _containers = new Container[DEFAULT_CONTAINERS];
+    }
+
+    /**
+     * Creates a set with the specified starting values.
+     */
+    public BitmapIntSet (int[] values)
+    {
+        this();
+        add(values);
+    }
+
+    /**
+     * Creates a set with the specified starting values.
+     *
+     * @throws NullPointerException if the collection contains any null values.
+     */
+    public BitmapIntSet (Collection<Integer> values)
+    {
+        this();
+        addAll(values);
+    }
+
+    /**
+     * Returns a new set containing the values that are in both of the supplied sets.
+     */
+    public static BitmapIntSet and (BitmapIntSet s1, BitmapIntSet s2)
+    {
+        BitmapIntSet result = new BitmapIntSet();
+        for (int ii = 0, jj = 0; ii < s1._count && jj < s2._count; ) {
+            int h1 = s1._highs[ii], h2 = s2._highs[jj];
+            if (h1 < h2) {
+                ii++;
+            } else if (h1 > h2) {
+                jj++;
+            } else {
+                result.append(h1, and(s1._containers[ii++], s2._containers[jj++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set containing the values that are in either of the supplied sets.
+     */
+    public static BitmapIntSet or (BitmapIntSet s1, BitmapIntSet s2)
+    {
+        BitmapIntSet result = new BitmapIntSet();
+        int ii = 0, jj = 0;
+        while (ii < s1._count && jj < s2._count) {
+            int h1 = s1._highs[ii], h2 = s2._highs[jj];
+            if (h1 < h2) {
+                result.append(h1, s1._containers[ii++].clone());
+            } else if (h1 > h2) {
+                result.append(h2, s2._containers[jj++].clone());
+            } else {
+                result.append(h1, or(s1._containers[ii++], s2._containers[jj++]));
+            }
+        }
+        for (; ii < s1._count; ii++) {
+            result.append(s1._highs[ii], s1._containers[ii].clone());
+        }
+        for (; jj < s2._count; jj++) {
+            result.append(s2._highs[jj], s2._containers[jj].clone());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set containing the values that are in the first set but not the second.
+     */
+    public static BitmapIntSet andNot (BitmapIntSet s1, BitmapIntSet s2)
+    {
+        BitmapIntSet result = new BitmapIntSet();
+        for (int ii = 0, jj = 0; ii < s1._count; ii++) {
+            int h1 = s1._highs[ii];
+            while (jj < s2._count && s2._highs[jj] < h1) {
+                jj++;
+            }
+            if (jj < s2._count && s2._highs[jj] == h1) {
+                result.append(h1, andNot(s1._containers[ii], s2._containers[jj]));
+            } else {
+                result.append(h1, s1._containers[ii].clone());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts each chunk to whichever container (array, bitmap or runs) is most compact for its
+     * current contents. This is worth calling once a set built up one value at a time has
+     * settled, particularly if it contains long ranges of consecutive values.
+     */
+    public void runOptimize ()
+    {
+        for (int ii = 0; ii < _count; ii++) {
+            _containers[ii] = optimize(_containers[ii]);
+        }
+    }
+
+    /**
+     * Writes this set to the supplied output in a compact form that can be read back with {@link
+     * #readFrom}.
+     */
+    public void writeTo (DataOutput out)
+        throws IOException
+    {
+        out.writeInt(_count);
+        for (int ii = 0; ii < _count; ii++) {
+            out.writeShort(_highs[ii]);
+            _containers[ii].writeTo(out);
+        }
+    }
+
+    /**
+     * Reads a set previously written with {@link #writeTo}.
+     */
+    public static BitmapIntSet readFrom (DataInput in)
+        throws IOException
+    {
+        BitmapIntSet set = new BitmapIntSet();
+        set.readContents(in);
+        return set;
+    }
+
+    @Override // from AbstractIntSet
+    public boolean contains (int value)
+    {
+        int idx = indexOf(value >> 16);
+        return (idx >= 0) && _containers[idx].contains(value & 0xFFFF);
+    }
+
+    @Override // from AbstractIntSet
+    public boolean add (int value)
+    {
+        int high = value >> 16, idx = indexOf(high);
+        if (idx < 0) {
+            idx = -(idx+1);
+            insertContainer(idx, high, new ArrayContainer());
+        }
+        Container cont = _containers[idx];
+        int ocard = cont.cardinality();
+        _containers[idx] = cont = cont.add(value & 0xFFFF);
+        if (cont.cardinality() == ocard) {
+            return false;
+        }
+        _size++;
+        _modcount++;
+        return true;
+    }
+
+    @Override // from AbstractIntSet
+    public boolean remove (int value)
+    {
+        int idx = indexOf(value >> 16);
+        if (idx < 0) {
+            return false;
+        }
+        Container cont = _containers[idx];
+        int ocard = cont.cardinality();
+        cont = cont.remove(value & 0xFFFF);
+        if (cont.cardinality() == ocard) {
+            return false;
+        }
+        if (cont.cardinality() == 0) {
+            removeContainer(idx);
+        } else {
+            _containers[idx] = cont;
+        }
+        _size--;
+        _modcount++;
+        return true;
+    }
+
+    @Override // from AbstractIntSet
+    public int size ()
+    {
+        return _size;
+    }
+
+    @Override // from AbstractIntSet
+    public boolean isEmpty ()
+    {
+        return (_size == 0);
+    }
+
+    @Override // from AbstractSet<Integer>
+    public void clear ()
+    {
+        if (_size > 0) {
+            Arrays.fill(_containers, 0, _count, null);
+            _count = 0;
+            _size = 0;
+            _modcount++;
+        }
+    }
+
+    // from interface IntSet
+    public Interator interator ()
+    {
+        return new AbstractInterator() {
+            public boolean hasNext () {
+                checkConcurrentModification();
+                return (_cidx < _count);
+            }
+
+            public int nextInt () {
+                checkConcurrentModification();
+                if (_cidx >= _count) {
+                    throw new NoSuchElementException();
+                }
+                _last = (_highs[_cidx] << 16) | _low;
+                _canRemove = true;
+                advance(_low + 1);
+                return _last;
+            }
+
+            @Override public void remove () {
+                checkConcurrentModification();
+                if (!_canRemove) {
+                    throw new IllegalStateException();
+                }
+                BitmapIntSet.this.remove(_last);
+                _omodcount = _modcount;
+                _canRemove = false;
+                // our container may have been converted or removed, so find our place anew
+                if (_last != Integer.MAX_VALUE) {
+                    seek(_last + 1);
+                } else {
+                    _cidx = _count;
+                }
+            }
+
+            protected void advance (int low) {
+                if (low <= 0xFFFF && (low = _containers[_cidx].nextValue(low)) >= 0) {
+                    _low = low;
+                } else if (++_cidx < _count) {
+                    _low = _containers[_cidx].nextValue(0);
+                }
+            }
+
+            protected void seek (int value) {
+                _cidx = indexOf(value >> 16);
+                if (_cidx >= 0) {
+                    advance(value & 0xFFFF);
+                } else if ((_cidx = -(_cidx+1)) < _count) {
+                    _low = _containers[_cidx].nextValue(0);
+                }
+            }
+
+            protected void checkConcurrentModification () {
+                if (_modcount != _omodcount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+
+            protected int _cidx, _low, _last;
+            protected boolean _canRemove;
+            protected int _omodcount = _modcount;
+
+            { // initializer
+                seek(Integer.MIN_VALUE);
+            }
+        };
+    }
+
+    @Override // from AbstractIntSet
+    public int[] toIntArray ()
+    {
+        int[] values = new int[_size];
+        for (int ii = 0, offset = 0; ii < _count; ii++) {
+            offset = _containers[ii].fill(values, offset, _highs[ii] << 16);
+        }
+        return values;
+    }
+
+    @Override // from AbstractIntSet
+    public boolean addAll (Collection<? extends Integer> c)
+    {
+        if (c instanceof BitmapIntSet) {
+            return replaceWith(or(this, (BitmapIntSet)c));
+        }
+        return super.addAll(c);
+    }
+
+    @Override // from AbstractIntSet
+    public boolean removeAll (Collection<?> c)
+    {
+        if (c instanceof BitmapIntSet) {
+            return replaceWith(andNot(this, (BitmapIntSet)c));
+        }
+        return super.removeAll(c);
+    }
+
+    @Override // from AbstractIntSet
+    public boolean retainAll (Collection<?> c)
+    {
+        if (c instanceof BitmapIntSet) {
+            return replaceWith(and(this, (BitmapIntSet)c));
+        }
+        return super.retainAll(c);
+    }
+
+    @Override
+    public BitmapIntSet clone ()
+    {
+        try {
+            BitmapIntSet nset = (BitmapIntSet)super.clone();
+            nset._highs = _highs.clone();
+            nset._containers = _containers.clone();
+            for (int ii = 0; ii < _count; ii++) {
+                nset._containers[ii] = _containers[ii].clone();
+            }
+            return nset;
+
+        } catch (CloneNotSupportedException cnse) {
+            throw new AssertionError(cnse); // won't happen; we're Cloneable
+        }
+    }
+
+    /**
+     * Returns the index of the container for the specified high bits, or <code>-(insertion point
+     * + 1)</code> if there is none.
+     */
+    protected int indexOf (int high)
+    {
+        int low = 0, hi = _count - 1;
+        while (low <= hi) {
+            int mid = (low + hi) >>> 1;
+            int midVal = _highs[mid];
+            if (midVal < high) {
+                low = mid + 1;
+            } else if (midVal > high) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Inserts a container at the specified index.
+     */
+    protected void insertContainer (int idx, int high, Container cont)
+    {
+        if (_count == _highs.length) {
+            int ncount = Math.max(DEFAULT_CONTAINERS, _count * 2);
+            int[] highs = new int[ncount];
+            System.arraycopy(_highs, 0, highs, 0, _count);
+            _highs = highs;
+            Container[] conts = new Container[ncount];
+            System.arraycopy(_containers, 0, conts, 0, _count);
+            _containers = conts;
+        }
+        System.arraycopy(_highs, idx, _highs, idx+1, _count-idx);
+        System.arraycopy(_containers, idx, _containers, idx+1, _count-idx);
+        _highs[idx] = high;
+        _containers[idx] = cont;
+        _count++;
+    }
+
+    /**
+     * Removes the container at the specified index.
+     */
+    protected void removeContainer (int idx)
+    {
+        _count--;
+        System.arraycopy(_highs, idx+1, _highs, idx, _count-idx);
+        System.arraycopy(_containers, idx+1, _containers, idx, _count-idx);
+        _containers[_count] = null;
+    }
+
+    /**
+     * Appends a container with high bits greater than those of all of our existing containers.
+     * Empty containers are ignored.
+     */
+    protected void append (int high, Container cont)
+    {
+        int card = cont.cardinality();
+        if (card > 0) {
+            insertContainer(_count, high, cont);
+            _size += card;
+        }
+    }
+
+    /**
+     * Replaces our contents with those of the supplied set, which must be a subset or superset of
+     * our current contents.
+     *
+     * @return true if our contents changed as a result.
+     */
+    protected boolean replaceWith (BitmapIntSet other)
+    {
+        boolean changed = (_size != other._size);
+        if (changed) {
+            _highs = other._highs;
+            _containers = other._containers;
+            _count = other._count;
+            _size = other._size;
+            _modcount++;
+        }
+        return changed;
+    }
+
+    /**
+     * Replaces our contents with a set read from the supplied input.
+     */
+    protected void readContents (DataInput in)
+        throws IOException
+    {
+        int count = in.readInt();
+        _highs = new int[Math.max(count, DEFAULT_CONTAINERS)];
+        _containers = new Container[_highs.length];
+        _count = _size = 0;
+        for (int ii = 0; ii < count; ii++) {
+            int high = in.readShort();
+            append(high, readContainer(in));
+        }
+    }
+
+    /**
+     * Custom serializer.
+     */
+    private void writeObject (ObjectOutputStream out)
+        throws IOException
+    {
+        out.defaultWriteObject();
+        writeTo(out);
+    }
+
+    /**
+     * Custom deserializer.
+     */
+    private void readObject (ObjectInputStream in)
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        readContents(in);
+    }
+
+    /**
+     * Holds the low 16 bits of the values in a single 64K chunk of the set. Mutators return the
+     * container that holds the result, which may be a different container if the chunk needed to
+     * change representation.
+     */
+    protected static abstract class Container
+        implements Cloneable
+    {
+        public abstract int cardinality ();
+
+        public abstract boolean contains (int low);
+
+        public abstract Container add (int low);
+
+        public abstract Container remove (int low);
+
+        /** Returns the smallest value that is greater than or equal to the supplied value, or -1
+         * if there is no such value. */
+        public abstract int nextValue (int low);
+
+        /** Writes our values, or'd with the supplied high bits, into the supplied array. */
+        public abstract int fill (int[] values, int offset, int high);
+
+        /** Sets the bits in the supplied bitmap that correspond to our values. */
+        public abstract void orInto (long[] words);
+
+        /** Returns a bitmap of our values that the caller may not modify. */
+        public long[] words () {
+            long[] words = new long[BITMAP_WORDS];
+            orInto(words);
+            return words;
+        }
+
+        /** Returns a bitmap of our values that the caller may modify. */
+        public long[] mutableWords () {
+            return words();
+        }
+
+        public abstract void writeTo (DataOutput out) throws IOException;
+
+        @Override public Container clone () {
+            try {
+                return (Container)super.clone();
+            } catch (CloneNotSupportedException cnse) {
+                throw new AssertionError(cnse); // won't happen; we're Cloneable
+            }
+        }
+    }
+
+    /**
+     * Stores a sparse chunk as a sorted array of values.
+     */
+    protected static class ArrayContainer extends Container
+    {
+        public ArrayContainer () {
+            this(new char[4], 0);
+        }
+
+        public ArrayContainer (char[] values, int card) {
+            _values = values;
+            _card = card;
+        }
+
+        @Override public int cardinality () {
+            return _card;
+        }
+
+        @Override public boolean contains (int low) {
+            return Arrays.binarySearch(_values, 0, _card, (char)low) >= 0;
+        }
+
+        @Override public Container add (int low) {
+            int idx = Arrays.binarySearch(_values, 0, _card, (char)low);
+            if (idx >= 0) {
+                return this;
+            }
+            if (_card == ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            idx = -(idx+1);
+            char[] source = _values;
+            if (_card == _values.length) {
+                _values = new char[Math.min(ARRAY_MAX, _card * 2)];
+                System.arraycopy(source, 0, _values, 0, idx);
+            }
+            System.arraycopy(source, idx, _values, idx+1, _card-idx);
+            _values[idx] = (char)low;
+            _card++;
+            return this;
+        }
+
+        @Override public Container remove (int low) {
+            int idx = Arrays.binarySearch(_values, 0, _card, (char)low);
+            if (idx >= 0) {
+                _card--;
+                System.arraycopy(_values, idx+1, _values, idx, _card-idx);
+            }
+            return this;
+        }
+
+        @Override public int nextValue (int low) {
+            int idx = Arrays.binarySearch(_values, 0, _card, (char)low);
+            if (idx < 0) {
+                idx = -(idx+1);
+            }
+            return (idx < _card) ? _values[idx] : -1;
+        }
+
+        @Override public int fill (int[] values, int offset, int high) {
+            for (int ii = 0; ii < _card; ii++) {
+                values[offset++] = high | _values[ii];
+            }
+            return offset;
+        }
+
+        @Override public void orInto (long[] words) {
+            for (int ii = 0; ii < _card; ii++) {
+                int value = _values[ii];
+                words[value >>> 6] |= 1L << value;
+            }
+        }
+
+        /** Returns a container with those of our values that are (or are not) in the other. */
+        public ArrayContainer filter (Container other, boolean keep) {
+            char[] values = new char[_card];
+            int count = 0;
+            for (int ii = 0; ii < _card; ii++) {
+                if (other.contains(_values[ii]) == keep) {
+                    values[count++] = _values[ii];
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+
+        /** Converts this container into a bitmap container. */
+        public BitmapContainer toBitmap () {
+            return new BitmapContainer(words(), _card);
+        }
+
+        @Override public void writeTo (DataOutput out) throws IOException {
+            out.writeByte(ARRAY);
+            out.writeShort(_card - 1);
+            for (int ii = 0; ii < _card; ii++) {
+                out.writeChar(_values[ii]);
+            }
+        }
+
+        @Override public ArrayContainer clone () {
+            ArrayContainer cont = (ArrayContainer)super.clone();
+            cont._values = _values.clone();
+            return cont;
+        }
+
+        protected char[] _values;
+        protected int _card;
+    }
+
+    /**
+     * Stores a dense chunk as a bitmap of 64K bits.
+     */
+    protected static class BitmapContainer extends Container
+    {
+        public BitmapContainer (long[] words, int card) {
+            _words = words;
+            _card = card;
+        }
+
+        @Override public int cardinality () {
+            return _card;
+        }
+
+        @Override public boolean contains (int low) {
+            return (_words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override public Container add (int low) {
+            long word = _words[low >>> 6], nword = word | (1L << low);
+            if (word != nword) {
+                _words[low >>> 6] = nword;
+                _card++;
+            }
+            return this;
+        }
+
+        @Override public Container remove (int low) {
+            long word = _words[low >>> 6], nword = word & ~(1L << low);
+            if (word != nword) {
+                _words[low >>> 6] = nword;
+                if (--_card <= ARRAY_MAX) {
+                    return fromWords(_words, _card);
+                }
+            }
+            return this;
+        }
+
+        @Override public int nextValue (int low) {
+            int widx = low >>> 6;
+            long word = _words[widx] & (-1L << low);
+            while (word == 0) {
+                if (++widx == BITMAP_WORDS) {
+                    return -1;
+                }
+                word = _words[widx];
+            }
+            return (widx << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override public int fill (int[] values, int offset, int high) {
+            for (int widx = 0; widx < BITMAP_WORDS; widx++) {
+                for (long word = _words[widx]; word != 0; word &= word - 1) {
+                    values[offset++] = high | ((widx << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return offset;
+        }
+
+        @Override public void orInto (long[] words) {
+            for (int ii = 0; ii < BITMAP_WORDS; ii++) {
+                words[ii] |= _words[ii];
+            }
+        }
+
+        @Override public long[] words () {
+            return _words;
+        }
+
+        @Override public long[] mutableWords () {
+            return _words.clone();
+        }
+
+        @Override public void writeTo (DataOutput out) throws IOException {
+            out.writeByte(BITMAP);
+            for (int ii = 0; ii < BITMAP_WORDS; ii++) {
+                out.writeLong(_words[ii]);
+            }
+        }
+
+        @Override public BitmapContainer clone () {
+            BitmapContainer cont = (BitmapContainer)super.clone();
+            cont._words = _words.clone();
+            return cont;
+        }
+
+        protected long[] _words;
+        protected int _card;
+    }
+
+    /**
+     * Stores a chunk as a sorted list of runs of consecutive values. Mutating a run container
+     * converts it to array or bitmap form (a subsequent {@link #runOptimize} will convert it back
+     * if runs are still the most compact representation).
+     */
+    protected static class RunContainer extends Container
+    {
+        public RunContainer (char[] runs, int nruns) {
+            _runs = runs;
+            _nruns = nruns;
+            for (int ii = 0; ii < nruns; ii++) {
+                _card += _runs[2*ii+1] + 1;
+            }
+        }
+
+        @Override public int cardinality () {
+            return _card;
+        }
+
+        @Override public boolean contains (int low) {
+            int idx = runIndex(low);
+            return (idx >= 0) && (low <= _runs[2*idx] + _runs[2*idx+1]);
+        }
+
+        @Override public Container add (int low) {
+            return contains(low) ? this : fromWords(mutableWords(), _card).add(low);
+        }
+
+        @Override public Container remove (int low) {
+            return contains(low) ? fromWords(mutableWords(), _card).remove(low) : this;
+        }
+
+        @Override public int nextValue (int low) {
+            int idx = runIndex(low);
+            if (idx >= 0 && low <= _runs[2*idx] + _runs[2*idx+1]) {
+                return low;
+            }
+            return (++idx < _nruns) ? _runs[2*idx] : -1;
+        }
+
+        @Override public int fill (int[] values, int offset, int high) {
+            for (int ii = 0; ii < _nruns; ii++) {
+                for (int vv = _runs[2*ii], end = vv + _runs[2*ii+1]; vv <= end; vv++) {
+                    values[offset++] = high | vv;
+                }
+            }
+            return offset;
+        }
+
+        @Override public void orInto (long[] words) {
+            for (int ii = 0; ii < _nruns; ii++) {
+                int start = _runs[2*ii];
+                setRange(words, start, start + _runs[2*ii+1] + 1);
+            }
+        }
+
+        @Override public void writeTo (DataOutput out) throws IOException {
+            out.writeByte(RUN);
+            out.writeShort(_nruns);
+            for (int ii = 0; ii < 2*_nruns; ii++) {
+                out.writeChar(_runs[ii]);
+            }
+        }
+
+        @Override public RunContainer clone () {
+            RunContainer cont = (RunContainer)super.clone();
+            cont._runs = _runs.clone();
+            return cont;
+        }
+
+        /** Returns the index of the last run that starts at or before the supplied value, or -1
+         * if there is no such run. */
+        protected int runIndex (int low) {
+            int lo = 0, hi = _nruns - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (_runs[2*mid] <= low) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return hi;
+        }
+
+        /** Start and length minus one of each run. */
+        protected char[] _runs;
+        protected int _nruns, _card;
+    }
+
+    protected static Container and (Container c1, Container c2)
+    {
+        if (c1 instanceof ArrayContainer) {
+            return ((ArrayContainer)c1).filter(c2, true);
+        } else if (c2 instanceof ArrayContainer) {
+            return ((ArrayContainer)c2).filter(c1, true);
+        }
+        long[] words = c1.mutableWords(), words2 = c2.words();
+        int card = 0;
+        for (int ii = 0; ii < BITMAP_WORDS; ii++) {
+            card += Long.bitCount(words[ii] &= words2[ii]);
+        }
+        return optimize(fromWords(words, card));
+    }
+
+    protected static Container or (Container c1, Container c2)
+    {
+        long[] words = c1.mutableWords();
+        c2.orInto(words);
+        int card = 0;
+        for (int ii = 0; ii < BITMAP_WORDS; ii++) {
+            card += Long.bitCount(words[ii]);
+        }
+        return optimize(fromWords(words, card));
+    }
+
+    protected static Container andNot (Container c1, Container c2)
+    {
+        if (c1 instanceof ArrayContainer) {
+            return ((ArrayContainer)c1).filter(c2, false);
+        }
+        long[] words = c1.mutableWords(), words2 = c2.words();
+        int card = 0;
+        for (int ii = 0; ii < BITMAP_WORDS; ii++) {
+            card += Long.bitCount(words[ii] &= ~words2[ii]);
+        }
+        return optimize(fromWords(words, card));
+    }
+
+    /**
+     * Creates an array or bitmap container (as suits the cardinality) holding the set bits of the
+     * supplied bitmap, which may be retained by the container.
+     */
+    protected static Container fromWords (long[] words, int card)
+    {
+        if (card > ARRAY_MAX) {
+            return new BitmapContainer(words, card);
+        }
+        char[] values = new char[Math.max(card, 4)];
+        int count = 0;
+        for (int widx = 0; widx < BITMAP_WORDS; widx++) {
+            for (long word = words[widx]; word != 0; word &= word - 1) {
+                values[count++] = (char)((widx << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+        return new ArrayContainer(values, card);
+    }
+
+    /**
+     * Returns the most compact container for the contents of the supplied container.
+     */
+    protected static Container optimize (Container cont)
+    {
+        int card = cont.cardinality();
+        if (card == 0) {
+            return cont;
+        }
+        long[] words = cont.words();
+        int nruns = 0;
+        long carry = 0;
+        for (int ii = 0; ii < BITMAP_WORDS; ii++) {
+            long word = words[ii];
+            // count the set bits whose lower neighbor is clear: each starts a run
+            nruns += Long.bitCount(word & ~((word << 1) | carry));
+            carry = word >>> 63;
+        }
+
+        // compare the sizes (in chars) of the possible representations
+        int runSize = 2 * nruns, otherSize = Math.min(card, BITMAP_WORDS * 4);
+        if (runSize < otherSize) {
+            if (cont instanceof RunContainer) {
+                return cont;
+            }
+            char[] runs = new char[runSize];
+            for (int ii = 0, start = nextSetBit(words, 0); start >= 0; ii += 2) {
+                int end = nextClearBit(words, start);
+                runs[ii] = (char)start;
+                runs[ii+1] = (char)(end - start - 1);
+                start = (end > 0xFFFF) ? -1 : nextSetBit(words, end);
+            }
+            return new RunContainer(runs, nruns);
+        }
+        return (cont instanceof RunContainer) ? fromWords(cont.mutableWords(), card) : cont;
+    }
+
+    /**
+     * Reads a container written by {@link Container#writeTo}.
+     */
+    protected static Container readContainer (DataInput in)
+        throws IOException
+    {
+        byte type = in.readByte();
+        switch (type) {
+        case ARRAY:
+            int card = in.readUnsignedShort() + 1;
+            char[] values = new char[card];
+            for (int ii = 0; ii < card; ii++) {
+                values[ii] = in.readChar();
+            }
+            return new ArrayContainer(values, card);
+
+        case BITMAP:
+            long[] words = new long[BITMAP_WORDS];
+            int bcard = 0;
+            for (int ii = 0; ii < BITMAP_WORDS; ii++) {
+                bcard += Long.bitCount(words[ii] = in.readLong());
+            }
+            return new BitmapContainer(words, bcard);
+
+        case RUN:
+            int nruns = in.readUnsignedShort();
+            char[] runs = new char[2*nruns];
+            for (int ii = 0; ii < runs.length; ii++) {
+                runs[ii] = in.readChar();
+            }
+            return new RunContainer(runs, nruns);
+
+        default:
+            throw new IOException("Unknown container type " + type);
+        }
+    }
+
+    /**
+     * Sets the bits <code>[from, to)</code> in the supplied bitmap.
+     */
+    protected static void setRange (long[] words, int from, int to)
+    {
+        int fidx = from >>> 6, tidx = (to - 1) >>> 6;
+        long fmask = -1L << from, tmask = -1L >>> -to;
+        if (fidx == tidx) {
+            words[fidx] |= fmask & tmask;
+        } else {
+            words[fidx] |= fmask;
+            for (int ii = fidx + 1; ii < tidx; ii++) {
+                words[ii] = -1L;
+            }
+            words[tidx] |= tmask;
+        }
+    }
+
+    /**
+     * Returns the index of the first set bit at or after the specified index, or -1.
+     */
+    protected static int nextSetBit (long[] words, int from)
+    {
+        int widx = from >>> 6;
+        long word = words[widx] & (-1L << from);
+        while (word == 0) {
+            if (++widx == BITMAP_WORDS) {
+                return -1;
+            }
+            word = words[widx];
+        }
+        return (widx << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Returns the index of the first clear bit at or after the specified index (which may be one
+     * past the end of the bitmap).
+     */
+    protected static int nextClearBit (long[] words, int from)
+    {
+        int widx = from >>> 6;
+        long word = ~words[widx] & (-1L << from);
+        while (word == 0) {
+            if (++widx == BITMAP_WORDS) {
+                return BITMAP_WORDS << 6;
+            }
+            word = ~words[widx];
+        }
+        return (widx << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /** The high 16 bits (sign extended) of the values in each of our containers, in order. */
+    protected transient int[] _highs;
+
+    /** Our containers, parallel to {@link #_highs}. */
+    protected transient Container[] _containers;
+
+    /** The number of containers in use. */
+    protected transient int _count;
+
+    /** The number of values in the set. */
+    protected transient int _size;
+
+    /** Incremented on each set modification, used to track concurrent changes. */
+    protected transient int _modcount;
+
+    /** The initial size of our container arrays. */
+    protected static final int DEFAULT_CONTAINERS = 4;
+
+    /** The largest number of values we store in an array container. Beyond this, a bitmap is
+     * smaller. */
+    protected static final int ARRAY_MAX = 4096;
+
+    /** The number of longs in a bitmap container. */
+    protected static final int BITMAP_WORDS = 1024;
+
+    /** Container type codes used in our serialized form. */
+    protected static final byte ARRAY = 0, BITMAP = 1, RUN = 2;
+
+    /** Change this if the fields or inheritance hierarchy ever changes (extremely unlikely). */
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,157 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative long values (such as timings in nanoseconds) that may be updated
+ * from any number of threads without locking. Unlike {@link Histogram}, whose buckets are of a
+ * fixed width, buckets are log-linear: each power of two is divided into 16 buckets, so values
+ * are recorded with a relative error of at most 1/16 (6.25%) across the whole range, up to
+ * {@link #MAX_VALUE}, above which values are recorded as {@link #MAX_VALUE}. The exact maximum is
+ * tracked separately.
+ */
+public class ConcurrentHistogram
+{
+    /** The largest value that can be distinguished (about 18 minutes, in nanoseconds). */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    /**
+     * Records the supplied value. Negative values are recorded as zero.
+     */
+    public void record (long value)
+    {
+        value = Math.max(value, 0L);
+        _buckets.incrementAndGet(bucketOf(Math.min(value, MAX_VALUE)));
+        _count.incrementAndGet();
+        _total.addAndGet(value);
+        long max;
+        while (value > (max = _max.get()) && !_max.compareAndSet(max, value)) {
+            // loop until we've set the max or someone else set a larger one
+        }
+    }
+
+    /**
+     * Returns the number of values recorded.
+     */
+    public long getCount ()
+    {
+        return _count.get();
+    }
+
+    /**
+     * Returns the sum of the values recorded.
+     */
+    public long getTotal ()
+    {
+        return _total.get();
+    }
+
+    /**
+     * Returns the largest value recorded.
+     */
+    public long getMax ()
+    {
+        return _max.get();
+    }
+
+    /**
+     * Returns the mean of the values recorded, or zero if none have been.
+     */
+    public double getMean ()
+    {
+        long count = _count.get();
+        return (count == 0) ? 0 : _total.get() / (double)count;
+    }
+
+    /**
+     * Returns (an upper bound on) the value below which the specified percentage of the recorded
+     * values fall, or zero if no values have been recorded. Values recorded concurrently with
+     * this call may or may not be accounted for.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     */
+    public long getPercentile (double percentile)
+    {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int ii = 0; ii < BUCKETS; ii++) {
+            count += (counts[ii] = _buckets.get(ii));
+        }
+        if (count == 0) {
+            return 0L;
+        }
+        long rank = Math.max((long)Math.ceil(count * percentile / 100), 1L), seen = 0;
+        for (int ii = 0; ii < BUCKETS; ii++) {
+            if ((seen += counts[ii]) >= rank) {
+                return Math.min(highestValue(ii), _max.get());
+            }
+        }
+        return _max.get();
+    }
+
+    /**
+     * Clears the values from this histogram. Values recorded concurrently with this call may be
+     * partially cleared.
+     */
+    public void clear ()
+    {
+        for (int ii = 0; ii < BUCKETS; ii++) {
+            _buckets.set(ii, 0L);
+        }
+        _count.set(0L);
+        _total.set(0L);
+        _max.set(0L);
+    }
+
+    @Override
+    public String toString ()
+    {
+        return "[count=" + getCount() + ", mean=" + getMean() + ", p50=" + getPercentile(50) +
+            ", p99=" + getPercentile(99) + ", max=" + getMax() + "]";
+    }
+
+    /**
+     * Returns the index of the bucket that holds the supplied value.
+     */
+    protected static int bucketOf (long value)
+    {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the highest value that falls in the specified bucket.
+     */
+    protected static long highestValue (int bucket)
+    {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1, sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+
+    /** The counts of the values in each bucket. */
+    protected final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+
+    /** The number, total and maximum of the values recorded. */
+    protected final AtomicLong _count = new AtomicLong(), _total = new AtomicLong(),
+        _max = new AtomicLong();
+
+    /** Each power of two is divided into 2^SUB_BITS buckets. */
+    protected static final int SUB_BITS = 4, SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** The number of buckets needed to hold values up to {@link #MAX_VALUE}. */
+    protected static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+}
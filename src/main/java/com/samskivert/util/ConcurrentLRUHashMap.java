@@ -0,0 +1,598 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe sibling of {@link LRUHashMap}. The map is split into lock-striped segments,
+ * each of which is an access-ordered hash map with its own share of the maximum size, so
+ * threads operating on keys in different segments never contend with one another and no
+ * operation takes a map-wide lock. Eviction is per-segment and O(1) per evicted entry, which
+ * makes it approximately (rather than strictly) LRU across the whole map.
+ *
+ * <p> Item sizing, removal observation, flush suppression and effectiveness tracking behave as
+ * they do in {@link LRUHashMap}. Hit and miss counts are kept per segment. Removal observers are
+ * notified after the segment lock is released, so they may safely call back into the map.
+ *
+ * <p> Null keys and values are not supported. {@link #keySet}, {@link #values} and {@link
+ * #entrySet} return unmodifiable snapshots.
+ */
+public class ConcurrentLRUHashMap<K,V> extends AbstractMap<K,V>
+    implements ConcurrentMap<K,V>
+{
+    /**
+     * An observer may be registered with a map to be notified when items are removed from the
+     * table (either explicitly or by being replaced with another value or due to being flushed).
+     */
+    public static interface RemovalObserver<K,V>
+    {
+        /** Informs the observer that this item was removed from the map. */
+        public void removedFromMap (ConcurrentLRUHashMap<K,V> map, V item);
+    }
+
+    /**
+     * Construct a map with the specified maximum size. All items in the cache will be considered
+     * to have a size of one.
+     */
+    public ConcurrentLRUHashMap (int maxSize)
+    {
+        this(maxSize, null);
+    }
+
+    /**
+     * Construct a map with the specified maximum total size and the supplied item sizer which
+     * will be used to compute the size of each item.
+     */
+    public ConcurrentLRUHashMap (int maxSize, LRUHashMap.ItemSizer<V> sizer)
+    {
+        this(maxSize, sizer, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Construct a map with the specified maximum total size, item sizer (which may be null) and
+     * estimated number of concurrently updating threads. The number of segments is the
+     * concurrency level rounded up to a power of two, reduced if necessary so that each segment
+     * can hold at least {@link #MIN_SEGMENT_SIZE} units.
+     */
+    public ConcurrentLRUHashMap (int maxSize, LRUHashMap.ItemSizer<V> sizer, int concurrencyLevel)
+    {
+        int segs = 1;
+        while (segs < concurrencyLevel && (segs * 2) * MIN_SEGMENT_SIZE <= maxSize) {
+            segs *= 2;
+        }
+        _shift = 32 - Integer.numberOfTrailingZeros(segs);
+        _segments = createSegments(segs);
+        for (int ii = 0; ii < segs; ii++) {
+            _segments[ii] = new Segment();
+        }
+        _sizer = (sizer == null) ? new LRUHashMap.ItemSizer<V>() {
+            public int computeSize (V item) {
+                return 1;
+            }
+        } : sizer;
+        _maxSize = maxSize;
+        distributeMaxSize();
+    }
+
+    /**
+     * Updates the cache's maximum size, flushing elements from the cache if necessary.
+     */
+    public void setMaxSize (int maxSize)
+    {
+        _maxSize = maxSize;
+        distributeMaxSize();
+        flushAll();
+    }
+
+    /**
+     * Returns this cache's maximum size.
+     */
+    public int getMaxSize ()
+    {
+        return _maxSize;
+    }
+
+    /**
+     * Configures this hash map with a removal observer.
+     */
+    public void setRemovalObserver (RemovalObserver<K,V> obs)
+    {
+        _remobs = obs;
+    }
+
+    /**
+     * Used to temporarily disable flushing elements from the cache. Generally this is only used
+     * to avoid undesired garbage collection until such time as it is acceptable. Beware the risks
+     * of leaving flushing disabled for too long.
+     */
+    public void setCanFlush (boolean canFlush)
+    {
+        _canFlush = canFlush;
+        if (_canFlush) {
+            // if we just reenabled flushing, flush
+            flushAll();
+        }
+    }
+
+    /**
+     * Turn performance tracking on/off. As with {@link LRUHashMap}, turning tracking on clears
+     * the map.
+     */
+    public void setTracking (boolean track)
+    {
+        if (track == _tracking) {
+            return;
+        }
+        _tracking = track;
+        for (Segment seg : _segments) {
+            seg.lock();
+            try {
+                seg.seenKeys = track ? new HashSet<K>() : null;
+                seg.hits = seg.misses = 0;
+            } finally {
+                seg.unlock();
+            }
+        }
+        if (track) {
+            clear();
+        }
+    }
+
+    /**
+     * Return a measure of the effectiveness of this cache, the ratio of hits to misses.
+     *
+     * @return an array containing {hits, misses}
+     */
+    public int[] getTrackedEffectiveness ()
+    {
+        int hits = 0, misses = 0;
+        for (Segment seg : _segments) {
+            seg.lock();
+            try {
+                hits += seg.hits;
+                misses += seg.misses;
+            } finally {
+                seg.unlock();
+            }
+        }
+        return new int[] { hits, misses };
+    }
+
+    /**
+     * Update the overall size of the cache if an already added item changes size.
+     *
+     * @param key the key of the item that changed size, which determines the segment whose size
+     * is adjusted.
+     * @param sizeDifference the amount to adjust the size by.
+     */
+    public void adjustSize (K key, int sizeDifference)
+    {
+        Segment seg = segmentFor(key);
+        List<V> removed = null;
+        seg.lock();
+        try {
+            seg.size += sizeDifference;
+            removed = seg.flush(removed);
+        } finally {
+            seg.unlock();
+        }
+        notifyRemoved(removed);
+    }
+
+    @Override // from AbstractMap
+    public int size ()
+    {
+        int size = 0;
+        for (Segment seg : _segments) {
+            seg.lock();
+            try {
+                size += seg.entries.size();
+            } finally {
+                seg.unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override // from AbstractMap
+    public boolean isEmpty ()
+    {
+        return (size() == 0);
+    }
+
+    @Override // from AbstractMap
+    public boolean containsKey (Object key)
+    {
+        Segment seg = segmentFor(key);
+        seg.lock();
+        try {
+            return seg.entries.containsKey(key);
+        } finally {
+            seg.unlock();
+        }
+    }
+
+    @Override // from AbstractMap
+    public boolean containsValue (Object value)
+    {
+        for (Segment seg : _segments) {
+            seg.lock();
+            try {
+                if (seg.entries.containsValue(value)) {
+                    return true;
+                }
+            } finally {
+                seg.unlock();
+            }
+        }
+        return false;
+    }
+
+    @Override // from AbstractMap
+    public V get (Object key)
+    {
+        Segment seg = segmentFor(key);
+        seg.lock();
+        try {
+            V result = seg.entries.get(key);
+            if (seg.seenKeys != null) {
+                if (result == null) {
+                    if (seg.seenKeys.contains(key)) {
+                        // only count a miss if we've seen the key before
+                        seg.misses++;
+                    }
+                } else {
+                    seg.hits++;
+                }
+            }
+            return result;
+        } finally {
+            seg.unlock();
+        }
+    }
+
+    @Override // from AbstractMap
+    public V put (K key, V value)
+    {
+        return put(key, value, PUT_ALWAYS, null);
+    }
+
+    // from interface ConcurrentMap
+    public V putIfAbsent (K key, V value)
+    {
+        return put(key, value, PUT_IF_ABSENT, null);
+    }
+
+    @Override // from AbstractMap
+    public V remove (Object key)
+    {
+        Segment seg = segmentFor(key);
+        V removed;
+        seg.lock();
+        try {
+            removed = seg.entries.remove(key);
+            seg.entryRemoved(removed);
+        } finally {
+            seg.unlock();
+        }
+        notifyRemoved(removed);
+        return removed;
+    }
+
+    // from interface ConcurrentMap
+    public boolean remove (Object key, Object value)
+    {
+        Segment seg = segmentFor(key);
+        V removed = null;
+        seg.lock();
+        try {
+            V current = seg.entries.get(key);
+            if (current != null && current.equals(value)) {
+                removed = seg.entries.remove(key);
+                seg.entryRemoved(removed);
+            }
+        } finally {
+            seg.unlock();
+        }
+        notifyRemoved(removed);
+        return (removed != null);
+    }
+
+    // from interface ConcurrentMap
+    public V replace (K key, V value)
+    {
+        return put(key, value, PUT_IF_PRESENT, null);
+    }
+
+    // from interface ConcurrentMap
+    public boolean replace (K key, V oldValue, V newValue)
+    {
+        return put(key, newValue, PUT_IF_EQUAL, oldValue) != null;
+    }
+
+    @Override // from AbstractMap
+    public void clear ()
+    {
+        for (Segment seg : _segments) {
+            List<V> removed;
+            seg.lock();
+            try {
+                removed = new ArrayList<V>(seg.entries.values());
+                seg.entries.clear();
+                seg.size = 0;
+            } finally {
+                seg.unlock();
+            }
+            notifyRemoved(removed);
+        }
+    }
+
+    @Override // from AbstractMap
+    public Set<K> keySet ()
+    {
+        Set<K> keys = new HashSet<K>();
+        for (Segment seg : _segments) {
+            seg.lock();
+            try {
+                keys.addAll(seg.entries.keySet());
+            } finally {
+                seg.unlock();
+            }
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    @Override // from AbstractMap
+    public Set<Map.Entry<K,V>> entrySet ()
+    {
+        Set<Map.Entry<K,V>> entries = new HashSet<Map.Entry<K,V>>();
+        for (Segment seg : _segments) {
+            seg.lock();
+            try {
+                for (Map.Entry<K,V> entry : seg.entries.entrySet()) {
+                    entries.add(new AbstractMap.SimpleEntry<K,V>(entry.getKey(), entry.getValue()));
+                }
+            } finally {
+                seg.unlock();
+            }
+        }
+        return Collections.unmodifiableSet(entries);
+    }
+
+    /**
+     * Stores the supplied mapping, subject to the supplied condition.
+     *
+     * @param mode one of {@link #PUT_ALWAYS}, {@link #PUT_IF_ABSENT}, {@link #PUT_IF_PRESENT} or
+     * {@link #PUT_IF_EQUAL}.
+     * @param expected the value that must currently be mapped in {@link #PUT_IF_EQUAL} mode.
+     *
+     * @return the previously mapped value, or null if there was none or (in {@link
+     * #PUT_IF_EQUAL} mode) it did not match.
+     */
+    protected V put (K key, V value, int mode, Object expected)
+    {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        Segment seg = segmentFor(key);
+        V result;
+        List<V> removed = null;
+        seg.lock();
+        try {
+            result = seg.entries.get(key);
+            switch (mode) {
+            case PUT_IF_ABSENT:
+                if (result != null) {
+                    return result;
+                }
+                break;
+            case PUT_IF_PRESENT:
+                if (result == null) {
+                    return null;
+                }
+                break;
+            case PUT_IF_EQUAL:
+                if (result == null || !result.equals(expected)) {
+                    return null;
+                }
+                break;
+            }
+            seg.entries.put(key, value);
+            if (seg.seenKeys != null) {
+                seg.seenKeys.add(key);
+            }
+            // avoid fruitless NOOPs
+            if (result != value) {
+                seg.size += _sizer.computeSize(value);
+                if (seg.entryRemoved(result)) {
+                    removed = new ArrayList<V>();
+                    removed.add(result);
+                }
+            }
+            removed = seg.flush(removed);
+        } finally {
+            seg.unlock();
+        }
+        notifyRemoved(removed);
+        return result;
+    }
+
+    /**
+     * Returns the segment that holds the specified key.
+     */
+    protected Segment segmentFor (Object key)
+    {
+        // spread the hash bits (as does HashMap) and use the high bits to pick a segment
+        int h = key.hashCode();
+        h += (h << 15) ^ 0xffffcd7d;
+        h ^= (h >>> 10);
+        h += (h << 3);
+        h ^= (h >>> 6);
+        h += (h << 2) + (h << 14);
+        h ^= (h >>> 16);
+        return (_shift == 32) ? _segments[0] : _segments[h >>> _shift];
+    }
+
+    /**
+     * Creates an array to hold the specified number of segments (Java won't let us create an
+     * array of our generic inner class directly).
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected Segment[] createSegments (int count)
+    {
+        return new ConcurrentLRUHashMap.Segment[count];
+    }
+
+    /**
+     * Divides our maximum size evenly among our segments.
+     */
+    protected void distributeMaxSize ()
+    {
+        int segMax = (_maxSize + _segments.length - 1) / _segments.length;
+        for (Segment seg : _segments) {
+            seg.maxSize = segMax;
+        }
+    }
+
+    /**
+     * Flushes every segment back under its maximum size.
+     */
+    protected void flushAll ()
+    {
+        for (Segment seg : _segments) {
+            List<V> removed;
+            seg.lock();
+            try {
+                removed = seg.flush(null);
+            } finally {
+                seg.unlock();
+            }
+            notifyRemoved(removed);
+        }
+    }
+
+    /**
+     * Notifies our removal observer of the removal of the specified value, if it is non-null.
+     */
+    protected void notifyRemoved (V value)
+    {
+        RemovalObserver<K,V> remobs = _remobs;
+        if (value != null && remobs != null) {
+            remobs.removedFromMap(this, value);
+        }
+    }
+
+    /**
+     * Notifies our removal observer of the removal of the specified values, if any.
+     */
+    protected void notifyRemoved (List<V> values)
+    {
+        if (values != null) {
+            for (V value : values) {
+                notifyRemoved(value);
+            }
+        }
+    }
+
+    /**
+     * A lock-protected, access-ordered portion of the map.
+     */
+    protected class Segment extends ReentrantLock
+    {
+        /** The mappings in this segment, in least to most recently used order. */
+        public LinkedHashMap<K,V> entries = new LinkedHashMap<K,V>(16, .75f, true);
+
+        /** The current and maximum total item size of this segment. */
+        public int size, maxSize;
+
+        /** Tracking info, non-null only if tracking is enabled. */
+        public HashSet<K> seenKeys;
+        public int hits, misses;
+
+        /**
+         * Adjusts our size to reflect the removal of the specified entry.
+         *
+         * @return true if the entry was non-null.
+         */
+        public boolean entryRemoved (V entry) {
+            if (entry == null) {
+                return false;
+            }
+            size -= _sizer.computeSize(entry);
+            return true;
+        }
+
+        /**
+         * Flushes entries until we're back under our maximum size, adding them to the supplied
+         * list (which is created if null and needed) so that the caller can notify our removal
+         * observer once the lock is released.
+         */
+        public List<V> flush (List<V> removed) {
+            if (!_canFlush || size <= maxSize) {
+                return removed;
+            }
+            // the entrySet iterator of a LinkedHashMap returns the entries in LRU order
+            Iterator<Map.Entry<K,V>> iter = entries.entrySet().iterator();
+            // don't remove the last entry, even if it's too big, because a cache with nothing
+            // in it sucks
+            for (int ii = entries.size(); (ii > 1) && (size > maxSize); ii--) {
+                V value = iter.next().getValue();
+                iter.remove();
+                entryRemoved(value);
+                if (removed == null) {
+                    removed = new ArrayList<V>();
+                }
+                removed.add(value);
+            }
+            return removed;
+        }
+
+        /** Required by ReentrantLock's Serializable. */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** Our lock-striped segments; the number is always a power of two. */
+    protected final Segment[] _segments;
+
+    /** The number of bits to shift a hash to obtain a segment index. */
+    protected final int _shift;
+
+    /** The maximum size of this cache. */
+    protected volatile int _maxSize;
+
+    /** Used to temporarily disable flushing. */
+    protected volatile boolean _canFlush = true;
+
+    /** Notified when items are removed from the map, if non-null. */
+    protected volatile RemovalObserver<K,V> _remobs;
+
+    /** Used to compute the size of items in this cache. */
+    protected final LRUHashMap.ItemSizer<V> _sizer;
+
+    /** Whether tracking is enabled. */
+    protected volatile boolean _tracking;
+
+    /** Modes for {@link #put(Object,Object,int,Object)}. */
+    protected static final int PUT_ALWAYS = 0, PUT_IF_ABSENT = 1, PUT_IF_PRESENT = 2,
+        PUT_IF_EQUAL = 3;
+
+    /** The default number of segments. */
+    protected static final int DEFAULT_CONCURRENCY = 16;
+
+    /** The smallest maximum size we allow for a segment when choosing the segment count. */
+    protected static final int MIN_SEGMENT_SIZE = 32;
+}
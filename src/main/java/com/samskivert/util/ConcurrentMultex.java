@@ -0,0 +1,175 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link Multex} that may be satisfied from any number of threads without external
+ * synchronization. The conditions are held as an atomic bitmask (a single {@link AtomicLong} for
+ * up to 64 conditions) which {@link #satisfied} updates without locking, and the action is fired
+ * exactly once each time the final condition is satisfied, either on the satisfying thread or on
+ * a supplied {@link Executor}.
+ *
+ * <p> As with {@link Multex}, the multex is reset when the action fires, so it can be reused.
+ * With up to 64 conditions the reset is atomic with the final satisfaction. With more, a
+ * condition satisfied for the next round concurrently with the final satisfaction of the current
+ * round may be mistaken for a repeat satisfaction of the current round and ignored.
+ *
+ * @see PhasedBarrier
+ */
+public class ConcurrentMultex
+{
+    /**
+     * Creates a multex that runs its action on the thread that satisfies its final condition.
+     */
+    public ConcurrentMultex (Runnable action, int conditions)
+    {
+        this(action, conditions, null);
+    }
+
+    /**
+     * Creates a multex that runs its action on the supplied executor, or on the thread that
+     * satisfies its final condition if the executor is null.
+     */
+    public ConcurrentMultex (Runnable action, int conditions, Executor executor)
+    {
+        if (conditions < 1) {
+            throw new IllegalArgumentException("Multex requires at least one condition.");
+        }
+        _action = action;
+        _executor = executor;
+        _conditions = conditions;
+        if (conditions <= 64) {
+            _bits = new AtomicLong();
+            _full = (conditions == 64) ? -1L : (1L << conditions) - 1;
+        } else {
+            _words = new AtomicLongArray((conditions + 63) >>> 6);
+            _remaining = new AtomicInteger(conditions);
+        }
+    }
+
+    /**
+     * Indicates that the specified condition has been satisfied. If this condition is the last
+     * remaining condition, the multex will be reset and the action will be fired (or handed to
+     * our executor) before this method call returns.
+     *
+     * @return true if this call satisfied the final condition and fired the action, false if
+     * conditions remain (or this condition had already been satisfied).
+     */
+    public boolean satisfied (int condition)
+    {
+        if (condition < 0 || condition >= _conditions) {
+            throw new IllegalArgumentException(
+                "Invalid condition supplied: " + condition + ". " +
+                "Maximum is " + (_conditions-1) + ".");
+        }
+        return (_bits != null) ? satisfiedSingle(1L << condition) : satisfiedMulti(condition);
+    }
+
+    /**
+     * Returns true if the specified condition has been satisfied since the multex last fired.
+     */
+    public boolean isSatisfied (int condition)
+    {
+        long bits = (_bits != null) ? _bits.get() : _words.get(condition >>> 6);
+        return (bits & (1L << condition)) != 0;
+    }
+
+    /**
+     * Returns the number of conditions that remain to be satisfied.
+     */
+    public int getRemaining ()
+    {
+        return (_bits != null) ? _conditions - Long.bitCount(_bits.get()) : _remaining.get();
+    }
+
+    /**
+     * Resets this multex, setting all conditions to unsatisfied. This should not be called
+     * concurrently with {@link #satisfied}.
+     */
+    public void reset ()
+    {
+        if (_bits != null) {
+            _bits.set(0L);
+        } else {
+            _remaining.set(_conditions);
+            for (int ii = 0, ll = _words.length(); ii < ll; ii++) {
+                _words.set(ii, 0L);
+            }
+        }
+    }
+
+    protected boolean satisfiedSingle (long bit)
+    {
+        while (true) {
+            long bits = _bits.get();
+            if ((bits & bit) != 0) {
+                return false;
+            }
+            long nbits = bits | bit;
+            if (nbits == _full) {
+                // the final condition resets the multex in the same step
+                if (_bits.compareAndSet(bits, 0L)) {
+                    fire();
+                    return true;
+                }
+            } else if (_bits.compareAndSet(bits, nbits)) {
+                return false;
+            }
+        }
+    }
+
+    protected boolean satisfiedMulti (int condition)
+    {
+        int word = condition >>> 6;
+        long bit = 1L << condition;
+        while (true) {
+            long bits = _words.get(word);
+            if ((bits & bit) != 0) {
+                return false;
+            }
+            if (_words.compareAndSet(word, bits, bits | bit)) {
+                break;
+            }
+        }
+        if (_remaining.decrementAndGet() != 0) {
+            return false;
+        }
+        reset();
+        fire();
+        return true;
+    }
+
+    /**
+     * Runs our action, or hands it to our executor.
+     */
+    protected void fire ()
+    {
+        if (_executor == null) {
+            _action.run();
+        } else {
+            _executor.execute(_action);
+        }
+    }
+
+    protected final Runnable _action;
+    protected final Executor _executor;
+    protected final int _conditions;
+
+    /** Our conditions, if we have no more than 64 of them. */
+    protected AtomicLong _bits;
+
+    /** The value of {@link #_bits} when all conditions are satisfied. */
+    protected long _full;
+
+    /** Our conditions, if we have more than 64 of them, and the number unsatisfied. */
+    protected AtomicLongArray _words;
+    protected AtomicInteger _remaining;
+}
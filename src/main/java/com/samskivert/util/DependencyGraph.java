@@ -63,6 +63,20 @@ public class DependencyGraph<T>
         return elem;
     }
 
+    /**
+     * Returns all of the elements which are available, meaning not dependent upon any other still
+     * in the graph, and which have not already been taken by a previous call to this method.
+     * Unlike {@link #removeAvailableElement}, the elements remain in the graph, and their
+     * dependants remain unavailable, until they are {@link #remove}d. This allows independent
+     * elements to be processed in parallel, removing each once it has been processed.
+     */
+    public List<T> takeAvailableElements ()
+    {
+        List<T> elems = new ArrayList<T>(_orphans);
+        _orphans.clear();
+        return elems;
+    }
+
     /**
      * Returns the number of elements in the graph.
      */
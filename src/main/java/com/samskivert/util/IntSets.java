@@ -5,7 +5,9 @@
 
 package com.samskivert.util;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.NoSuchElementException;
 
 /**
@@ -51,6 +53,28 @@ public class IntSets
         return new ArrayIntSet(from);
     }
 
+    /**
+     * Create a new compressed bitmap IntSet, initially containing the specified ints. Bitmap sets
+     * are the most compact choice for large sets of densely clustered values (such as id ranges),
+     * and are combined a chunk at a time by {@link #and}, {@link #or} and {@link #difference}.
+     */
+    public static BitmapIntSet createBitmap (int... ints)
+    {
+        checkNotNull(ints);
+        return new BitmapIntSet(ints);
+    }
+
+    /**
+     * Create a new compressed bitmap IntSet, initially containing the ints in the specified
+     * IntSet.
+     */
+    public static BitmapIntSet createBitmap (IntSet from)
+    {
+        checkNotNull(from);
+        return (from instanceof BitmapIntSet) ? ((BitmapIntSet)from).clone()
+                                              : new BitmapIntSet(from.toIntArray());
+    }
+
     /**
      * Return an <b>immutable</b> empty IntSet.
      */
@@ -75,6 +99,24 @@ public class IntSets
     public static IntSet and (IntSet... sets)
     {
         checkNotNull(sets);
+        if (allArrayIntSets(sets)) {
+            // intersect with a merge pass per set, smallest sets first to shrink the result fast
+            ArrayIntSet[] asets = new ArrayIntSet[sets.length];
+            System.arraycopy(sets, 0, asets, 0, sets.length);
+            Arrays.sort(asets, BY_SIZE);
+            ArrayIntSet result = asets[0].clone();
+            for (int ii = 1; ii < asets.length && !result.isEmpty(); ii++) {
+                result.retainAll(asets[ii]);
+            }
+            return result;
+        }
+        if (allBitmapIntSets(sets)) {
+            BitmapIntSet result = (BitmapIntSet)sets[0];
+            for (int ii = 1; ii < sets.length; ii++) {
+                result = BitmapIntSet.and(result, (BitmapIntSet)sets[ii]);
+            }
+            return (result == sets[0]) ? result.clone() : result;
+        }
         IntSet result = create();
         int len = sets.length;
         if (len > 0) {
@@ -108,8 +150,16 @@ public class IntSets
     public static IntSet or (IntSet... sets)
     {
         checkNotNull(sets);
+        if (allBitmapIntSets(sets)) {
+            BitmapIntSet result = new BitmapIntSet();
+            for (IntSet set : sets) {
+                result = BitmapIntSet.or(result, (BitmapIntSet)set);
+            }
+            return result;
+        }
         IntSet result = create();
         for (IntSet set : sets) {
+            // a merge pass per set when both are array sets (dispatched by ArrayIntSet.addAll)
             result.addAll(set);
         }
         return result;
@@ -130,6 +180,14 @@ public class IntSets
      */
     public static IntSet difference (IntSet set1, IntSet set2)
     {
+        if (set1 instanceof ArrayIntSet && set2 instanceof ArrayIntSet) {
+            ArrayIntSet result = ((ArrayIntSet)set1).clone();
+            result.removeAll((ArrayIntSet)set2);
+            return result;
+        }
+        if (set1 instanceof BitmapIntSet && set2 instanceof BitmapIntSet) {
+            return BitmapIntSet.andNot((BitmapIntSet)set1, (BitmapIntSet)set2);
+        }
         return and(set1, notView(set2));
     }
 
@@ -154,6 +212,33 @@ public class IntSets
         return new NotIntSetView(set);
     }
 
+    /**
+     * Returns true if there is at least one set and all of the sets are {@link ArrayIntSet}s,
+     * which we can combine with bulk merge operations.
+     */
+    protected static boolean allArrayIntSets (IntSet[] sets)
+    {
+        for (IntSet set : sets) {
+            if (!(set instanceof ArrayIntSet)) {
+                return false;
+            }
+        }
+        return (sets.length > 0);
+    }
+
+    /**
+     * Returns true if there is at least one set and all of the sets are {@link BitmapIntSet}s.
+     */
+    protected static boolean allBitmapIntSets (IntSet[] sets)
+    {
+        for (IntSet set : sets) {
+            if (!(set instanceof BitmapIntSet)) {
+                return false;
+            }
+        }
+        return (sets.length > 0);
+    }
+
     /**
      * Validate the specified argument.
      */
@@ -178,6 +263,13 @@ public class IntSets
     /** The immutable empty IntSet. */
     protected static final IntSet EMPTY_INTSET = new EmptyIntSet();
 
+    /** Orders sets from smallest to largest. */
+    protected static final Comparator<IntSet> BY_SIZE = new Comparator<IntSet>() {
+        public int compare (IntSet s1, IntSet s2) {
+            return s1.size() - s2.size();
+        }
+    };
+
     /**
      * An extension to AbstractIntSet that implements a "true" immutable IntSet.
      * That is, calling removeAll() with an empty Collection will still throw an Exception.
@@ -73,6 +73,49 @@ public abstract class Interval
         public String getIntervalClassName ();
     }
 
+    /**
+     * Configures intervals scheduled from now on to be scheduled on the supplied timing wheel
+     * rather than the shared {@link Timer}, or reverts to the timer if null is supplied.
+     * Intervals that are already scheduled remain with their current scheduler until they are
+     * rescheduled. A wheel schedules and cancels intervals in constant time, which is worthwhile
+     * when very many intervals are scheduled and cancelled, but rounds their expiration up to its
+     * tick.
+     */
+    public static void setTimingWheel (TimingWheel wheel)
+    {
+        _wheel = wheel;
+    }
+
+    /**
+     * Returns the timing wheel on which intervals are being scheduled, or null if they are being
+     * scheduled on the shared {@link Timer}. The wheel's statistics describe all intervals
+     * scheduled on it.
+     */
+    public static TimingWheel getTimingWheel ()
+    {
+        return _wheel;
+    }
+
+    /**
+     * Enables (with fresh metrics) or disables the recording of metrics for the expiration of all
+     * intervals. Each expiration is recorded as being enqueued when its timer fires and started
+     * when it is run on its interval's run queue. Defaults to {@link
+     * RunQueueMetrics#isEnabledByDefault}.
+     */
+    public static void setMetricsEnabled (boolean enabled)
+    {
+        _metrics = enabled ? new RunQueueMetrics("Interval") : null;
+    }
+
+    /**
+     * Returns the metrics being recorded for the expiration of all intervals, or null if metrics
+     * are not enabled.
+     */
+    public static RunQueueMetrics getMetrics ()
+    {
+        return _metrics;
+    }
+
     /**
      * Creates an interval that executes the supplied runnable on the specified RunQueue when it
      * expires.
@@ -192,6 +235,12 @@ public abstract class Interval
         IntervalTask task = new IntervalTask(this);
         _task = task;
 
+        TimingWheel wheel = _wheel;
+        if (wheel != null) {
+            scheduleTask(wheel, task, initialDelay, repeatDelay, fixedRate);
+            return;
+        }
+
         // try twice to schedule the task- see comment inside the catch
         try {
             scheduleTask(initialDelay, repeatDelay, fixedRate);
@@ -234,13 +283,38 @@ public abstract class Interval
         }
     }
 
+    protected final void scheduleTask (TimingWheel wheel, IntervalTask task, long initialDelay,
+                                       long repeatDelay, boolean fixedRate)
+    {
+        if (repeatDelay == 0L) {
+            task._timeout = wheel.schedule(task, initialDelay);
+        } else if (fixedRate) {
+            task._timeout = wheel.scheduleAtFixedRate(task, initialDelay, repeatDelay);
+        } else if (_runQueue != RUN_DIRECT) {
+            throw new IllegalArgumentException(
+                "Cannot schedule at a fixed delay when using a RunQueue.");
+        } else {
+            task._timeout = wheel.scheduleWithFixedDelay(task, initialDelay, repeatDelay);
+        }
+        // if we were cancelled while being scheduled, our cancel may have missed the timeout
+        if (task._interval == null) {
+            task._timeout.cancel();
+        }
+    }
+
     protected final void safelyExpire (IntervalTask task)
     {
+        RunQueueMetrics metrics = _metrics;
+        long queued = task._queued;
+        long started = (metrics == null || queued == 0L) ? 0L : metrics.noteStarted(queued);
+        boolean failed = false;
+
         // only expire the interval if the task is still valid
         if (_task == task) {
             try {
                 expired();
             } catch (Throwable t) {
+                failed = true;
                 log.warning("Interval broken in expired() " + this, t);
             }
 
@@ -256,6 +330,10 @@ public abstract class Interval
             //    that it doesn't ineffectually expire repeatedly until the JVM exists.
             task.cancel();
         }
+
+        if (started != 0L) {
+            metrics.noteCompleted(started, failed);
+        }
     }
 
     /**
@@ -263,6 +341,10 @@ public abstract class Interval
      */
     protected void noteRejected ()
     {
+        RunQueueMetrics metrics = _metrics;
+        if (metrics != null) {
+            metrics.noteRejected();
+        }
         log.warning("Interval posted to shutdown RunQueue. Cancelling.",
                     "queue", _runQueue, "interval", this);
     }
@@ -288,6 +370,10 @@ public abstract class Interval
             // remove the reference back to the interval, allowing the Interval itself
             // to be gc'd even as this Task potentially sits on the Timer queue.
             _interval = null;
+            TimingWheel.Timeout timeout = _timeout;
+            if (timeout != null) {
+                return timeout.cancel();
+            }
             return super.cancel();
         }
 
@@ -296,7 +382,9 @@ public abstract class Interval
             if (ival == null) {
                 return;
             }
+            RunQueueMetrics metrics = _metrics;
             if (ival._runQueue == RUN_DIRECT) {
+                _queued = (metrics == null) ? 0L : metrics.noteEnqueued();
                 ival.safelyExpire(this);
                 return;
             }
@@ -326,6 +414,7 @@ public abstract class Interval
 
             if (ival._runQueue.isRunning()) {
                 try {
+                    _queued = (metrics == null) ? 0L : metrics.noteEnqueued();
                     ival._runQueue.postRunnable(_runner);
                 } catch (Exception e) {
                     log.warning("Failed to execute interval on run-queue",
@@ -351,6 +440,13 @@ public abstract class Interval
         /** The class name of the interval (so that we can identify it after cancellation). */
         protected String _intervalClassName;
 
+        /** The time at which we were last posted to our run queue, if we were recording metrics
+         * at the time, 0 otherwise. */
+        protected volatile long _queued;
+
+        /** Our handle on the timing wheel, if we're scheduled on one rather than a Timer. */
+        protected volatile TimingWheel.Timeout _timeout;
+
     } // end: static class IntervalTask
 
     /** The RunQueue used to run the expired() method for this Interval, or {@link #RUN_DIRECT} to
@@ -362,4 +458,11 @@ public abstract class Interval
 
     /** The daemon timer used to schedule all intervals. */
     protected static Timer _timer = createTimer();
+
+    /** The timing wheel used to schedule intervals instead of {@link #_timer}, or null. */
+    protected static volatile TimingWheel _wheel;
+
+    /** The metrics being recorded for interval expirations, or null. */
+    protected static volatile RunQueueMetrics _metrics =
+        RunQueueMetrics.isEnabledByDefault() ? new RunQueueMetrics("Interval") : null;
 }
@@ -7,6 +7,7 @@ package com.samskivert.util;
 
 import java.util.HashMap;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 
 import static com.samskivert.util.UtilLog.log;
@@ -27,7 +28,7 @@ import static com.samskivert.util.UtilLog.log;
  * is desirable.
  */
 public class Invoker extends LoopingThread
-    implements Executor, RunQueue
+    implements Executor, RunQueue, RunQueueMetrics.Source
 {
     /**
      * The unit encapsulates a unit of executable code that will be run on the invoker thread. It
@@ -39,6 +40,10 @@ public class Invoker extends LoopingThread
         /** The time at which this unit was placed on the queue. */
         public long queueStamp;
 
+        /** The {@link System#nanoTime} at which this unit was placed on the queue, if metrics
+         * were being recorded, 0 otherwise. */
+        public long queueNanos;
+
         /** The default constructor. */
         public Unit ()
         {
@@ -91,6 +96,19 @@ public class Invoker extends LoopingThread
             return 0L;
         }
 
+        /**
+         * Returns the key that orders this unit with respect to others when it is posted to an
+         * {@link InvokerPool}: units with equal keys are invoked one at a time in the order in
+         * which they were posted, while units with different keys may be invoked in parallel.
+         * Returns null by default, which allows the unit to be invoked in parallel with any
+         * other. The key must not change while the unit is queued. Plain invokers ignore it,
+         * as they invoke all units in order.
+         */
+        public Object getOrderingKey ()
+        {
+            return null;
+        }
+
         /**
          * Detail specific to this invoker to be included with the warning if this invoker takes
          * longer than the long threshold.  By default, no detail is included.
@@ -123,9 +141,55 @@ public class Invoker extends LoopingThread
      * Creates an invoker that will post results to the supplied result receiver.
      */
     public Invoker (String name, Executor resultReceiver)
+    {
+        this(name, resultReceiver, new Queue<Unit>());
+    }
+
+    /**
+     * Creates an invoker that will post results to the supplied result receiver and obtain its
+     * units from the supplied queue. Supply a {@link SingleConsumerQueue} to avoid contention
+     * between threads posting units.
+     */
+    public Invoker (String name, Executor resultReceiver, Queue<Unit> queue)
     {
         super(name);
         _receiver = resultReceiver;
+        _queue = queue;
+        setMetricsEnabled(RunQueueMetrics.isEnabledByDefault());
+    }
+
+    /**
+     * Configures this invoker to invoke its units on a virtual thread rather than on its own
+     * platform thread, if the JVM supports them. The invoker still invokes its units one at a
+     * time in order, and {@link #isDispatchThread} identifies the virtual thread. This must be
+     * called before the invoker is started. Defaults to {@link VirtualThreads#isEnabled}.
+     *
+     * <p> When running on a virtual thread, the invoker's own {@link Thread} methods (such as
+     * {@link #join} and {@link #isAlive}) do not reflect the thread that invokes its units.
+     */
+    public void setUseVirtualThread (boolean useVirtual)
+    {
+        _useVirtual = useVirtual;
+    }
+
+    /**
+     * Starts the invoker's thread, which is a virtual thread if so configured.
+     *
+     * @see #setUseVirtualThread
+     */
+    @Override
+    public synchronized void start ()
+    {
+        // a second start would run a second dispatcher on our queue, so reject it as Thread does
+        if (_dispatcher != this || getState() != State.NEW) {
+            throw new IllegalThreadStateException("Invoker already started: " + getName());
+        }
+        if (_useVirtual && VirtualThreads.isSupported()) {
+            _dispatcher = VirtualThreads.newVirtualThread(getName(), this);
+            _dispatcher.start();
+        } else {
+            super.start();
+        }
     }
 
     /**
@@ -142,15 +206,33 @@ public class Invoker extends LoopingThread
      */
     public void postUnit (Unit unit)
     {
+        RunQueueMetrics metrics = _metrics;
         if (shutdownRequested()) {
+            if (metrics != null) {
+                metrics.noteRejected();
+            }
             throw new IllegalStateException("Cannot post units to shutdown invoker.");
         }
         // note the time
         unit.queueStamp = System.currentTimeMillis();
+        unit.queueNanos = (metrics == null) ? 0L : metrics.noteEnqueued();
         // and append it to the queue
         _queue.append(unit);
     }
 
+    /**
+     * Posts a unit that calls the supplied callable on the invoker's thread and returns a future
+     * that will be completed with its result (or failure) on the result receiver's thread. Thus
+     * listeners added to the future are notified on the result receiver's thread, just as with
+     * {@link Unit#handleResult}.
+     */
+    public <T> ResultFuture<T> submit (Callable<T> callable)
+    {
+        CallableUnit<T> unit = new CallableUnit<T>(callable);
+        postUnit(unit);
+        return unit.future;
+    }
+
     /**
      * Returns the number of units waiting on the queue to be processed. <em>Note:</em> this does
      * not account for whether a unit is <em>currently</em> being processed, so if you want to know
@@ -186,7 +268,19 @@ public class Invoker extends LoopingThread
     // from RunQueue
     public boolean isDispatchThread ()
     {
-        return (this == Thread.currentThread());
+        return (_dispatcher == Thread.currentThread());
+    }
+
+    // from interface RunQueueMetrics.Source
+    public RunQueueMetrics getMetrics ()
+    {
+        return _metrics;
+    }
+
+    // from interface RunQueueMetrics.Source
+    public void setMetricsEnabled (boolean enabled)
+    {
+        _metrics = enabled ? new RunQueueMetrics(getName()) : null;
     }
 
     @Override
@@ -205,6 +299,12 @@ public class Invoker extends LoopingThread
             start = 0L;
         }
 
+        // units queued while we weren't recording metrics (and our own shutdown unit) are not
+        // recorded at all
+        RunQueueMetrics metrics = _metrics;
+        long started = (metrics == null || unit.queueNanos == 0L) ?
+            0L : metrics.noteStarted(unit.queueNanos);
+        boolean failed = true;
         try {
             willInvokeUnit(unit, start);
             if (unit.invoke()) {
@@ -212,10 +312,14 @@ public class Invoker extends LoopingThread
                 _receiver.execute(unit);
             }
             didInvokeUnit(unit, start);
+            failed = false;
 
         } catch (Throwable t) {
             log.warning("Invocation unit failed", "unit", unit, t);
         }
+        if (started != 0L) {
+            metrics.noteCompleted(started, failed);
+        }
     }
 
     /**
@@ -308,6 +412,38 @@ public class Invoker extends LoopingThread
         prof.record(duration);
     }
 
+    /** Calls a callable and reports its outcome to a future on the result receiver. */
+    protected static class CallableUnit<T> extends Unit
+    {
+        public final ResultFuture<T> future = new ResultFuture<T>();
+
+        public CallableUnit (Callable<T> callable) {
+            super("CallableUnit:" + callable);
+            _callable = callable;
+        }
+
+        @Override public boolean invoke () {
+            try {
+                _result = _callable.call();
+            } catch (Exception e) {
+                _cause = e;
+            }
+            return true;
+        }
+
+        @Override public void handleResult () {
+            if (_cause == null) {
+                future.requestCompleted(_result);
+            } else {
+                future.requestFailed(_cause);
+            }
+        }
+
+        protected Callable<T> _callable;
+        protected T _result;
+        protected Exception _cause;
+    }
+
     /** Used to track profile information on invoked units. */
     protected static class UnitProfile
     {
@@ -336,11 +472,20 @@ public class Invoker extends LoopingThread
     }
 
     /** The invoker's queue of units to be executed. */
-    protected Queue<Unit> _queue = new Queue<Unit>();
+    protected Queue<Unit> _queue;
 
     /** The result receiver with which we're working. */
     protected Executor _receiver;
 
+    /** The metrics we're recording, or null. */
+    protected volatile RunQueueMetrics _metrics;
+
+    /** The thread that invokes our units: this thread, or a virtual thread. */
+    protected volatile Thread _dispatcher = this;
+
+    /** Whether we will invoke our units on a virtual thread. */
+    protected boolean _useVirtual = VirtualThreads.isEnabled();
+
     /** Tracks the counts of invocations by unit's class. */
     protected HashMap<Object,UnitProfile> _tracker = new HashMap<Object,UnitProfile>();
 
@@ -0,0 +1,350 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Invokes {@link Invoker.Unit}s on a pool of worker threads rather than the single thread of an
+ * {@link Invoker}. Units that return the same (non-null) {@link Invoker.Unit#getOrderingKey}
+ * are invoked one at a time in the order in which they were posted, while other units are
+ * invoked in parallel. Units whose {@link Invoker.Unit#invoke} returns true have their {@link
+ * Invoker.Unit#handleResult} method called via the result receiver, and long running units are
+ * reported and unit durations profiled just as they are by a plain invoker.
+ *
+ * <p> Only the oldest queued unit for each ordering key is ever on the shared work queue; the
+ * rest wait in a per-key list until their predecessor completes, so a long queue of units for
+ * one key never blocks workers from invoking units for other keys.
+ */
+public class InvokerPool
+    implements Executor, RunQueue, RunQueueMetrics.Source
+{
+    /**
+     * Creates a pool with the specified number of worker threads, which will post results to the
+     * supplied result receiver. The pool must be {@link #start}ed before it will invoke units.
+     */
+    public InvokerPool (String name, Executor resultReceiver, int threads)
+    {
+        _workers = new Worker[threads];
+        for (int ii = 0; ii < threads; ii++) {
+            _workers[ii] = new Worker(name + "-" + ii, resultReceiver);
+        }
+        _name = name;
+        setMetricsEnabled(RunQueueMetrics.isEnabledByDefault());
+    }
+
+    /**
+     * Starts the worker threads.
+     */
+    public void start ()
+    {
+        for (Worker worker : _workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Configures this pool's workers to invoke units on virtual threads, if the JVM supports
+     * them. This must be called before the pool is started.
+     *
+     * @see Invoker#setUseVirtualThread
+     */
+    public void setUseVirtualThreads (boolean useVirtual)
+    {
+        for (Worker worker : _workers) {
+            worker.setUseVirtualThread(useVirtual);
+        }
+    }
+
+    /**
+     * Set the long threshold for this pool. Units that do not specify their own threshold will
+     * be reported as "long" if their duration exceeds this time.
+     */
+    public void setLongThreshold (long millis)
+    {
+        for (Worker worker : _workers) {
+            worker.setLongThreshold(millis);
+        }
+    }
+
+    /**
+     * Sets the parameters of the unit profiling histogram.
+     *
+     * @see Invoker#setProfilingParameters
+     */
+    public void setProfilingParameters (int bucketWidthMs, int bucketCount)
+    {
+        for (Worker worker : _workers) {
+            worker.setProfilingParameters(bucketWidthMs, bucketCount);
+        }
+    }
+
+    /**
+     * Posts a unit to this pool for subsequent invocation on one of its workers.
+     */
+    public void postUnit (Invoker.Unit unit)
+    {
+        RunQueueMetrics metrics = _metrics;
+        if (_shutdownRequested) {
+            if (metrics != null) {
+                metrics.noteRejected();
+            }
+            throw new IllegalStateException("Cannot post units to shutdown invoker pool.");
+        }
+        unit.queueStamp = System.currentTimeMillis();
+        // the time spent waiting behind units with the same ordering key counts as queue time
+        unit.queueNanos = (metrics == null) ? 0L : metrics.noteEnqueued();
+
+        Object key = unit.getOrderingKey();
+        if (key != null) {
+            synchronized (_chains) {
+                ArrayDeque<Invoker.Unit> chain = _chains.get(key);
+                if (chain != null) {
+                    // a unit with this key is queued or running; this one waits its turn
+                    chain.add(unit);
+                    _waiting++;
+                    return;
+                }
+                _chains.put(key, new ArrayDeque<Invoker.Unit>());
+            }
+        }
+        // there are multiple consumers, so we must wake one for every unit
+        _queue.appendLoud(unit);
+    }
+
+    /**
+     * Posts a unit that calls the supplied callable on one of this pool's workers and returns a
+     * future that will be completed with its result on the result receiver's thread.
+     *
+     * @see Invoker#submit
+     */
+    public <T> ResultFuture<T> submit (Callable<T> callable)
+    {
+        Invoker.CallableUnit<T> unit = new Invoker.CallableUnit<T>(callable);
+        postUnit(unit);
+        return unit.future;
+    }
+
+    /**
+     * Returns the number of units waiting to be processed (not counting any that are currently
+     * being processed).
+     */
+    public int getPendingUnits ()
+    {
+        synchronized (_chains) {
+            return _queue.size() + _waiting;
+        }
+    }
+
+    /**
+     * Shuts down the pool's workers once all currently queued units have been processed.
+     */
+    public void shutdown ()
+    {
+        _shutdownRequested = true;
+        for (int ii = 0; ii < _workers.length; ii++) {
+            _queue.appendLoud(new StopUnit());
+        }
+    }
+
+    // from Executor
+    public void execute (Runnable command)
+    {
+        postRunnable(command);
+    }
+
+    // from RunQueue
+    public void postRunnable (final Runnable r)
+    {
+        postUnit(new Invoker.Unit() {
+            @Override public boolean invoke () {
+                r.run();
+                return false;
+            }
+
+            @Override public String toString () {
+                return "Posted Runnable: " + String.valueOf(r);
+            }
+        });
+    }
+
+    // from RunQueue
+    public boolean isDispatchThread ()
+    {
+        for (Worker worker : _workers) {
+            if (worker.isDispatchThread()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // from RunQueue
+    public boolean isRunning ()
+    {
+        for (Worker worker : _workers) {
+            if (worker.isRunning()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // from interface RunQueueMetrics.Source
+    public RunQueueMetrics getMetrics ()
+    {
+        return _metrics;
+    }
+
+    // from interface RunQueueMetrics.Source
+    public void setMetricsEnabled (boolean enabled)
+    {
+        // our workers all record into the pool's metrics
+        RunQueueMetrics metrics = enabled ? new RunQueueMetrics(_name) : null;
+        for (Worker worker : _workers) {
+            worker._metrics = metrics;
+        }
+        _metrics = metrics;
+    }
+
+    /**
+     * Called by a worker when it has finished with a unit, successfully or not. Queues the next
+     * unit with the same ordering key, if any.
+     */
+    protected void unitFinished (Invoker.Unit unit)
+    {
+        Object key = unit.getOrderingKey();
+        if (key == null) {
+            return;
+        }
+        Invoker.Unit next;
+        int stops = 0;
+        synchronized (_chains) {
+            ArrayDeque<Invoker.Unit> chain = _chains.get(key);
+            next = chain.poll();
+            if (next == null) {
+                _chains.remove(key);
+                // if shutdown was waiting for the last chain to drain, let it proceed
+                if (_chains.isEmpty()) {
+                    stops = _deferredStops;
+                    _deferredStops = 0;
+                }
+            } else {
+                _waiting--;
+            }
+        }
+        if (next != null) {
+            _queue.appendLoud(next);
+        }
+        for (int ii = 0; ii < stops; ii++) {
+            _queue.appendLoud(new StopUnit());
+        }
+    }
+
+    /** A pool worker: an invoker that shares the pool's queue and profile data. */
+    protected class Worker extends Invoker
+    {
+        public Worker (String name, Executor resultReceiver) {
+            super(name, resultReceiver, InvokerPool.this._queue);
+            // our workers all record into the pool's profiles
+            _tracker = _sharedTracker;
+        }
+
+        @Override public void iterate () {
+            _current = null;
+            try {
+                super.iterate();
+            } finally {
+                if (_current != null) {
+                    unitFinished(_current);
+                }
+            }
+        }
+
+        @Override protected boolean shutdownRequested () {
+            return InvokerPool.this._shutdownRequested;
+        }
+
+        @Override protected void willInvokeUnit (Unit unit, long start) {
+            _current = unit;
+            super.willInvokeUnit(unit, start);
+        }
+
+        @Override protected void recordMetrics (Object key, long duration) {
+            synchronized (_sharedTracker) {
+                super.recordMetrics(key, duration);
+            }
+        }
+
+        protected void halt () {
+            _running = false;
+        }
+
+        /** The unit being invoked, if any. */
+        protected Unit _current;
+    }
+
+    /** Stops the worker that invokes it, once no keyed units remain to be processed. */
+    protected class StopUnit extends Invoker.Unit
+    {
+        public StopUnit () {
+            super("Stop");
+        }
+
+        @Override public boolean invoke () {
+            synchronized (_chains) {
+                if (!_chains.isEmpty()) {
+                    // keyed units are still being handed off, so our worker must keep going; we'll
+                    // be reposted by unitFinished() once the last chain has drained
+                    _deferredStops++;
+                    return false;
+                }
+            }
+            for (Worker worker : _workers) {
+                if (worker.isDispatchThread()) {
+                    worker.halt();
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Our name, used to identify our metrics. */
+    protected String _name;
+
+    /** The metrics we're recording, or null. */
+    protected volatile RunQueueMetrics _metrics;
+
+    /** The queue shared by our workers. */
+    protected Queue<Invoker.Unit> _queue = new Queue<Invoker.Unit>();
+
+    /** Our worker threads. */
+    protected Worker[] _workers;
+
+    /** The units waiting behind the queued or running unit for each ordering key. A key is
+     * mapped only while one of its units is queued or running. */
+    protected Map<Object,ArrayDeque<Invoker.Unit>> _chains =
+        new HashMap<Object,ArrayDeque<Invoker.Unit>>();
+
+    /** The number of units in {@link #_chains}. */
+    protected int _waiting;
+
+    /** The number of stop units that found chains outstanding and are waiting for them to drain.
+     * Protected by {@link #_chains}. */
+    protected int _deferredStops;
+
+    /** The unit profiles shared by our workers. */
+    protected HashMap<Object,Invoker.UnitProfile> _sharedTracker =
+        new HashMap<Object,Invoker.UnitProfile>();
+
+    /** Set once {@link #shutdown} has been called. */
+    protected volatile boolean _shutdownRequested;
+}
@@ -15,7 +15,9 @@ import java.util.Set;
 
 /**
  * A HashMap with LRU functionality and rudimentary performance tracking
- * facilities.
+ * facilities. By default the least recently used items are flushed when
+ * the map exceeds its maximum size; see {@link EvictionPolicy} for a
+ * scan resistant alternative.
  */
 public class LRUHashMap<K,V> implements Map<K,V>
 {
@@ -44,6 +46,28 @@ public class LRUHashMap<K,V> implements Map<K,V>
         public void removedFromMap (LRUHashMap<K,V> map, V item);
     }
 
+    /**
+     * Selects the algorithm used to choose which items to flush.
+     */
+    public static enum EvictionPolicy
+    {
+        /** Flushes the least recently used items. */
+        LRU,
+
+        /**
+         * Window TinyLFU: new items enter a small LRU window (1% of the
+         * maximum size). Items leaving the window are admitted into the
+         * main region only if a count-min sketch of recent access
+         * frequencies estimates that they are more popular than the item
+         * the main region would evict to make room for them. The main
+         * region is a segmented LRU: items accessed again while on
+         * probation are promoted to a protected segment (80% of the main
+         * region). This keeps one-off scans from flushing frequently used
+         * items.
+         */
+        TINY_LFU;
+    }
+
     /**
      * Construct a LRUHashMap with the specified maximum size. All items
      * in the cache will be considered to have a size of one.
@@ -59,6 +83,15 @@ public class LRUHashMap<K,V> implements Map<K,V>
      * each item.
      */
     public LRUHashMap (int maxSize, ItemSizer<V> sizer)
+    {
+        this(maxSize, sizer, EvictionPolicy.LRU);
+    }
+
+    /**
+     * Construct a LRUHashMap with the specified maximum total size, item
+     * sizer (which may be null) and eviction policy.
+     */
+    public LRUHashMap (int maxSize, ItemSizer<V> sizer, EvictionPolicy policy)
     {
         _delegate = new LinkedHashMap<K,V>(
             Math.min(1024, Math.max(16, maxSize)), .75f, true);
@@ -68,6 +101,9 @@ public class LRUHashMap<K,V> implements Map<K,V>
                 return 1;
             }
         } : sizer;
+        if (policy == EvictionPolicy.TINY_LFU) {
+            _tinyLFU = new TinyLFU();
+        }
     }
 
     /**
@@ -78,6 +114,9 @@ public class LRUHashMap<K,V> implements Map<K,V>
     {
         // configure our new maximum size
         _maxSize = maxSize;
+        if (_tinyLFU != null) {
+            _tinyLFU.resize();
+        }
 
         // boot enough people to get below said size
         flush();
@@ -134,8 +173,8 @@ public class LRUHashMap<K,V> implements Map<K,V>
     }
 
     /**
-     * Return a measure of the effectiveness of this cache, the ratio of
-     * hits to misses.
+     * Return a measure of the effectiveness of this cache (under whichever
+     * eviction policy it uses), the ratio of hits to misses.
      *
      * @return an array containing {hits, misses}
      */
@@ -183,6 +222,9 @@ public class LRUHashMap<K,V> implements Map<K,V>
     public V get (Object key)
     {
         V result = _delegate.get(key);
+        if (_tinyLFU != null) {
+            _tinyLFU.accessed(key, result != null);
+        }
 
         if (_tracking) {
             if (result == null) {
@@ -210,7 +252,11 @@ public class LRUHashMap<K,V> implements Map<K,V>
         // avoid fruitless NOOPs
         if (result != value) {
             // updated our computed "size"
-            _size += _sizer.computeSize(value);
+            int size = _sizer.computeSize(value);
+            _size += size;
+            if (_tinyLFU != null) {
+                _tinyLFU.stored(key, size, result != null);
+            }
             entryRemoved(result);
 //         System.out.println("Added " + value + ": " + _size);
         }
@@ -230,6 +276,10 @@ public class LRUHashMap<K,V> implements Map<K,V>
         if (!_canFlush) {
             return;
         }
+        if (_tinyLFU != null) {
+            _tinyLFU.flush();
+            return;
+        }
 
         // If we've exceeded our size, remove things until we're back
         // under the required size.
@@ -264,6 +314,9 @@ public class LRUHashMap<K,V> implements Map<K,V>
     public V remove (Object key)
     {
         V removed = _delegate.remove(key);
+        if (removed != null && _tinyLFU != null) {
+            _tinyLFU.removed(key);
+        }
         entryRemoved(removed);
         return removed;
     }
@@ -290,6 +343,9 @@ public class LRUHashMap<K,V> implements Map<K,V>
         // then clear everything out
         _delegate.clear();
         _size = 0;
+        if (_tinyLFU != null) {
+            _tinyLFU.cleared();
+        }
     }
 
     // documentation inherited from interface
@@ -325,6 +381,227 @@ public class LRUHashMap<K,V> implements Map<K,V>
         return _delegate.hashCode();
     }
 
+    /**
+     * Tracks the regions and access frequencies used by the {@link
+     * EvictionPolicy#TINY_LFU} policy. Each region maps its keys (in LRU
+     * order) to the size they were given when stored.
+     */
+    protected class TinyLFU
+    {
+        public TinyLFU () {
+            resize();
+        }
+
+        /** Recomputes our region sizes from the map's maximum size. */
+        public void resize () {
+            _windowMax = Math.max(1, _maxSize / 100);
+            _protectedMax = Math.max(0, _maxSize - _windowMax) * 4 / 5;
+            _sketch.ensureCapacity(Math.min(_maxSize, MAX_SKETCH_CAPACITY));
+        }
+
+        /** Notes an access of the specified key. */
+        public void accessed (Object key, boolean hit) {
+            _sketch.increment(key);
+            if (!hit || _window.get(key) != null || _protected.get(key) != null) {
+                return; // the get()s above moved the key to the MRU end of its region
+            }
+            @SuppressWarnings("unchecked") K pkey = (K)key;
+            // a hit while on probation promotes an entry to the protected region
+            int size = _probation.remove(pkey);
+            _protected.put(pkey, size);
+            _protectedSize += size;
+            while (_protectedSize > _protectedMax && _protected.size() > 1) {
+                K demoted = first(_protected);
+                size = _protected.remove(demoted);
+                _protectedSize -= size;
+                _probation.put(demoted, size);
+            }
+        }
+
+        /** Notes that a value of the specified size was stored for the
+         * specified key, which may or may not have already been mapped. */
+        public void stored (K key, int size, boolean replaced) {
+            if (!replaced) {
+                _sketch.increment(key);
+                _window.put(key, size);
+                _windowSize += size;
+            } else if (_window.containsKey(key)) {
+                _windowSize += size - _window.put(key, size);
+            } else if (_protected.containsKey(key)) {
+                _protectedSize += size - _protected.put(key, size);
+            } else {
+                _probation.put(key, size);
+            }
+        }
+
+        /** Notes that the specified key was removed from the map. */
+        public void removed (Object key) {
+            Integer size;
+            if ((size = _window.remove(key)) != null) {
+                _windowSize -= size;
+            } else if ((size = _protected.remove(key)) != null) {
+                _protectedSize -= size;
+            } else {
+                _probation.remove(key);
+            }
+        }
+
+        /** Notes that the map was cleared. */
+        public void cleared () {
+            _window.clear();
+            _probation.clear();
+            _protected.clear();
+            _windowSize = _protectedSize = 0;
+        }
+
+        /** Flushes entries until the map is back under its maximum size. */
+        public void flush () {
+            // move the window's overflow into the main region's probation
+            // segment, where each one must compete for admission
+            while (_windowSize > _windowMax && !_window.isEmpty()) {
+                K candidate = first(_window);
+                int size = _window.remove(candidate);
+                _windowSize -= size;
+                _probation.put(candidate, size);
+                admit(candidate);
+            }
+
+            // if we're still too big (the window alone may be over size if
+            // flushing was disabled), evict in order of least importance
+            while (_size > _maxSize && _delegate.size() > 1) {
+                evict(first(!_probation.isEmpty() ? _probation :
+                            !_protected.isEmpty() ? _protected : _window));
+            }
+        }
+
+        /** Evicts either the candidate or the main region's victims until
+         * the map is back under size. */
+        protected void admit (K candidate) {
+            int cfreq = _sketch.frequency(candidate);
+            while (_size > _maxSize && _delegate.size() > 1) {
+                K victim = first(_probation);
+                if (victim.equals(candidate)) {
+                    victim = _protected.isEmpty() ? null : first(_protected);
+                }
+                // ties go to the incumbent, which makes one-off scans
+                // evict themselves rather than our popular entries
+                if (victim == null || _sketch.frequency(victim) >= cfreq) {
+                    evict(candidate);
+                    return;
+                }
+                evict(victim);
+            }
+        }
+
+        protected void evict (K key) {
+            V value = _delegate.remove(key);
+            removed(key);
+            entryRemoved(value);
+        }
+
+        protected K first (LinkedHashMap<K,Integer> region) {
+            return region.keySet().iterator().next();
+        }
+
+        protected LinkedHashMap<K,Integer> _window = newRegion();
+        protected LinkedHashMap<K,Integer> _probation = newRegion();
+        protected LinkedHashMap<K,Integer> _protected = newRegion();
+        protected int _windowSize, _windowMax, _protectedSize, _protectedMax;
+        protected FrequencySketch _sketch = new FrequencySketch();
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters that estimates how often keys
+     * have been accessed. The counters are halved periodically so that the
+     * estimates favor recent history.
+     */
+    protected static class FrequencySketch
+    {
+        /** Sizes the sketch for the specified number of entries, resetting
+         * it if it needs to grow. */
+        public void ensureCapacity (int capacity) {
+            int length = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            if (_table == null || _table.length < length) {
+                _table = new long[length];
+                _sampleSize = 10 * length;
+                _additions = 0;
+            }
+        }
+
+        /** Returns the estimated access count of the specified key (0-15). */
+        public int frequency (Object key) {
+            int hash = spread(key.hashCode()), start = (hash & 3) << 2;
+            int freq = 15;
+            for (int ii = 0; ii < 4; ii++) {
+                int index = indexOf(hash, ii);
+                int count = (int)((_table[index] >>> ((start + ii) << 2)) & 0xfL);
+                freq = Math.min(freq, count);
+            }
+            return freq;
+        }
+
+        /** Records an access of the specified key. */
+        public void increment (Object key) {
+            int hash = spread(key.hashCode()), start = (hash & 3) << 2;
+            boolean added = false;
+            for (int ii = 0; ii < 4; ii++) {
+                added |= incrementAt(indexOf(hash, ii), start + ii);
+            }
+            if (added && ++_additions == _sampleSize) {
+                reset();
+            }
+        }
+
+        /** Increments the specified counter unless it is saturated. */
+        protected boolean incrementAt (int index, int counter) {
+            int offset = counter << 2;
+            long mask = 0xfL << offset;
+            if ((_table[index] & mask) != mask) {
+                _table[index] += 1L << offset;
+                return true;
+            }
+            return false;
+        }
+
+        /** Returns the table index for the specified hash and counter. */
+        protected int indexOf (int hash, int counter) {
+            long h = (hash + SEEDS[counter]) * SEEDS[counter];
+            h += h >>> 32;
+            return (int)h & (_table.length - 1);
+        }
+
+        /** Halves every counter. */
+        protected void reset () {
+            int odd = 0;
+            for (int ii = 0; ii < _table.length; ii++) {
+                odd += Long.bitCount(_table[ii] & ONE_MASK);
+                _table[ii] = (_table[ii] >>> 1) & RESET_MASK;
+            }
+            _additions = (_additions - (odd >>> 2)) >>> 1;
+        }
+
+        protected static int spread (int hash) {
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            return (hash >>> 16) ^ hash;
+        }
+
+        /** Sixteen 4-bit counters per long. */
+        protected long[] _table;
+        protected int _sampleSize, _additions;
+
+        protected static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        protected static final long RESET_MASK = 0x7777777777777777L;
+        protected static final long ONE_MASK = 0x1111111111111111L;
+    }
+
+    /** Creates an access ordered map for tracking a {@link TinyLFU} region. */
+    protected static <K> LinkedHashMap<K,Integer> newRegion ()
+    {
+        return new LinkedHashMap<K,Integer>(16, .75f, true);
+    }
+
     /** Since we can't override addEntry and removeEntryForKey in Sun's
      * lovely collection classes, we have to delegate to a HashMap and
      * reimplement a crapload of stuff so that we can provide our required
@@ -351,4 +628,10 @@ public class LRUHashMap<K,V> implements Map<K,V>
     protected boolean _tracking;
     protected HashSet<K> _seenKeys;
     protected int _hits, _misses;
+
+    /** Our TinyLFU policy state, or null if we're using plain LRU. */
+    protected TinyLFU _tinyLFU;
+
+    /** The largest number of entries for which we size the TinyLFU frequency sketch. */
+    protected static final int MAX_SKETCH_CAPACITY = 1 << 22;
 }
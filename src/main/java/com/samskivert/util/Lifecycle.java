@@ -5,10 +5,18 @@
 
 package com.samskivert.util;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
 import static com.samskivert.util.UtilLog.log;
 
 /**
- * Manages the lifecycle (initialization and shutdown) of a collection of components.
+ * Manages the lifecycle (initialization and shutdown) of a collection of components. Components
+ * may be initialized and shut down one at a time on the caller's thread, or in parallel on an
+ * executor, in which case each component is started as soon as all of the components that it
+ * must follow have finished. The time taken by each component is recorded in either case.
  */
 public class Lifecycle
 {
@@ -122,12 +130,40 @@ public class Lifecycle
         list.apply(new ObserverList.ObserverOp<InitComponent>() {
             public boolean apply (InitComponent comp) {
                 log.debug("Initializing component", "comp", comp);
-                comp.init();
+                long start = System.nanoTime();
+                try {
+                    comp.init();
+                } finally {
+                    recordTime(_initTimes, comp, start);
+                }
                 return true;
             }
         });
     }
 
+    /**
+     * Initializes all components on the supplied executor, initializing each component as soon as
+     * the components that it must follow have been initialized, and blocks until all components
+     * are initialized. Like {@link #init()}, a component that fails to initialize is logged and
+     * does not prevent the initialization of the others.
+     */
+    public void init (Executor executor)
+    {
+        if (_initers == null) {
+            log.warning("Refusing repeat init() request.");
+            return;
+        }
+
+        DependencyGraph<InitComponent> graph = _initers;
+        _initers = null;
+        new ParallelRun<InitComponent>(graph, executor, _initTimes) {
+            @Override protected void run (InitComponent comp) {
+                log.debug("Initializing component", "comp", comp);
+                comp.init();
+            }
+        }.run();
+    }
+
     /**
      * Shuts down all components immediately on the caller's thread.
      */
@@ -143,16 +179,151 @@ public class Lifecycle
         list.apply(new ObserverList.ObserverOp<ShutdownComponent>() {
             public boolean apply (ShutdownComponent comp) {
                 log.debug("Shutting down component", "comp", comp);
-                comp.shutdown();
+                long start = System.nanoTime();
+                try {
+                    comp.shutdown();
+                } finally {
+                    recordTime(_shutdownTimes, comp, start);
+                }
                 return true;
             }
         });
     }
 
+    /**
+     * Shuts down all components on the supplied executor, shutting down each component as soon as
+     * the components that it must follow have been shut down, and blocks until all components are
+     * shut down.
+     *
+     * @see #init(Executor)
+     */
+    public void shutdown (Executor executor)
+    {
+        if (_downers == null) {
+            log.warning("Refusing repeat shutdown() request.");
+            return;
+        }
+
+        DependencyGraph<ShutdownComponent> graph = _downers;
+        _downers = null;
+        new ParallelRun<ShutdownComponent>(graph, executor, _shutdownTimes) {
+            @Override protected void run (ShutdownComponent comp) {
+                log.debug("Shutting down component", "comp", comp);
+                comp.shutdown();
+            }
+        }.run();
+    }
+
+    /**
+     * Returns the time, in nanoseconds, taken to initialize each component that has been
+     * initialized, in the order in which they completed.
+     */
+    public Map<BaseComponent, Long> getInitTimes ()
+    {
+        synchronized (_initTimes) {
+            return new LinkedHashMap<BaseComponent, Long>(_initTimes);
+        }
+    }
+
+    /**
+     * Returns the time, in nanoseconds, taken to shut down each component that has been shut
+     * down, in the order in which they completed.
+     */
+    public Map<BaseComponent, Long> getShutdownTimes ()
+    {
+        synchronized (_shutdownTimes) {
+            return new LinkedHashMap<BaseComponent, Long>(_shutdownTimes);
+        }
+    }
+
+    protected static void recordTime (Map<BaseComponent, Long> times, BaseComponent comp,
+                                      long start)
+    {
+        long elapsed = System.nanoTime() - start;
+        synchronized (times) {
+            times.put(comp, elapsed);
+        }
+    }
+
+    /**
+     * Runs the components in a dependency graph on an executor, running each as soon as the
+     * components on which it depends have been run.
+     */
+    protected static abstract class ParallelRun<T extends BaseComponent>
+    {
+        public ParallelRun (DependencyGraph<T> graph, Executor executor,
+                            Map<BaseComponent, Long> times) {
+            _graph = graph;
+            _executor = executor;
+            _times = times;
+        }
+
+        /** Runs all of the components, blocking until they have all been run. */
+        public synchronized void run () {
+            boolean interrupted = false;
+            schedule();
+            while (!_graph.isEmpty()) {
+                try {
+                    wait();
+                } catch (InterruptedException ie) {
+                    interrupted = true; // we can't abandon the components we've started
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** Performs the lifecycle operation on the supplied component. */
+        protected abstract void run (T comp);
+
+        /** Starts all components that have become available. Called with our monitor held. */
+        protected void schedule () {
+            List<T> ready = _graph.takeAvailableElements();
+            for (int ii = 0, ll = ready.size(); ii < ll; ii++) {
+                final T comp = ready.get(ii);
+                _executor.execute(new Runnable() {
+                    public void run () {
+                        long start = System.nanoTime();
+                        try {
+                            ParallelRun.this.run(comp);
+                        } catch (Throwable t) {
+                            log.warning("Component choked during lifecycle operation",
+                                        "comp", comp, t);
+                        } finally {
+                            recordTime(_times, comp, start);
+                            completed(comp);
+                        }
+                    }
+                    @Override public String toString () {
+                        return String.valueOf(comp);
+                    }
+                });
+            }
+        }
+
+        /** Notes that the supplied component has been run, starting those that depended on it. */
+        protected synchronized void completed (T comp) {
+            _graph.remove(comp);
+            schedule();
+            notifyAll();
+        }
+
+        protected DependencyGraph<T> _graph;
+        protected Executor _executor;
+        protected Map<BaseComponent, Long> _times;
+    }
+
     /** A dependency graph of our components arranged by initialization dependencies. */
     protected DependencyGraph<InitComponent> _initers = new DependencyGraph<InitComponent>();
 
     /** A dependency graph of our components arranged by shutdown dependencies. */
     protected DependencyGraph<ShutdownComponent> _downers =
         new DependencyGraph<ShutdownComponent>();
+
+    /** The time taken to initialize each component, in nanoseconds. */
+    protected Map<BaseComponent, Long> _initTimes = new LinkedHashMap<BaseComponent, Long>();
+
+    /** The time taken to shut down each component, in nanoseconds. */
+    protected Map<BaseComponent, Long> _shutdownTimes = new LinkedHashMap<BaseComponent, Long>();
 }
@@ -0,0 +1,388 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.samskivert.util.UtilLog.log;
+
+/**
+ * A thread-safe cache that loads missing values on demand. Where {@link SoftCache} and {@link
+ * ExpiringReference} leave loading to the caller, this cache takes a {@link Loader} and
+ * coalesces concurrent misses for the same key: the first thread to miss performs the load and
+ * any others that miss the same key while it is in progress wait for its result rather than
+ * loading the value again.
+ *
+ * <p> Entries may expire a fixed time after they are written (per-entry lifetimes can be
+ * supplied to {@link #put(Object,Object,long)}), may be refreshed a fixed time after they are
+ * written (in which case the stale value continues to be returned while the refresh proceeds in
+ * the background) and may be held via soft references, so that they can be reclaimed under
+ * memory pressure. Hit, miss and load latency statistics are available via {@link #getStats}.
+ */
+public class LoadingCache<K,V>
+{
+    /**
+     * Loads values for a {@link LoadingCache}.
+     */
+    public static interface Loader<K,V>
+    {
+        /** Loads the value for the specified key. Returning null indicates that there is no
+         * value, which will not be cached. */
+        public V load (K key) throws Exception;
+    }
+
+    /**
+     * A snapshot of a cache's statistics.
+     */
+    public static class Stats
+    {
+        /** The number of lookups that found a live value. */
+        public long hits;
+
+        /** The number of lookups that had to wait for a load. */
+        public long misses;
+
+        /** The number of loads (including refreshes) that completed, and that failed. */
+        public long loads, failures;
+
+        /** The total and maximum time spent in the loader, in nanoseconds. */
+        public long totalLoadNanos, maxLoadNanos;
+
+        /** Returns the average time spent in the loader, in milliseconds. */
+        public double averageLoadMillis () {
+            long count = loads + failures;
+            return (count == 0) ? 0 : totalLoadNanos / (count * 1000000d);
+        }
+
+        @Override public String toString () {
+            return StringUtil.fieldsToString(this) + ", avgLoadMillis=" + averageLoadMillis();
+        }
+    }
+
+    /**
+     * Creates a cache whose values never expire.
+     */
+    public LoadingCache (Loader<K,V> loader)
+    {
+        this(loader, 0L);
+    }
+
+    /**
+     * Creates a cache whose values expire the specified number of milliseconds after they are
+     * written, or never if the lifetime is zero.
+     */
+    public LoadingCache (Loader<K,V> loader, long expireMillis)
+    {
+        _loader = loader;
+        _expireMillis = expireMillis;
+    }
+
+    /**
+     * Configures this cache to reload values the specified number of milliseconds after they
+     * are written. The first lookup of a value due to be refreshed returns the current value and
+     * queues a reload on the supplied executor, after which the reloaded value replaces it.
+     * Lookups that take place while the reload is in progress continue to return the current
+     * value. A refresh time of zero disables refreshing, in which case the executor may be null.
+     */
+    public void setRefreshAfterWrite (long refreshMillis, Executor executor)
+    {
+        if (refreshMillis > 0 && executor == null) {
+            throw new IllegalArgumentException("Refreshing requires an executor");
+        }
+        _refresher = executor;
+        _refreshMillis = refreshMillis;
+    }
+
+    /**
+     * Configures this cache to hold values written from now on via {@link SoftReference}s, in
+     * the manner of {@link SoftCache}.
+     */
+    public void setSoftValues (boolean softValues)
+    {
+        _softValues = softValues;
+    }
+
+    /**
+     * Returns the value for the specified key, loading it if necessary.
+     *
+     * @exception ExecutionException wrapping the exception thrown by the loader if the value
+     * could not be loaded (or if the calling thread was interrupted while waiting for another
+     * thread to load it).
+     */
+    public V get (K key)
+        throws ExecutionException
+    {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        _misses.incrementAndGet();
+
+        FutureTask<V> task = _loading.get(key);
+        if (task == null) {
+            FutureTask<V> ntask = new FutureTask<V>(new LoadTask(key));
+            if ((task = _loading.putIfAbsent(key, ntask)) == null) {
+                task = ntask;
+                task.run();
+            }
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(ie);
+        }
+    }
+
+    /**
+     * Returns the value for the specified key if one is cached and has not expired, null
+     * otherwise. This triggers a refresh if one is due, but never loads a missing value.
+     */
+    public V getIfPresent (K key)
+    {
+        Entry<V> entry = _entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        V value = entry.getValue();
+        if (value == null || now >= entry.expires) {
+            _entries.remove(key, entry);
+            return null;
+        }
+        _hits.incrementAndGet();
+        if (_refreshMillis > 0 && now - entry.written >= _refreshMillis &&
+            entry.refreshing.compareAndSet(false, true)) {
+            refresh(key, entry);
+        }
+        return value;
+    }
+
+    /**
+     * Stores a value in the cache, which will expire after the cache's default lifetime.
+     */
+    public void put (K key, V value)
+    {
+        put(key, value, _expireMillis);
+    }
+
+    /**
+     * Stores a value in the cache which will expire after the specified number of milliseconds,
+     * or never if the lifetime is zero.
+     */
+    public void put (K key, V value, long expireMillis)
+    {
+        _entries.put(key, createEntry(value, expireMillis));
+    }
+
+    /**
+     * Removes any cached value for the specified key. A load already in progress for the key
+     * will still store its result.
+     */
+    public void invalidate (K key)
+    {
+        _entries.remove(key);
+    }
+
+    /**
+     * Removes all cached values.
+     */
+    public void invalidateAll ()
+    {
+        _entries.clear();
+    }
+
+    /**
+     * Returns the number of entries in the cache, including any that have expired or been
+     * reclaimed but not yet noticed.
+     */
+    public int size ()
+    {
+        return _entries.size();
+    }
+
+    /**
+     * Returns a snapshot of this cache's statistics.
+     */
+    public Stats getStats ()
+    {
+        Stats stats = new Stats();
+        stats.hits = _hits.get();
+        stats.misses = _misses.get();
+        stats.loads = _loads.get();
+        stats.failures = _failures.get();
+        stats.totalLoadNanos = _totalLoadNanos.get();
+        stats.maxLoadNanos = _maxLoadNanos.get();
+        return stats;
+    }
+
+    /**
+     * Queues a reload of the supplied entry.
+     */
+    protected void refresh (final K key, final Entry<V> entry)
+    {
+        // refreshing may have been disabled since our caller checked
+        Executor refresher = _refresher;
+        if (refresher == null) {
+            entry.refreshing.set(false);
+            return;
+        }
+        try {
+            refresher.execute(new Runnable() {
+            public void run () {
+                    try {
+                        V value = timedLoad(key);
+                        if (value == null) {
+                            _entries.remove(key, entry);
+                        } else {
+                            _entries.replace(key, entry, createEntry(value, entry.lifetime));
+                        }
+                    } catch (Exception e) {
+                        // keep serving the stale value; the next lookup will try again
+                        log.warning("Failed to refresh cached value", "key", key, e);
+                        entry.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ree) {
+            // don't fail the lookup that triggered us; the next lookup will try again
+            log.warning("Refresh executor rejected refresh", "key", key, "error", ree);
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Calls our loader, recording its latency.
+     */
+    protected V timedLoad (K key)
+        throws Exception
+    {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            V value = _loader.load(key);
+            success = true;
+            return value;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            _totalLoadNanos.addAndGet(elapsed);
+            for (long max = _maxLoadNanos.get(); elapsed > max; max = _maxLoadNanos.get()) {
+                if (_maxLoadNanos.compareAndSet(max, elapsed)) {
+                    break;
+                }
+            }
+            (success ? _loads : _failures).incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates an entry for the supplied value.
+     */
+    protected Entry<V> createEntry (V value, long expireMillis)
+    {
+        long now = System.currentTimeMillis();
+        return new Entry<V>(_softValues ? new SoftReference<V>(value) : value, now,
+                            expireMillis);
+    }
+
+    /**
+     * Loads and stores a value on behalf of all of the threads that missed its key.
+     */
+    protected class LoadTask implements Callable<V>
+    {
+        public LoadTask (K key) {
+            _key = key;
+        }
+
+        public V call () throws Exception {
+            try {
+                // a load that completed just before we registered may have stored the value
+                Entry<V> entry = _entries.get(_key);
+                V value = (entry == null) ? null : entry.getValue();
+                if (value != null && System.currentTimeMillis() < entry.expires) {
+                    return value;
+                }
+                value = timedLoad(_key);
+                if (value != null) {
+                    put(_key, value);
+                }
+                return value;
+            } finally {
+                // store before unregistering, so that later lookups find the value
+                _loading.remove(_key);
+            }
+        }
+
+        protected K _key;
+    }
+
+    /**
+     * Holds a cached value.
+     */
+    protected static class Entry<V>
+    {
+        /** The value, or a soft reference to it. */
+        public final Object value;
+
+        /** When the value was written and when it expires. */
+        public final long written, expires;
+
+        /** The lifetime with which the value was written (and with which it is refreshed), or
+         * zero if it never expires. */
+        public final long lifetime;
+
+        /** Set while a refresh of this entry is in progress. */
+        public final AtomicBoolean refreshing = new AtomicBoolean();
+
+        public Entry (Object value, long written, long lifetime) {
+            this.value = value;
+            this.written = written;
+            this.expires = (lifetime > 0) ? written + lifetime : Long.MAX_VALUE;
+            this.lifetime = lifetime;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V getValue () {
+            return (value instanceof SoftReference<?>) ?
+                ((SoftReference<V>)value).get() : (V)value;
+        }
+    }
+
+    /** Loads our values. */
+    protected final Loader<K,V> _loader;
+
+    /** The default lifetime of our values, or zero. */
+    protected final long _expireMillis;
+
+    /** The time after which values are refreshed, or zero. */
+    protected volatile long _refreshMillis;
+
+    /** Performs our refreshes. */
+    protected volatile Executor _refresher;
+
+    /** Whether we hold newly written values softly. */
+    protected volatile boolean _softValues;
+
+    /** Our cached values. */
+    protected final ConcurrentHashMap<K,Entry<V>> _entries = new ConcurrentHashMap<K,Entry<V>>();
+
+    /** Loads in progress. */
+    protected final ConcurrentHashMap<K,FutureTask<V>> _loading =
+        new ConcurrentHashMap<K,FutureTask<V>>();
+
+    /** Our statistics. */
+    protected final AtomicLong _hits = new AtomicLong(), _misses = new AtomicLong();
+    protected final AtomicLong _loads = new AtomicLong(), _failures = new AtomicLong();
+    protected final AtomicLong _totalLoadNanos = new AtomicLong(), _maxLoadNanos = new AtomicLong();
+}
@@ -0,0 +1,626 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A long long map is like a long map, but with longs as values as well as keys. Mappings are
+ * stored using open addressing with linear probing over parallel key and value arrays, so no
+ * objects are created by {@link #put}, {@link #get}, {@link #increment} or {@link #remove} (save
+ * for the occasional resize). Be careful: {@link #get} and {@link #remove} return -1 to indicate
+ * that no previous mapping existed. Use {@link #getOrElse} and {@link #removeOrElse} to use a
+ * different "default" value.
+ *
+ * @see ProbingIntIntMap
+ */
+public class LongLongMap
+    implements Cloneable, Serializable
+{
+    public interface LongLongEntry extends LongMap.LongEntry<Long>
+    {
+        public long getLongValue ();
+
+        public long setLongValue (long value);
+    }
+
+    /**
+     * Creates an empty map with the default capacity.
+     */
+    public LongLongMap ()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map that can hold the specified number of mappings without resizing.
+     */
+    public LongLongMap (int capacity)
+    {
+        createBuckets(HashLongMap.getBucketCount(capacity));
+    }
+
+    public boolean isEmpty ()
+    {
+        return _size == 0;
+    }
+
+    /**
+     * Returns the number of mappings.
+     */
+    public int size ()
+    {
+        return _size;
+    }
+
+    /**
+     * Adds the supplied key/value mapping. Any previous mapping for that key will be overwritten.
+     */
+    public void put (long key, long value)
+    {
+        // find the slot first, as doing so may reallocate our arrays
+        int slot = slotFor(key);
+        _values[slot] = value;
+    }
+
+    /**
+     * Returns the value mapped to the specified key or -1 if there is no mapping.
+     */
+    public long get (long key)
+    {
+        return getOrElse(key, -1);
+    }
+
+    /**
+     * Returns the value mapped to the specified key or the supplied default value if there is no
+     * mapping.
+     */
+    public long getOrElse (long key, long defval)
+    {
+        if (key == 0) {
+            return _hasZeroKey ? _values[_mask+1] : defval;
+        }
+        int idx = indexOf(key);
+        return (idx < 0) ? defval : _values[idx];
+    }
+
+    /**
+     * Increments the value associated with the specified key by the specified amount. If the key
+     * has no previously assigned value, it will be set to the amount specified (as if incrementing
+     * from zero).
+     *
+     * @return the incremented value now stored for the key
+     */
+    public long increment (long key, long amount)
+    {
+        // new slots always hold zero, so this works whether or not the mapping existed
+        int slot = slotFor(key);
+        return (_values[slot] += amount);
+    }
+
+    /**
+     * Returns true if this map contains a mapping for the specified key.
+     */
+    public boolean containsKey (long key)
+    {
+        return (key == 0) ? _hasZeroKey : (indexOf(key) >= 0);
+    }
+
+    /**
+     * Removes the value mapped for the specified key.
+     *
+     * @return the value to which the key was mapped or -1 if there was no mapping for that key.
+     */
+    public long remove (long key)
+    {
+        return removeOrElse(key, -1);
+    }
+
+    /**
+     * Removes the value mapped for the specified key.
+     *
+     * @return the value to which the key was mapped or the supplied default value if there was no
+     * mapping for that key.
+     */
+    public long removeOrElse (long key, long defval)
+    {
+        long ovalue;
+        if (key == 0) {
+            if (!_hasZeroKey) {
+                return defval;
+            }
+            ovalue = _values[_mask+1];
+            _values[_mask+1] = 0;
+            _hasZeroKey = false;
+
+        } else {
+            int idx = indexOf(key);
+            if (idx < 0) {
+                return defval;
+            }
+            ovalue = _values[idx];
+            removeSlot(idx);
+        }
+        _size--;
+        _modcount++;
+        checkShrink();
+        return ovalue;
+    }
+
+    /**
+     * Clears all mappings.
+     */
+    public void clear ()
+    {
+        if (_size > 0) {
+            createBuckets(HashLongMap.MIN_BUCKET_COUNT);
+            _hasZeroKey = false;
+            _size = 0;
+            _modcount++;
+        }
+    }
+
+    /**
+     * Ensure that the map can comfortably hold the specified number of mappings. Calling this
+     * method is not necessary, but can improve performance if done prior to adding many mappings.
+     */
+    public void ensureCapacity (int minCapacity)
+    {
+        int ncount = HashLongMap.getBucketCount(minCapacity);
+        if (ncount > _keys.length) {
+            rehash(ncount);
+        }
+    }
+
+    public Longerator keys ()
+    {
+        return new KeyValueLongerator(true);
+    }
+
+    public LongSet keySet ()
+    {
+        return new AbstractLongSet() {
+            public Longerator longerator () {
+                return LongLongMap.this.keys();
+            }
+
+            @Override public int size () {
+                return LongLongMap.this.size();
+            }
+
+            @Override public boolean contains (long t) {
+                return LongLongMap.this.containsKey(t);
+            }
+
+            @Override public boolean remove (long value) {
+                // we have to check for presence in the map separately because we have no "not in
+                // the set" return value
+                if (!LongLongMap.this.containsKey(value)) {
+                    return false;
+                }
+                LongLongMap.this.remove(value);
+                return true;
+            }
+        };
+    }
+
+    public Longerator values ()
+    {
+        return new KeyValueLongerator(false);
+    }
+
+    /**
+     * Get an array of the unique keys in this map.
+     */
+    public long[] getKeys ()
+    {
+        return toLongArray(true);
+    }
+
+    /**
+     * Get an array of the values that may be in this map.
+     * There may be duplicates.
+     */
+    public long[] getValues ()
+    {
+        return toLongArray(false);
+    }
+
+    /**
+     * Get a set of all the entries in this map.
+     */
+    public Set<LongLongEntry> entrySet ()
+    {
+        return new AbstractSet<LongLongEntry>() {
+            @Override public int size () {
+                return _size;
+            }
+
+            @Override public Iterator<LongLongEntry> iterator() {
+                return new SlotIterator<LongLongEntry>() {
+                    public LongLongEntry next () {
+                        return new SlotEntry(nextSlot());
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public String toString ()
+    {
+        StringBuilder buf = new StringBuilder("[");
+        long[] keys = getKeys();
+        for (int ii = 0; ii < keys.length; ii++) {
+            if (ii > 0) {
+                buf.append(", ");
+            }
+            buf.append(keys[ii]).append("->").append(get(keys[ii]));
+        }
+        return buf.append("]").toString();
+    }
+
+    @Override
+    public LongLongMap clone ()
+    {
+        try {
+            LongLongMap result = (LongLongMap) super.clone();
+            result._keys = _keys.clone();
+            result._values = _values.clone();
+            return result;
+
+        } catch (CloneNotSupportedException cnse) {
+            throw new AssertionError(cnse); // won't happen; we're Cloneable
+        }
+    }
+
+    protected long[] toLongArray (boolean keys)
+    {
+        long[] ret = new long[_size];
+        int dex = 0;
+        if (_hasZeroKey) {
+            ret[dex++] = keys ? 0 : _values[_mask+1];
+        }
+        for (int ii = 0; ii <= _mask; ii++) {
+            if (_keys[ii] != 0) {
+                ret[dex++] = keys ? _keys[ii] : _values[ii];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the slot holding the value for the specified key, creating a mapping to zero if
+     * none exists.
+     */
+    protected final int slotFor (long key)
+    {
+        if (key == 0) {
+            if (!_hasZeroKey) {
+                _hasZeroKey = true;
+                _values[_mask+1] = 0;
+                _size++;
+                _modcount++;
+            }
+            return _mask+1;
+        }
+
+        int idx = indexOf(key);
+        if (idx >= 0) {
+            return idx;
+        }
+        idx = -(idx+1);
+        _keys[idx] = key;
+        _modcount++;
+        if (++_size > _growThreshold) {
+            rehash(_keys.length << 1);
+            idx = indexOf(key);
+        }
+        return idx;
+    }
+
+    /**
+     * Returns the slot index for the specified (non-zero) key, or <code>-(insertion point +
+     * 1)</code> if the key is not in the map.
+     */
+    protected final int indexOf (long key)
+    {
+        long[] keys = _keys;
+        int mask = _mask;
+        for (int idx = HashLongMap.hash(key) & mask; ; idx = (idx + 1) & mask) {
+            long bkey = keys[idx];
+            if (bkey == key) {
+                return idx;
+            } else if (bkey == 0) {
+                return -(idx+1);
+            }
+        }
+    }
+
+    /**
+     * Clears the specified slot and shifts subsequent entries in its run back to fill the hole.
+     *
+     * @see HashLongMap#removeSlot
+     */
+    protected void removeSlot (int idx)
+    {
+        long[] keys = _keys, values = _values;
+        int mask = _mask;
+        for (int last = idx; ; ) {
+            int pos = (last + 1) & mask;
+            long bkey;
+            for (;; pos = (pos + 1) & mask) {
+                if ((bkey = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    values[last] = 0;
+                    return;
+                }
+                int home = HashLongMap.hash(bkey) & mask;
+                if (last <= pos ? (last >= home || home > pos) : (last >= home && home > pos)) {
+                    break;
+                }
+            }
+            keys[last] = bkey;
+            values[last] = values[pos];
+            last = pos;
+        }
+    }
+
+    /**
+     * Check to see if we want to shrink the table.
+     */
+    protected void checkShrink ()
+    {
+        if (_keys.length > HashLongMap.MIN_BUCKET_COUNT && _size < _shrinkThreshold) {
+            rehash(Math.max(HashLongMap.MIN_BUCKET_COUNT, HashLongMap.getBucketCount(_size)));
+        }
+    }
+
+    /**
+     * Recreates the bucket arrays with the specified new count.
+     */
+    protected void rehash (int ncount)
+    {
+        long[] okeys = _keys, ovalues = _values;
+        int omask = _mask;
+        createBuckets(ncount);
+
+        long[] keys = _keys, values = _values;
+        int mask = _mask;
+        values[mask+1] = ovalues[omask+1];
+        for (int ii = 0; ii <= omask; ii++) {
+            long key = okeys[ii];
+            if (key != 0) {
+                int idx = HashLongMap.hash(key) & mask;
+                while (keys[idx] != 0) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = key;
+                values[idx] = ovalues[ii];
+            }
+        }
+    }
+
+    /**
+     * (Re)creates the bucket arrays with the specified count, which must be a power of two. The
+     * value array has one extra slot at the end which holds the value mapped to zero.
+     */
+    protected void createBuckets (int count)
+    {
+        _keys = new long[count];
+        _values = new long[count+1];
+        _mask = count - 1;
+        _growThreshold = (int)(count * HashLongMap.MAX_LOAD_FACTOR);
+        _shrinkThreshold = (int)(count * HashLongMap.MIN_LOAD_FACTOR);
+    }
+
+    /**
+     * Save the state of this instance to a stream (i.e., serialize it).
+     */
+    private void writeObject (ObjectOutputStream s)
+        throws IOException
+    {
+        s.defaultWriteObject();
+        s.writeInt(_size);
+        for (LongLongEntry entry : entrySet()) {
+            s.writeLong(entry.getLongKey());
+            s.writeLong(entry.getLongValue());
+        }
+    }
+
+    /**
+     * Reconstitute the instance from a stream (i.e., deserialize it).
+     */
+    private void readObject (ObjectInputStream s)
+         throws IOException, ClassNotFoundException
+    {
+        s.defaultReadObject();
+        int size = s.readInt();
+        createBuckets(HashLongMap.getBucketCount(size));
+        for (int ii = 0; ii < size; ii++) {
+            put(s.readLong(), s.readLong());
+        }
+    }
+
+    /**
+     * Iterates over the occupied slots of the map.
+     *
+     * @see HashLongMap.SlotIterator
+     */
+    protected abstract class SlotIterator<E>
+        implements Iterator<E>
+    {
+        public boolean hasNext ()
+        {
+            checkConcurrentModification();
+            return _pos < _size;
+        }
+
+        public void remove ()
+        {
+            checkConcurrentModification();
+            if (_last < 0) {
+                throw new IllegalStateException();
+            }
+            if (_last > _mask) {
+                _values[_last] = 0;
+                _hasZeroKey = false;
+            } else {
+                removeSlot(_last);
+                // revisit the slot, an unvisited entry may have been shifted into it
+                _idx--;
+            }
+            _last = -1;
+            _pos--;
+            _size--;
+            _omodcount = ++_modcount;
+        }
+
+        protected int nextSlot ()
+        {
+            checkConcurrentModification();
+            if (_pos >= _size) {
+                throw new NoSuchElementException();
+            }
+            _pos++;
+            if (_idx < 0) {
+                _idx = 0;
+                while (_keys[_idx++] != 0);
+                if (_hasZeroKey) {
+                    return (_last = _mask+1);
+                }
+            }
+            for (int mask = _mask; ; _idx++) {
+                int slot = _idx & mask;
+                if (_keys[slot] != 0) {
+                    _idx++;
+                    return (_last = slot);
+                }
+            }
+        }
+
+        protected void checkConcurrentModification ()
+        {
+            if (_modcount != _omodcount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        protected int _pos, _idx = -1, _last = -1;
+        protected int _omodcount = _modcount;
+    }
+
+    protected class KeyValueLongerator extends SlotIterator<Long>
+        implements Longerator
+    {
+        public KeyValueLongerator (boolean keys) {
+            _wantKeys = keys;
+        }
+
+        public long nextLong () {
+            int slot = nextSlot();
+            if (!_wantKeys) {
+                return _values[slot];
+            }
+            return (slot > _mask) ? 0 : _keys[slot];
+        }
+
+        public Long next () {
+            return Long.valueOf(nextLong());
+        }
+
+        protected boolean _wantKeys;
+    }
+
+    /**
+     * An entry returned by our iterators. Its value is captured when it is created, but {@link
+     * #setLongValue} writes through to the map.
+     */
+    protected class SlotEntry
+        implements LongLongEntry
+    {
+        public SlotEntry (int slot) {
+            _key = (slot > _mask) ? 0 : _keys[slot];
+            _value = _values[slot];
+        }
+
+        public Long getKey () {
+            return Long.valueOf(_key);
+        }
+
+        public long getLongKey () {
+            return _key;
+        }
+
+        public Long getValue () {
+            return Long.valueOf(_value);
+        }
+
+        public long getLongValue () {
+            return _value;
+        }
+
+        public Long setValue (Long v) {
+            return Long.valueOf(setLongValue(v.longValue()));
+        }
+
+        public long setLongValue (long v) {
+            long oldVal = _value;
+            put(_key, _value = v);
+            return oldVal;
+        }
+
+        @Override public boolean equals (Object o) {
+            if (o instanceof LongLongEntry) {
+                LongLongEntry that = (LongLongEntry) o;
+                return (_key == that.getLongKey()) && (_value == that.getLongValue());
+            }
+            return false;
+        }
+
+        @Override public int hashCode () {
+            return (int)(_key ^ (_key >>> 32));
+        }
+
+        protected long _key, _value;
+    }
+
+    /** The keys of our mappings; zero indicates an empty slot. */
+    protected transient long[] _keys;
+
+    /** The values of our mappings, parallel to {@link #_keys}, plus the value mapped to zero. */
+    protected transient long[] _values;
+
+    /** The mask used to turn a hash into a slot index (one less than the bucket count). */
+    protected transient int _mask;
+
+    /** Whether or not the map contains a mapping for the key zero. */
+    protected transient boolean _hasZeroKey;
+
+    /** The number of mappings in the map. */
+    protected transient int _size;
+
+    /** The sizes above which we grow and below which we shrink the bucket arrays. */
+    protected transient int _growThreshold, _shrinkThreshold;
+
+    /** Incremented on each structural modification, used to track concurrent changes. */
+    protected transient int _modcount;
+
+    /** The default initial capacity of this map. */
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    /** Change this if the fields or inheritance hierarchy ever changes (extremely unlikely). */
+    private static final long serialVersionUID = 1L;
+}
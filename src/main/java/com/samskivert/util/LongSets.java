@@ -0,0 +1,454 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+/**
+ * Utility methods for working with LongSets.
+ */
+public class LongSets
+{
+    /** Uninstantiable. */
+    private LongSets () {}
+
+    /**
+     * Create a new LongSet, initially empty.
+     */
+    public static LongSet create ()
+    {
+        return new ArrayLongSet();
+    }
+
+    /**
+     * Create a new LongSet, initially containing the specified longs.
+     */
+    public static LongSet create (long... longs)
+    {
+        checkNotNull(longs);
+        return new ArrayLongSet(longs);
+    }
+
+    /**
+     * Create a new LongSet, initially containing the longs in the specified LongSet.
+     */
+    public static LongSet create (LongSet from)
+    {
+        checkNotNull(from);
+        return new ArrayLongSet(from);
+    }
+
+    /**
+     * Create a new LongSet, initially containing the longs in the specified collection.
+     */
+    public static LongSet create (Collection<Long> from)
+    {
+        checkNotNull(from);
+        return new ArrayLongSet(from);
+    }
+
+    /**
+     * Return an <b>immutable</b> empty LongSet.
+     */
+    public static LongSet emptyLongSet ()
+    {
+        return EMPTY_INTSET;
+    }
+
+    /**
+     * Return an unmodifiable view of the specified LongSet
+     */
+    public static LongSet unmodifiableLongSet (LongSet s)
+    {
+        checkNotNull(s);
+        return new UnmodifiableLongSetView(s);
+    }
+
+    /**
+     * Create a new LongSet containing the longs that are contained in <b>all</b>
+     * of the specified sets. The returned set may be further modified per your needs.
+     */
+    public static LongSet and (LongSet... sets)
+    {
+        checkNotNull(sets);
+        LongSet result = create();
+        int len = sets.length;
+        if (len > 0) {
+            OUTER:
+            for (Longerator it = sets[0].longerator(); it.hasNext(); ) {
+                long val = it.nextLong();
+                for (int ii = 1; ii < len; ii++) {
+                    if (!sets[ii].contains(val)) {
+                        continue OUTER;
+                    }
+                }
+                result.add(val);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an <b>immutable</b> view of the underlying sets.
+     */
+    public static LongSet andView (LongSet... sets)
+    {
+        checkNotNull(sets);
+        return new AndLongSetView(sets);
+    }
+
+    /**
+     * Create a new LongSet containing the longs that are contained in <b>any</b>
+     * of the specified sets. The returned set may be further modified per your needs.
+     */
+    public static LongSet or (LongSet... sets)
+    {
+        checkNotNull(sets);
+        LongSet result = create();
+        for (LongSet set : sets) {
+            result.addAll(set);
+        }
+        return result;
+    }
+
+    /**
+     * Returns an <b>immutable</b> view of the underlying sets.
+     */
+    public static LongSet orView (LongSet... sets)
+    {
+        checkNotNull(sets);
+        return new OrLongSetView(sets);
+    }
+
+    /**
+     * Creates a new LongSet, initially populated with longs contained in set1 but not in set2.
+     * Set2 may also contain elements not present in set1, these are ignored.
+     */
+    public static LongSet difference (LongSet set1, LongSet set2)
+    {
+        return and(set1, notView(set2));
+    }
+
+    /**
+     * Returns an <b>immutable</b> view containing the longs contained in set1 but not in set2.
+     * Set2 may also contain elements not present in set1, these are ignored.
+     */
+    public static LongSet differenceView (LongSet set1, LongSet set2)
+    {
+        return andView(set1, notView(set2));
+    }
+
+    /**
+     * Returns a <b>immutable</b> view of the underlying set.
+     *
+     * TODO: not yet public because iteration and size are weird.
+     */
+    protected static LongSet notView (LongSet set)
+    {
+        checkNotNull(set);
+        // TODO
+        return new NotLongSetView(set);
+    }
+
+    /**
+     * Validate the specified argument.
+     */
+    protected static void checkNotNull (Object o)
+    {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * Validate the specified arguments.
+     */
+    protected static void checkNotNull (Object[] array)
+    {
+        checkNotNull((Object)array);
+        for (Object o : array) {
+            checkNotNull(o);
+        }
+    }
+
+    /** The immutable empty LongSet. */
+    protected static final LongSet EMPTY_INTSET = new EmptyLongSet();
+
+    /**
+     * An extension to AbstractLongSet that implements a "true" immutable LongSet.
+     * That is, calling removeAll() with an empty Collection will still throw an Exception.
+     */
+    protected static abstract class AbstractImmutableLongSet extends AbstractLongSet
+    {
+        // the following are overridden so that they don't appear to work if given empty collections
+        // or an improper Object key
+        @Override public boolean remove (Object o) { throw new UnsupportedOperationException(); }
+        @Override public boolean addAll (Collection<? extends Long> c) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public boolean removeAll (Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public boolean retainAll (Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public void clear () {
+            throw new UnsupportedOperationException();
+        }
+    } // end: class AbstractImmutableLongSet
+
+    /**
+     * The empty LongSet.
+     */
+    protected static class EmptyLongSet extends AbstractImmutableLongSet
+    {
+        @Override public boolean contains (long value) { return false; }
+        @Override public int size () { return 0; }
+        @Override public boolean isEmpty () { return true; }
+
+        public Longerator longerator () {
+            return EMPTY_INTERATOR;
+        }
+
+        protected static final Longerator EMPTY_INTERATOR = new AbstractLongerator() {
+            public boolean hasNext () { return false; }
+            public long nextLong () { throw new NoSuchElementException(); }
+        };
+    } // end: class EmptyLongSet
+
+    /**
+     * An immutable view of another LongSet.
+     */
+    protected static class UnmodifiableLongSetView extends AbstractImmutableLongSet
+    {
+        public UnmodifiableLongSetView (LongSet s) {
+            _s = s;
+        }
+
+        @Override public boolean contains (long value) { return _s.contains(value); }
+        @Override public int size () { return _s.size(); }
+        @Override public boolean isEmpty () { return _s.isEmpty(); }
+
+        public Longerator longerator () {
+            return new AbstractLongerator() {
+                public boolean hasNext () { return _i.hasNext(); }
+                public long nextLong () { return _i.nextLong(); }
+
+                protected Longerator _i = _s.longerator();
+            };
+        }
+
+        protected LongSet _s;
+    } // end: class UnmodifiableLongSetView
+
+    /**
+     * A building-block Longerator that utilizes a findNext() method to locate the next long
+     * to return.
+     */
+    protected static abstract class FindingLongerator extends AbstractLongerator
+    {
+        public boolean hasNext () {
+            return _hasNext || (_hasNext = findNext());
+        }
+
+        public long nextLong () {
+            if (_hasNext) {
+                _hasNext = false;
+            } else if (!findNext()) { // support calling nextLong() without using hasNext() (tsk tsk)
+                throw new NoSuchElementException();
+            }
+            return _next;
+        }
+
+        /**
+         * Populate _next with the next value and return true, or return false if there are
+         * no more longs in this Longerator.
+         */
+        protected abstract boolean findNext ();
+
+        /** Does _next contain a valid value? */
+        protected boolean _hasNext;
+
+        /** The next value to return, iff _hasNext is true. */
+        protected long _next;
+    } // end: class FindingLongerator
+
+    /**
+     * An "and" view of the specified sources.
+     */
+    protected static class AndLongSetView extends AbstractImmutableLongSet
+    {
+        public AndLongSetView (LongSet... sources) {
+            if (sources.length == 0) {
+                _sources = new LongSet[] { LongSets.emptyLongSet() };
+
+            } else {
+                // TODO: sort sources by size (smallest first) to optimize?
+                // TODO: copy to prevent befuckery?
+                _sources = sources;
+            }
+        }
+
+        @Override
+        public boolean contains (long value) {
+            for (LongSet src : _sources) {
+                if (!src.contains(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // TODO: smarter size() (Right now we're using inherited, which counts interated)
+
+        public Longerator longerator () {
+            return new FindingLongerator() {
+                @Override protected boolean findNext () {
+                    OUTER:
+                    while (_i.hasNext()) {
+                        _next = _i.nextLong();
+                        // make sure it's in all the other sets
+                        for (int ii = 1; ii < _sources.length; ii++) {
+                            if (!_sources[ii].contains(_next)) {
+                                continue OUTER;
+                            }
+                        }
+                        return true;
+                    }
+                    return false;
+                }
+
+                protected Longerator _i = _sources[0].longerator();
+            };
+        }
+
+        protected LongSet[] _sources;
+    } // end: class AndLongSetView
+
+    /**
+     * An "or" view of the specified sources.
+     */
+    protected static class OrLongSetView extends AbstractImmutableLongSet {
+        public OrLongSetView (LongSet... sources) {
+            _sources = sources;
+            // TODO: sort sources by size (largest first), to optimize general checks?
+            // TODO: copy array to prevent befuckery?
+        }
+
+        @Override
+        public boolean contains (long value) {
+            for (LongSet src : _sources) {
+                if (src.contains(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // TODO: smarter size() (right now we're using inherited, which
+
+        public Longerator longerator () {
+            return new FindingLongerator() {
+                @Override
+                protected boolean findNext () {
+                    while (true) {
+                        if (_i == null) {
+                            if (_srcIdx >= _sources.length - 1) {
+                                return false;
+                            }
+                            _i = _sources[++_srcIdx].longerator();
+                        }
+                        OUTER: while (_i.hasNext()) {
+                            _next = _i.nextLong();
+                            // make sure it's not in any of the previous sources
+                            for (int ii = 0; ii < _srcIdx; ii++) {
+                                if (_sources[ii].contains(_next)) {
+                                    continue OUTER;
+                                }
+                            }
+                            return true;
+                        }
+                        _i = null;
+                    }
+                }
+
+                protected Longerator _i;
+                protected int _srcIdx = -1;
+            };
+        }
+
+        protected LongSet[] _sources;
+    } // end: class OrLongSetView
+
+    /**
+     * An "or" view of the specified sources.
+     */
+    protected static class NotLongSetView extends AbstractImmutableLongSet
+    {
+        /**
+         * Construct a ComplementLongSet with the specified view source.
+         */
+        public NotLongSetView (LongSet source) {
+            _source = source;
+        }
+
+        @Override
+        public int size () {
+            // Even if our source was an ArrayLongSet with exactly MAX_VALUE elements,
+            // there are still over MAX_VALUE longs in the complement!
+            if (_source.size() < Integer.MAX_VALUE) {
+                return Integer.MAX_VALUE;
+            }
+            // else: iterate
+            return super.size();
+        }
+
+        @Override // from LongSet
+        public boolean contains (long value) {
+            return !_source.contains(value);
+        }
+
+        /**
+         * Returns the positive longs first, starting with 0.
+         */
+        // from LongSet
+        public Longerator longerator () {
+            return new FindingLongerator() {
+                @Override
+                protected boolean findNext () {
+                    if (_positive) {
+                        // first go from 0 to MAX_VALUE
+                        while (_next != Long.MAX_VALUE) {
+                            if (contains(++_next)) {
+                                return true;
+                            }
+                        }
+                        // prepare to go negative.. (preparing to go negative, sir!)
+                        _positive = false;
+                        _next = 0;
+                    }
+                    // now go down from -1 to MIN_VALUE
+                    while (_next != Long.MIN_VALUE) {
+                        if (contains(--_next)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+
+                { // initializer
+                    _next = -1;
+                }
+
+                protected boolean _positive = true;
+            };
+        }
+
+        /** The longs we <b>don't</b> contain. */
+        protected LongSet _source;
+    } // end: class NotLongSetView
+}
@@ -0,0 +1,20 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Iterator;
+
+/**
+ * Can be used as an Iterator, and all Objects returned should be Long objects, but can also can
+ * avoid boxing by calling {@link #nextLong}.
+ */
+public interface Longerator extends Iterator<Long>
+{
+    /**
+     * @return the next long value from this Iterator.
+     */
+    public long nextLong ();
+}
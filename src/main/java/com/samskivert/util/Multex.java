@@ -16,6 +16,8 @@ import java.util.Arrays;
  *
  * <p> When the final condition has been {@link #satisfied}, the action is
  * fired and the multex is reset.
+ *
+ * @see ConcurrentMultex
  */
 public class Multex
 {
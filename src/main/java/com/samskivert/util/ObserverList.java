@@ -5,10 +5,9 @@
 
 package com.samskivert.util;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import static com.samskivert.util.UtilLog.log;
 
@@ -215,56 +214,77 @@ public abstract class ObserverList<T>
         return observer;
     }
 
+    /**
+     * The standard implementation. Observers are held in an array. For {@link
+     * Policy#SAFE_IN_ORDER} lists the array is copied on every modification and notification
+     * iterates over a snapshot of it, without allocating or locking, and observers whose
+     * notification returns false are removed together once notification is complete. {@link
+     * Policy#FAST_UNSAFE} lists modify the array in place. When duplicates are checked, lists
+     * with more than a few observers also maintain an identity set of their observers so that
+     * additions need not scan the list.
+     */
     protected static class Impl<T> extends ObserverList<T> {
         protected Impl (Policy notifyPolicy) {
             _policy = notifyPolicy;
-            _list = (_policy == Policy.SAFE_IN_ORDER) ?
-                new CopyOnWriteArrayList<T>() : new ArrayList<T>();
         }
 
         @Override public boolean add (int index, T element) {
             if (element == null) { throw new NullPointerException("Null observers not allowed."); }
-            if (_checkDups && isDuplicate(element)) { return false; }
-            _list.add(index, element);
-            return true;
+            synchronized (this) {
+                if (index < 0 || index > _size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+                }
+                if (_checkDups && isDuplicate(element)) { return false; }
+                insert(index, element);
+                return true;
+            }
         }
 
         @Override public boolean add (T element) {
             if (element == null) { throw new NullPointerException("Null observers not allowed."); }
-            if (_checkDups && isDuplicate(element)) { return false; }
-            _list.add(element);
-            return true;
+            synchronized (this) {
+                if (_checkDups && isDuplicate(element)) { return false; }
+                insert(_size, element);
+                return true;
+            }
         }
 
-        @Override public boolean remove (T element) {
+        @Override public synchronized boolean remove (T element) {
             int idx = indexOf(element);
             if (idx < 0) { return false; }
-            _list.remove(idx);
+            removeAt(idx);
             return true;
         }
 
         @Override public void apply (ObserverOp<T> obop) {
             switch (_policy) {
             case SAFE_IN_ORDER:
-                // our copy on write array list will prevent us from getting hosed if modifications
-                // take place during iteration
-                Iterator<T> iter = _list.iterator();
-                while (iter.hasNext()) {
-                    T elem = iter.next();
+                // we notify a snapshot of the array, which is never modified, so modifications
+                // that take place during notification won't hose us
+                Object[] snapshot = _array;
+                Object[] failed = null;
+                int nfailed = 0;
+                for (int ii = 0; ii < snapshot.length; ii++) {
+                    @SuppressWarnings("unchecked") T elem = (T)snapshot[ii];
                     if (!checkedApply(obop, elem)) {
-                        // can't remove via COWArrayList iterator, and to be totally safe (because
-                        // we don't know if any additions or removals have taken place while we
-                        // were iterating), we have to scan the whole list to locate this element
-                        // so that we can remove it
-                        remove(elem);
+                        if (failed == null) {
+                            failed = new Object[snapshot.length - ii];
+                        }
+                        failed[nfailed++] = elem;
                     }
                 }
+                if (nfailed > 0) {
+                    removeAll(failed, nfailed);
+                }
                 break;
 
             case FAST_UNSAFE:
-                for (int ii = _list.size()-1; ii >= 0; ii--) {
-                    if (!checkedApply(obop, _list.get(ii))) {
-                        _list.remove(ii);
+                for (int ii = _size-1; ii >= 0; ii--) {
+                    @SuppressWarnings("unchecked") T elem = (T)_array[ii];
+                    if (!checkedApply(obop, elem)) {
+                        synchronized (this) {
+                            removeAt(ii);
+                        }
                     }
                 }
                 break;
@@ -272,31 +292,56 @@ public abstract class ObserverList<T>
         }
 
         @Override public int size () {
-            return _list.size();
+            return _size;
         }
 
-        @Override public void clear () {
-            _list.clear();
+        @Override public synchronized void clear () {
+            _array = EMPTY;
+            _size = 0;
+            _index = null;
         }
 
-        @Override public ObserverList<T> setCheckDuplicates (boolean checkDuplicates) {
+        @Override public synchronized ObserverList<T> setCheckDuplicates (
+            boolean checkDuplicates) {
             _checkDups = checkDuplicates;
+            if (!checkDuplicates) {
+                _index = null;
+            } else if (_size >= INDEX_THRESHOLD) {
+                buildIndex();
+            }
             return this;
         }
 
-        /** Used to determine whether an element is in the list. */
+        /** Used to determine whether an element is in the list. Called with our monitor held. */
         protected int indexOf (T element) {
-            for (int ii = 0, ll = _list.size(); ii < ll; ii++) {
-                if (_list.get(ii) == element) { return ii; }
+            if (_index != null && !_index.contains(element)) {
+                return -1;
+            }
+            Object[] array = _array;
+            for (int ii = 0, ll = _size; ii < ll; ii++) {
+                @SuppressWarnings("unchecked") T elem = (T)array[ii];
+                if (matches(elem, element)) { return ii; }
             }
             return -1;
         }
 
+        /** Returns true if the supplied elements represent the same observer. */
+        protected boolean matches (T elem, T element) {
+            return elem == element;
+        }
+
+        /** Returns true if we may index our elements by identity. This must be false if {@link
+         * #matches} is overridden. */
+        protected boolean isIndexable () {
+            return true;
+        }
+
         /** Returns true and issues a warning if the supplied observer is already in the list.
-         * Returns false if the supplied observer is not a duplicate. */
+         * Returns false if the supplied observer is not a duplicate. Called with our monitor
+         * held. */
         protected boolean isDuplicate (T obs) {
             // make sure we're not violating the list constraints
-            if (indexOf(obs) >= 0) {
+            if ((_index != null) ? _index.contains(obs) : (indexOf(obs) >= 0)) {
                 log.warning("Observer attempted to observe list it's already observing!",
                         "obs", obs, new Exception());
                 return true;
@@ -304,8 +349,114 @@ public abstract class ObserverList<T>
             return false;
         }
 
+        /** Inserts an element at the specified index. Called with our monitor held. */
+        protected void insert (int index, T element) {
+            Object[] array = _array;
+            if (_policy == Policy.SAFE_IN_ORDER || _size == array.length) {
+                // a safe list's array must not change once published, so we always copy it
+                int capacity = (_policy == Policy.SAFE_IN_ORDER) ? _size + 1 :
+                    Math.max(4, _size * 2);
+                Object[] narray = new Object[capacity];
+                System.arraycopy(array, 0, narray, 0, index);
+                System.arraycopy(array, index, narray, index+1, _size-index);
+                array = narray;
+            } else {
+                System.arraycopy(array, index, array, index+1, _size-index);
+            }
+            array[index] = element;
+            _array = array;
+            _size++;
+
+            if (_index != null) {
+                _index.add(element);
+            } else if (_checkDups && _size >= INDEX_THRESHOLD) {
+                buildIndex();
+            }
+        }
+
+        /** Removes the element at the specified index. Called with our monitor held. */
+        protected void removeAt (int index) {
+            Object[] array = _array;
+            Object elem = array[index];
+            if (_policy == Policy.SAFE_IN_ORDER) {
+                Object[] narray = (_size == 1) ? EMPTY : new Object[_size-1];
+                System.arraycopy(array, 0, narray, 0, index);
+                System.arraycopy(array, index+1, narray, index, _size-index-1);
+                _array = narray;
+            } else {
+                System.arraycopy(array, index+1, array, index, _size-index-1);
+                array[_size-1] = null;
+            }
+            _size--;
+            if (_index != null) {
+                _index.remove(elem);
+            }
+        }
+
+        /** Removes the supplied elements (which are compared by identity) in one pass. */
+        protected synchronized void removeAll (Object[] elems, int count) {
+            Set<Object> remove = null;
+            if (count > INDEX_THRESHOLD) {
+                remove = Collections.newSetFromMap(new IdentityHashMap<Object,Boolean>());
+                for (int ii = 0; ii < count; ii++) {
+                    remove.add(elems[ii]);
+                }
+            }
+            Object[] array = _array;
+            Object[] narray = new Object[_size];
+            int nsize = 0;
+            for (int ii = 0; ii < _size; ii++) {
+                Object elem = array[ii];
+                boolean removed = false;
+                if (remove != null) {
+                    removed = remove.contains(elem);
+                } else {
+                    for (int jj = 0; jj < count && !removed; jj++) {
+                        removed = (elems[jj] == elem);
+                    }
+                }
+                if (removed) {
+                    if (_index != null) {
+                        _index.remove(elem);
+                    }
+                } else {
+                    narray[nsize++] = elem;
+                }
+            }
+            if (nsize < _size) {
+                _array = (nsize == 0) ? EMPTY : (nsize == narray.length) ? narray :
+                    ArrayUtil.splice(narray, nsize);
+                _size = nsize;
+            }
+        }
+
+        /** Creates our identity index of our elements. Called with our monitor held. */
+        protected void buildIndex () {
+            if (isIndexable()) {
+                _index = Collections.newSetFromMap(new IdentityHashMap<Object,Boolean>());
+                for (int ii = 0; ii < _size; ii++) {
+                    _index.add(_array[ii]);
+                }
+            }
+        }
+
         protected Policy _policy;
-        protected List<T> _list;
+
+        /** Our elements. The first {@link #_size} elements are valid. For safe lists, the array
+         * is exactly the size of the list and is replaced rather than modified. */
+        protected volatile Object[] _array = EMPTY;
+
+        /** The number of elements in the list. */
+        protected volatile int _size;
+
+        /** The identity set of our elements, or null if we're not maintaining one. */
+        protected Set<Object> _index;
+
         protected boolean _checkDups = true;
+
+        /** The size at which we start indexing our elements. */
+        protected static final int INDEX_THRESHOLD = 8;
+
+        protected static final Object[] EMPTY = new Object[0];
     }
 }
@@ -0,0 +1,574 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A cache of serialized values that lives outside the Java heap, for large caches of blobs
+ * (rendered fragments, serialized records) that would otherwise inflate garbage collection
+ * pauses. Values are serialized into fixed-size blocks carved out of slabs of direct {@link
+ * ByteBuffer} memory, which are allocated lazily until the byte budget is reached. A value
+ * occupies a chain of blocks, each of which starts with the index of the next, so values of any
+ * size share the budget without fragmentation. The only per-entry heap cost is the key and a few
+ * ints in an open-addressing index.
+ *
+ * <p> When the budget is exhausted, entries are evicted in least recently used order or by the
+ * CLOCK (second chance) approximation of it, which does not need to reorder anything on a cache
+ * hit. Removal observers are notified as they are by {@link LRUHashMap}: when an entry is
+ * removed, replaced or evicted. Note that notifying an observer requires deserializing the
+ * removed value.
+ *
+ * <p> The cache is thread-safe. Subclasses may override {@link #allocateSlab} to back the cache
+ * with memory mapped file regions rather than direct buffers.
+ */
+public class OffHeapCache<K,V>
+{
+    /**
+     * Converts values to and from the bytes stored in the cache.
+     */
+    public static interface Serializer<V>
+    {
+        /** Returns the serialized form of the supplied value. */
+        public byte[] serialize (V value);
+
+        /** Reconstructs a value from its serialized form. */
+        public V deserialize (byte[] data);
+    }
+
+    /**
+     * An observer may be registered with a cache to be notified when items are removed from the
+     * cache (either explicitly or by being replaced with another value or due to being evicted).
+     */
+    public static interface RemovalObserver<K,V>
+    {
+        /** Informs the observer that this item was removed from the cache. */
+        public void removedFromMap (OffHeapCache<K,V> cache, V item);
+    }
+
+    /** The algorithms available for choosing entries to evict. */
+    public static enum Eviction
+    {
+        /** Evicts the least recently used entry. */
+        LRU,
+
+        /** Sweeps a clock hand over the entries, giving those used since its last pass a
+         * second chance. */
+        CLOCK;
+    }
+
+    /**
+     * Creates an LRU cache with the specified byte budget.
+     */
+    public OffHeapCache (long maxBytes, Serializer<V> serializer)
+    {
+        this(maxBytes, DEFAULT_BLOCK_SIZE, Eviction.LRU, serializer);
+    }
+
+    /**
+     * Creates a cache with the specified configuration.
+     *
+     * @param maxBytes the maximum number of bytes of off-heap memory to use.
+     * @param blockSize the size of the blocks from which values are stored. Four bytes of each
+     * block are used to link it to the next. Smaller blocks waste less space at the end of each
+     * value, larger blocks make reading a value faster.
+     */
+    public OffHeapCache (long maxBytes, int blockSize, Eviction eviction, Serializer<V> serializer)
+    {
+        if (blockSize <= BLOCK_HEADER || blockSize > SLAB_SIZE) {
+            throw new IllegalArgumentException("Invalid block size " + blockSize);
+        }
+        _blockSize = blockSize;
+        _blocksPerSlab = SLAB_SIZE / blockSize;
+        _maxBlocks = (int)Math.min(Integer.MAX_VALUE, maxBytes / blockSize);
+        _eviction = eviction;
+        _serializer = serializer;
+        _freeBlocks = new int[Math.min(_maxBlocks, _blocksPerSlab)];
+        _table = new int[16];
+        createEntries(16);
+    }
+
+    /**
+     * Configures this cache with a removal observer.
+     */
+    public synchronized void setRemovalObserver (RemovalObserver<K,V> obs)
+    {
+        _remobs = obs;
+    }
+
+    /**
+     * Returns the value mapped to the specified key, or null.
+     */
+    public V get (K key)
+    {
+        byte[] data;
+        synchronized (this) {
+            int id = indexOf(key);
+            if (id < 0) {
+                _misses++;
+                return null;
+            }
+            _hits++;
+            if (_eviction == Eviction.LRU) {
+                unlink(id);
+                linkLast(id);
+            } else {
+                _referenced[id] = true;
+            }
+            data = read(id);
+        }
+        return _serializer.deserialize(data);
+    }
+
+    /**
+     * Returns true if the cache contains a mapping for the specified key. This does not count
+     * as a use of the entry.
+     */
+    public synchronized boolean containsKey (K key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Stores the supplied value in the cache, evicting entries as needed to stay within the byte
+     * budget. A value too large to fit in the entire budget is not stored (but any existing
+     * mapping for the key is still removed).
+     */
+    public void put (K key, V value)
+    {
+        byte[] data = _serializer.serialize(value);
+        int nblocks = Math.max(1, (data.length + _blockSize - BLOCK_HEADER - 1) /
+                               (_blockSize - BLOCK_HEADER));
+        List<V> removed = null;
+        synchronized (this) {
+            int id = indexOf(key);
+            if (id >= 0) {
+                removed = removeEntry(id, removed);
+            }
+            if (nblocks > _maxBlocks) {
+                notifyRemoved(removed);
+                return;
+            }
+            while (_freeCount < nblocks) {
+                if (_allocatedBlocks < _maxBlocks) {
+                    addSlab();
+                } else {
+                    removed = removeEntry(evictionVictim(), removed);
+                }
+            }
+            addEntry(key, data, nblocks);
+        }
+        notifyRemoved(removed);
+    }
+
+    /**
+     * Removes the mapping for the specified key.
+     *
+     * @return true if there was such a mapping.
+     */
+    public boolean remove (K key)
+    {
+        List<V> removed;
+        synchronized (this) {
+            int id = indexOf(key);
+            if (id < 0) {
+                return false;
+            }
+            removed = removeEntry(id, null);
+        }
+        notifyRemoved(removed);
+        return true;
+    }
+
+    /**
+     * Removes all mappings from the cache. The off-heap memory is retained for reuse.
+     */
+    public void clear ()
+    {
+        List<V> removed = null;
+        synchronized (this) {
+            while (_head != NONE) {
+                removed = removeEntry(_head, removed);
+            }
+        }
+        notifyRemoved(removed);
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     */
+    public synchronized int size ()
+    {
+        return _size;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory occupied by entries.
+     */
+    public synchronized long getUsedBytes ()
+    {
+        return (long)(_allocatedBlocks - _freeCount) * _blockSize;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory allocated so far, which never exceeds the
+     * budget supplied at construction.
+     */
+    public synchronized long getAllocatedBytes ()
+    {
+        return (long)_allocatedBlocks * _blockSize;
+    }
+
+    /**
+     * Return a measure of the effectiveness of this cache, the ratio of hits to misses.
+     *
+     * @return an array containing {hits, misses}
+     */
+    public synchronized int[] getTrackedEffectiveness ()
+    {
+        return new int[] { _hits, _misses };
+    }
+
+    /**
+     * Allocates a slab of memory of the specified size. The default implementation allocates a
+     * direct buffer.
+     *
+     * @param index the index of the slab, which will be at byte offset <code>index *
+     * size</code> in the cache's address space if a subclass wishes to map slabs from a file.
+     */
+    protected ByteBuffer allocateSlab (int index, int size)
+    {
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * Allocates another slab (or as much of one as our budget allows) and adds its blocks to our
+     * free list.
+     */
+    protected void addSlab ()
+    {
+        int nblocks = Math.min(_blocksPerSlab, _maxBlocks - _allocatedBlocks);
+        if (_slabs.length == _slabCount) {
+            _slabs = Arrays.copyOf(_slabs, Math.max(4, _slabCount * 2));
+        }
+        _slabs[_slabCount] = allocateSlab(_slabCount, nblocks * _blockSize);
+        int first = _slabCount * _blocksPerSlab;
+        _slabCount++;
+        // the free list must be able to hold every block we've allocated, since they may all be
+        // freed at once (by clear() for example), not just those that are free right now
+        int needed = _allocatedBlocks + nblocks;
+        if (_freeBlocks.length < needed) {
+            _freeBlocks = Arrays.copyOf(
+                _freeBlocks, Math.min(_maxBlocks, Math.max(needed, _freeBlocks.length * 2)));
+        }
+        // push them in reverse order so that we hand them out in address order
+        for (int ii = nblocks - 1; ii >= 0; ii--) {
+            _freeBlocks[_freeCount++] = first + ii;
+        }
+        _allocatedBlocks += nblocks;
+    }
+
+    /**
+     * Writes the supplied data into newly allocated blocks and adds an entry for it.
+     */
+    protected void addEntry (K key, byte[] data, int nblocks)
+    {
+        // allocate and write our blocks in reverse order, so that each knows its successor
+        int next = NONE;
+        int chunk = _blockSize - BLOCK_HEADER;
+        for (int ii = nblocks - 1; ii >= 0; ii--) {
+            int block = _freeBlocks[--_freeCount];
+            ByteBuffer slab = _slabs[block / _blocksPerSlab];
+            int offset = (block % _blocksPerSlab) * _blockSize;
+            slab.putInt(offset, next);
+            slab.position(offset + BLOCK_HEADER);
+            int start = ii * chunk;
+            slab.put(data, start, Math.min(chunk, data.length - start));
+            next = block;
+        }
+
+        if (_freeId == NONE) {
+            createEntries(_keys.length * 2);
+        }
+        int id = _freeId;
+        _freeId = _next[id];
+        _keys[id] = key;
+        _hashes[id] = hash(key);
+        _heads[id] = next;
+        _lengths[id] = data.length;
+        _referenced[id] = false;
+        linkLast(id);
+        _size++;
+
+        if (_size > (_table.length >> 1)) {
+            rehash(_table.length * 2);
+        }
+        insert(id);
+    }
+
+    /**
+     * Removes the specified entry, freeing its blocks. If we have a removal observer, the value
+     * is added to the supplied list (which is created if null) for notification once our lock has
+     * been released.
+     */
+    protected List<V> removeEntry (int id, List<V> removed)
+    {
+        if (_remobs != null) {
+            if (removed == null) {
+                removed = new ArrayList<V>();
+            }
+            removed.add(_serializer.deserialize(read(id)));
+        }
+
+        for (int block = _heads[id]; block != NONE; ) {
+            _freeBlocks[_freeCount++] = block;
+            block = _slabs[block / _blocksPerSlab].getInt((block % _blocksPerSlab) * _blockSize);
+        }
+
+        // remove the entry from the table, shifting back any entries that probed past it
+        int slot = _hashes[id] & (_table.length - 1);
+        while (_table[slot] != id + 1) {
+            slot = (slot + 1) & (_table.length - 1);
+        }
+        int mask = _table.length - 1;
+        for (int next = (slot + 1) & mask; _table[next] != 0; next = (next + 1) & mask) {
+            int home = _hashes[_table[next] - 1] & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                _table[slot] = _table[next];
+                slot = next;
+            }
+        }
+        _table[slot] = 0;
+
+        unlink(id);
+        _keys[id] = null;
+        _next[id] = _freeId;
+        _freeId = id;
+        _size--;
+        return removed;
+    }
+
+    /**
+     * Returns the id of the next entry to be evicted.
+     */
+    protected int evictionVictim ()
+    {
+        if (_eviction == Eviction.LRU) {
+            return _head;
+        }
+        while (true) {
+            if (_hand >= _keys.length) {
+                _hand = 0;
+            }
+            int id = _hand++;
+            if (_keys[id] != null) {
+                if (!_referenced[id]) {
+                    return id;
+                }
+                _referenced[id] = false;
+            }
+        }
+    }
+
+    /**
+     * Reads the serialized value of the specified entry.
+     */
+    protected byte[] read (int id)
+    {
+        byte[] data = new byte[_lengths[id]];
+        int chunk = _blockSize - BLOCK_HEADER;
+        for (int block = _heads[id], pos = 0; block != NONE; pos += chunk) {
+            ByteBuffer slab = _slabs[block / _blocksPerSlab];
+            int offset = (block % _blocksPerSlab) * _blockSize;
+            slab.position(offset + BLOCK_HEADER);
+            slab.get(data, pos, Math.min(chunk, data.length - pos));
+            block = slab.getInt(offset);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the id of the entry for the specified key, or -1.
+     */
+    protected int indexOf (Object key)
+    {
+        int hash = hash(key), mask = _table.length - 1;
+        for (int slot = hash & mask; _table[slot] != 0; slot = (slot + 1) & mask) {
+            int id = _table[slot] - 1;
+            if (_hashes[id] == hash && _keys[id].equals(key)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the specified entry to our table.
+     */
+    protected void insert (int id)
+    {
+        int mask = _table.length - 1, slot = _hashes[id] & mask;
+        while (_table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        _table[slot] = id + 1;
+    }
+
+    /**
+     * Rebuilds our table with the specified number of slots.
+     */
+    protected void rehash (int slots)
+    {
+        int[] otable = _table;
+        _table = new int[slots];
+        for (int idplus : otable) {
+            if (idplus != 0) {
+                insert(idplus - 1);
+            }
+        }
+    }
+
+    /**
+     * Grows our entry arrays to the specified capacity, adding the new ids to our free list.
+     */
+    protected void createEntries (int capacity)
+    {
+        int ocapacity = (_keys == null) ? 0 : _keys.length;
+        @SuppressWarnings("unchecked") K[] keys = (K[])new Object[capacity];
+        if (ocapacity > 0) {
+            System.arraycopy(_keys, 0, keys, 0, ocapacity);
+        }
+        _keys = keys;
+        _hashes = grow(_hashes, capacity);
+        _heads = grow(_heads, capacity);
+        _lengths = grow(_lengths, capacity);
+        _prev = grow(_prev, capacity);
+        _next = grow(_next, capacity);
+        _referenced = (_referenced == null) ? new boolean[capacity] :
+            Arrays.copyOf(_referenced, capacity);
+        for (int ii = capacity - 1; ii >= ocapacity; ii--) {
+            _next[ii] = _freeId;
+            _freeId = ii;
+        }
+    }
+
+    /**
+     * Appends the specified entry to our recency list.
+     */
+    protected void linkLast (int id)
+    {
+        _prev[id] = _tail;
+        _next[id] = NONE;
+        if (_tail == NONE) {
+            _head = id;
+        } else {
+            _next[_tail] = id;
+        }
+        _tail = id;
+    }
+
+    /**
+     * Removes the specified entry from our recency list.
+     */
+    protected void unlink (int id)
+    {
+        int prev = _prev[id], next = _next[id];
+        if (prev == NONE) {
+            _head = next;
+        } else {
+            _next[prev] = next;
+        }
+        if (next == NONE) {
+            _tail = prev;
+        } else {
+            _prev[next] = prev;
+        }
+    }
+
+    /**
+     * Notifies our removal observer of the supplied values, if any.
+     */
+    protected void notifyRemoved (List<V> removed)
+    {
+        RemovalObserver<K,V> remobs = _remobs;
+        if (removed != null && remobs != null) {
+            for (V value : removed) {
+                remobs.removedFromMap(this, value);
+            }
+        }
+    }
+
+    protected static int[] grow (int[] array, int capacity)
+    {
+        return (array == null) ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    protected static int hash (Object key)
+    {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /** Converts values to and from bytes. */
+    protected final Serializer<V> _serializer;
+
+    /** How we choose entries to evict. */
+    protected final Eviction _eviction;
+
+    /** Notified when items are removed from the cache, if non-null. */
+    protected RemovalObserver<K,V> _remobs;
+
+    /** The size of our blocks, the number in each slab and the maximum number we'll allocate. */
+    protected final int _blockSize, _blocksPerSlab, _maxBlocks;
+
+    /** Our off-heap slabs. */
+    protected ByteBuffer[] _slabs = new ByteBuffer[0];
+    protected int _slabCount;
+
+    /** The number of blocks in our allocated slabs. */
+    protected int _allocatedBlocks;
+
+    /** A stack of free block indices. */
+    protected int[] _freeBlocks;
+    protected int _freeCount;
+
+    /** Maps keys to entries; each slot holds an entry id plus one, or zero if empty. */
+    protected int[] _table;
+
+    /** Entry data, indexed by entry id. A null key marks an unused id. */
+    protected K[] _keys;
+    protected int[] _hashes, _heads, _lengths;
+    protected boolean[] _referenced;
+
+    /** Our recency list (which is also our insertion order list under CLOCK eviction). Unused
+     * entries are chained through {@link #_next} starting with {@link #_freeId}. */
+    protected int[] _prev, _next;
+    protected int _head = NONE, _tail = NONE, _freeId = NONE;
+
+    /** The position of our CLOCK hand. */
+    protected int _hand;
+
+    /** The number of entries in the cache. */
+    protected int _size;
+
+    /** Hit and miss counts. */
+    protected int _hits, _misses;
+
+    /** Marks the end of a block chain or entry list. */
+    protected static final int NONE = -1;
+
+    /** The number of bytes at the start of each block used to link to the next. */
+    protected static final int BLOCK_HEADER = 4;
+
+    /** The default size of our blocks. */
+    protected static final int DEFAULT_BLOCK_SIZE = 256;
+
+    /** The size of our slabs. */
+    protected static final int SLAB_SIZE = 1 << 20;
+}
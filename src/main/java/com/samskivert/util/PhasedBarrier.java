@@ -0,0 +1,206 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A reusable barrier for a fixed set of up to 32 numbered parties, for pipelines that process
+ * batches in phases: each party {@link #arrive}s when it has finished its part of the current
+ * phase, and once all parties have arrived, the phase advances and an optional action is run.
+ * Parties that must not start the next phase until the others finish can {@link #awaitAdvance}.
+ *
+ * <p> Like {@link ConcurrentMultex}, the barrier keeps its arrivals in an atomic bitmask, which
+ * shares a single {@link AtomicLong} with the phase number so that the final arrival clears the
+ * arrivals and advances the phase in one step. Arriving never blocks.
+ */
+public class PhasedBarrier
+{
+    /** The maximum number of parties supported by a barrier. */
+    public static final int MAX_PARTIES = 32;
+
+    /**
+     * Creates a barrier for the specified number of parties, with no advance action.
+     */
+    public PhasedBarrier (int parties)
+    {
+        this(parties, null, null);
+    }
+
+    /**
+     * Creates a barrier for the specified number of parties.
+     *
+     * @param onAdvance an action to run each time the phase advances, or null. It is run after
+     * the phase has advanced, so it may overlap with parties' work on the next phase.
+     * @param executor the executor on which to run the action, or null to run it on the thread
+     * of the final arrival.
+     */
+    public PhasedBarrier (int parties, Runnable onAdvance, Executor executor)
+    {
+        if (parties < 1 || parties > MAX_PARTIES) {
+            throw new IllegalArgumentException("Parties must be between 1 and " + MAX_PARTIES);
+        }
+        _parties = parties;
+        _full = (parties == 32) ? ARRIVALS : (1L << parties) - 1;
+        _onAdvance = onAdvance;
+        _executor = executor;
+    }
+
+    /**
+     * Returns the number of parties.
+     */
+    public int getParties ()
+    {
+        return _parties;
+    }
+
+    /**
+     * Returns the current phase number, which starts at zero and wraps to zero after {@link
+     * Integer#MAX_VALUE}.
+     */
+    public int getPhase ()
+    {
+        return phaseOf(_state.get());
+    }
+
+    /**
+     * Returns the number of parties that have yet to arrive in the current phase.
+     */
+    public int getUnarrived ()
+    {
+        return _parties - Long.bitCount(_state.get() & ARRIVALS);
+    }
+
+    /**
+     * Notes the arrival of the specified party in the current phase, advancing the phase if it is
+     * the last to arrive.
+     *
+     * @return the phase in which the party arrived.
+     * @exception IllegalStateException if the party has already arrived in the current phase.
+     */
+    public int arrive (int party)
+    {
+        if (party < 0 || party >= _parties) {
+            throw new IllegalArgumentException("Invalid party: " + party);
+        }
+        long bit = 1L << party;
+        while (true) {
+            long state = _state.get();
+            int phase = phaseOf(state);
+            if ((state & bit) != 0) {
+                throw new IllegalStateException(
+                    "Party " + party + " already arrived in phase " + phase);
+            }
+            long arrived = (state & ARRIVALS) | bit;
+            if (arrived == _full) {
+                long next = (long)((phase + 1) & Integer.MAX_VALUE) << 32;
+                if (_state.compareAndSet(state, next)) {
+                    advanced();
+                    return phase;
+                }
+            } else if (_state.compareAndSet(state, state | bit)) {
+                return phase;
+            }
+        }
+    }
+
+    /**
+     * Notes the arrival of the specified party and waits for the phase to advance.
+     *
+     * @return the new phase.
+     */
+    public int arriveAndAwaitAdvance (int party)
+        throws InterruptedException
+    {
+        return awaitAdvance(arrive(party));
+    }
+
+    /**
+     * Waits until the phase has advanced beyond the specified phase, returning immediately if it
+     * already has.
+     *
+     * @return the new phase.
+     */
+    public int awaitAdvance (int phase)
+        throws InterruptedException
+    {
+        int current = getPhase();
+        if (current != phase) {
+            return current;
+        }
+        synchronized (this) {
+            while ((current = getPhase()) == phase) {
+                wait();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Waits up to the specified time for the phase to advance beyond the specified phase.
+     *
+     * @return true if the phase advanced, false if the wait timed out.
+     */
+    public boolean awaitAdvance (int phase, long timeout, TimeUnit unit)
+        throws InterruptedException
+    {
+        if (getPhase() != phase) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (getPhase() == phase) {
+                long remain = deadline - System.nanoTime();
+                if (remain <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remain);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString ()
+    {
+        return "[phase=" + getPhase() + ", unarrived=" + getUnarrived() + "]";
+    }
+
+    /**
+     * Called by the final arrival of a phase, once the phase has advanced.
+     */
+    protected void advanced ()
+    {
+        synchronized (this) {
+            notifyAll();
+        }
+        if (_onAdvance != null) {
+            if (_executor == null) {
+                _onAdvance.run();
+            } else {
+                _executor.execute(_onAdvance);
+            }
+        }
+    }
+
+    protected static int phaseOf (long state)
+    {
+        return (int)(state >>> 32);
+    }
+
+    protected final int _parties;
+    protected final long _full;
+    protected final Runnable _onAdvance;
+    protected final Executor _executor;
+
+    /** The phase number (in the upper 32 bits) and the arrivals in that phase (in the lower). */
+    protected final AtomicLong _state = new AtomicLong();
+
+    /** The bits of {@link #_state} that record arrivals. */
+    protected static final long ARRIVALS = 0xFFFFFFFFL;
+}
@@ -0,0 +1,632 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.samskivert.util.IntIntMap.IntIntEntry;
+
+/**
+ * A drop-in alternative to {@link IntIntMap} that uses open addressing with linear probing over
+ * parallel key and value arrays rather than chaining through a record per mapping. No objects are
+ * created by {@link #put}, {@link #get}, {@link #increment} or {@link #remove} (save for the
+ * occasional resize). As with {@link IntIntMap}, {@link #get} and {@link #remove} return -1 to
+ * indicate that no mapping existed; use {@link #getOrElse} and {@link #removeOrElse} to supply a
+ * different default.
+ *
+ * @see ProbingIntMap
+ */
+public class ProbingIntIntMap
+    implements Cloneable, Serializable
+{
+    /**
+     * Creates an empty map with the default capacity.
+     */
+    public ProbingIntIntMap ()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map that can hold the specified number of mappings without resizing.
+     */
+    public ProbingIntIntMap (int capacity)
+    {
+        createBuckets(ProbingIntMap.getBucketCount(capacity));
+    }
+
+    public boolean isEmpty ()
+    {
+        return _size == 0;
+    }
+
+    /**
+     * Returns the number of mappings.
+     */
+    public int size ()
+    {
+        return _size;
+    }
+
+    /**
+     * Adds the supplied key/value mapping. Any previous mapping for that key will be overwritten.
+     */
+    public void put (int key, int value)
+    {
+        // find the slot first, as doing so may reallocate our arrays
+        int slot = slotFor(key);
+        _values[slot] = value;
+    }
+
+    /**
+     * Returns the value mapped to the specified key or -1 if there is no mapping.
+     */
+    public int get (int key)
+    {
+        return getOrElse(key, -1);
+    }
+
+    /**
+     * Returns the value mapped to the specified key or the supplied default value if there is no
+     * mapping.
+     */
+    public int getOrElse (int key, int defval)
+    {
+        if (key == 0) {
+            return _hasZeroKey ? _values[_mask+1] : defval;
+        }
+        int idx = indexOf(key);
+        return (idx < 0) ? defval : _values[idx];
+    }
+
+    /**
+     * Increments the value associated with the specified key by the specified amount. If the key
+     * has no previously assigned value, it will be set to the amount specified (as if incrementing
+     * from zero).
+     *
+     * @return the incremented value now stored for the key
+     */
+    public int increment (int key, int amount)
+    {
+        // new slots always hold zero, so this works whether or not the mapping existed
+        int slot = slotFor(key);
+        return (_values[slot] += amount);
+    }
+
+    /**
+     * Returns true if this map contains a mapping for the specified key.
+     *
+     * @deprecated use {@link #containsKey}.
+     */
+    @Deprecated
+    public boolean contains (int key)
+    {
+        return containsKey(key);
+    }
+
+    /**
+     * Returns true if this map contains a mapping for the specified key.
+     */
+    public boolean containsKey (int key)
+    {
+        return (key == 0) ? _hasZeroKey : (indexOf(key) >= 0);
+    }
+
+    /**
+     * Removes the value mapped for the specified key.
+     *
+     * @return the value to which the key was mapped or -1 if there was no mapping for that key.
+     */
+    public int remove (int key)
+    {
+        return removeOrElse(key, -1);
+    }
+
+    /**
+     * Removes the value mapped for the specified key.
+     *
+     * @return the value to which the key was mapped or the supplied default value if there was no
+     * mapping for that key.
+     */
+    public int removeOrElse (int key, int defval)
+    {
+        int ovalue;
+        if (key == 0) {
+            if (!_hasZeroKey) {
+                return defval;
+            }
+            ovalue = _values[_mask+1];
+            _values[_mask+1] = 0;
+            _hasZeroKey = false;
+
+        } else {
+            int idx = indexOf(key);
+            if (idx < 0) {
+                return defval;
+            }
+            ovalue = _values[idx];
+            removeSlot(idx);
+        }
+        _size--;
+        _modcount++;
+        checkShrink();
+        return ovalue;
+    }
+
+    /**
+     * Clears all mappings.
+     */
+    public void clear ()
+    {
+        if (_size > 0) {
+            createBuckets(ProbingIntMap.MIN_BUCKET_COUNT);
+            _hasZeroKey = false;
+            _size = 0;
+            _modcount++;
+        }
+    }
+
+    /**
+     * Ensure that the map can comfortably hold the specified number of mappings. Calling this
+     * method is not necessary, but can improve performance if done prior to adding many mappings.
+     */
+    public void ensureCapacity (int minCapacity)
+    {
+        int ncount = ProbingIntMap.getBucketCount(minCapacity);
+        if (ncount > _keys.length) {
+            rehash(ncount);
+        }
+    }
+
+    public Interator keys ()
+    {
+        return new KeyValueInterator(true);
+    }
+
+    public IntSet keySet ()
+    {
+        return new AbstractIntSet() {
+            public Interator interator () {
+                return ProbingIntIntMap.this.keys();
+            }
+
+            @Override public int size () {
+                return ProbingIntIntMap.this.size();
+            }
+
+            @Override public boolean contains (int t) {
+                return ProbingIntIntMap.this.containsKey(t);
+            }
+
+            @Override public boolean remove (int value) {
+                // we have to check for presence in the map separately because we have no "not in
+                // the set" return value
+                if (!ProbingIntIntMap.this.containsKey(value)) {
+                    return false;
+                }
+                ProbingIntIntMap.this.remove(value);
+                return true;
+            }
+        };
+    }
+
+    public Interator values ()
+    {
+        return new KeyValueInterator(false);
+    }
+
+    /**
+     * Get an array of the unique keys in this map.
+     */
+    public int[] getKeys ()
+    {
+        return toIntArray(true);
+    }
+
+    /**
+     * Get an array of the values that may be in this map.
+     * There may be duplicates.
+     */
+    public int[] getValues ()
+    {
+        return toIntArray(false);
+    }
+
+    /**
+     * Get a set of all the entries in this map.
+     */
+    public Set<IntIntEntry> entrySet ()
+    {
+        return new AbstractSet<IntIntEntry>() {
+            @Override public int size () {
+                return _size;
+            }
+
+            @Override public Iterator<IntIntEntry> iterator() {
+                return new SlotIterator<IntIntEntry>() {
+                    public IntIntEntry next () {
+                        return new SlotEntry(nextSlot());
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public String toString ()
+    {
+        StringBuilder buf = new StringBuilder("[");
+        int[] keys = getKeys();
+        for (int ii = 0; ii < keys.length; ii++) {
+            if (ii > 0) {
+                buf.append(", ");
+            }
+            buf.append(keys[ii]).append("->").append(get(keys[ii]));
+        }
+        return buf.append("]").toString();
+    }
+
+    @Override
+    public ProbingIntIntMap clone ()
+    {
+        try {
+            ProbingIntIntMap result = (ProbingIntIntMap) super.clone();
+            result._keys = _keys.clone();
+            result._values = _values.clone();
+            return result;
+
+        } catch (CloneNotSupportedException cnse) {
+            throw new AssertionError(cnse); // won't happen; we're Cloneable
+        }
+    }
+
+    protected int[] toIntArray (boolean keys)
+    {
+        int[] ret = new int[_size];
+        int dex = 0;
+        if (_hasZeroKey) {
+            ret[dex++] = keys ? 0 : _values[_mask+1];
+        }
+        for (int ii = 0; ii <= _mask; ii++) {
+            if (_keys[ii] != 0) {
+                ret[dex++] = keys ? _keys[ii] : _values[ii];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the slot holding the value for the specified key, creating a mapping to zero if
+     * none exists.
+     */
+    protected final int slotFor (int key)
+    {
+        if (key == 0) {
+            if (!_hasZeroKey) {
+                _hasZeroKey = true;
+                _values[_mask+1] = 0;
+                _size++;
+                _modcount++;
+            }
+            return _mask+1;
+        }
+
+        int idx = indexOf(key);
+        if (idx >= 0) {
+            return idx;
+        }
+        idx = -(idx+1);
+        _keys[idx] = key;
+        _modcount++;
+        if (++_size > _growThreshold) {
+            rehash(_keys.length << 1);
+            idx = indexOf(key);
+        }
+        return idx;
+    }
+
+    /**
+     * Returns the slot index for the specified (non-zero) key, or <code>-(insertion point +
+     * 1)</code> if the key is not in the map.
+     */
+    protected final int indexOf (int key)
+    {
+        int[] keys = _keys;
+        int mask = _mask;
+        for (int idx = ProbingIntMap.hash(key) & mask; ; idx = (idx + 1) & mask) {
+            int bkey = keys[idx];
+            if (bkey == key) {
+                return idx;
+            } else if (bkey == 0) {
+                return -(idx+1);
+            }
+        }
+    }
+
+    /**
+     * Clears the specified slot and shifts subsequent entries in its run back to fill the hole.
+     *
+     * @see ProbingIntMap#removeSlot
+     */
+    protected void removeSlot (int idx)
+    {
+        int[] keys = _keys, values = _values;
+        int mask = _mask;
+        for (int last = idx; ; ) {
+            int pos = (last + 1) & mask;
+            int bkey;
+            for (;; pos = (pos + 1) & mask) {
+                if ((bkey = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    values[last] = 0;
+                    return;
+                }
+                int home = ProbingIntMap.hash(bkey) & mask;
+                if (last <= pos ? (last >= home || home > pos) : (last >= home && home > pos)) {
+                    break;
+                }
+            }
+            keys[last] = bkey;
+            values[last] = values[pos];
+            last = pos;
+        }
+    }
+
+    /**
+     * Check to see if we want to shrink the table.
+     */
+    protected void checkShrink ()
+    {
+        if (_keys.length > ProbingIntMap.MIN_BUCKET_COUNT && _size < _shrinkThreshold) {
+            rehash(Math.max(ProbingIntMap.MIN_BUCKET_COUNT, ProbingIntMap.getBucketCount(_size)));
+        }
+    }
+
+    /**
+     * Recreates the bucket arrays with the specified new count.
+     */
+    protected void rehash (int ncount)
+    {
+        int[] okeys = _keys, ovalues = _values;
+        int omask = _mask;
+        createBuckets(ncount);
+
+        int[] keys = _keys, values = _values;
+        int mask = _mask;
+        values[mask+1] = ovalues[omask+1];
+        for (int ii = 0; ii <= omask; ii++) {
+            int key = okeys[ii];
+            if (key != 0) {
+                int idx = ProbingIntMap.hash(key) & mask;
+                while (keys[idx] != 0) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = key;
+                values[idx] = ovalues[ii];
+            }
+        }
+    }
+
+    /**
+     * (Re)creates the bucket arrays with the specified count, which must be a power of two. The
+     * value array has one extra slot at the end which holds the value mapped to zero.
+     */
+    protected void createBuckets (int count)
+    {
+        _keys = new int[count];
+        _values = new int[count+1];
+        _mask = count - 1;
+        _growThreshold = (int)(count * ProbingIntMap.MAX_LOAD_FACTOR);
+        _shrinkThreshold = (int)(count * ProbingIntMap.MIN_LOAD_FACTOR);
+    }
+
+    /**
+     * Save the state of this instance to a stream (i.e., serialize it).
+     */
+    private void writeObject (ObjectOutputStream s)
+        throws IOException
+    {
+        s.defaultWriteObject();
+        s.writeInt(_size);
+        for (IntIntEntry entry : entrySet()) {
+            s.writeInt(entry.getIntKey());
+            s.writeInt(entry.getIntValue());
+        }
+    }
+
+    /**
+     * Reconstitute the instance from a stream (i.e., deserialize it).
+     */
+    private void readObject (ObjectInputStream s)
+         throws IOException, ClassNotFoundException
+    {
+        s.defaultReadObject();
+        int size = s.readInt();
+        createBuckets(ProbingIntMap.getBucketCount(size));
+        for (int ii = 0; ii < size; ii++) {
+            put(s.readInt(), s.readInt());
+        }
+    }
+
+    /**
+     * Iterates over the occupied slots of the map.
+     *
+     * @see ProbingIntMap.SlotIterator
+     */
+    protected abstract class SlotIterator<E>
+        implements Iterator<E>
+    {
+        public boolean hasNext ()
+        {
+            checkConcurrentModification();
+            return _pos < _size;
+        }
+
+        public void remove ()
+        {
+            checkConcurrentModification();
+            if (_last < 0) {
+                throw new IllegalStateException();
+            }
+            if (_last > _mask) {
+                _values[_last] = 0;
+                _hasZeroKey = false;
+            } else {
+                removeSlot(_last);
+                // revisit the slot, an unvisited entry may have been shifted into it
+                _idx--;
+            }
+            _last = -1;
+            _pos--;
+            _size--;
+            _omodcount = ++_modcount;
+        }
+
+        protected int nextSlot ()
+        {
+            checkConcurrentModification();
+            if (_pos >= _size) {
+                throw new NoSuchElementException();
+            }
+            _pos++;
+            if (_idx < 0) {
+                _idx = 0;
+                while (_keys[_idx++] != 0);
+                if (_hasZeroKey) {
+                    return (_last = _mask+1);
+                }
+            }
+            for (int mask = _mask; ; _idx++) {
+                int slot = _idx & mask;
+                if (_keys[slot] != 0) {
+                    _idx++;
+                    return (_last = slot);
+                }
+            }
+        }
+
+        protected void checkConcurrentModification ()
+        {
+            if (_modcount != _omodcount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        protected int _pos, _idx = -1, _last = -1;
+        protected int _omodcount = _modcount;
+    }
+
+    protected class KeyValueInterator extends SlotIterator<Integer>
+        implements Interator
+    {
+        public KeyValueInterator (boolean keys) {
+            _wantKeys = keys;
+        }
+
+        public int nextInt () {
+            int slot = nextSlot();
+            if (!_wantKeys) {
+                return _values[slot];
+            }
+            return (slot > _mask) ? 0 : _keys[slot];
+        }
+
+        public Integer next () {
+            return Integer.valueOf(nextInt());
+        }
+
+        protected boolean _wantKeys;
+    }
+
+    /**
+     * An entry returned by our iterators. Its value is captured when it is created, but {@link
+     * #setIntValue} writes through to the map.
+     */
+    protected class SlotEntry
+        implements IntIntEntry
+    {
+        public SlotEntry (int slot) {
+            _key = (slot > _mask) ? 0 : _keys[slot];
+            _value = _values[slot];
+        }
+
+        public Integer getKey () {
+            return Integer.valueOf(_key);
+        }
+
+        public int getIntKey () {
+            return _key;
+        }
+
+        public Integer getValue () {
+            return Integer.valueOf(_value);
+        }
+
+        public int getIntValue () {
+            return _value;
+        }
+
+        public Integer setValue (Integer v) {
+            return Integer.valueOf(setIntValue(v.intValue()));
+        }
+
+        public int setIntValue (int v) {
+            int oldVal = _value;
+            put(_key, _value = v);
+            return oldVal;
+        }
+
+        @Override public boolean equals (Object o) {
+            if (o instanceof IntIntEntry) {
+                IntIntEntry that = (IntIntEntry) o;
+                return (_key == that.getIntKey()) && (_value == that.getIntValue());
+            }
+            return false;
+        }
+
+        @Override public int hashCode () {
+            return _key;
+        }
+
+        protected int _key, _value;
+    }
+
+    /** The keys of our mappings; zero indicates an empty slot. */
+    protected transient int[] _keys;
+
+    /** The values of our mappings, parallel to {@link #_keys}, plus the value mapped to zero. */
+    protected transient int[] _values;
+
+    /** The mask used to turn a hash into a slot index (one less than the bucket count). */
+    protected transient int _mask;
+
+    /** Whether or not the map contains a mapping for the key zero. */
+    protected transient boolean _hasZeroKey;
+
+    /** The number of mappings in the map. */
+    protected transient int _size;
+
+    /** The sizes above which we grow and below which we shrink the bucket arrays. */
+    protected transient int _growThreshold, _shrinkThreshold;
+
+    /** Incremented on each structural modification, used to track concurrent changes. */
+    protected transient int _modcount;
+
+    /** The default initial capacity of this map. */
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    /** Change this if the fields or inheritance hierarchy ever changes (extremely unlikely). */
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,633 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An {@link IntMap} that uses open addressing with linear probing over parallel key and value
+ * arrays rather than chaining through a record per mapping (as does {@link HashIntMap}). No
+ * objects are created when getting, putting or removing mappings (save for the occasional
+ * resize), and lookups benefit from the better spatial locality of the arrays. Unlike {@link
+ * HashIntSet}, no sentinel value is reserved: the key zero is stored out of band.
+ */
+public class ProbingIntMap<V> extends AbstractMap<Integer,V>
+    implements IntMap<V>, Cloneable, Serializable
+{
+    /**
+     * Creates an empty map with the default capacity.
+     */
+    public ProbingIntMap ()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map that can hold the specified number of mappings without resizing.
+     */
+    public ProbingIntMap (int capacity)
+    {
+        createBuckets(getBucketCount(capacity));
+    }
+
+    @Override
+    public int size ()
+    {
+        return _size;
+    }
+
+    @Override
+    public boolean isEmpty ()
+    {
+        return _size == 0;
+    }
+
+    @Override
+    public boolean containsKey (Object key)
+    {
+        return (key instanceof Integer) && containsKey(((Integer)key).intValue());
+    }
+
+    // from interface IntMap
+    public boolean containsKey (int key)
+    {
+        return (key == 0) ? _hasZeroKey : (indexOf(key) >= 0);
+    }
+
+    @Override
+    public boolean containsValue (Object o)
+    {
+        if (_hasZeroKey && ObjectUtil.equals(_values[_mask+1], o)) {
+            return true;
+        }
+        for (int ii = 0; ii <= _mask; ii++) {
+            if (_keys[ii] != 0 && ObjectUtil.equals(_values[ii], o)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get (Object key)
+    {
+        return (key instanceof Integer) ? get(((Integer)key).intValue()) : null;
+    }
+
+    // from interface IntMap
+    public V get (int key)
+    {
+        if (key == 0) {
+            return _values[_mask+1];
+        }
+        int idx = indexOf(key);
+        return (idx < 0) ? null : _values[idx];
+    }
+
+    @Override
+    public V put (Integer key, V value)
+    {
+        return put(key.intValue(), value);
+    }
+
+    // from interface IntMap
+    public V put (int key, V value)
+    {
+        if (key == 0) {
+            V ovalue = _values[_mask+1];
+            _values[_mask+1] = value;
+            if (!_hasZeroKey) {
+                _hasZeroKey = true;
+                _size++;
+                _modcount++;
+            }
+            return ovalue;
+        }
+
+        int idx = indexOf(key);
+        if (idx >= 0) {
+            V ovalue = _values[idx];
+            _values[idx] = value;
+            return ovalue;
+        }
+
+        // convert the return value into the insertion point
+        idx = -(idx+1);
+        _keys[idx] = key;
+        _values[idx] = value;
+        _modcount++;
+        if (++_size > _growThreshold) {
+            rehash(_keys.length << 1);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove (Object key)
+    {
+        return (key instanceof Integer) ? remove(((Integer)key).intValue()) : null;
+    }
+
+    // from interface IntMap
+    public V remove (int key)
+    {
+        V ovalue;
+        if (key == 0) {
+            if (!_hasZeroKey) {
+                return null;
+            }
+            ovalue = _values[_mask+1];
+            _values[_mask+1] = null;
+            _hasZeroKey = false;
+
+        } else {
+            int idx = indexOf(key);
+            if (idx < 0) {
+                return null;
+            }
+            ovalue = _values[idx];
+            removeSlot(idx);
+        }
+        _size--;
+        _modcount++;
+        checkShrink();
+        return ovalue;
+    }
+
+    /**
+     * Copies all of the mappings from the supplied map into this map.
+     */
+    public void putAll (IntMap<V> t)
+    {
+        ensureCapacity(_size + t.size());
+        // if we can, avoid creating Integer objects while copying
+        for (IntEntry<V> entry : t.intEntrySet()) {
+            put(entry.getIntKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void clear ()
+    {
+        if (_size > 0) {
+            createBuckets(MIN_BUCKET_COUNT);
+            _hasZeroKey = false;
+            _size = 0;
+            _modcount++;
+        }
+    }
+
+    /**
+     * Ensure that the map can comfortably hold the specified number of mappings. Calling this
+     * method is not necessary, but can improve performance if done prior to adding many mappings.
+     */
+    public void ensureCapacity (int minCapacity)
+    {
+        int ncount = getBucketCount(minCapacity);
+        if (ncount > _keys.length) {
+            rehash(ncount);
+        }
+    }
+
+    @Override
+    public Set<Entry<Integer,V>> entrySet ()
+    {
+        return new AbstractSet<Entry<Integer,V>>() {
+            @Override public int size () {
+                return _size;
+            }
+            @Override public Iterator<Entry<Integer,V>> iterator () {
+                return new SlotIterator<Entry<Integer,V>>() {
+                    public Entry<Integer,V> next () {
+                        return new SlotEntry(nextSlot());
+                    }
+                };
+            }
+        };
+    }
+
+    // from interface IntMap
+    public Set<IntEntry<V>> intEntrySet ()
+    {
+        return new AbstractSet<IntEntry<V>>() {
+            @Override public int size () {
+                return _size;
+            }
+            @Override public Iterator<IntEntry<V>> iterator () {
+                return new SlotIterator<IntEntry<V>>() {
+                    public IntEntry<V> next () {
+                        return new SlotEntry(nextSlot());
+                    }
+                };
+            }
+        };
+    }
+
+    // from interface IntMap
+    public IntSet intKeySet ()
+    {
+        if (_keySet == null) {
+            _keySet = new AbstractIntSet() {
+                public Interator interator () {
+                    return keys();
+                }
+                @Override public int size () {
+                    return ProbingIntMap.this.size();
+                }
+                @Override public boolean contains (int t) {
+                    return ProbingIntMap.this.containsKey(t);
+                }
+                @Override public boolean remove (int value) {
+                    // we have to check for presence separately because the value may be null
+                    if (!ProbingIntMap.this.containsKey(value)) {
+                        return false;
+                    }
+                    ProbingIntMap.this.remove(value);
+                    return true;
+                }
+            };
+        }
+        return _keySet;
+    }
+
+    @Override
+    public Set<Integer> keySet ()
+    {
+        return intKeySet();
+    }
+
+    /**
+     * Returns an interation over the keys of this map.
+     */
+    public Interator keys ()
+    {
+        return new KeyInterator();
+    }
+
+    /**
+     * Returns an iteration over the elements (values) of this map.
+     */
+    public Iterator<V> elements ()
+    {
+        return values().iterator();
+    }
+
+    @Override
+    public ProbingIntMap<V> clone ()
+    {
+        try {
+            @SuppressWarnings("unchecked")
+            ProbingIntMap<V> result = (ProbingIntMap<V>) super.clone();
+            result._keySet = null;
+            result._keys = _keys.clone();
+            result._values = _values.clone();
+            return result;
+
+        } catch (CloneNotSupportedException cnse) {
+            throw new AssertionError(cnse); // won't happen; we're Cloneable
+        }
+    }
+
+    /**
+     * Returns the slot index for the specified (non-zero) key, or <code>-(insertion point +
+     * 1)</code> if the key is not in the map.
+     */
+    protected final int indexOf (int key)
+    {
+        int[] keys = _keys;
+        int mask = _mask;
+        for (int idx = hash(key) & mask; ; idx = (idx + 1) & mask) {
+            int bkey = keys[idx];
+            if (bkey == key) {
+                return idx;
+            } else if (bkey == 0) {
+                return -(idx+1);
+            }
+        }
+    }
+
+    /**
+     * Clears the specified slot and shifts subsequent entries in its run back to fill the hole,
+     * so that every entry remains reachable by a probe starting at its hash-derived slot.
+     */
+    protected void removeSlot (int idx)
+    {
+        int[] keys = _keys;
+        int mask = _mask;
+        for (int last = idx; ; ) {
+            int pos = (last + 1) & mask;
+            int bkey;
+            for (;; pos = (pos + 1) & mask) {
+                if ((bkey = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    _values[last] = null;
+                    return;
+                }
+                // an entry can fill the hole only if its home slot is not between the hole and
+                // its current position (taking wrapping into account)
+                int home = hash(bkey) & mask;
+                if (last <= pos ? (last >= home || home > pos) : (last >= home && home > pos)) {
+                    break;
+                }
+            }
+            keys[last] = bkey;
+            _values[last] = _values[pos];
+            last = pos;
+        }
+    }
+
+    /**
+     * Check to see if we want to shrink the table.
+     */
+    protected void checkShrink ()
+    {
+        if (_keys.length > MIN_BUCKET_COUNT && _size < _shrinkThreshold) {
+            rehash(Math.max(MIN_BUCKET_COUNT, getBucketCount(_size)));
+        }
+    }
+
+    /**
+     * Recreates the bucket arrays with the specified new count.
+     */
+    protected void rehash (int ncount)
+    {
+        int[] okeys = _keys;
+        V[] ovalues = _values;
+        int omask = _mask;
+        createBuckets(ncount);
+
+        _values[_mask+1] = ovalues[omask+1];
+        int[] keys = _keys;
+        int mask = _mask;
+        for (int ii = 0; ii <= omask; ii++) {
+            int key = okeys[ii];
+            if (key != 0) {
+                int idx = hash(key) & mask;
+                while (keys[idx] != 0) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = key;
+                _values[idx] = ovalues[ii];
+            }
+        }
+    }
+
+    /**
+     * (Re)creates the bucket arrays with the specified count, which must be a power of two. The
+     * value array has one extra slot at the end which holds the value mapped to zero.
+     */
+    protected void createBuckets (int count)
+    {
+        _keys = new int[count];
+        @SuppressWarnings("unchecked") V[] values = (V[])new Object[count+1];
+        _values = values;
+        _mask = count - 1;
+        _growThreshold = (int)(count * MAX_LOAD_FACTOR);
+        _shrinkThreshold = (int)(count * MIN_LOAD_FACTOR);
+    }
+
+    /**
+     * Save the state of this instance to a stream (i.e., serialize it).
+     */
+    private void writeObject (ObjectOutputStream s)
+        throws IOException
+    {
+        s.defaultWriteObject();
+        s.writeInt(_size);
+        for (IntEntry<V> entry : intEntrySet()) {
+            s.writeInt(entry.getIntKey());
+            s.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * Reconstitute the instance from a stream (i.e., deserialize it).
+     */
+    private void readObject (ObjectInputStream s)
+         throws IOException, ClassNotFoundException
+    {
+        s.defaultReadObject();
+        int size = s.readInt();
+        createBuckets(getBucketCount(size));
+        for (int ii = 0; ii < size; ii++) {
+            int key = s.readInt();
+            @SuppressWarnings("unchecked") V value = (V)s.readObject();
+            put(key, value);
+        }
+    }
+
+    /**
+     * Returns the hash of the specified key. Multiplying by the golden ratio spreads sequential
+     * keys across the table, which keeps probe runs short.
+     */
+    protected static int hash (int key)
+    {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Computes the number of buckets needed to provide the given capacity with a load factor
+     * halfway between the minimum and the maximum.
+     */
+    protected static int getBucketCount (int capacity)
+    {
+        return HashIntSet.getBucketCount(capacity);
+    }
+
+    /**
+     * Iterates over the occupied slots of the map. Iteration starts just after an empty slot so
+     * that entries shifted back by a removal are never returned twice; the zero key, if present,
+     * is returned first.
+     */
+    protected abstract class SlotIterator<E>
+        implements Iterator<E>
+    {
+        public boolean hasNext ()
+        {
+            checkConcurrentModification();
+            return _pos < _size;
+        }
+
+        public void remove ()
+        {
+            checkConcurrentModification();
+            if (_last < 0) {
+                throw new IllegalStateException();
+            }
+            if (_last > _mask) {
+                _values[_last] = null;
+                _hasZeroKey = false;
+            } else {
+                removeSlot(_last);
+                // revisit the slot, an unvisited entry may have been shifted into it
+                _idx--;
+            }
+            _last = -1;
+            _pos--;
+            _size--;
+            _omodcount = ++_modcount;
+        }
+
+        protected int nextSlot ()
+        {
+            checkConcurrentModification();
+            if (_pos >= _size) {
+                throw new NoSuchElementException();
+            }
+            _pos++;
+            if (_idx < 0) {
+                _idx = 0;
+                while (_keys[_idx++] != 0);
+                if (_hasZeroKey) {
+                    return (_last = _mask+1);
+                }
+            }
+            for (int mask = _mask; ; _idx++) {
+                int slot = _idx & mask;
+                if (_keys[slot] != 0) {
+                    _idx++;
+                    return (_last = slot);
+                }
+            }
+        }
+
+        protected void checkConcurrentModification ()
+        {
+            if (_modcount != _omodcount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        protected int _pos, _idx = -1, _last = -1;
+        protected int _omodcount = _modcount;
+    }
+
+    protected class KeyInterator extends SlotIterator<Integer>
+        implements Interator
+    {
+        public int nextInt () {
+            int slot = nextSlot();
+            return (slot > _mask) ? 0 : _keys[slot];
+        }
+
+        public Integer next () {
+            return Integer.valueOf(nextInt());
+        }
+    }
+
+    /**
+     * An entry returned by our iterators. Its value is captured when it is created, but {@link
+     * #setValue} writes through to the map.
+     */
+    protected class SlotEntry
+        implements IntEntry<V>
+    {
+        public SlotEntry (int slot)
+        {
+            _key = (slot > _mask) ? 0 : _keys[slot];
+            _value = _values[slot];
+        }
+
+        public Integer getKey ()
+        {
+            return Integer.valueOf(_key);
+        }
+
+        public int getIntKey ()
+        {
+            return _key;
+        }
+
+        public V getValue ()
+        {
+            return _value;
+        }
+
+        public V setValue (V value)
+        {
+            _value = value;
+            return put(_key, value);
+        }
+
+        @Override public boolean equals (Object o)
+        {
+            if (o instanceof IntEntry<?>) {
+                IntEntry<?> that = (IntEntry<?>)o;
+                return (_key == that.getIntKey()) && ObjectUtil.equals(_value, that.getValue());
+
+            } else if (o instanceof Entry<?,?>) {
+                Entry<?,?> that = (Entry<?,?>)o;
+                return getKey().equals(that.getKey()) && ObjectUtil.equals(_value, that.getValue());
+
+            } else {
+                return false;
+            }
+        }
+
+        @Override public int hashCode ()
+        {
+            return _key ^ ((_value == null) ? 0 : _value.hashCode());
+        }
+
+        @Override public String toString ()
+        {
+            return _key + "=" + StringUtil.toString(_value);
+        }
+
+        protected int _key;
+        protected V _value;
+    }
+
+    /** The keys of our mappings; zero indicates an empty slot. */
+    protected transient int[] _keys;
+
+    /** The values of our mappings, parallel to {@link #_keys}, plus the value mapped to zero. */
+    protected transient V[] _values;
+
+    /** The mask used to turn a hash into a slot index (one less than the bucket count). */
+    protected transient int _mask;
+
+    /** Whether or not the map contains a mapping for the key zero. */
+    protected transient boolean _hasZeroKey;
+
+    /** The number of mappings in the map. */
+    protected transient int _size;
+
+    /** The sizes above which we grow and below which we shrink the bucket arrays. */
+    protected transient int _growThreshold, _shrinkThreshold;
+
+    /** Incremented on each structural modification, used to track concurrent changes. */
+    protected transient int _modcount;
+
+    /** A stateless view of our keys, so we re-use it. */
+    protected transient volatile IntSet _keySet;
+
+    /** The default initial capacity of this map. */
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    /** The minimum number of buckets to provide. */
+    protected static final int MIN_BUCKET_COUNT = HashIntSet.MIN_BUCKET_COUNT;
+
+    /** The maximum load factor (ratio of size to number of buckets). */
+    protected static final float MAX_LOAD_FACTOR = HashIntSet.MAX_LOAD_FACTOR;
+
+    /** The load factor below which we shrink the bucket arrays. */
+    protected static final float MIN_LOAD_FACTOR = 0.125f;
+
+    /** Change this if the fields or inheritance hierarchy ever changes (extremely unlikely). */
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,329 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.samskivert.util.UtilLog.log;
+
+/**
+ * A {@link Future} that is also a {@link ResultListener}, bridging the two styles: pass it to any
+ * method that reports its result to a listener and then block on it, or (better) attach further
+ * listeners and derived futures to it, so that dependent requests can be composed without nesting
+ * listeners or blocking a thread per request. For example:
+ *
+ * <pre>{@code
+ * ResultFuture<User> user = new ResultFuture<User>();
+ * _userRepo.loadUser(userId, user);
+ * ResultFuture<List<Item>> items = user.flatMap(new ResultFuture.Chainer<User,List<Item>>() {
+ *     public ResultFuture<List<Item>> chain (User user) {
+ *         return _invoker.submit(new LoadItems(user));
+ *     }
+ * });
+ * items.addListener(listener);
+ * }</pre>
+ *
+ * <p> Listeners are notified on the thread that completes the future, or immediately (on the
+ * calling thread) if they are added to a future that is already complete. The first completion
+ * wins; subsequent calls to {@link #requestCompleted} or {@link #requestFailed} are ignored.
+ *
+ * @see Invoker#submit
+ */
+public class ResultFuture<T>
+    implements Future<T>, ResultListener<T>
+{
+    /** Transforms the result of one future into that of another. */
+    public static interface Mapper<T,R>
+    {
+        /** Returns the transformed result. An exception thrown here fails the derived future. */
+        public R map (T result) throws Exception;
+    }
+
+    /** Issues a request that depends on the result of a future. */
+    public static interface Chainer<T,R>
+    {
+        /** Issues the dependent request, returning its (possibly incomplete) future. An exception
+         * thrown here fails the derived future. */
+        public ResultFuture<R> chain (T result) throws Exception;
+    }
+
+    /**
+     * Returns a future that has already completed with the supplied result.
+     */
+    public static <T> ResultFuture<T> completed (T result)
+    {
+        ResultFuture<T> future = new ResultFuture<T>();
+        future.requestCompleted(result);
+        return future;
+    }
+
+    /**
+     * Returns a future that has already failed with the supplied cause.
+     */
+    public static <T> ResultFuture<T> failed (Exception cause)
+    {
+        ResultFuture<T> future = new ResultFuture<T>();
+        future.requestFailed(cause);
+        return future;
+    }
+
+    /**
+     * Returns a future that completes with the results of all of the supplied futures, in order,
+     * once they have all completed, or fails with the cause of the first of them to fail.
+     */
+    public static <T> ResultFuture<List<T>> all (
+        List<? extends ResultFuture<? extends T>> futures)
+    {
+        final ResultFuture<List<T>> all = new ResultFuture<List<T>>();
+        int count = futures.size();
+        if (count == 0) {
+            all.requestCompleted(Collections.<T>emptyList());
+            return all;
+        }
+        final Object[] results = new Object[count];
+        final AtomicInteger remaining = new AtomicInteger(count);
+        for (int ii = 0; ii < count; ii++) {
+            final int idx = ii;
+            futures.get(ii).addListener(new ResultListener<T>() {
+                public void requestCompleted (T result) {
+                    results[idx] = result;
+                    if (remaining.decrementAndGet() == 0) {
+                        @SuppressWarnings("unchecked")
+                        List<T> list = (List<T>)Arrays.asList(results);
+                        all.requestCompleted(list);
+                    }
+                }
+                public void requestFailed (Exception cause) {
+                    all.requestFailed(cause);
+                }
+            });
+        }
+        return all;
+    }
+
+    /**
+     * Returns an {@link IntResultListener} that reports to the supplied listener (which may be a
+     * future), for use with requests that report their results as ints.
+     */
+    public static IntResultListener toIntResultListener (final ResultListener<Integer> target)
+    {
+        return new IntResultListener() {
+            public void requestCompleted (int result) {
+                target.requestCompleted(result);
+            }
+            public void requestFailed (Exception cause) {
+                target.requestFailed(cause);
+            }
+        };
+    }
+
+    /**
+     * Notifies the supplied listener when this future completes (or immediately, if it has).
+     *
+     * @return this future, for chaining.
+     */
+    public ResultFuture<T> addListener (ResultListener<? super T> listener)
+    {
+        synchronized (this) {
+            if (_state == PENDING) {
+                if (_listeners == null) {
+                    _listeners = new ArrayList<ResultListener<? super T>>(1);
+                }
+                _listeners.add(listener);
+                return this;
+            }
+        }
+        report(listener);
+        return this;
+    }
+
+    /**
+     * Returns a future that completes with the transformed result of this future, or fails if
+     * this future fails (or the transformation throws an exception).
+     */
+    public <R> ResultFuture<R> map (final Mapper<? super T,? extends R> mapper)
+    {
+        final ResultFuture<R> mapped = new ResultFuture<R>();
+        addListener(new ChainedResultListener<T,R>(mapped) {
+            public void requestCompleted (T result) {
+                R value;
+                try {
+                    value = mapper.map(result);
+                } catch (Exception e) {
+                    mapped.requestFailed(e);
+                    return;
+                }
+                mapped.requestCompleted(value);
+            }
+        });
+        return mapped;
+    }
+
+    /**
+     * Returns a future that completes with the result of the request issued by the supplied
+     * chainer once this future completes, or fails if either request fails.
+     */
+    public <R> ResultFuture<R> flatMap (final Chainer<? super T,R> chainer)
+    {
+        final ResultFuture<R> chained = new ResultFuture<R>();
+        addListener(new ChainedResultListener<T,R>(chained) {
+            public void requestCompleted (T result) {
+                ResultFuture<R> next;
+                try {
+                    next = chainer.chain(result);
+                } catch (Exception e) {
+                    chained.requestFailed(e);
+                    return;
+                }
+                next.addListener(chained);
+            }
+        });
+        return chained;
+    }
+
+    // from interface ResultListener
+    public void requestCompleted (T result)
+    {
+        complete(COMPLETED, result, null);
+    }
+
+    // from interface ResultListener
+    public void requestFailed (Exception cause)
+    {
+        complete(FAILED, null, cause);
+    }
+
+    // from interface Future
+    public boolean cancel (boolean mayInterruptIfRunning)
+    {
+        return complete(CANCELLED, null, new CancellationException());
+    }
+
+    // from interface Future
+    public synchronized boolean isCancelled ()
+    {
+        return _state == CANCELLED;
+    }
+
+    // from interface Future
+    public synchronized boolean isDone ()
+    {
+        return _state != PENDING;
+    }
+
+    // from interface Future
+    public synchronized T get ()
+        throws InterruptedException, ExecutionException
+    {
+        while (_state == PENDING) {
+            wait();
+        }
+        return result();
+    }
+
+    // from interface Future
+    public synchronized T get (long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (_state == PENDING) {
+            long remain = deadline - System.nanoTime();
+            if (remain <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remain);
+        }
+        return result();
+    }
+
+    @Override
+    public synchronized String toString ()
+    {
+        switch (_state) {
+        case COMPLETED: return "[result=" + _result + "]";
+        case FAILED: return "[failed=" + _cause + "]";
+        case CANCELLED: return "[cancelled]";
+        default: return "[pending]";
+        }
+    }
+
+    /**
+     * Completes this future, if it is not already complete, and notifies its listeners.
+     */
+    protected boolean complete (int state, T result, Exception cause)
+    {
+        List<ResultListener<? super T>> listeners;
+        synchronized (this) {
+            if (_state != PENDING) {
+                return false;
+            }
+            _state = state;
+            _result = result;
+            _cause = cause;
+            listeners = _listeners;
+            _listeners = null;
+            notifyAll();
+        }
+        if (listeners != null) {
+            for (int ii = 0, ll = listeners.size(); ii < ll; ii++) {
+                report(listeners.get(ii));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reports our outcome to the supplied listener. Called once we're complete.
+     */
+    protected void report (ResultListener<? super T> listener)
+    {
+        try {
+            if (_state == COMPLETED) {
+                listener.requestCompleted(_result);
+            } else {
+                listener.requestFailed(_cause);
+            }
+        } catch (Throwable t) {
+            log.warning("Result listener choked", "future", this, "listener", listener, t);
+        }
+    }
+
+    /**
+     * Returns our result or throws our failure. Called once we're complete.
+     */
+    protected T result ()
+        throws ExecutionException
+    {
+        switch (_state) {
+        case COMPLETED: return _result;
+        case CANCELLED: throw (CancellationException)_cause;
+        default: throw new ExecutionException(_cause);
+        }
+    }
+
+    /** Whether we're pending, or how we completed. */
+    protected volatile int _state = PENDING;
+
+    /** Our result, if we completed successfully. */
+    protected T _result;
+
+    /** The cause of our failure, if we failed or were cancelled. */
+    protected Exception _cause;
+
+    /** Listeners awaiting our completion. */
+    protected List<ResultListener<? super T>> _listeners;
+
+    protected static final int PENDING = 0, COMPLETED = 1, FAILED = 2, CANCELLED = 3;
+}
@@ -0,0 +1,338 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records the queue depth, enqueue-to-start latency, run time, rejections and throughput of a
+ * {@link RunQueue} or {@link java.util.concurrent.Executor}. Run queues and executors that record
+ * metrics implement {@link Source}; recording is off by default (as it costs a couple of calls to
+ * {@link System#nanoTime} per runnable) unless the <code>com.samskivert.runQueueMetrics</code>
+ * system property is set to true. Metrics are recorded without locking, can be polled via {@link
+ * #getSnapshot}, and can be exported over JMX via {@link #registerMBean}.
+ */
+public class RunQueueMetrics
+    implements RunQueueMetricsMXBean
+{
+    /**
+     * Implemented by run queues and executors that can record metrics.
+     */
+    public static interface Source
+    {
+        /** Returns the metrics being recorded, or null if metrics are not enabled. */
+        public RunQueueMetrics getMetrics ();
+
+        /** Enables (with fresh metrics) or disables the recording of metrics. */
+        public void setMetricsEnabled (boolean enabled);
+    }
+
+    /**
+     * A snapshot of a run queue's metrics. Times are in nanoseconds.
+     */
+    public static class Snapshot
+    {
+        /** The name of the run queue. */
+        public String name;
+
+        /** The number of runnables waiting to be started. */
+        public long queueDepth;
+
+        /** The number of runnables enqueued, started, completed (including those that failed),
+         * failed and rejected. */
+        public long enqueued, started, completed, failed, rejected;
+
+        /** The number of runnables completed per second since metrics were enabled. */
+        public double throughput;
+
+        /** The time between being enqueued and being started, by percentile. */
+        public long waitP50, waitP90, waitP99, waitMax;
+
+        /** The time spent running, by percentile. */
+        public long runP50, runP90, runP99, runMax;
+
+        @Override public String toString () {
+            return StringUtil.fieldsToString(this);
+        }
+    }
+
+    /**
+     * Returns true if metrics should be recorded by newly created run queues.
+     */
+    public static boolean isEnabledByDefault ()
+    {
+        return Boolean.getBoolean("com.samskivert.runQueueMetrics");
+    }
+
+    /**
+     * Creates metrics for the named run queue or executor.
+     */
+    public RunQueueMetrics (String name)
+    {
+        _name = name;
+    }
+
+    /**
+     * Notes that a runnable was enqueued.
+     *
+     * @return the enqueue time, to be supplied to {@link #noteStarted}.
+     */
+    public long noteEnqueued ()
+    {
+        _enqueued.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Notes that a runnable was rejected (because the queue was shut down, for example).
+     */
+    public void noteRejected ()
+    {
+        _rejected.incrementAndGet();
+    }
+
+    /**
+     * Notes that a runnable was started.
+     *
+     * @param enqueued the time returned by {@link #noteEnqueued}, or 0 if the runnable was
+     * enqueued when metrics were not being recorded, in which case its start is not counted.
+     * @return the start time, to be supplied to {@link #noteCompleted}.
+     */
+    public long noteStarted (long enqueued)
+    {
+        long now = System.nanoTime();
+        if (enqueued != 0L) {
+            _started.incrementAndGet();
+            _wait.record(now - enqueued);
+        }
+        return now;
+    }
+
+    /**
+     * Notes that a runnable completed.
+     *
+     * @param started the time returned by {@link #noteStarted}.
+     * @param failed whether the runnable failed (threw an exception, timed out, etc.).
+     */
+    public void noteCompleted (long started, boolean failed)
+    {
+        _run.record(System.nanoTime() - started);
+        if (failed) {
+            _failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns a runnable that records the enqueueing (now), start and completion of the supplied
+     * runnable, for run queues that do not otherwise track their runnables. Exceptions thrown by
+     * the runnable are noted as failures and passed on.
+     */
+    public Runnable wrap (Runnable runnable)
+    {
+        return new TimedRunnable(this, runnable);
+    }
+
+    /**
+     * Returns a snapshot of these metrics.
+     */
+    public Snapshot getSnapshot ()
+    {
+        Snapshot snap = new Snapshot();
+        snap.name = _name;
+        snap.enqueued = getEnqueued();
+        snap.started = getStarted();
+        snap.queueDepth = Math.max(snap.enqueued - snap.started, 0L);
+        snap.completed = getCompleted();
+        snap.failed = getFailed();
+        snap.rejected = getRejected();
+        snap.throughput = getThroughput();
+        snap.waitP50 = getWaitP50Nanos();
+        snap.waitP90 = getWaitP90Nanos();
+        snap.waitP99 = getWaitP99Nanos();
+        snap.waitMax = getWaitMaxNanos();
+        snap.runP50 = getRunP50Nanos();
+        snap.runP90 = getRunP90Nanos();
+        snap.runP99 = getRunP99Nanos();
+        snap.runMax = getRunMaxNanos();
+        return snap;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, under the name
+     * <code>com.samskivert:type=RunQueue,name=</code><em>name</em>.
+     *
+     * @return the name under which they were registered.
+     */
+    public ObjectName registerMBean ()
+        throws JMException
+    {
+        ObjectName name = getObjectName();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server.
+     */
+    public void unregisterMBean ()
+        throws JMException
+    {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName());
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public String getName ()
+    {
+        return _name;
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getQueueDepth ()
+    {
+        return Math.max(_enqueued.get() - _started.get(), 0L);
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getEnqueued ()
+    {
+        return _enqueued.get();
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getStarted ()
+    {
+        return _started.get();
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getCompleted ()
+    {
+        return _run.getCount();
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getFailed ()
+    {
+        return _failed.get();
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getRejected ()
+    {
+        return _rejected.get();
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public double getThroughput ()
+    {
+        long elapsed = System.nanoTime() - _created;
+        return (elapsed <= 0) ? 0 : getCompleted() * 1e9 / elapsed;
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getWaitP50Nanos ()
+    {
+        return _wait.getPercentile(50);
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getWaitP90Nanos ()
+    {
+        return _wait.getPercentile(90);
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getWaitP99Nanos ()
+    {
+        return _wait.getPercentile(99);
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getWaitMaxNanos ()
+    {
+        return _wait.getMax();
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getRunP50Nanos ()
+    {
+        return _run.getPercentile(50);
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getRunP90Nanos ()
+    {
+        return _run.getPercentile(90);
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getRunP99Nanos ()
+    {
+        return _run.getPercentile(99);
+    }
+
+    // from interface RunQueueMetricsMXBean
+    public long getRunMaxNanos ()
+    {
+        return _run.getMax();
+    }
+
+    @Override
+    public String toString ()
+    {
+        return getSnapshot().toString();
+    }
+
+    protected ObjectName getObjectName ()
+        throws JMException
+    {
+        return new ObjectName("com.samskivert:type=RunQueue,name=" + ObjectName.quote(_name));
+    }
+
+    /** Records the progress of a runnable through a run queue. */
+    protected static class TimedRunnable implements Runnable
+    {
+        public TimedRunnable (RunQueueMetrics metrics, Runnable runnable) {
+            _metrics = metrics;
+            _runnable = runnable;
+            _enqueued = metrics.noteEnqueued();
+        }
+
+        public void run () {
+            long started = _metrics.noteStarted(_enqueued);
+            boolean failed = true;
+            try {
+                _runnable.run();
+                failed = false;
+            } finally {
+                _metrics.noteCompleted(started, failed);
+            }
+        }
+
+        @Override public String toString () {
+            return String.valueOf(_runnable);
+        }
+
+        protected final RunQueueMetrics _metrics;
+        protected final Runnable _runnable;
+        protected final long _enqueued;
+    }
+
+    protected final String _name;
+    protected final long _created = System.nanoTime();
+
+    protected final AtomicLong _enqueued = new AtomicLong(), _started = new AtomicLong();
+    protected final AtomicLong _failed = new AtomicLong(), _rejected = new AtomicLong();
+
+    /** The enqueue-to-start and run times of our runnables, in nanoseconds. */
+    protected final ConcurrentHistogram _wait = new ConcurrentHistogram();
+    protected final ConcurrentHistogram _run = new ConcurrentHistogram();
+}
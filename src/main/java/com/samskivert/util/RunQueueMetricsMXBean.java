@@ -0,0 +1,43 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+/**
+ * The management interface via which {@link RunQueueMetrics} are exported over JMX. Times are in
+ * nanoseconds.
+ */
+public interface RunQueueMetricsMXBean
+{
+    /** Returns the name of the run queue or executor. */
+    String getName ();
+
+    /** Returns the number of runnables waiting to be started. */
+    long getQueueDepth ();
+
+    /** Returns the number of runnables enqueued, started, completed and failed. */
+    long getEnqueued ();
+    long getStarted ();
+    long getCompleted ();
+    long getFailed ();
+
+    /** Returns the number of runnables that were rejected rather than enqueued. */
+    long getRejected ();
+
+    /** Returns the number of runnables completed per second since metrics were enabled. */
+    double getThroughput ();
+
+    /** Returns the time between being enqueued and being started, by percentile. */
+    long getWaitP50Nanos ();
+    long getWaitP90Nanos ();
+    long getWaitP99Nanos ();
+    long getWaitMaxNanos ();
+
+    /** Returns the time spent running, by percentile. */
+    long getRunP50Nanos ();
+    long getRunP90Nanos ();
+    long getRunP99Nanos ();
+    long getRunMaxNanos ();
+}
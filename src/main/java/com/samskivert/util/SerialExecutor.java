@@ -5,21 +5,27 @@
 
 package com.samskivert.util;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 
 import java.util.concurrent.Executor;
 
 import static com.samskivert.util.UtilLog.log;
 
 /**
- * Executes tasks serially, but each one on a separate thread. If a task times
- * out, the executor will attempt to interrupt the thread and abort the task,
- * but will abandon the thread in any case after the abort attempt so that
- * subsequent tasks can be processed. The threads created are daemon threads so
- * that they will not block the eventual termination of the virtual machine.
+ * Executes tasks serially, on a small pool of reusable worker threads. If a
+ * task times out, the executor will attempt to interrupt its thread and abort
+ * the task, but will abandon the thread in any case after the abort attempt so
+ * that subsequent tasks can be processed (on another worker). An abandoned
+ * worker rejoins the pool if its task eventually completes, and idle workers
+ * exit after a minute. The threads created are daemon threads so that they
+ * will not block the eventual termination of the virtual machine. Timeouts
+ * for all executors are tracked by a single shared {@link TimingWheel}.
  */
 public class SerialExecutor
-    implements Executor
+    implements Executor, RunQueueMetrics.Source
 {
     /**
      * A task to run in serial on the executor.
@@ -63,6 +69,25 @@ public class SerialExecutor
         public void timedOut ();
     }
 
+    /**
+     * A task that is only ever merged with a queued task that has an equal
+     * merge key. Adding such a task to the executor looks up the most recently
+     * queued task with its key and offers it to that task's {@link
+     * ExecutorTask#merge} method, rather than offering it to every task on the
+     * queue, so adding it takes constant time regardless of the queue length.
+     * Likewise, a queued keyed task is never offered tasks with other keys
+     * (or no key at all).
+     */
+    public static interface KeyedExecutorTask extends ExecutorTask
+    {
+        /**
+         * Returns the key that identifies the tasks with which this task may
+         * be merged, or null if it should not be merged with any task. The
+         * key must not change while the task is queued.
+         */
+        public Object getMergeKey ();
+    }
+
     /**
      * Construct the SerialExecutor, using a 30-second default timeout for posted Runnables.
      */
@@ -78,6 +103,7 @@ public class SerialExecutor
     {
         _receiver = receiver;
         _runnableTimeout = runnableTimeout;
+        setMetricsEnabled(RunQueueMetrics.isEnabledByDefault());
     }
 
     // from Executor
@@ -92,21 +118,45 @@ public class SerialExecutor
         });
     }
 
+    /**
+     * Configures this executor to run each task on its own virtual thread, rather than on a
+     * pooled platform thread, if the JVM supports virtual threads. Tasks are still executed one
+     * at a time, in order. Defaults to {@link VirtualThreads#isEnabled}.
+     */
+    public void setUseVirtualThreads (boolean useVirtual)
+    {
+        _useVirtual = useVirtual;
+    }
+
     /**
      * Add a task to the executor, it is expected that this method is
      * called on the ResultReceiver thread.
      */
     public void addTask (ExecutorTask task)
     {
-        for (int ii=0, nn=_queue.size(); ii < nn; ii++) {
-            ExecutorTask taskOnQueue = _queue.get(ii);
-            if (taskOnQueue.merge(task)) {
+        Object key = getMergeKey(task);
+        if (key != null) {
+            // keyed tasks are only offered to the latest queued task with the same key
+            ExecutorTask taskOnQueue = _keyed.get(key);
+            if (taskOnQueue != null && taskOnQueue.merge(task)) {
                 return;
             }
+            _keyed.put(key, task);
+
+        } else {
+            for (ExecutorTask taskOnQueue : _queue) {
+                if (getMergeKey(taskOnQueue) == null && taskOnQueue.merge(task)) {
+                    return;
+                }
+            }
         }
 
         // otherwise, add it on
         _queue.add(task);
+        RunQueueMetrics metrics = _metrics;
+        if (metrics != null) {
+            _stamps.put(task, metrics.noteEnqueued());
+        }
 
         // and perhaps start it going now
         if (!_executingNow) {
@@ -123,6 +173,18 @@ public class SerialExecutor
         return _queue.size();
     }
 
+    // from interface RunQueueMetrics.Source
+    public RunQueueMetrics getMetrics ()
+    {
+        return _metrics;
+    }
+
+    // from interface RunQueueMetrics.Source
+    public void setMetricsEnabled (boolean enabled)
+    {
+        _metrics = enabled ? new RunQueueMetrics("SerialExecutor") : null;
+    }
+
     /**
      * Execute the next task, if applicable.
      */
@@ -130,39 +192,104 @@ public class SerialExecutor
     {
         _executingNow = !_queue.isEmpty();
         if (_executingNow) {
-            // start up a thread to execute the task in question
-            ExecutorTask task = _queue.remove(0);
-            final ExecutorThread thread = new ExecutorThread(task);
-            thread.start();
-
-            // start up a timer that will abort this thread after the specified timeout
-            new Interval(Interval.RUN_DIRECT) {
-                @Override public void expired () {
-                    // this will NOOP if the task has already completed
-                    thread.abort();
+            ExecutorTask task = _queue.poll();
+            Object key = getMergeKey(task);
+            if (key != null && _keyed.get(key) == task) {
+                _keyed.remove(key);
+            }
+            Long stamp = _stamps.remove(task);
+            startTask(task, (stamp == null) ? 0L : stamp);
+        }
+    }
+
+    /**
+     * Hands the supplied task to an idle worker (or a new one, if none are
+     * idle) and starts its timeout.
+     *
+     * @param stamp the time at which the task was queued, if we were
+     * recording metrics at the time, 0 otherwise.
+     */
+    protected void startTask (ExecutorTask task, long stamp)
+    {
+        Worker worker = null;
+        // virtual threads are cheap enough that we needn't pool them
+        boolean virtual = _useVirtual && VirtualThreads.isSupported();
+        if (!virtual) {
+            synchronized (_idle) {
+                if (!_idle.isEmpty()) {
+                    worker = _idle.remove(_idle.size()-1);
                 }
-            }.schedule(task.getTimeout());
+            }
+        }
+        if (worker == null) {
+            worker = new Worker(virtual);
+        }
+        worker.assign(task, stamp);
+    }
+
+    /**
+     * Returns the merge key of the supplied task, or null if it has none.
+     */
+    protected static Object getMergeKey (ExecutorTask task)
+    {
+        return (task instanceof KeyedExecutorTask) ?
+            ((KeyedExecutorTask)task).getMergeKey() : null;
+    }
+
+    /**
+     * Returns the wheel on which all executors' timeouts are scheduled.
+     */
+    protected static synchronized TimingWheel getTimeouts ()
+    {
+        if (_timeouts == null) {
+            _timeouts = new TimingWheel("SerialExecutor Timeouts", 50L, 256, 3);
         }
+        return _timeouts;
     }
 
     /**
-     * The basic processing unit of the Executor.
+     * Executes tasks handed to it by its executor on its thread: a reusable
+     * pooled platform thread, or a virtual thread that executes a single task.
      */
-    protected class ExecutorThread extends Thread
+    protected class Worker implements Runnable
     {
-        public ExecutorThread (ExecutorTask task)
+        public Worker (boolean virtual)
         {
-            setDaemon(true);
-            _task = task;
+            _pooled = !virtual;
+            if (virtual) {
+                _thread = VirtualThreads.newVirtualThread("SerialExecutor Worker", this);
+            } else {
+                _thread = new Thread(this, "SerialExecutor Worker");
+                _thread.setDaemon(true);
+            }
+            _thread.start();
         }
 
-        public synchronized void abort ()
+        /**
+         * Hands a task to this (idle) worker.
+         */
+        public synchronized void assign (final ExecutorTask task, long stamp)
         {
-            if (_task != null) {
-                final ExecutorTask task = _task;
+            _next = task;
+            _nextStamp = stamp;
+            _current = task;
+            _timeout = getTimeouts().schedule(new Runnable() {
+                public void run () {
+                    abort(task);
+                }
+            }, Math.max(task.getTimeout(), 0L));
+            notify();
+        }
+
+        /**
+         * Aborts the supplied task if this worker is still executing it.
+         */
+        public synchronized void abort (final ExecutorTask task)
+        {
+            if (_current == task) {
                 // clear out the task reference which will let the running
                 // thread know to stop if/when executeTask() returns
-                _task = null;
+                _current = null;
 
                 // let the task know that it timed out
                 _receiver.execute(new Runnable() {
@@ -178,27 +305,90 @@ public class SerialExecutor
 
                 // finally interrupt the thread in hopes of waking it up from
                 // it's hangitude
-                interrupt();
+                _thread.interrupt();
             }
         }
 
-        @Override public void run ()
+        public void run ()
         {
-            final ExecutorTask task = _task;
-            try {
-                _task.executeTask();
+            ExecutorTask task;
+            while ((task = awaitTask()) != null) {
+                RunQueueMetrics metrics = _metrics;
+                long started = (metrics == null || _stamp == 0L) ?
+                    0L : metrics.noteStarted(_stamp);
+                boolean failed = true;
+                try {
+                    task.executeTask();
+                    failed = false;
+                } catch (Throwable t) {
+                    log.warning("Unit failed", t);
+                }
+
+                boolean aborted;
                 synchronized (this) {
-                    if (_task == null) {
-                        // we were aborted, abandon ship
-                        System.err.println("Aborted!");
-                        return;
+                    aborted = (_current != task);
+                    _current = null;
+                    _timeout.cancel();
+                    _timeout = null;
+                }
+                if (started != 0L) {
+                    metrics.noteCompleted(started, failed || aborted);
+                }
+                // clear any interrupt delivered by a racing abort, lest it
+                // disrupt our next task
+                Thread.interrupted();
+
+                // make ourselves available before posting the result, which
+                // may start the next task
+                if (_pooled) {
+                    synchronized (_idle) {
+                        _idle.add(this);
+                    }
+                }
+                if (!aborted) {
+                    postResult(task);
+                }
+                if (!_pooled) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Waits for a task to be assigned to this worker, or returns null if
+         * none was assigned before it went too long without one, in which case
+         * it has been removed from the idle list.
+         */
+        protected ExecutorTask awaitTask ()
+        {
+            long deadline = System.currentTimeMillis() + IDLE_MILLIS;
+            synchronized (this) {
+                while (_next == null) {
+                    long remain = deadline - System.currentTimeMillis();
+                    if (remain <= 0) {
+                        synchronized (_idle) {
+                            if (_idle.remove(this)) {
+                                return null;
+                            }
+                        }
+                        // we've been taken off the idle list, so a task is coming
+                        remain = IDLE_MILLIS;
+                    }
+                    try {
+                        wait(remain);
+                    } catch (InterruptedException ie) {
+                        // a stale abort; keep waiting
                     }
-                    _task = null;
                 }
-            } catch (Throwable t) {
-                log.warning("Unit failed", t);
+                ExecutorTask task = _next;
+                _next = null;
+                _stamp = _nextStamp;
+                return task;
             }
+        }
 
+        protected void postResult (final ExecutorTask task)
+        {
             _receiver.execute(new Runnable() {
                 public void run () {
                     try {
@@ -211,7 +401,23 @@ public class SerialExecutor
             });
         }
 
-        protected ExecutorTask _task;
+        /** The thread on which we execute tasks. */
+        protected Thread _thread;
+
+        /** Whether we return to the idle list after executing a task. */
+        protected boolean _pooled;
+
+        /** The task handed to us but not yet started. */
+        protected ExecutorTask _next;
+
+        /** The times at which our next and current tasks were queued, or 0. */
+        protected long _nextStamp, _stamp;
+
+        /** The task we're executing, cleared if it is aborted. */
+        protected ExecutorTask _current;
+
+        /** The timeout for our current task. */
+        protected TimingWheel.Timeout _timeout;
     }
 
     /** The receiver to which we post a unit to process results. */
@@ -224,5 +430,27 @@ public class SerialExecutor
     protected long _runnableTimeout;
 
     /** The queue of tasks to execute. */
-    protected ArrayList<ExecutorTask> _queue = new ArrayList<ExecutorTask>();
+    protected ArrayDeque<ExecutorTask> _queue = new ArrayDeque<ExecutorTask>();
+
+    /** The most recently queued task for each merge key. */
+    protected HashMap<Object,ExecutorTask> _keyed = new HashMap<Object,ExecutorTask>();
+
+    /** The times at which our queued tasks were queued, if we're recording metrics. */
+    protected IdentityHashMap<ExecutorTask,Long> _stamps =
+        new IdentityHashMap<ExecutorTask,Long>();
+
+    /** The metrics we're recording, or null. */
+    protected volatile RunQueueMetrics _metrics;
+
+    /** Whether we execute tasks on virtual threads. */
+    protected boolean _useVirtual = VirtualThreads.isEnabled();
+
+    /** Our workers that are waiting for a task. */
+    protected ArrayList<Worker> _idle = new ArrayList<Worker>();
+
+    /** The wheel on which all executors' timeouts are scheduled. */
+    protected static TimingWheel _timeouts;
+
+    /** The time after which an idle worker exits. */
+    protected static final long IDLE_MILLIS = 60L * 1000L;
 }
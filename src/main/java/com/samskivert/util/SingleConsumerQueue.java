@@ -0,0 +1,247 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free {@link Queue} for any number of producer threads and a <em>single</em> consumer
+ * thread, such as the queues that feed an {@link Invoker} or {@link BasicRunQueue}. Producers
+ * append with a single atomic swap of the tail of a linked list, rather than contending for the
+ * queue's monitor, and wake the consumer with {@link LockSupport#unpark} only if it is parked.
+ *
+ * <p> Prepended items are pushed onto a separate lock-free stack that the consumer drains before
+ * the main list, so {@link #prepend} may also be called from any thread. As with {@link Queue},
+ * {@link #appendSilent} does not wake the consumer, so it must be followed by a call to one of
+ * the other append methods, which wake the consumer if it is parked. The methods
+ * that remove items ({@link #get}, {@link #getNonBlocking}, {@link #waitForItem} and {@link
+ * #clear}) must only be called by the consumer thread.
+ */
+public class SingleConsumerQueue<T> extends Queue<T>
+{
+    public static <T> SingleConsumerQueue<T> newSingleConsumerQueue ()
+    {
+        return new SingleConsumerQueue<T>();
+    }
+
+    public SingleConsumerQueue ()
+    {
+        super(1);
+        Node<T> stub = new Node<T>(null);
+        _head = stub;
+        _tail.set(stub);
+    }
+
+    @Override // from Queue
+    public void clear ()
+    {
+        while (poll() != null) {
+            // drain
+        }
+    }
+
+    @Override // from Queue
+    public boolean hasElements ()
+    {
+        return (_pending.get() > 0);
+    }
+
+    @Override // from Queue
+    public int size ()
+    {
+        return _pending.get();
+    }
+
+    @Override // from Queue
+    public void prepend (T item)
+    {
+        Node<T> node = new Node<T>(item);
+        // count the item before the consumer can see it, so that its count never goes negative
+        _pending.incrementAndGet();
+        do {
+            node.next = _prepended.get();
+        } while (!_prepended.compareAndSet(node.next, node));
+        wakeConsumer();
+    }
+
+    @Override // from Queue
+    public void append (T item)
+    {
+        // we only wake the consumer if it is parked (i.e. it found the queue empty), which is our
+        // equivalent of Queue's only notifying if the queue was previously empty
+        append0(item, true);
+    }
+
+    @Override // from Queue
+    public void appendSilent (T item)
+    {
+        append0(item, false);
+    }
+
+    @Override // from Queue
+    public void appendLoud (T item)
+    {
+        append0(item, true);
+    }
+
+    @Override // from Queue
+    protected void append0 (T item, boolean notify)
+    {
+        enqueue(item);
+        if (notify) {
+            wakeConsumer();
+        }
+    }
+
+    @Override // from Queue
+    public T getNonBlocking ()
+    {
+        return poll();
+    }
+
+    @Override // from Queue
+    public void waitForItem ()
+    {
+        while (!hasItem()) {
+            park(0L);
+        }
+    }
+
+    @Override // from Queue
+    public T get (long maxwait)
+    {
+        T item = poll();
+        if (item == null && maxwait > 0) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxwait);
+            for (long remain = deadline - System.nanoTime(); item == null && remain > 0;
+                 remain = deadline - System.nanoTime()) {
+                park(remain);
+                item = poll();
+            }
+        }
+        return item;
+    }
+
+    @Override // from Queue
+    public T get ()
+    {
+        T item;
+        while ((item = poll()) == null) {
+            park(0L);
+        }
+        return item;
+    }
+
+    @Override
+    public String toString ()
+    {
+        return "[count=" + _pending.get() + "]";
+    }
+
+    /**
+     * Adds an item to the end of the list, without waking the consumer.
+     */
+    protected void enqueue (T item)
+    {
+        Node<T> node = new Node<T>(item);
+        // count the item before the consumer can see it, so that its count never goes negative
+        _pending.incrementAndGet();
+        // the consumer cannot see the node until its predecessor is linked to it below; it will
+        // simply see an empty queue until then, and any wake up follows the link
+        _tail.getAndSet(node).next = node;
+    }
+
+    /**
+     * Removes and returns the next item, or null if the queue is empty.
+     */
+    protected T poll ()
+    {
+        for (Node<T> top = _prepended.get(); top != null; top = _prepended.get()) {
+            if (_prepended.compareAndSet(top, top.next)) {
+                _pending.decrementAndGet();
+                return top.item;
+            }
+        }
+        Node<T> next = _head.next;
+        if (next == null) {
+            return null;
+        }
+        T item = next.item;
+        next.item = null; // the node becomes our stub, which must not retain the item
+        _head = next;
+        _pending.decrementAndGet();
+        return item;
+    }
+
+    /**
+     * Returns true if an item is available to {@link #poll}.
+     */
+    protected boolean hasItem ()
+    {
+        return _prepended.get() != null || _head.next != null;
+    }
+
+    /**
+     * Parks the consumer until a producer adds an item, the specified number of nanoseconds
+     * elapses (if non-zero) or the thread is spuriously woken or interrupted.
+     */
+    protected void park (long nanos)
+    {
+        _consumer = Thread.currentThread();
+        // check again now that producers can see us, lest we miss a wake up
+        if (!hasItem()) {
+            if (nanos > 0) {
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
+            }
+            // like Queue, we ignore interrupts, but we mustn't spin if one is pending
+            Thread.interrupted();
+        }
+        _consumer = null;
+    }
+
+    /**
+     * Wakes the consumer if it is parked.
+     */
+    protected void wakeConsumer ()
+    {
+        Thread consumer = _consumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /** A link in our lists. */
+    protected static class Node<T>
+    {
+        public T item;
+        public volatile Node<T> next;
+
+        public Node (T item) {
+            this.item = item;
+        }
+    }
+
+    /** The consumer's end of the list: a stub node whose successor is the next item. Only
+     * accessed by the consumer. */
+    protected Node<T> _head;
+
+    /** The producers' end of the list. */
+    protected final AtomicReference<Node<T>> _tail = new AtomicReference<Node<T>>();
+
+    /** A stack of prepended items, which take precedence over the list. */
+    protected final AtomicReference<Node<T>> _prepended = new AtomicReference<Node<T>>();
+
+    /** The number of items on the queue (approximate while producers are active). */
+    protected final AtomicInteger _pending = new AtomicInteger();
+
+    /** The consumer thread if it is parked (or about to park), null otherwise. */
+    protected volatile Thread _consumer;
+}
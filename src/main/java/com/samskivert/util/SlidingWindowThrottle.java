@@ -0,0 +1,157 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Throttle} that approximates a sliding window of one period by counting the operations
+ * in the current and previous fixed windows, weighting the previous window's count by the
+ * fraction of it that still overlaps the sliding window. It uses a constant amount of memory
+ * regardless of the number of operations and may be safely shared between threads.
+ *
+ * <p> The window number and both counts are packed into a single {@link AtomicLong} that is
+ * updated by compare-and-set, which limits the throttle to {@link #MAX_OPERATIONS} operations
+ * per period. Only the low bits of the window number are kept, so a throttle that goes unused
+ * for a multiple of 2^28 periods may mistake stale counts for current ones, and a timestamp
+ * earlier than the current window resets the counts (meaning we don't throttle if time goes
+ * backwards). Changes made by {@link #reinit} are not atomic with respect to concurrent
+ * operations.
+ */
+public class SlidingWindowThrottle extends Throttle
+{
+    /** The maximum number of operations per period supported by this throttle. */
+    public static final int MAX_OPERATIONS = (1 << 18) - 1; // see COUNT_BITS
+
+    /**
+     * Constructs a throttle that will allow the specified number of operations to proceed within
+     * the specified period (measured in milliseconds).
+     */
+    public SlidingWindowThrottle (int operations, long period)
+    {
+        super(period);
+        init(operations, period);
+    }
+
+    @Override // from Throttle
+    public synchronized void reinit (int operations, long period)
+    {
+        if (period != _period) {
+            // our counts are for windows of the old period, so they can't be carried over
+            _state.set(0L);
+        }
+        init(operations, period);
+    }
+
+    @Override // from Throttle
+    public boolean throttleOp (long timeStamp)
+    {
+        long window = timeStamp / _period;
+        while (true) {
+            long state = _state.get(), rolled = roll(state, window);
+            if (isThrottled(rolled, timeStamp % _period)) {
+                return true;
+            }
+            if (_state.compareAndSet(state, increment(rolled))) {
+                _latest = timeStamp;
+                return false;
+            }
+        }
+    }
+
+    @Override // from Throttle
+    public boolean wouldThrottle (long timeStamp)
+    {
+        return isThrottled(roll(_state.get(), timeStamp / _period), timeStamp % _period);
+    }
+
+    @Override // from Throttle
+    public void noteOp (long timeStamp)
+    {
+        long window = timeStamp / _period;
+        while (true) {
+            long state = _state.get();
+            if (_state.compareAndSet(state, increment(roll(state, window)))) {
+                _latest = timeStamp;
+                return;
+            }
+        }
+    }
+
+    @Override // from Throttle
+    public long getLatestOperation ()
+    {
+        return _latest;
+    }
+
+    @Override // from Object
+    public String toString ()
+    {
+        long state = roll(_state.get(), System.currentTimeMillis() / _period);
+        return _operations + " ops per " + _period + "ms (current " + (state & COUNT_MASK) +
+            ", previous " + ((state >>> COUNT_BITS) & COUNT_MASK) + ")";
+    }
+
+    protected void init (int operations, long period)
+    {
+        if (operations < 1 || operations > MAX_OPERATIONS) {
+            throw new IllegalArgumentException(
+                "Operations must be between 1 and " + MAX_OPERATIONS);
+        }
+        _operations = operations;
+        _period = period;
+    }
+
+    /**
+     * Returns true if the (rolled) state contains the limit of operations, given the elapsed
+     * portion of the current window.
+     */
+    protected boolean isThrottled (long state, long offset)
+    {
+        long current = state & COUNT_MASK, previous = (state >>> COUNT_BITS) & COUNT_MASK;
+        return previous * (_period - offset) + current * _period >= _operations * _period;
+    }
+
+    /**
+     * Returns the supplied state rolled forward to the specified window.
+     */
+    protected static long roll (long state, long window)
+    {
+        long have = state >>> WINDOW_SHIFT, want = window & WINDOW_MASK;
+        if (have == want) {
+            return state;
+        }
+        long rolled = want << WINDOW_SHIFT;
+        if (((have + 1) & WINDOW_MASK) == want) {
+            // the current window's count becomes the previous window's
+            rolled |= (state & COUNT_MASK) << COUNT_BITS;
+        }
+        return rolled;
+    }
+
+    /**
+     * Returns the supplied state with the current window's count incremented (unless it is
+     * already at its maximum).
+     */
+    protected static long increment (long state)
+    {
+        return ((state & COUNT_MASK) == COUNT_MASK) ? state : state + 1;
+    }
+
+    /** The number of operations allowed per period. */
+    protected volatile int _operations;
+
+    /** The current window number and the counts for it and the previous window. */
+    protected final AtomicLong _state = new AtomicLong();
+
+    /** The time of the most recent operation. */
+    protected volatile long _latest;
+
+    /** The layout of our state: window number, previous count, current count. */
+    protected static final int COUNT_BITS = 18, WINDOW_SHIFT = 2 * COUNT_BITS;
+    protected static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    protected static final long WINDOW_MASK = (1L << (64 - WINDOW_SHIFT)) - 1;
+}
@@ -29,6 +29,11 @@ package com.samskivert.util;
  *     // perform operation
  * }
  * </pre>
+ *
+ * <p> This class records the time of each of the last N operations, so its memory use grows with
+ * the number of operations allowed, and it is not thread-safe. {@link TokenBucketThrottle} and
+ * {@link SlidingWindowThrottle} use constant memory and may be shared between threads, and {@link
+ * ThrottleMap} maintains throttles for large numbers of keys (users, addresses, etc.).
  */
 public class Throttle
 {
@@ -48,6 +53,15 @@ public class Throttle
         _period = period;
     }
 
+    /**
+     * Constructs a throttle that does not record the time of each operation, for derived classes
+     * that throttle operations by other means and override the operation methods accordingly.
+     */
+    protected Throttle (long period)
+    {
+        _period = period;
+    }
+
     /**
      * Updates the number of operations for this throttle to a new maximum, retaining the current
      * history of operations if the limit is being increased and truncating the oldest operations
@@ -0,0 +1,193 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains a {@link Throttle} per key (user, address, etc.), creating throttles on demand and
+ * discarding them once they have been idle long enough that a freshly created throttle would
+ * behave the same way. For example:
+ *
+ * <pre>
+ * protected ThrottleMap&lt;String&gt; _logins = new ThrottleMap&lt;String&gt;(5, 60000L);
+ *
+ * public void login (String username, String password)
+ *     throws UnavailableException
+ * {
+ *     if (_logins.throttleOp(username)) {
+ *         throw new UnavailableException();
+ *     }
+ *     // ...
+ * }
+ * </pre>
+ *
+ * <p> The map is thread-safe, provided its throttles are (as are {@link TokenBucketThrottle} and
+ * {@link SlidingWindowThrottle}). Idle throttles are pruned by the first operation following
+ * each idle period (on the calling thread), or may be pruned explicitly via {@link #prune}. An
+ * operation that races with the removal of its throttle may go unrecorded.
+ */
+public class ThrottleMap<K>
+{
+    /**
+     * Creates the throttles for a {@link ThrottleMap}.
+     */
+    public static interface Factory<K>
+    {
+        /** Creates a throttle for the specified key. */
+        public Throttle createThrottle (K key);
+    }
+
+    /**
+     * Creates a map that maintains a {@link TokenBucketThrottle} per key, each allowing the
+     * specified number of operations per period (in milliseconds).
+     */
+    public ThrottleMap (final int operations, final long period)
+    {
+        this(new Factory<K>() {
+            public Throttle createThrottle (K key) {
+                return new TokenBucketThrottle(operations, period);
+            }
+        }, period);
+    }
+
+    /**
+     * Creates a map that maintains throttles created by the supplied factory.
+     *
+     * @param idleMillis the time after a throttle's most recent operation at which it may be
+     * discarded. This must be long enough that the throttle would no longer throttle anything:
+     * one period for {@link Throttle} and {@link TokenBucketThrottle}, two for {@link
+     * SlidingWindowThrottle}.
+     */
+    public ThrottleMap (Factory<K> factory, long idleMillis)
+    {
+        _factory = factory;
+        _idleMillis = idleMillis;
+    }
+
+    /**
+     * Registers an attempt at an operation for the specified key, returning true if it should be
+     * throttled, false if it may proceed.
+     *
+     * @see Throttle#throttleOp()
+     */
+    public boolean throttleOp (K key)
+    {
+        return throttleOp(key, System.currentTimeMillis());
+    }
+
+    /**
+     * Registers an attempt at an operation for the specified key at the specified time, returning
+     * true if it should be throttled, false if it may proceed.
+     *
+     * @see Throttle#throttleOp(long)
+     */
+    public boolean throttleOp (K key, long timeStamp)
+    {
+        return getThrottle(key, timeStamp).throttleOp(timeStamp);
+    }
+
+    /**
+     * Returns true if an operation for the specified key at the specified time would be
+     * throttled.
+     *
+     * @see Throttle#wouldThrottle
+     */
+    public boolean wouldThrottle (K key, long timeStamp)
+    {
+        Throttle throttle = _throttles.get(key);
+        return (throttle != null) && throttle.wouldThrottle(timeStamp);
+    }
+
+    /**
+     * Notes that an operation for the specified key occurred at the specified time.
+     *
+     * @see Throttle#noteOp
+     */
+    public void noteOp (K key, long timeStamp)
+    {
+        getThrottle(key, timeStamp).noteOp(timeStamp);
+    }
+
+    /**
+     * Returns the throttle for the specified key, or null if there is none.
+     */
+    public Throttle get (K key)
+    {
+        return _throttles.get(key);
+    }
+
+    /**
+     * Returns the number of throttles in the map.
+     */
+    public int size ()
+    {
+        return _throttles.size();
+    }
+
+    /**
+     * Removes all throttles from the map.
+     */
+    public void clear ()
+    {
+        _throttles.clear();
+    }
+
+    /**
+     * Removes the throttles that have been idle for at least our idle time as of the specified
+     * time.
+     *
+     * @return the number of throttles removed.
+     */
+    public int prune (long now)
+    {
+        int removed = 0;
+        for (Iterator<Map.Entry<K,Throttle>> iter = _throttles.entrySet().iterator();
+             iter.hasNext(); ) {
+            Map.Entry<K,Throttle> entry = iter.next();
+            if (now - entry.getValue().getLatestOperation() >= _idleMillis &&
+                _throttles.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the throttle for the specified key, creating it if necessary, and prunes idle
+     * throttles if an idle period has passed since we last did so.
+     */
+    protected Throttle getThrottle (K key, long timeStamp)
+    {
+        long nextPrune = _nextPrune.get();
+        if (timeStamp >= nextPrune &&
+            _nextPrune.compareAndSet(nextPrune, timeStamp + _idleMillis)) {
+            prune(timeStamp);
+        }
+        Throttle throttle = _throttles.get(key);
+        if (throttle == null) {
+            Throttle created = _factory.createThrottle(key);
+            throttle = _throttles.putIfAbsent(key, created);
+            if (throttle == null) {
+                throttle = created;
+            }
+        }
+        return throttle;
+    }
+
+    protected final Factory<K> _factory;
+    protected final long _idleMillis;
+
+    /** Our throttles, by key. */
+    protected final ConcurrentMap<K,Throttle> _throttles = new ConcurrentHashMap<K,Throttle>();
+
+    /** The time at or after which we next prune idle throttles. */
+    protected final AtomicLong _nextPrune = new AtomicLong();
+}
@@ -0,0 +1,521 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.samskivert.util.UtilLog.log;
+
+/**
+ * A hierarchical hashed timing wheel: a scheduler of delayed and repeating tasks that can stand
+ * in for {@link java.util.Timer} where very large numbers of tasks are scheduled and cancelled.
+ * Scheduling and cancelling a task are constant time operations (a {@link java.util.Timer}
+ * requires logarithmic time for both and retains cancelled tasks until they would have run) at
+ * the cost of rounding expiration times up to the wheel's tick.
+ *
+ * <p> The wheel consists of a number of levels, each an array of time slots holding a doubly
+ * linked list of tasks. The slots of the lowest level each span one tick, and those of every
+ * higher level span an entire revolution of the level below. A task is placed in the lowest level
+ * whose span covers its delay and moves down a level each time the slot it occupies comes due,
+ * until it expires from the lowest level. Tasks are run on the wheel's thread, so they must
+ * complete quickly, just as with a {@link java.util.Timer}.
+ *
+ * @see Interval#setTimingWheel
+ */
+public class TimingWheel
+{
+    /**
+     * A handle on a scheduled task, via which it can be cancelled.
+     */
+    public static class Timeout
+    {
+        /**
+         * Cancels this task. If it is repeating, it will not run again; otherwise, it will not
+         * run if it has not already started.
+         *
+         * @return true if this prevented one or more runs of the task, false if it had already
+         * expired or been cancelled.
+         */
+        public boolean cancel ()
+        {
+            return _wheel.cancel(this);
+        }
+
+        /**
+         * Returns true if this task has been cancelled.
+         */
+        public boolean isCancelled ()
+        {
+            return _state == CANCELLED;
+        }
+
+        /**
+         * Returns true if this task was not repeating and has been run (or is running).
+         */
+        public boolean isExpired ()
+        {
+            return _state == EXPIRED;
+        }
+
+        protected Timeout (TimingWheel wheel, Runnable task, long deadline, long period,
+                           boolean fixedRate)
+        {
+            _wheel = wheel;
+            _task = task;
+            _deadline = deadline;
+            _period = period;
+            _fixedRate = fixedRate;
+        }
+
+        /** The wheel on which we're scheduled. */
+        protected TimingWheel _wheel;
+
+        /** The task to be run. */
+        protected Runnable _task;
+
+        /** The time (in the wheel's milliseconds) at which we next run, and the tick in which
+         * that time falls. */
+        protected long _deadline, _expires;
+
+        /** Our repeat period, or zero. */
+        protected long _period;
+
+        /** Whether we repeat at a fixed rate, rather than with a fixed delay. */
+        protected boolean _fixedRate;
+
+        /** Our neighbors in our slot's list, or null if we're not in a slot. */
+        protected Timeout _prev, _next;
+
+        /** Whether we're pending, expired or cancelled. Guarded by the wheel. */
+        protected volatile int _state;
+    }
+
+    /**
+     * A snapshot of a wheel's statistics.
+     */
+    public static class Stats
+    {
+        /** The number of tasks awaiting their next run. */
+        public int pending;
+
+        /** The total number of tasks scheduled. */
+        public long scheduled;
+
+        /** The total number of runs of tasks (including each run of repeating tasks). */
+        public long expired;
+
+        /** The total number of tasks cancelled before they completed. */
+        public long cancelled;
+
+        /** The total number of times tasks were moved from one level of the wheel to another. */
+        public long cascaded;
+
+        @Override public String toString () {
+            return StringUtil.fieldsToString(this);
+        }
+    }
+
+    /**
+     * Creates and starts a wheel with a ten millisecond tick and four levels of 256 slots (which
+     * covers delays of over a year without further rounding).
+     */
+    public TimingWheel (String name)
+    {
+        this(name, 10L, 256, 4);
+    }
+
+    /**
+     * Creates and starts a wheel.
+     *
+     * @param name the name of the wheel's thread.
+     * @param tickMillis the resolution of the wheel: task expiration times are rounded up to a
+     * multiple of this duration.
+     * @param wheelSize the number of slots in each level of the wheel, which must be a power of
+     * two.
+     * @param levels the number of levels. Delays greater than can be represented by this many
+     * levels are accommodated by occasionally reconsidering the affected tasks.
+     */
+    public TimingWheel (String name, long tickMillis, int wheelSize, int levels)
+    {
+        if (tickMillis <= 0 || wheelSize < 2 || Integer.bitCount(wheelSize) != 1 || levels < 1) {
+            throw new IllegalArgumentException(
+                "Invalid wheel [tick=" + tickMillis + ", size=" + wheelSize +
+                ", levels=" + levels + "]");
+        }
+        _tickMillis = tickMillis;
+        _bits = Integer.numberOfTrailingZeros(wheelSize);
+        _mask = wheelSize - 1;
+        _slots = new Timeout[Math.min(levels, 62 / _bits)][wheelSize];
+        for (Timeout[] level : _slots) {
+            for (int ii = 0; ii < level.length; ii++) {
+                Timeout head = new Timeout(this, null, 0L, 0L, false);
+                head._prev = head._next = head;
+                level[ii] = head;
+            }
+        }
+        _maxDelta = (1L << (_bits * _slots.length)) - 1;
+        _origin = System.nanoTime();
+        _base = now() / _tickMillis;
+
+        _thread = new Thread(name) {
+            @Override public void run () {
+                runWheel();
+            }
+        };
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Schedules the supplied task to run once after the specified delay.
+     *
+     * @exception IllegalArgumentException if the delay is negative.
+     * @exception IllegalStateException if the wheel has been shut down.
+     */
+    public Timeout schedule (Runnable task, long delay)
+    {
+        return schedule(task, delay, 0L, false);
+    }
+
+    /**
+     * Schedules the supplied task to run repeatedly, first after the specified delay and then
+     * once per period, measured from the time at which it was first scheduled to run. A run that
+     * is delayed is followed by runs in quick succession until the task catches up.
+     *
+     * @exception IllegalArgumentException if the delay is negative or the period is not positive.
+     * @exception IllegalStateException if the wheel has been shut down.
+     */
+    public Timeout scheduleAtFixedRate (Runnable task, long delay, long period)
+    {
+        requirePeriod(period);
+        return schedule(task, delay, period, true);
+    }
+
+    /**
+     * Schedules the supplied task to run repeatedly, first after the specified delay and then
+     * after the specified period has elapsed since the completion of its previous run.
+     *
+     * @exception IllegalArgumentException if the delay is negative or the period is not positive.
+     * @exception IllegalStateException if the wheel has been shut down.
+     */
+    public Timeout scheduleWithFixedDelay (Runnable task, long delay, long period)
+    {
+        requirePeriod(period);
+        return schedule(task, delay, period, false);
+    }
+
+    /**
+     * Returns a snapshot of this wheel's statistics.
+     */
+    public synchronized Stats getStats ()
+    {
+        Stats stats = new Stats();
+        stats.pending = _pending;
+        stats.scheduled = _scheduled;
+        stats.expired = _expired;
+        stats.cancelled = _cancelled;
+        stats.cascaded = _cascaded;
+        return stats;
+    }
+
+    /**
+     * Stops the wheel's thread and discards all pending tasks. A task that is running completes
+     * normally.
+     */
+    public synchronized void shutdown ()
+    {
+        _shutdown = true;
+        notifyAll();
+    }
+
+    /**
+     * Returns true if the calling thread is this wheel's thread.
+     */
+    public boolean isWheelThread ()
+    {
+        return Thread.currentThread() == _thread;
+    }
+
+    protected synchronized Timeout schedule (
+        Runnable task, long delay, long period, boolean fixedRate)
+    {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Negative delay: " + delay);
+        }
+        if (_shutdown) {
+            throw new IllegalStateException("Timing wheel has been shut down.");
+        }
+        long now = now();
+        if (_pending == 0) {
+            // the wheel is empty, so rather than tick over the time since it emptied, we skip it
+            _base = Math.max(_base, now / _tickMillis);
+        }
+        Timeout timeout = new Timeout(this, task, deadline(delay), period, fixedRate);
+        timeout._expires = toTick(timeout._deadline);
+        insert(timeout);
+        _pending++;
+        _scheduled++;
+        if (_idle) {
+            _idle = false;
+            notifyAll();
+        }
+        return timeout;
+    }
+
+    protected synchronized boolean cancel (Timeout timeout)
+    {
+        if (timeout._state != PENDING) {
+            return false;
+        }
+        timeout._state = CANCELLED;
+        unlink(timeout);
+        _pending--;
+        _cancelled++;
+        return true;
+    }
+
+    /**
+     * The main loop of our thread, which advances the wheel a tick at a time and runs the tasks
+     * that expire.
+     */
+    protected void runWheel ()
+    {
+        List<Timeout> due = new ArrayList<Timeout>();
+        while (true) {
+            synchronized (this) {
+                if (!awaitTick()) {
+                    return;
+                }
+                long nowTick = now() / _tickMillis;
+                while (_base <= nowTick) {
+                    advance(due);
+                }
+            }
+
+            for (int ii = 0, ll = due.size(); ii < ll; ii++) {
+                Timeout timeout = due.get(ii);
+                if (timeout._state == CANCELLED) {
+                    continue; // a repeating task cancelled since it came due
+                }
+                try {
+                    timeout._task.run();
+                } catch (Throwable t) {
+                    log.warning("Timing wheel task failed", "task", timeout._task, t);
+                }
+                if (timeout._period > 0 && !timeout._fixedRate) {
+                    reschedule(timeout);
+                }
+            }
+            due.clear();
+        }
+    }
+
+    /**
+     * Waits until the next tick is due. Called with our monitor held.
+     *
+     * @return false if the wheel has been shut down.
+     */
+    protected boolean awaitTick ()
+    {
+        try {
+            while (!_shutdown) {
+                if (_pending == 0) {
+                    // there's nothing to tick over; wait for something to be scheduled
+                    _idle = true;
+                    wait();
+                    continue;
+                }
+                long remain = _base * _tickMillis - now();
+                if (remain <= 0) {
+                    return true;
+                }
+                wait(remain);
+            }
+        } catch (InterruptedException ie) {
+            log.warning("Timing wheel interrupted, shutting down.", "thread", _thread);
+            _shutdown = true;
+        }
+        return false;
+    }
+
+    /**
+     * Processes the tick at {@link #_base}, moving tasks down from higher levels as their slots
+     * come due and adding the tasks that expire to the supplied list. Called with our monitor
+     * held.
+     */
+    protected void advance (List<Timeout> due)
+    {
+        // cascade each level whose slot comes due with this tick; each level's tasks can only
+        // drop into slots of the levels below that are still ahead of us
+        for (int level = 1; level < _slots.length; level++) {
+            int shift = _bits * level;
+            if ((_base & ((1L << shift) - 1)) != 0) {
+                break;
+            }
+            Timeout head = _slots[level][(int)((_base >>> shift) & _mask)];
+            for (Timeout timeout = detach(head); timeout != null; ) {
+                Timeout next = timeout._next;
+                insert(timeout);
+                _cascaded++;
+                timeout = next;
+            }
+        }
+
+        Timeout head = _slots[0][(int)(_base & _mask)];
+        Timeout timeout = detach(head);
+        // tasks rescheduled from here on belong to subsequent ticks
+        _base++;
+        while (timeout != null) {
+            Timeout next = timeout._next;
+            timeout._prev = timeout._next = null;
+            due.add(timeout);
+            _expired++;
+            if (timeout._period == 0) {
+                timeout._state = EXPIRED;
+                _pending--;
+            } else if (timeout._fixedRate) {
+                timeout._deadline += timeout._period;
+                timeout._expires = toTick(timeout._deadline);
+                insert(timeout);
+            }
+            // fixed delay tasks are rescheduled once they've run
+            timeout = next;
+        }
+    }
+
+    /**
+     * Reschedules a fixed delay task once it has run, unless it was cancelled in the meantime.
+     */
+    protected synchronized void reschedule (Timeout timeout)
+    {
+        if (timeout._state == PENDING && timeout._prev == null && !_shutdown) {
+            timeout._deadline = deadline(timeout._period);
+            timeout._expires = toTick(timeout._deadline);
+            insert(timeout);
+        }
+    }
+
+    /**
+     * Adds the supplied task to the slot for its expiration tick. Called with our monitor held.
+     */
+    protected void insert (Timeout timeout)
+    {
+        long delta = Math.min(timeout._expires - _base, _maxDelta);
+        Timeout head;
+        if (delta < 0) {
+            // it is already due, so it goes in the next slot to be processed
+            head = _slots[0][(int)(_base & _mask)];
+        } else {
+            long expires = _base + delta;
+            int level = 0;
+            while (delta >= (1L << (_bits * (level+1)))) {
+                level++;
+            }
+            head = _slots[level][(int)((expires >>> (_bits * level)) & _mask)];
+        }
+        timeout._next = head;
+        timeout._prev = head._prev;
+        head._prev._next = timeout;
+        head._prev = timeout;
+    }
+
+    /**
+     * Removes the supplied task from its slot, if it is in one. Called with our monitor held.
+     */
+    protected void unlink (Timeout timeout)
+    {
+        if (timeout._prev != null) {
+            timeout._prev._next = timeout._next;
+            timeout._next._prev = timeout._prev;
+            timeout._prev = timeout._next = null;
+        }
+    }
+
+    /**
+     * Empties the supplied slot, returning its tasks as a null terminated list linked by their
+     * {@link Timeout#_next} fields. Called with our monitor held.
+     */
+    protected static Timeout detach (Timeout head)
+    {
+        if (head._next == head) {
+            return null;
+        }
+        Timeout first = head._next;
+        head._prev._next = null;
+        head._prev = head._next = head;
+        return first;
+    }
+
+    protected static void requirePeriod (long period)
+    {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Non-positive period: " + period);
+        }
+    }
+
+    /**
+     * Returns the first tick that starts at or after the specified time.
+     */
+    protected long toTick (long millis)
+    {
+        return (millis + _tickMillis - 1) / _tickMillis;
+    }
+
+    /**
+     * Returns the time (in the units of {@link #now}) after which the specified delay will have
+     * elapsed. This rounds up, where {@link #now} rounds down, lest we run tasks early.
+     */
+    protected long deadline (long delay)
+    {
+        return (System.nanoTime() - _origin + 999999L) / 1000000L + delay;
+    }
+
+    /**
+     * Returns the current time in milliseconds since the wheel was created, from the monotonic
+     * clock so that tasks are unaffected by changes to the wall clock.
+     */
+    protected long now ()
+    {
+        return (System.nanoTime() - _origin) / 1000000L;
+    }
+
+    /** The duration of a tick, in milliseconds. */
+    protected final long _tickMillis;
+
+    /** The base two logarithm of the number of slots in each level, and the mask that selects a
+     * slot. */
+    protected final int _bits, _mask;
+
+    /** The sentinel heads of the slots of each level. */
+    protected final Timeout[][] _slots;
+
+    /** The greatest number of ticks that our levels can span. */
+    protected final long _maxDelta;
+
+    /** The value of {@link System#nanoTime} that corresponds to our time zero. */
+    protected final long _origin;
+
+    /** Our thread. */
+    protected final Thread _thread;
+
+    /** The next tick to be processed. */
+    protected long _base;
+
+    /** The number of pending tasks. */
+    protected int _pending;
+
+    /** Our statistics. */
+    protected long _scheduled, _expired, _cancelled, _cascaded;
+
+    /** Set while our thread is waiting for a task to be scheduled. */
+    protected boolean _idle;
+
+    /** Set once we've been shut down. */
+    protected boolean _shutdown;
+
+    protected static final int PENDING = 0, EXPIRED = 1, CANCELLED = 2;
+}
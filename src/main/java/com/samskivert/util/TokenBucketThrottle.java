@@ -0,0 +1,148 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Throttle} that allows bursts of up to N operations and refills at a rate of N
+ * operations per period, using a constant amount of memory regardless of N, and that may be
+ * safely shared between threads.
+ *
+ * <p> The bucket is tracked as the time at which it will next be full (the "theoretical arrival
+ * time" of the generic cell rate algorithm, which is equivalent to a token bucket), held in a
+ * single {@link AtomicLong} that is updated by compare-and-set. Times are scaled by the number of
+ * operations so that the refill interval need not be a whole number of milliseconds. Changes made
+ * by {@link #reinit} are not atomic with respect to concurrent operations.
+ */
+public class TokenBucketThrottle extends Throttle
+{
+    /** The maximum number of operations per period supported by this throttle. */
+    public static final int MAX_OPERATIONS = 1 << 20;
+
+    /**
+     * Constructs a throttle that will allow the specified number of operations to proceed within
+     * the specified period (measured in milliseconds).
+     */
+    public TokenBucketThrottle (int operations, long period)
+    {
+        super(period);
+        init(operations, period);
+    }
+
+    /**
+     * Returns the number of operations that could proceed at the specified time.
+     */
+    public int getAvailable (long timeStamp)
+    {
+        long ahead = Math.max(_tat.get() - timeStamp * _operations, 0L);
+        return (ahead > capacity()) ? _operations : (int)((capacity() - ahead) / _period);
+    }
+
+    @Override // from Throttle
+    public synchronized void reinit (int operations, long period)
+    {
+        // convert our full time back to milliseconds and then into the new scale
+        long full = _tat.get() / _operations;
+        init(operations, period);
+        _tat.set(full * operations);
+    }
+
+    @Override // from Throttle
+    public boolean throttleOp (long timeStamp)
+    {
+        long now = timeStamp * _operations;
+        while (true) {
+            long tat = _tat.get();
+            if (isThrottled(tat, now)) {
+                return true;
+            }
+            if (_tat.compareAndSet(tat, advance(tat, now))) {
+                _latest = timeStamp;
+                return false;
+            }
+        }
+    }
+
+    @Override // from Throttle
+    public boolean wouldThrottle (long timeStamp)
+    {
+        return isThrottled(_tat.get(), timeStamp * _operations);
+    }
+
+    @Override // from Throttle
+    public void noteOp (long timeStamp)
+    {
+        long now = timeStamp * _operations;
+        while (true) {
+            long tat = _tat.get();
+            if (_tat.compareAndSet(tat, advance(tat, now))) {
+                _latest = timeStamp;
+                return;
+            }
+        }
+    }
+
+    @Override // from Throttle
+    public long getLatestOperation ()
+    {
+        return _latest;
+    }
+
+    @Override // from Object
+    public String toString ()
+    {
+        return _operations + " ops per " + _period + "ms (" +
+            getAvailable(System.currentTimeMillis()) + " available)";
+    }
+
+    protected void init (int operations, long period)
+    {
+        if (operations < 1 || operations > MAX_OPERATIONS) {
+            throw new IllegalArgumentException(
+                "Operations must be between 1 and " + MAX_OPERATIONS);
+        }
+        _operations = operations;
+        _period = period;
+    }
+
+    /**
+     * Returns true if an operation at the (scaled) time <code>now</code> would find the bucket
+     * empty.
+     */
+    protected boolean isThrottled (long tat, long now)
+    {
+        // each operation pushes the full time one (scaled) period further ahead; if it's more
+        // than a whole bucket ahead of now, time went backwards, so we cope by not throttling
+        long ahead = tat - now;
+        return ahead > capacity() - _period && ahead <= capacity();
+    }
+
+    /**
+     * Returns the full time after an operation at the (scaled) time <code>now</code>. Operations
+     * noted in excess of the limit do not overdraw the bucket.
+     */
+    protected long advance (long tat, long now)
+    {
+        long base = (tat - now > capacity()) ? now : Math.max(tat, now);
+        return Math.min(base + _period, now + capacity());
+    }
+
+    /** Returns the (scaled) time it takes for an empty bucket to fill. */
+    protected long capacity ()
+    {
+        return _period * _operations;
+    }
+
+    /** The number of operations allowed per period. */
+    protected volatile int _operations;
+
+    /** The (scaled) time at which the bucket will be full. */
+    protected final AtomicLong _tat = new AtomicLong();
+
+    /** The time of the most recent operation. */
+    protected volatile long _latest;
+}
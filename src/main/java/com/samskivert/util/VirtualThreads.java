@@ -0,0 +1,97 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates threads for the library's components that run blocking work ({@link Invoker}, {@link
+ * SerialExecutor}, {@link com.samskivert.swing.util.TaskMaster} and {@link
+ * com.samskivert.net.HttpPostUtil}), which can be configured to create virtual threads rather
+ * than platform threads on a JVM that supports them (Java 21 and newer).
+ *
+ * <p> Virtual threads are opt-in: they are used if the <code>com.samskivert.virtualThreads</code>
+ * system property is set to true, or if {@link #setEnabled} is called, and only where the JVM
+ * supports them. The virtual thread API is accessed reflectively, so this class (and the library)
+ * continues to run unchanged on older JVMs, which simply never create virtual threads.
+ */
+public class VirtualThreads
+{
+    /**
+     * Returns true if this JVM supports virtual threads.
+     */
+    public static boolean isSupported ()
+    {
+        return _ofVirtual != null;
+    }
+
+    /**
+     * Returns true if virtual threads are supported and enabled, in which case {@link #newThread}
+     * creates virtual threads.
+     */
+    public static boolean isEnabled ()
+    {
+        return _enabled && isSupported();
+    }
+
+    /**
+     * Enables or disables the use of virtual threads by components created from now on. This
+     * has no effect if the JVM does not support virtual threads.
+     */
+    public static void setEnabled (boolean enabled)
+    {
+        _enabled = enabled;
+    }
+
+    /**
+     * Creates (but does not start) a thread that will run the supplied task: a virtual thread if
+     * they are {@link #isEnabled enabled}, a platform thread otherwise.
+     */
+    public static Thread newThread (String name, Runnable task)
+    {
+        return isEnabled() ? newVirtualThread(name, task) : new Thread(task, name);
+    }
+
+    /**
+     * Creates (but does not start) a virtual thread that will run the supplied task, regardless
+     * of whether virtual threads are enabled.
+     *
+     * @exception UnsupportedOperationException if this JVM does not support virtual threads.
+     */
+    public static Thread newVirtualThread (String name, Runnable task)
+    {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported.");
+        }
+        try {
+            Object builder = _name.invoke(_ofVirtual.invoke(null), name);
+            return (Thread)_unstarted.invoke(builder, task);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to create virtual thread", e);
+        }
+    }
+
+    /** The reflected virtual thread builder methods, or null if they're not supported. */
+    protected static Method _ofVirtual, _name, _unstarted;
+
+    /** Whether virtual threads have been enabled. */
+    protected static volatile boolean _enabled =
+        Boolean.getBoolean("com.samskivert.virtualThreads");
+
+    static {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            _name = builder.getMethod("name", String.class);
+            _unstarted = builder.getMethod("unstarted", Runnable.class);
+            // make sure they're not a preview feature that has not been enabled
+            ofVirtual.invoke(null);
+            _ofVirtual = ofVirtual;
+        } catch (Exception e) {
+            // not supported by this JVM
+        }
+    }
+}
@@ -80,11 +80,8 @@ public class WeakObserverList<T> extends ObserverList<T>
     public void prune ()
     {
         // applying an op prunes collected observers, so just apply a NOOP op
-        apply(new ObserverOp<T>() {
-            public boolean apply (T obs) {
-                return true;
-            }
-        });
+        @SuppressWarnings("unchecked") ObserverOp<T> noop = (ObserverOp<T>)NOOP;
+        apply(noop);
     }
 
     protected WeakObserverList (Policy notifyPolicy)
@@ -125,12 +122,13 @@ public class WeakObserverList<T> extends ObserverList<T>
             super(notifyPolicy);
         }
 
-        @Override protected int indexOf (WeakReference<T> ref) {
-            T value = ref.get();
-            for (int ii = 0, ll = _list.size(); ii < ll; ii++) {
-                if (_list.get(ii).get() == value) { return ii; }
-            }
-            return -1;
+        @Override protected boolean matches (WeakReference<T> elem, WeakReference<T> ref) {
+            return elem.get() == ref.get();
+        }
+
+        @Override protected boolean isIndexable () {
+            // we match by referent, and cannot index those without retaining them
+            return false;
         }
 
         @Override protected Object observerForLog (WeakReference<T> ref) {
@@ -143,4 +141,11 @@ public class WeakObserverList<T> extends ObserverList<T>
 
     /** The wrapper op. */
     protected DerefOp<T> _derefOp = new DerefOp<T>();
+
+    /** An op that retains all (live) observers. */
+    protected static final ObserverOp<Object> NOOP = new ObserverOp<Object>() {
+        public boolean apply (Object obs) {
+            return true;
+        }
+    };
 }
@@ -0,0 +1,377 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.samskivert.util.UtilLog.log;
+
+/**
+ * A {@link RunQueue} that runs its runnables on a set of worker threads (one per processor, by
+ * default), for runnables that need not run in any particular order, such as CPU-bound
+ * maintenance jobs. Each worker has its own deque of runnables: runnables posted by a worker go
+ * on its own deque, those posted from elsewhere are spread across the workers, and a worker whose
+ * deque is empty steals from the others. Thus posting rarely contends with other posters, and no
+ * worker sits idle while another has a backlog.
+ *
+ * <p> {@link #postRunnables} posts a batch of runnables, spreading them across the workers and
+ * waking the idle workers needed to run them all at once. {@link Interval}s and other schedulers
+ * can target the queue like any other.
+ */
+public class WorkStealingRunQueue
+    implements RunQueue, Executor, RunQueueMetrics.Source
+{
+    /**
+     * Creates a run queue with one worker per available processor.
+     */
+    public WorkStealingRunQueue (String name)
+    {
+        this(name, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a run queue with the specified number of workers.
+     */
+    public WorkStealingRunQueue (String name, int workers)
+    {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Run queue requires at least one worker.");
+        }
+        _workers = new Worker[workers];
+        for (int ii = 0; ii < workers; ii++) {
+            _workers[ii] = new Worker(name + "-" + ii, ii);
+        }
+        _name = name;
+        setMetricsEnabled(RunQueueMetrics.isEnabledByDefault());
+    }
+
+    /**
+     * Starts the worker threads.
+     */
+    public void start ()
+    {
+        for (Worker worker : _workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Shuts down this run queue. Runnables that have already been posted will be run, after which
+     * the workers exit. Runnables may not be posted once the queue has been shut down.
+     */
+    public void shutdown ()
+    {
+        _shutdown = true;
+        synchronized (_lock) {
+            _lock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the workers to exit after the queue has been shut down.
+     */
+    public void join ()
+        throws InterruptedException
+    {
+        for (Worker worker : _workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Returns the number of worker threads.
+     */
+    public int getParallelism ()
+    {
+        return _workers.length;
+    }
+
+    /**
+     * Returns the number of runnables waiting to be run.
+     */
+    public int getPending ()
+    {
+        return _pending.get();
+    }
+
+    /**
+     * Returns the number of runnables that have been stolen by a worker from another's deque.
+     */
+    public long getSteals ()
+    {
+        return _steals.get();
+    }
+
+    /**
+     * Posts a batch of runnables, waking as many idle workers as are needed to run them at once.
+     */
+    public void postRunnables (Collection<? extends Runnable> runnables)
+    {
+        int count = runnables.size();
+        if (count == 0) {
+            return;
+        }
+        checkRunning();
+        RunQueueMetrics metrics = _metrics;
+        if (metrics != null) {
+            List<Runnable> wrapped = new ArrayList<Runnable>(count);
+            for (Runnable r : runnables) {
+                wrapped.add(metrics.wrap(r));
+            }
+            runnables = wrapped;
+        }
+        Worker self = currentWorker();
+        if (self != null) {
+            self.addAll(runnables.iterator(), count);
+        } else {
+            // give each worker a contiguous share of the batch, starting with the next in turn
+            Iterator<? extends Runnable> iter = runnables.iterator();
+            int workers = _workers.length, first = nextWorker();
+            for (int ii = 0; ii < workers; ii++) {
+                int share = count / workers + ((ii < count % workers) ? 1 : 0);
+                if (share > 0) {
+                    _workers[(first + ii) % workers].addAll(iter, share);
+                }
+            }
+        }
+        posted(count);
+    }
+
+    // from interface RunQueue
+    public void postRunnable (Runnable r)
+    {
+        checkRunning();
+        RunQueueMetrics metrics = _metrics;
+        Worker self = currentWorker();
+        Worker target = (self != null) ? self : _workers[nextWorker()];
+        target.add((metrics == null) ? r : metrics.wrap(r));
+        posted(1);
+    }
+
+    // from interface RunQueue
+    public boolean isDispatchThread ()
+    {
+        return currentWorker() != null;
+    }
+
+    // from interface RunQueue
+    public boolean isRunning ()
+    {
+        return !_shutdown;
+    }
+
+    // from interface Executor
+    public void execute (Runnable command)
+    {
+        postRunnable(command);
+    }
+
+    // from interface RunQueueMetrics.Source
+    public RunQueueMetrics getMetrics ()
+    {
+        return _metrics;
+    }
+
+    // from interface RunQueueMetrics.Source
+    public void setMetricsEnabled (boolean enabled)
+    {
+        _metrics = enabled ? new RunQueueMetrics(_name) : null;
+    }
+
+    @Override
+    public String toString ()
+    {
+        return "[workers=" + _workers.length + ", pending=" + _pending.get() +
+            ", steals=" + _steals.get() + ", running=" + isRunning() + "]";
+    }
+
+    protected void checkRunning ()
+    {
+        if (_shutdown) {
+            RunQueueMetrics metrics = _metrics;
+            if (metrics != null) {
+                metrics.noteRejected();
+            }
+            throw new IllegalStateException("Cannot post runnables to shutdown run queue.");
+        }
+    }
+
+    /**
+     * Returns the worker that is the current thread, or null.
+     */
+    protected Worker currentWorker ()
+    {
+        Thread thread = Thread.currentThread();
+        return (thread instanceof Worker && ((Worker)thread).getQueue() == this) ?
+            (Worker)thread : null;
+    }
+
+    /**
+     * Returns the index of the worker to receive the next runnable posted from outside.
+     */
+    protected int nextWorker ()
+    {
+        return (_next.getAndIncrement() & Integer.MAX_VALUE) % _workers.length;
+    }
+
+    /**
+     * Accounts for newly posted runnables and wakes idle workers to run them. Idle workers
+     * register themselves before checking for pending runnables, so either they see these
+     * runnables or we see them.
+     */
+    protected void posted (int count)
+    {
+        _pending.addAndGet(count);
+        if (_idle.get() > 0) {
+            synchronized (_lock) {
+                for (int ii = Math.min(count, _idle.get()); ii > 0; ii--) {
+                    _lock.notify();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the next runnable for the specified worker, from its own deque or stolen from
+     * another, or null if none are to be found.
+     */
+    protected Runnable take (Worker worker)
+    {
+        Runnable r = worker.pollFirst();
+        if (r == null) {
+            for (int ii = 1, ll = _workers.length; ii < ll && r == null; ii++) {
+                r = _workers[(worker.index + ii) % ll].pollLast();
+            }
+            if (r != null) {
+                _steals.incrementAndGet();
+            }
+        }
+        if (r != null) {
+            _pending.decrementAndGet();
+        }
+        return r;
+    }
+
+    /**
+     * Waits until runnables are posted or we are shut down.
+     *
+     * @return false if the worker should exit.
+     */
+    protected boolean awaitWork ()
+    {
+        synchronized (_lock) {
+            _idle.incrementAndGet();
+            try {
+                while (_pending.get() <= 0) {
+                    if (_shutdown) {
+                        return false;
+                    }
+                    try {
+                        _lock.wait();
+                    } catch (InterruptedException ie) {
+                        // loop around and check again
+                    }
+                }
+                return true;
+            } finally {
+                _idle.decrementAndGet();
+            }
+        }
+    }
+
+    /** A worker thread, and its deque of runnables. */
+    protected class Worker extends Thread
+    {
+        public final int index;
+
+        public Worker (String name, int index) {
+            super(name);
+            this.index = index;
+            setDaemon(true);
+        }
+
+        public WorkStealingRunQueue getQueue () {
+            return WorkStealingRunQueue.this;
+        }
+
+        // we lock the deque rather than the thread, whose monitor is used by join()
+        public void add (Runnable r) {
+            synchronized (_tasks) {
+                _tasks.addLast(r);
+            }
+        }
+
+        public void addAll (Iterator<? extends Runnable> iter, int count) {
+            synchronized (_tasks) {
+                for (int ii = 0; ii < count; ii++) {
+                    _tasks.addLast(iter.next());
+                }
+            }
+        }
+
+        public Runnable pollFirst () {
+            synchronized (_tasks) {
+                return _tasks.pollFirst();
+            }
+        }
+
+        public Runnable pollLast () {
+            synchronized (_tasks) {
+                return _tasks.pollLast();
+            }
+        }
+
+        @Override public void run () {
+            while (true) {
+                Runnable r = take(this);
+                if (r == null) {
+                    if (!awaitWork()) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    r.run();
+                } catch (Throwable t) {
+                    log.warning("Runnable posted to RunQueue barfed.", t);
+                }
+            }
+        }
+
+        protected final ArrayDeque<Runnable> _tasks = new ArrayDeque<Runnable>();
+    }
+
+    /** Our name, used to identify our metrics. */
+    protected final String _name;
+
+    /** The metrics we're recording, or null. */
+    protected volatile RunQueueMetrics _metrics;
+
+    /** Our workers. */
+    protected final Worker[] _workers;
+
+    /** Used to select the worker that receives runnables posted from outside. */
+    protected final AtomicInteger _next = new AtomicInteger();
+
+    /** The number of runnables waiting to be run, and of workers waiting for them. */
+    protected final AtomicInteger _pending = new AtomicInteger(), _idle = new AtomicInteger();
+
+    /** The number of runnables stolen from one worker by another. */
+    protected final AtomicLong _steals = new AtomicLong();
+
+    /** Idle workers wait on this monitor. */
+    protected final Object _lock = new Object();
+
+    /** Set when we have been shut down. */
+    protected volatile boolean _shutdown;
+}
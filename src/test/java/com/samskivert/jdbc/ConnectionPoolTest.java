@@ -0,0 +1,228 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.samskivert.io.PersistenceException;
+import com.samskivert.util.BasicRunQueue;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ConnectionPool} and its use by the {@link StaticConnectionProvider}.
+ */
+public class ConnectionPoolTest
+{
+    @Test
+    public void testBorrowAndRelease ()
+        throws Exception
+    {
+        ConnectionPool pool = createPool("pool_borrow", 2, 100);
+        Connection c1 = pool.borrow(), c2 = pool.borrow();
+        assertNotSame(c1, c2);
+        assertEquals(2, pool.getStats().active);
+
+        // the pool is full, so we'll time out
+        try {
+            pool.borrow();
+            fail();
+        } catch (PersistenceException pe) {
+            // expected
+        }
+        assertEquals(1, pool.getStats().timeouts);
+
+        // released connections are reused
+        pool.release(c1);
+        assertEquals(1, pool.getStats().idle);
+        assertSame(c1, pool.borrow());
+
+        // invalidated connections are closed and replaced
+        pool.invalidate(c2);
+        assertTrue(c2.isClosed());
+        Connection c3 = pool.borrow();
+        assertNotSame(c2, c3);
+
+        ConnectionPool.Stats stats = pool.getStats();
+        assertEquals(2, stats.active);
+        assertEquals(3, stats.opened);
+        assertEquals(1, stats.closed);
+        assertEquals(4, stats.borrowed);
+
+        // connections closed behind our back fail validation and are replaced
+        pool.release(c1);
+        c1.close();
+        assertNotSame(c1, pool.borrow());
+        assertEquals(1, pool.getStats().invalid);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testWaiterHandoff ()
+        throws Exception
+    {
+        final ConnectionPool pool = createPool("pool_handoff", 1, 5000);
+        Connection conn = pool.borrow();
+
+        final AtomicReference<Connection> got = new AtomicReference<Connection>();
+        final AtomicReference<PersistenceException> error =
+            new AtomicReference<PersistenceException>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread() {
+            @Override public void run () {
+                try {
+                    got.set(pool.borrow());
+                } catch (PersistenceException pe) {
+                    error.set(pe);
+                }
+                done.countDown();
+            }
+        };
+        waiter.start();
+        while (pool.getStats().waiting == 0) {
+            Thread.sleep(1);
+        }
+
+        // our released connection goes to the waiter, not to the idle list
+        pool.release(conn);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNull(error.get());
+        assertSame(conn, got.get());
+        assertEquals(0, pool.getStats().idle);
+        assertTrue(pool.getStats().waitMax > 0);
+        pool.release(conn);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testEviction ()
+        throws Exception
+    {
+        ConnectionPool.Config config = new ConnectionPool.Config();
+        config.minSize = 1;
+        config.maxSize = 3;
+        config.idleTimeout = 1;
+        config.evictInterval = 0; // we'll evict manually
+        ConnectionPool pool = new ConnectionPool("pool_evict", config, factory("pool_evict"));
+
+        // eviction tops us up to our minimum size
+        pool.evict();
+        assertEquals(1, pool.getStats().idle);
+
+        Connection c1 = pool.borrow(), c2 = pool.borrow(), c3 = pool.borrow();
+        pool.release(c1);
+        pool.release(c2);
+        pool.release(c3);
+        Thread.sleep(5);
+
+        // idle connections are closed down to our minimum size
+        pool.evict();
+        ConnectionPool.Stats stats = pool.getStats();
+        assertEquals(1, stats.idle);
+        assertEquals(1, stats.total);
+        assertEquals(2, stats.closed);
+        pool.shutdown();
+        assertEquals(0, pool.getStats().total);
+    }
+
+    @Test
+    public void testEvictQueue ()
+        throws Exception
+    {
+        ConnectionPool.Config config = new ConnectionPool.Config();
+        config.minSize = 1;
+        config.evictInterval = 10;
+        final ConnectionPool.Factory factory = factory("pool_evictq");
+        final AtomicReference<Thread> opener = new AtomicReference<Thread>();
+        BasicRunQueue queue = new BasicRunQueue("evict");
+        queue.start();
+        ConnectionPool.Factory recorder = new ConnectionPool.Factory() {
+            public Connection openConnection () throws PersistenceException {
+                opener.set(Thread.currentThread());
+                return factory.openConnection();
+            }
+            public ConnectionState createState (Connection conn) throws SQLException {
+                return factory.createState(conn);
+            }
+        };
+        ConnectionPool pool = new ConnectionPool("pool_evictq", config, recorder, queue);
+
+        // the periodic eviction tops us up to our minimum size on the supplied queue
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getStats().idle == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, pool.getStats().idle);
+        assertSame(queue, opener.get());
+        pool.shutdown();
+        queue.shutdown();
+    }
+
+    @Test
+    public void testProvider ()
+        throws Exception
+    {
+        Properties props = new Properties();
+        props.setProperty("default.driver", "org.hsqldb.jdbcDriver");
+        props.setProperty("default.username", "sa");
+        props.setProperty("default.password", "");
+        props.setProperty("default.url", "jdbc:hsqldb:mem:pool_provider");
+        props.setProperty("pooled.pool.enabled", "true");
+        props.setProperty("pooled.pool.maxSize", "2");
+        StaticConnectionProvider provider = new StaticConnectionProvider(props);
+
+        // unpooled identifiers share a single connection
+        assertSame(provider.getConnection("plain", false), provider.getConnection("plain", false));
+        assertNull(provider.getPoolStats("plain", false));
+
+        Connection c1 = provider.getConnection("pooled", false);
+        Connection c2 = provider.getConnection("pooled", false);
+        assertNotSame(c1, c2);
+        assertEquals(2, provider.getPoolStats("pooled", false).active);
+        provider.releaseConnection("pooled", false, c1);
+        provider.connectionFailed("pooled", false, c2, new SQLException("Test failure"));
+        ConnectionPool.Stats stats = provider.getPoolStats("pooled", false);
+        assertEquals(0, stats.active);
+        assertEquals(1, stats.idle);
+        assertEquals(1, stats.closed);
+
+        provider.shutdown();
+        assertTrue(c1.isClosed());
+    }
+
+    protected static ConnectionPool createPool (String dbname, int maxSize, long maxWait)
+    {
+        ConnectionPool.Config config = new ConnectionPool.Config();
+        config.maxSize = maxSize;
+        config.maxWait = maxWait;
+        return new ConnectionPool(dbname, config, factory(dbname));
+    }
+
+    protected static ConnectionPool.Factory factory (final String dbname)
+    {
+        final Properties props = new Properties();
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        return new ConnectionPool.Factory() {
+            public Connection openConnection () throws PersistenceException {
+                try {
+                    return new org.hsqldb.jdbcDriver().connect("jdbc:hsqldb:mem:" + dbname, props);
+                } catch (SQLException sqe) {
+                    throw new PersistenceException(sqe);
+                }
+            }
+            public ConnectionState createState (Connection conn) throws SQLException {
+                return ConnectionState.forConnection(conn);
+            }
+        };
+    }
+}
@@ -0,0 +1,141 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.samskivert.io.PersistenceException;
+import com.samskivert.jdbc.jora.Cursor;
+import com.samskivert.jdbc.jora.Table;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link JORARepository}, and the streaming of rows in particular.
+ */
+public class JORARepositoryTest
+{
+    public static class Item
+    {
+        public int itemId;
+        public String name;
+    }
+
+    @Test
+    public void testStreamAll ()
+        throws Exception
+    {
+        ConnectionProvider provider = StaticConnectionProvider.forTest("jorarepo_stream");
+        TestRepository repo = new TestRepository(provider);
+        for (int ii = 0; ii < 250; ii++) {
+            repo.insertItem(ii, "item" + ii);
+        }
+
+        final List<Integer> ids = new ArrayList<Integer>();
+        int count = repo.streamItems(new JORARepository.RowHandler<Item>() {
+            public void handle (Item item) {
+                ids.add(item.itemId);
+            }
+        });
+        assertEquals(250, count);
+        assertEquals(250, ids.size());
+        for (int ii = 0; ii < 250; ii++) {
+            assertEquals(ii, ids.get(ii).intValue());
+        }
+
+        // exceptions thrown by the handler stop the stream and are passed on
+        try {
+            repo.streamItems(new JORARepository.RowHandler<Item>() {
+                public void handle (Item item) throws PersistenceException {
+                    throw new PersistenceException("Expected failure");
+                }
+            });
+            fail();
+        } catch (PersistenceException pe) {
+            assertEquals("Expected failure", pe.getMessage());
+        }
+        provider.shutdown();
+    }
+
+    @Test
+    public void testCursorConfig ()
+        throws Exception
+    {
+        ConnectionProvider provider = StaticConnectionProvider.forTest("jorarepo_cursor");
+        TestRepository repo = new TestRepository(provider);
+        repo.insertItem(1, "one");
+        repo.insertItem(2, "two");
+
+        Connection conn = provider.getConnection("test", true);
+        Cursor<Item> cursor = repo.getTable().select(conn, "").setFetchSize(1);
+        assertNotNull(cursor.next());
+        try {
+            cursor.setStreaming(new HsqldbLiaison(), 10);
+            fail();
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+        assertNotNull(cursor.next());
+        assertNull(cursor.next());
+
+        // a liaison that doesn't extend BaseLiaison needn't know how to stream; the cursor just
+        // sets the fetch size (and our liaison fails if it's consulted at all)
+        DatabaseLiaison foreign = (DatabaseLiaison)Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { DatabaseLiaison.class },
+            new InvocationHandler() {
+                public Object invoke (Object proxy, Method method, Object[] args) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        cursor = repo.getTable().select(conn, "").setStreaming(foreign, 1);
+        assertNotNull(cursor.next());
+        assertNotNull(cursor.next());
+        assertNull(cursor.next());
+        provider.releaseConnection("test", true, conn);
+        provider.shutdown();
+    }
+
+    protected static class TestRepository extends JORARepository
+    {
+        public TestRepository (ConnectionProvider provider) {
+            super(provider, "test");
+        }
+
+        public void insertItem (int itemId, String name) throws PersistenceException {
+            Item item = new Item();
+            item.itemId = itemId;
+            item.name = name;
+            insert(_items, item);
+        }
+
+        public int streamItems (RowHandler<Item> handler) throws PersistenceException {
+            return streamAll(_items, "order by ITEM_ID", 100, handler);
+        }
+
+        public Table<Item> getTable () {
+            return _items;
+        }
+
+        @Override protected void migrateSchema (Connection conn, DatabaseLiaison liaison)
+            throws SQLException, PersistenceException {
+            JDBCUtil.createTableIfMissing(conn, "ITEMS", new String[] {
+                "ITEM_ID integer primary key", "NAME varchar(64)" }, "");
+        }
+
+        @Override protected void createTables () {
+            _items = new Table<Item>(Item.class, "ITEMS", "ITEM_ID", true);
+        }
+
+        protected Table<Item> _items;
+    }
+}
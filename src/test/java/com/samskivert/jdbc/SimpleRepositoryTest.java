@@ -0,0 +1,124 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import com.samskivert.io.PersistenceException;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link SimpleRepository} and the caching of {@link ConnectionState} by the providers.
+ */
+public class SimpleRepositoryTest
+{
+    @Test
+    public void testConnectionState ()
+        throws Exception
+    {
+        ConnectionStateProvider provider =
+            (ConnectionStateProvider)StaticConnectionProvider.forTest("simplerepo_state");
+        TestRepository repo = new TestRepository(provider);
+        repo.update("create table items (id integer)");
+        assertEquals(1, repo.update("insert into items values (1)"));
+
+        // the state is created once and then reused, and auto-commit is restored after each op
+        Connection conn = provider.getConnection("test", false);
+        ConnectionState state = provider.getConnectionState("test", false, conn);
+        assertSame(state, provider.getConnectionState("test", false, conn));
+        assertTrue(state.liaison instanceof HsqldbLiaison);
+        assertTrue(state.supportsTransactions);
+        assertTrue(state.getAutoCommit(conn));
+        assertTrue(conn.getAutoCommit());
+        provider.releaseConnection("test", false, conn);
+
+        // a failed connection's state is discarded along with it
+        provider.connectionFailed("test", false, conn, new SQLException("Test failure"));
+        Connection nconn = provider.getConnection("test", false);
+        assertNotSame(state, provider.getConnectionState("test", false, nconn));
+        provider.releaseConnection("test", false, nconn);
+
+        assertEquals(1, repo.update("insert into items values (2)"));
+        provider.shutdown();
+    }
+
+    @Test
+    public void testPooledManualCommit ()
+        throws Exception
+    {
+        Properties props = new Properties();
+        props.setProperty("default.driver", "org.hsqldb.jdbcDriver");
+        props.setProperty("default.username", "sa");
+        props.setProperty("default.password", "");
+        props.setProperty("default.url", "jdbc:hsqldb:mem:simplerepo_pooled");
+        props.setProperty("test.pool.enabled", "true");
+        props.setProperty("test.pool.maxSize", "1");
+        StaticConnectionProvider provider = new StaticConnectionProvider(props);
+        TestRepository repo = new TestRepository(provider);
+        repo.update("create table items (id integer)");
+
+        // pooled connections are left in manual-commit mode rather than toggled for every op
+        Connection conn = provider.getConnection("test", false);
+        ConnectionState state = provider.getConnectionState("test", false, conn);
+        assertTrue(state.getRetainManualCommit());
+        assertFalse(state.getAutoCommit(conn));
+        assertFalse(conn.getAutoCommit());
+        provider.releaseConnection("test", false, conn);
+        assertEquals(1, repo.update("insert into items values (1)"));
+        assertFalse(conn.getAutoCommit());
+        provider.shutdown();
+    }
+
+    @Test
+    public void testPlainProvider ()
+        throws Exception
+    {
+        // a provider that doesn't cache connection states (as may be implemented outside this
+        // library) exposes only the ConnectionProvider interface
+        final ConnectionProvider sprov = StaticConnectionProvider.forTest("simplerepo_plain");
+        ConnectionProvider provider = (ConnectionProvider)Proxy.newProxyInstance(
+            ConnectionProvider.class.getClassLoader(), new Class<?>[] { ConnectionProvider.class },
+            new InvocationHandler() {
+                public Object invoke (Object proxy, Method method, Object[] args)
+                    throws Throwable {
+                    try {
+                        return method.invoke(sprov, args);
+                    } catch (InvocationTargetException ite) {
+                        throw ite.getCause();
+                    }
+                }
+            });
+        assertFalse(provider instanceof ConnectionStateProvider);
+
+        TestRepository repo = new TestRepository(provider);
+        repo.update("create table items (id integer)");
+        assertEquals(1, repo.update("insert into items values (1)"));
+        Connection conn = provider.getConnection("test", false);
+        assertTrue(conn.getAutoCommit());
+        provider.releaseConnection("test", false, conn);
+        sprov.shutdown();
+    }
+
+    protected static class TestRepository extends SimpleRepository
+    {
+        public TestRepository (ConnectionProvider provider) {
+            super(provider, "test");
+        }
+
+        @Override public int update (String query) throws PersistenceException {
+            return super.update(query);
+        }
+    }
+}
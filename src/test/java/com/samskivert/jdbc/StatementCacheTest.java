@@ -0,0 +1,130 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import com.samskivert.io.PersistenceException;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link StatementCache} and its use via the {@link StaticConnectionProvider}.
+ */
+public class StatementCacheTest
+{
+    @Test
+    public void testCache ()
+        throws Exception
+    {
+        Connection conn = new org.hsqldb.jdbcDriver().connect(
+            "jdbc:hsqldb:mem:stmtcache", props("sa", ""));
+        StatementCache cache = new StatementCache(conn, 2, new StatementCache.Metrics());
+
+        // a closed statement is returned to the cache and reused
+        PreparedStatement s1 = cache.prepareStatement("values (cast(? as integer))");
+        s1.setInt(1, 42);
+        ResultSet rs = s1.executeQuery();
+        assertTrue(rs.next());
+        assertEquals(42, rs.getInt(1));
+        s1.close();
+        assertTrue(s1.isClosed());
+        assertEquals(1, cache.size());
+        try {
+            s1.executeQuery();
+            fail();
+        } catch (SQLException sqe) {
+            // expected
+        }
+
+        PreparedStatement s2 = cache.prepareStatement("values (cast(? as integer))");
+        assertEquals(0, cache.size());
+        assertFalse(s2.isClosed());
+        // a second concurrent use of the same SQL gets its own statement
+        PreparedStatement s3 = cache.prepareStatement("values (cast(? as integer))");
+        s2.close();
+        s3.close();
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMetrics().getHits());
+        assertEquals(2, cache.getMetrics().getMisses());
+
+        // least recently used statements are evicted
+        cache.prepareStatement("values (1)").close();
+        cache.prepareStatement("values (2)").close();
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getMetrics().getEvictions());
+
+        // statements with modified settings are not cached
+        PreparedStatement s4 = cache.prepareStatement("values (3)");
+        s4.setMaxRows(1);
+        s4.close();
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        conn.close();
+    }
+
+    @Test
+    public void testRepository ()
+        throws Exception
+    {
+        Properties props = new Properties();
+        props.setProperty("default.driver", "org.hsqldb.jdbcDriver");
+        props.setProperty("default.username", "sa");
+        props.setProperty("default.password", "");
+        props.setProperty("default.url", "jdbc:hsqldb:mem:stmtcache_repo");
+        props.setProperty("test.statementCache", "8");
+        StaticConnectionProvider provider = new StaticConnectionProvider(props);
+        TestRepository repo = new TestRepository(provider);
+
+        for (int ii = 0; ii < 5; ii++) {
+            assertEquals(ii, repo.select(ii));
+        }
+        StatementCache.Metrics metrics = provider.getStatementCacheMetrics("test", true);
+        assertEquals(4, metrics.getHits());
+        assertEquals(1, metrics.getMisses());
+        provider.shutdown();
+    }
+
+    protected static class TestRepository extends SimpleRepository
+    {
+        public TestRepository (ConnectionProvider provider) {
+            super(provider, "test");
+        }
+
+        public int select (final int value) throws PersistenceException {
+            return execute(new Operation<Integer>() {
+                public Integer invoke (Connection conn, DatabaseLiaison liaison)
+                    throws SQLException, PersistenceException
+                {
+                    PreparedStatement stmt = conn.prepareStatement("values (cast(? as integer))");
+                    try {
+                        stmt.setInt(1, value);
+                        ResultSet rs = stmt.executeQuery();
+                        rs.next();
+                        return rs.getInt(1);
+                    } finally {
+                        JDBCUtil.close(stmt);
+                    }
+                }
+            });
+        }
+    }
+
+    protected static Properties props (String user, String password)
+    {
+        Properties props = new Properties();
+        props.setProperty("user", user);
+        props.setProperty("password", password);
+        return props;
+    }
+}
@@ -0,0 +1,212 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.jdbc.jora;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the mapping of objects to rows by {@link Table}, and the {@link FieldAccessor}s it uses.
+ */
+public class TableTest
+{
+    public static class Record
+    {
+        public int recordId;
+        public long visits;
+        public boolean flag;
+        public double ratio;
+        public Integer ranking;
+        public Float score;
+        public String name;
+        public Timestamp created;
+        private short secret;
+
+        public short getSecret () {
+            return secret;
+        }
+
+        public void setSecret (short value) {
+            secret = value;
+        }
+    }
+
+    @Test
+    public void testRoundTrip ()
+        throws Exception
+    {
+        Properties props = new Properties();
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        Connection conn = new org.hsqldb.jdbcDriver().connect("jdbc:hsqldb:mem:jora_table", props);
+        Statement stmt = conn.createStatement();
+        stmt.executeUpdate("create table RECORDS (RECORD_ID integer primary key, " +
+                           "VISITS bigint, FLAG boolean, RATIO double, RANKING integer, " +
+                           "SCORE real, NAME varchar(64), CREATED timestamp, " +
+                           "SECRET smallint)");
+        stmt.close();
+
+        Table<Record> table = new Table<Record>(Record.class, "RECORDS", "RECORD_ID", true);
+        // rows are created and (save for the private field) accessed by generated code
+        assertNotNull(table._factory);
+        for (FieldDescriptor fd : table.fields) {
+            assertEquals(fd.field.getName(), !fd.field.getName().equals("secret"),
+                         fd.access instanceof FieldAccessor.Generated);
+        }
+        Record rec = new Record();
+        rec.recordId = 1;
+        rec.visits = 1L << 40;
+        rec.flag = true;
+        rec.ratio = 0.5;
+        rec.ranking = 7;
+        rec.score = 2.5f;
+        rec.name = "one";
+        rec.created = new Timestamp(System.currentTimeMillis());
+        rec.setSecret((short)3);
+        table.insert(conn, rec);
+
+        // wrapper fields may be null
+        Record nulls = new Record();
+        nulls.recordId = 2;
+        table.insert(conn, nulls);
+
+        List<Record> recs = table.select(conn, "order by RECORD_ID").toArrayList();
+        assertEquals(2, recs.size());
+        Record got = recs.get(0);
+        assertEquals(1, got.recordId);
+        assertEquals(1L << 40, got.visits);
+        assertTrue(got.flag);
+        assertEquals(0.5, got.ratio, 0);
+        assertEquals(Integer.valueOf(7), got.ranking);
+        assertEquals(Float.valueOf(2.5f), got.score);
+        assertEquals("one", got.name);
+        assertEquals(rec.created, got.created);
+        assertEquals(3, got.getSecret());
+        assertNull(recs.get(1).ranking);
+        assertNull(recs.get(1).score);
+        assertNull(recs.get(1).name);
+
+        got.name = "uno";
+        got.score = null;
+        assertEquals(1, table.update(conn, got));
+        got = table.select(conn, "where RECORD_ID = 1").get();
+        assertEquals("uno", got.name);
+        assertNull(got.score);
+
+        assertEquals(1, table.delete(conn, got));
+        assertEquals(1, table.select(conn, "").toArrayList().size());
+        conn.close();
+    }
+
+    @Test
+    public void testAccessors ()
+        throws Exception
+    {
+        AccessorGenerator gen = AccessorGenerator.forClass(Record.class);
+        Field field = Record.class.getDeclaredField("secret");
+        field.setAccessible(true);
+        // a private field can't be accessed by a generated class, so falls back to reflection
+        FieldAccessor secret = FieldAccessor.create(field, gen);
+        assertFalse(secret instanceof FieldAccessor.Generated);
+
+        Record rec = new Record();
+        secret.setShort(rec, (short)5);
+        assertEquals(5, secret.getShort(rec));
+        assertEquals(Short.valueOf((short)5), secret.get(rec));
+        // a mismatched typed accessor is rejected rather than corrupting the object
+        try {
+            secret.setLong(rec, 5L);
+            fail();
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+
+        Field name = Record.class.getField("name");
+        FieldAccessor nameAccess = FieldAccessor.create(name, gen);
+        assertTrue(nameAccess instanceof FieldAccessor.Generated);
+        nameAccess.set(rec, "foo");
+        assertEquals("foo", rec.name);
+        try {
+            nameAccess.set(rec, 3);
+            fail();
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+        try {
+            secret.getShort("not a record");
+            fail();
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+        try {
+            nameAccess.get("not a record");
+            fail();
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGenerated ()
+        throws Exception
+    {
+        AccessorGenerator gen = AccessorGenerator.forClass(Record.class);
+        Record rec = new Record();
+
+        FieldAccessor visits = FieldAccessor.create(Record.class.getField("visits"), gen);
+        assertTrue(visits instanceof FieldAccessor.Generated);
+        visits.setLong(rec, 1L << 40);
+        assertEquals(1L << 40, visits.getLong(rec));
+        assertEquals(Long.valueOf(1L << 40), visits.get(rec));
+        visits.set(rec, 3L);
+        assertEquals(3L, rec.visits);
+        try {
+            visits.setInt(rec, 3);
+            fail();
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+        try {
+            visits.set(rec, "three");
+            fail();
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+
+        FieldAccessor ratio = FieldAccessor.create(Record.class.getField("ratio"), gen);
+        ratio.setDouble(rec, 0.25);
+        assertEquals(0.25, rec.ratio, 0);
+        assertEquals(Double.valueOf(0.25), ratio.get(rec));
+
+        FieldAccessor flag = FieldAccessor.create(Record.class.getField("flag"), gen);
+        flag.set(rec, Boolean.TRUE);
+        assertTrue(flag.getBoolean(rec));
+
+        FieldAccessor score = FieldAccessor.create(Record.class.getField("score"), gen);
+        score.set(rec, 1.5f);
+        assertEquals(Float.valueOf(1.5f), score.get(rec));
+        score.set(rec, null);
+        assertNull(rec.score);
+
+        FieldAccessor.Factory factory = gen.createFactory(Record.class);
+        assertNotNull(factory);
+        assertTrue(factory.newInstance() instanceof Record);
+        // classes that a generated factory can't instantiate fall back to reflection
+        assertNull(gen.createFactory(Hidden.class));
+        assertNull(gen.createFactory(Number.class));
+    }
+
+    protected static class Hidden
+    {
+    }
+}
@@ -5,8 +5,60 @@
 
 package com.samskivert.util;
 
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
 public class ArrayIntSetTest extends IntSetTestBase
 {
+    @Test
+    public void testBulkOps ()
+    {
+        Random rando = new Random(42);
+        // mix comparably sized sets (merged) with lopsided ones (galloped)
+        int[] sizes = { 0, 1, 5, 50, 500, 5000 };
+        for (int asize : sizes) {
+            for (int bsize : sizes) {
+                for (int trial = 0; trial < 10; trial++) {
+                    ArrayIntSet a = randomSet(rando, asize), b = randomSet(rando, bsize);
+                    TreeSet<Integer> ja = new TreeSet<Integer>(a), jb = new TreeSet<Integer>(b);
+
+                    TreeSet<Integer> expect = new TreeSet<Integer>(ja);
+                    expect.retainAll(jb);
+                    assertEquals(expect, IntSets.and(a, b));
+                    ArrayIntSet result = a.clone();
+                    assertEquals(expect.size() != a.size(), result.retainAll(b));
+                    assertEquals(expect, result);
+
+                    expect = new TreeSet<Integer>(ja);
+                    expect.addAll(jb);
+                    assertEquals(expect, IntSets.or(a, b));
+                    result = a.clone();
+                    assertEquals(expect.size() != a.size(), result.addAll(b));
+                    assertEquals(expect, result);
+
+                    expect = new TreeSet<Integer>(ja);
+                    expect.removeAll(jb);
+                    assertEquals(expect, IntSets.difference(a, b));
+                    result = a.clone();
+                    assertEquals(expect.size() != a.size(), result.removeAll(b));
+                    assertEquals(expect, result);
+                }
+            }
+        }
+    }
+
+    protected ArrayIntSet randomSet (Random rando, int size)
+    {
+        ArrayIntSet set = new ArrayIntSet();
+        while (set.size() < size) {
+            set.add(rando.nextInt(size * 4) - size);
+        }
+        return set;
+    }
+
     @Override
     protected AbstractIntSet createSet ()
     {
@@ -0,0 +1,21 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+public class ArrayLongSetTest extends LongSetTestBase
+{
+    @Override
+    protected AbstractLongSet createSet ()
+    {
+        return new ArrayLongSet();
+    }
+
+    @Override
+    protected AbstractLongSet createSet (long[] values)
+    {
+        return new ArrayLongSet(values);
+    }
+}
@@ -0,0 +1,156 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class BitmapIntSetTest extends IntSetTestBase
+{
+    @Test
+    public void testContainers ()
+    {
+        Random rando = new Random(42);
+        BitmapIntSet set = new BitmapIntSet();
+        TreeSet<Integer> jset = new TreeSet<Integer>();
+        for (int ii = 0; ii < 20000; ii++) {
+            int value = randomValue(rando);
+            assertEquals(jset.add(value), set.add(value));
+        }
+        assertEquals(jset, set);
+        assertArrayEquals(toArray(jset), set.toIntArray());
+
+        // runs survive optimization and conversion back to arrays and bitmaps on mutation
+        set.runOptimize();
+        assertEquals(jset, set);
+        for (int ii = 0; ii < 20000; ii++) {
+            int value = randomValue(rando);
+            if (rando.nextBoolean()) {
+                assertEquals(jset.add(value), set.add(value));
+            } else {
+                assertEquals(jset.remove(value), set.remove(value));
+            }
+            assertEquals(jset.size(), set.size());
+        }
+        assertEquals(jset, set);
+        assertArrayEquals(toArray(jset), set.toIntArray());
+
+        // remove every other value through the iterator
+        boolean drop = false;
+        for (Iterator<Integer> it = set.iterator(); it.hasNext(); ) {
+            Integer value = it.next();
+            if (drop = !drop) {
+                it.remove();
+                jset.remove(value);
+            }
+        }
+        assertEquals(jset, set);
+    }
+
+    @Test
+    public void testBulkOps ()
+    {
+        Random rando = new Random(42);
+        for (int trial = 0; trial < 50; trial++) {
+            BitmapIntSet a = randomSet(rando), b = randomSet(rando);
+            if (rando.nextBoolean()) {
+                a.runOptimize();
+            }
+            TreeSet<Integer> ja = new TreeSet<Integer>(a), jb = new TreeSet<Integer>(b);
+
+            TreeSet<Integer> expect = new TreeSet<Integer>(ja);
+            expect.retainAll(jb);
+            assertEquals(expect, BitmapIntSet.and(a, b));
+            assertEquals(expect, IntSets.and(a, b));
+
+            expect = new TreeSet<Integer>(ja);
+            expect.addAll(jb);
+            assertEquals(expect, BitmapIntSet.or(a, b));
+            assertEquals(expect, IntSets.or(a, b));
+
+            expect = new TreeSet<Integer>(ja);
+            expect.removeAll(jb);
+            BitmapIntSet result = BitmapIntSet.andNot(a, b);
+            assertEquals(expect, result);
+            assertEquals(expect.size(), result.size());
+            assertEquals(expect, IntSets.difference(a, b));
+
+            // the operands must not have been modified
+            assertEquals(ja, a);
+            assertEquals(jb, b);
+        }
+    }
+
+    @Test
+    public void testSerialize ()
+        throws Exception
+    {
+        BitmapIntSet set = randomSet(new Random(42));
+        set.runOptimize();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream oout = new ObjectOutputStream(bout);
+        oout.writeObject(set);
+        oout.close();
+        ObjectInputStream oin = new ObjectInputStream(
+            new ByteArrayInputStream(bout.toByteArray()));
+        BitmapIntSet copy = (BitmapIntSet)oin.readObject();
+        assertEquals(set, copy);
+        assertEquals(set.size(), copy.size());
+    }
+
+    @Override
+    protected AbstractIntSet createSet ()
+    {
+        return new BitmapIntSet();
+    }
+
+    @Override
+    protected AbstractIntSet createSet (int[] values)
+    {
+        return new BitmapIntSet(values);
+    }
+
+    protected static BitmapIntSet randomSet (Random rando)
+    {
+        BitmapIntSet set = new BitmapIntSet();
+        for (int ii = 0, count = rando.nextInt(20000); ii < count; ii++) {
+            set.add(randomValue(rando));
+        }
+        return set;
+    }
+
+    /**
+     * Returns values spread over a handful of chunks (including negative ones) so that some
+     * chunks are sparse, some dense and some nearly full.
+     */
+    protected static int randomValue (Random rando)
+    {
+        switch (rando.nextInt(4)) {
+        case 0: return rando.nextInt();                           // sparse everywhere
+        case 1: return (-1 << 16) | rando.nextInt(1 << 16);       // dense, negative
+        case 2: return (3 << 16) | (rando.nextInt(1 << 10) << 6); // medium density
+        default: return rando.nextInt(1 << 12) + 100;             // clustered run
+        }
+    }
+
+    protected static int[] toArray (TreeSet<Integer> set)
+    {
+        int[] values = new int[set.size()];
+        int idx = 0;
+        for (Integer value : set) {
+            values[idx++] = value;
+        }
+        return values;
+    }
+}
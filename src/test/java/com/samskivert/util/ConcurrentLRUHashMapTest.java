@@ -0,0 +1,98 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ConcurrentLRUHashMap} class.
+ */
+public class ConcurrentLRUHashMapTest
+{
+    @Test
+    public void testSizing ()
+    {
+        ConcurrentLRUHashMap<String,Integer> map =
+            new ConcurrentLRUHashMap<String,Integer>(10, new LRUHashMap.ItemSizer<Integer>() {
+            public int computeSize (Integer item) {
+                return item.intValue();
+            }
+        });
+        final AtomicInteger removed = new AtomicInteger();
+        map.setRemovalObserver(new ConcurrentLRUHashMap.RemovalObserver<String,Integer>() {
+            public void removedFromMap (ConcurrentLRUHashMap<String,Integer> map, Integer item) {
+                removed.addAndGet(item);
+            }
+        });
+
+        map.put("one.1", 1);
+        map.put("one.2", 1);
+        map.put("one.3", 1);
+        map.put("one.4", 1);
+        map.put("one.5", 1);
+        map.put("three.1", 3);
+        assertEquals(6, map.size());
+        map.put("five.1", 5);
+        assertEquals(4, map.size());
+        map.put("three.2", 3);
+        assertEquals(2, map.size());
+        map.put("three.3", 3);
+        assertEquals(2, map.size());
+        assertEquals(13, removed.get());
+
+        map.setCanFlush(false);
+        map.put("five.2", 5);
+        assertEquals(3, map.size());
+        map.setCanFlush(true);
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testConcurrent ()
+        throws Exception
+    {
+        final ConcurrentLRUHashMap<Integer,Integer> map =
+            new ConcurrentLRUHashMap<Integer,Integer>(1000);
+        map.setTracking(true);
+        final AtomicInteger removed = new AtomicInteger();
+        map.setRemovalObserver(new ConcurrentLRUHashMap.RemovalObserver<Integer,Integer>() {
+            public void removedFromMap (ConcurrentLRUHashMap<Integer,Integer> map, Integer item) {
+                removed.incrementAndGet();
+            }
+        });
+
+        final AtomicInteger added = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int ii = 0; ii < threads.length; ii++) {
+            final int seed = ii;
+            threads[ii] = new Thread() {
+                @Override public void run () {
+                    Random rando = new Random(seed);
+                    for (int jj = 0; jj < 20000; jj++) {
+                        Integer key = rando.nextInt(4000);
+                        if (map.get(key) == null && map.putIfAbsent(key, key) == null) {
+                            added.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // every added entry is either still in the map or was reported as removed
+        assertTrue(map.size() <= 1000 + threads.length);
+        assertEquals(added.get(), map.size() + removed.get());
+        int[] eff = map.getTrackedEffectiveness();
+        assertTrue(eff[0] > 0 && eff[1] > 0);
+    }
+}
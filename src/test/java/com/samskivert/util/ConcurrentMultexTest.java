@@ -0,0 +1,150 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ConcurrentMultex} and {@link PhasedBarrier} classes.
+ */
+public class ConcurrentMultexTest
+{
+    @Test
+    public void testFiresOnce ()
+        throws Exception
+    {
+        testFiresOnce(40);
+        testFiresOnce(150);
+    }
+
+    @Test
+    public void testReuse ()
+    {
+        final AtomicInteger fired = new AtomicInteger();
+        ConcurrentMultex multex = new ConcurrentMultex(new Runnable() {
+            public void run () {
+                fired.incrementAndGet();
+            }
+        }, 3);
+        for (int round = 1; round <= 3; round++) {
+            assertFalse(multex.satisfied(2));
+            assertFalse(multex.satisfied(2));
+            assertTrue(multex.isSatisfied(2));
+            assertFalse(multex.satisfied(0));
+            assertEquals(1, multex.getRemaining());
+            assertTrue(multex.satisfied(1));
+            assertEquals(round, fired.get());
+            assertEquals(3, multex.getRemaining());
+        }
+        try {
+            multex.satisfied(3);
+            fail();
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPhasedBarrier ()
+        throws Exception
+    {
+        final int parties = 4, phases = 50;
+        final AtomicInteger advances = new AtomicInteger(), overlaps = new AtomicInteger();
+        final int[] work = new int[parties];
+        final PhasedBarrier barrier = new PhasedBarrier(parties, new Runnable() {
+            public void run () {
+                advances.incrementAndGet();
+            }
+        }, null);
+        Thread[] threads = new Thread[parties];
+        for (int ii = 0; ii < parties; ii++) {
+            final int party = ii;
+            threads[ii] = new Thread() {
+                @Override public void run () {
+                    try {
+                        for (int pp = 0; pp < phases; pp++) {
+                            work[party] = pp;
+                            int phase = barrier.arriveAndAwaitAdvance(party);
+                            // everyone must have finished the phase we just left
+                            for (int oo = 0; oo < parties; oo++) {
+                                if (work[oo] < phase-1) {
+                                    overlaps.incrementAndGet();
+                                }
+                            }
+                        }
+                    } catch (InterruptedException ie) {
+                        // fall through and fail
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        assertEquals(phases, barrier.getPhase());
+        assertEquals(phases, advances.get());
+        assertEquals(0, overlaps.get());
+        assertEquals(parties, barrier.getUnarrived());
+        assertFalse(barrier.awaitAdvance(phases, 10, TimeUnit.MILLISECONDS));
+
+        barrier.arrive(0);
+        try {
+            barrier.arrive(0);
+            fail();
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+    }
+
+    protected void testFiresOnce (final int conditions)
+        throws Exception
+    {
+        for (int round = 0; round < 20; round++) {
+            testFiresOnceRound(conditions);
+        }
+    }
+
+    protected void testFiresOnceRound (final int conditions)
+        throws Exception
+    {
+        final AtomicInteger fired = new AtomicInteger();
+        final ConcurrentMultex multex = new ConcurrentMultex(new Runnable() {
+            public void run () {
+                fired.incrementAndGet();
+            }
+        }, conditions);
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1), done = new CountDownLatch(threads);
+        for (int ii = 0; ii < threads; ii++) {
+            final int party = ii;
+            new Thread() {
+                @Override public void run () {
+                    try {
+                        start.await();
+                        // each condition is satisfied by one thread, and the threads race to
+                        // satisfy the last one
+                        for (int cc = party; cc < conditions; cc += threads) {
+                            multex.satisfied(cc);
+                        }
+                    } catch (InterruptedException ie) {
+                        // fall through and fail
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        start.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, fired.get());
+        assertEquals(conditions, multex.getRemaining());
+    }
+}
@@ -0,0 +1,49 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class HashLongMapTest
+{
+    @Test
+    public void testAgainstHashMap ()
+    {
+        HashLongMap<Integer> map = new HashLongMap<Integer>();
+        LongLongMap lmap = new LongLongMap();
+        Map<Long,Integer> jmap = new HashMap<Long,Integer>();
+        Random rando = new Random(42);
+        for (int ii = 0; ii < 50000; ii++) {
+            // keys that differ only in their upper bits, plus the occasional zero
+            long key = (rando.nextInt(2000) - 1000) * (1L << 40);
+            switch (rando.nextInt(3)) {
+            case 0:
+                assertEquals(jmap.put(key, ii), map.put(key, Integer.valueOf(ii)));
+                lmap.put(key, ii);
+                break;
+            case 1:
+                Integer ovalue = jmap.remove(key);
+                assertEquals(ovalue, map.remove(key));
+                assertEquals(ovalue == null ? -1 : ovalue.longValue(), lmap.remove(key));
+                break;
+            default:
+                assertEquals(jmap.get(key), map.get(key));
+                assertEquals(jmap.containsKey(key), lmap.containsKey(key));
+                break;
+            }
+            assertEquals(jmap.size(), map.size());
+            assertEquals(jmap.size(), lmap.size());
+        }
+        assertEquals(jmap, map);
+        assertEquals(jmap.keySet(), map.longKeySet());
+        assertEquals(jmap.keySet(), lmap.keySet());
+    }
+}
@@ -0,0 +1,217 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link InvokerPool} class.
+ */
+public class InvokerPoolTest
+{
+    @Test
+    public void testKeyedOrdering ()
+        throws Exception
+    {
+        InvokerPool pool = new InvokerPool("test", DIRECT, 4);
+        pool.start();
+
+        final List<List<Integer>> seen = new ArrayList<List<Integer>>();
+        for (int kk = 0; kk < KEYS; kk++) {
+            seen.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        final AtomicInteger overlaps = new AtomicInteger();
+        for (int ii = 0; ii < UNITS; ii++) {
+            final int key = ii % KEYS, value = ii;
+            pool.postUnit(new Invoker.Unit() {
+                @Override public boolean invoke () {
+                    // only one unit for a given key may be active at once
+                    if (_active[key].incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    seen.get(key).add(value);
+                    Thread.yield();
+                    _active[key].decrementAndGet();
+                    return false;
+                }
+                @Override public Object getOrderingKey () {
+                    return key;
+                }
+            });
+        }
+        pool.shutdown();
+        awaitShutdown(pool);
+
+        assertEquals(0, overlaps.get());
+        for (int kk = 0; kk < KEYS; kk++) {
+            List<Integer> values = seen.get(kk);
+            assertEquals(UNITS/KEYS, values.size());
+            for (int ii = 0; ii < values.size(); ii++) {
+                assertEquals(kk + ii*KEYS, values.get(ii).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void testParallelKeys ()
+        throws Exception
+    {
+        InvokerPool pool = new InvokerPool("test", DIRECT, 2);
+        pool.start();
+
+        // the two units can only complete if they run at the same time
+        final CountDownLatch both = new CountDownLatch(2);
+        final AtomicInteger met = new AtomicInteger();
+        for (int ii = 0; ii < 2; ii++) {
+            final int key = ii;
+            pool.postUnit(new Invoker.Unit() {
+                @Override public boolean invoke () {
+                    both.countDown();
+                    try {
+                        if (both.await(5, TimeUnit.SECONDS)) {
+                            met.incrementAndGet();
+                        }
+                    } catch (InterruptedException ie) {
+                        // fall through and fail
+                    }
+                    return false;
+                }
+                @Override public Object getOrderingKey () {
+                    return key;
+                }
+            });
+        }
+        pool.shutdown();
+        awaitShutdown(pool);
+        assertEquals(2, met.get());
+    }
+
+    @Test
+    public void testResults ()
+        throws Exception
+    {
+        final RunQueue receiver = new BasicRunQueue();
+        ((BasicRunQueue)receiver).start();
+        InvokerPool pool = new InvokerPool("test", new RunQueue.AsExecutor(receiver), 3);
+        pool.start();
+
+        final CountDownLatch handled = new CountDownLatch(UNITS);
+        final AtomicInteger onReceiver = new AtomicInteger();
+        for (int ii = 0; ii < UNITS; ii++) {
+            pool.postUnit(new Invoker.Unit() {
+                @Override public boolean invoke () {
+                    return true;
+                }
+                @Override public void handleResult () {
+                    if (receiver.isDispatchThread()) {
+                        onReceiver.incrementAndGet();
+                    }
+                    handled.countDown();
+                }
+            });
+        }
+        // a failing unit must not disrupt the others
+        pool.postRunnable(new Runnable() {
+            public void run () {
+                throw new RuntimeException("Expected failure");
+            }
+        });
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertEquals(UNITS, onReceiver.get());
+
+        pool.shutdown();
+        awaitShutdown(pool);
+        assertEquals(0, pool.getPendingUnits());
+        ((BasicRunQueue)receiver).shutdown();
+
+        try {
+            pool.postUnit(new Invoker.Unit() {
+                @Override public boolean invoke () {
+                    return false;
+                }
+            });
+            fail();
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testShutdownBehindChain ()
+        throws Exception
+    {
+        InvokerPool pool = new InvokerPool("test", DIRECT, 4);
+        pool.start();
+
+        final AtomicInteger ran = new AtomicInteger();
+        for (int ii = 0; ii < 3; ii++) {
+            pool.postUnit(new Invoker.Unit() {
+                @Override public boolean invoke () {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ie) {
+                        // no matter
+                    }
+                    ran.incrementAndGet();
+                    return false;
+                }
+                @Override public Object getOrderingKey () {
+                    return "slow";
+                }
+            });
+        }
+        pool.shutdown();
+
+        // the idle workers wait for the chain to drain without spinning
+        ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+        if (tmx.isThreadCpuTimeSupported() && tmx.isThreadCpuTimeEnabled()) {
+            Thread.sleep(150);
+            long cpu = 0;
+            for (Invoker worker : pool._workers) {
+                cpu += Math.max(tmx.getThreadCpuTime(worker._dispatcher.getId()), 0L);
+            }
+            assertTrue("Workers spun during shutdown: " + cpu + "ns", cpu < 50 * 1000000L);
+        }
+
+        awaitShutdown(pool);
+        assertEquals(3, ran.get());
+    }
+
+    protected static void awaitShutdown (InvokerPool pool)
+        throws InterruptedException
+    {
+        for (Invoker worker : pool._workers) {
+            worker._dispatcher.join(5000L);
+        }
+        assertFalse(pool.isRunning());
+    }
+
+    protected static final int KEYS = 5, UNITS = 500;
+
+    protected static final Executor DIRECT = new Executor() {
+        public void execute (Runnable command) {
+            command.run();
+        }
+    };
+
+    protected static final AtomicInteger[] _active = new AtomicInteger[KEYS];
+    static {
+        for (int ii = 0; ii < KEYS; ii++) {
+            _active[ii] = new AtomicInteger();
+        }
+    }
+}
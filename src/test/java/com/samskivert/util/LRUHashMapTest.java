@@ -42,4 +42,37 @@ public class LRUHashMapTest
         map.put("three.3", 3);
         assertTrue("size == 2", map.size() == 2);
     }
+
+    @Test
+    public void testTinyLFU ()
+    {
+        int[] lru = runScan(LRUHashMap.EvictionPolicy.LRU);
+        int[] tlfu = runScan(LRUHashMap.EvictionPolicy.TINY_LFU);
+        // LRU loses the hot set to every scan; TinyLFU keeps it
+        assertTrue("lru hits " + lru[0], lru[0] < 1000);
+        assertTrue("tiny lfu hits " + tlfu[0], tlfu[0] > 9000);
+    }
+
+    /**
+     * Repeatedly reads a small hot set of keys interleaved with scans of one-off keys, and
+     * returns the tracked {hits, misses}.
+     */
+    protected int[] runScan (LRUHashMap.EvictionPolicy policy)
+    {
+        LRUHashMap<Integer,Integer> map = new LRUHashMap<Integer,Integer>(100, null, policy);
+        map.setTracking(true);
+        int scanKey = 1000;
+        for (int round = 0; round < 200; round++) {
+            for (int key = 0; key < 50; key++) {
+                if (map.get(key) == null) {
+                    map.put(key, key);
+                }
+            }
+            for (int ii = 0; ii < 200; ii++, scanKey++) {
+                map.put(scanKey, scanKey);
+            }
+            assertTrue(map.size() <= 100);
+        }
+        return map.getTrackedEffectiveness();
+    }
 }
@@ -0,0 +1,102 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link Lifecycle} class.
+ */
+public class LifecycleTest
+{
+    @Test
+    public void testParallel ()
+    {
+        Lifecycle cycle = new Lifecycle();
+        // a and b must meet (so they must run in parallel), and c must follow both
+        CountDownLatch meet = new CountDownLatch(2);
+        TestComponent a = new TestComponent("a", meet), b = new TestComponent("b", meet);
+        TestComponent c = new TestComponent("c", null);
+        cycle.addComponent(c);
+        cycle.addComponent(a);
+        cycle.addComponent(b);
+        cycle.addInitConstraint(a, Lifecycle.Constraint.RUNS_BEFORE, c);
+        cycle.addInitConstraint(c, Lifecycle.Constraint.RUNS_AFTER, b);
+        cycle.addShutdownConstraint(c, Lifecycle.Constraint.RUNS_BEFORE, a);
+
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        cycle.init(exec);
+        assertEquals(3, _inits.size());
+        assertEquals("c", _inits.get(2));
+        assertTrue(a.met && b.met);
+        assertEquals(3, cycle.getInitTimes().size());
+        assertTrue(cycle.getInitTimes().get(a) >= 0);
+
+        cycle.shutdown(exec);
+        assertEquals(3, _downs.size());
+        assertTrue(_downs.indexOf("c") < _downs.indexOf("a"));
+        assertEquals(3, cycle.getShutdownTimes().size());
+        exec.shutdown();
+    }
+
+    @Test
+    public void testSerialTimes ()
+    {
+        Lifecycle cycle = new Lifecycle();
+        TestComponent a = new TestComponent("a", null);
+        cycle.addComponent(a);
+        cycle.init();
+        cycle.shutdown();
+        assertEquals(Collections.singletonList("a"), _inits);
+        assertTrue(cycle.getInitTimes().containsKey(a));
+        assertTrue(cycle.getShutdownTimes().containsKey(a));
+    }
+
+    protected class TestComponent implements Lifecycle.Component
+    {
+        public boolean met;
+
+        public TestComponent (String name, CountDownLatch meet) {
+            _name = name;
+            _meet = meet;
+        }
+
+        public void init () {
+            if (_meet != null) {
+                _meet.countDown();
+                try {
+                    met = _meet.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {
+                    // not met
+                }
+            }
+            _inits.add(_name);
+        }
+
+        public void shutdown () {
+            _downs.add(_name);
+        }
+
+        @Override public String toString () {
+            return _name;
+        }
+
+        protected String _name;
+        protected CountDownLatch _meet;
+    }
+
+    protected List<String> _inits = Collections.synchronizedList(new ArrayList<String>());
+    protected List<String> _downs = Collections.synchronizedList(new ArrayList<String>());
+}
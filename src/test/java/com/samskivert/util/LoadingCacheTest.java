@@ -0,0 +1,157 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link LoadingCache} class.
+ */
+public class LoadingCacheTest
+{
+    @Test
+    public void testCoalescing ()
+        throws Exception
+    {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final LoadingCache<String,String> cache = new LoadingCache<String,String>(
+            new LoadingCache.Loader<String,String>() {
+                public String load (String key) throws Exception {
+                    loads.incrementAndGet();
+                    release.await();
+                    return key.toUpperCase();
+                }
+            });
+
+        final AtomicInteger correct = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int ii = 0; ii < threads.length; ii++) {
+            threads[ii] = new Thread() {
+                @Override public void run () {
+                    try {
+                        if ("KEY".equals(cache.get("key"))) {
+                            correct.incrementAndGet();
+                        }
+                    } catch (ExecutionException ee) {
+                        fail(ee.toString());
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        Thread.sleep(100);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(threads.length, correct.get());
+        assertEquals("KEY", cache.get("key"));
+        LoadingCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.loads);
+        assertTrue(stats.maxLoadNanos > 0);
+    }
+
+    @Test
+    public void testFailure ()
+    {
+        LoadingCache<String,String> cache = new LoadingCache<String,String>(
+            new LoadingCache.Loader<String,String>() {
+                public String load (String key) throws Exception {
+                    throw new IllegalStateException(key);
+                }
+            });
+        try {
+            cache.get("key");
+            fail();
+        } catch (ExecutionException ee) {
+            assertTrue(ee.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1, cache.getStats().failures);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExpireAndRefresh ()
+        throws Exception
+    {
+        final AtomicInteger version = new AtomicInteger();
+        LoadingCache<String,String> cache = new LoadingCache<String,String>(
+            new LoadingCache.Loader<String,String>() {
+                public String load (String key) throws Exception {
+                    return key + version.incrementAndGet();
+                }
+            });
+
+        cache.put("short", "value", 1);
+        Thread.sleep(5);
+        assertNull(cache.getIfPresent("short"));
+
+        // refresh immediately, on the calling thread: the stale value is returned, then replaced
+        cache.setRefreshAfterWrite(1, new Executor() {
+            public void execute (Runnable command) {
+                command.run();
+            }
+        });
+        assertEquals("key1", cache.get("key"));
+        Thread.sleep(5);
+        assertEquals("key1", cache.get("key"));
+        assertEquals("key2", cache.getIfPresent("key"));
+    }
+
+    @Test
+    public void testRefreshFailures ()
+        throws Exception
+    {
+        final AtomicInteger version = new AtomicInteger();
+        LoadingCache<String,String> cache = new LoadingCache<String,String>(
+            new LoadingCache.Loader<String,String>() {
+                public String load (String key) throws Exception {
+                    return key + version.incrementAndGet();
+                }
+            });
+        try {
+            cache.setRefreshAfterWrite(1, null);
+            fail();
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+
+        // a rejected refresh doesn't fail the lookup, and is retried by a later lookup
+        cache.setRefreshAfterWrite(1, new Executor() {
+            public void execute (Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        cache.put("key", "value");
+        Thread.sleep(5);
+        assertEquals("value", cache.get("key"));
+        cache.setRefreshAfterWrite(1, new Executor() {
+            public void execute (Runnable command) {
+                command.run();
+            }
+        });
+        assertEquals("value", cache.get("key"));
+        assertEquals("key1", cache.getIfPresent("key"));
+
+        // a refreshed value keeps the lifetime with which it was written
+        cache.put("ttl", "value", 50);
+        Thread.sleep(5);
+        assertEquals("value", cache.get("ttl"));
+        assertEquals("ttl2", cache.getIfPresent("ttl"));
+        Thread.sleep(60);
+        assertNull(cache.getIfPresent("ttl"));
+    }
+}
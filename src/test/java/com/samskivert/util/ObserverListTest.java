@@ -24,6 +24,54 @@ public class ObserverListTest
         testList(ObserverList.<TestObserver>newFastUnsafe());
     }
 
+    @Test
+    public void testDuplicatesAndBatchRemoval ()
+    {
+        for (ObserverList.Policy policy : ObserverList.Policy.values()) {
+            ObserverList<TestObserver> list = ObserverList.newList(policy);
+            TestObserver[] obs = new TestObserver[20];
+            for (int ii = 0; ii < obs.length; ii++) {
+                obs[ii] = new TestObserver(ii);
+                assertTrue(list.add(obs[ii]));
+            }
+            // enough observers that duplicates are found via the index
+            assertFalse(list.add(obs[3]));
+            assertFalse(list.add(0, obs[17]));
+            assertEquals(obs.length, list.size());
+
+            // remove the odd observers during notification
+            final StringBuilder seen = new StringBuilder();
+            list.apply(new ObserverList.ObserverOp<TestObserver>() {
+                public boolean apply (TestObserver obs) {
+                    seen.append(obs).append(" ");
+                    return obs._index % 2 == 0;
+                }
+            });
+            assertEquals(obs.length/2, list.size());
+            assertFalse(list.remove(obs[5]));
+            assertTrue(list.remove(obs[4]));
+            assertTrue(list.add(obs[5]));
+            assertEquals(obs.length/2, list.size());
+            if (policy == ObserverList.Policy.SAFE_IN_ORDER) {
+                assertTrue(seen.toString().startsWith("0 1 2 3 "));
+            }
+        }
+    }
+
+    @Test
+    public void testWeakList ()
+    {
+        WeakObserverList<TestObserver> list = WeakObserverList.newSafeInOrder();
+        TestObserver one = new TestObserver(1), two = new TestObserver(2);
+        assertTrue(list.add(one));
+        assertTrue(list.add(two));
+        assertFalse(list.add(one));
+        assertTrue(list.remove(one));
+        assertEquals(1, list.size());
+        list.prune();
+        assertEquals(1, list.size());
+    }
+
     public void testList (final ObserverList<TestObserver> list)
     {
         final int[] notifies = new int[1];
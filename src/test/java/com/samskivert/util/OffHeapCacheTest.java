@@ -0,0 +1,167 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link OffHeapCache} class.
+ */
+public class OffHeapCacheTest
+{
+    @Test
+    public void testStorage ()
+    {
+        for (OffHeapCache.Eviction eviction : OffHeapCache.Eviction.values()) {
+            // a budget large enough that nothing is evicted
+            OffHeapCache<Integer,String> cache =
+                new OffHeapCache<Integer,String>(4 << 20, 64, eviction, STRINGS);
+            Map<Integer,String> expect = new HashMap<Integer,String>();
+            Random rando = new Random(42);
+            for (int ii = 0; ii < 5000; ii++) {
+                Integer key = rando.nextInt(1000);
+                switch (rando.nextInt(3)) {
+                case 0:
+                    String value = randomString(rando, rando.nextInt(500));
+                    cache.put(key, value);
+                    expect.put(key, value);
+                    break;
+                case 1:
+                    assertEquals(expect.remove(key) != null, cache.remove(key));
+                    break;
+                default:
+                    assertEquals(expect.get(key), cache.get(key));
+                    break;
+                }
+                assertEquals(expect.size(), cache.size());
+            }
+            for (Map.Entry<Integer,String> entry : expect.entrySet()) {
+                assertEquals(entry.getValue(), cache.get(entry.getKey()));
+            }
+            cache.clear();
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.getUsedBytes());
+        }
+    }
+
+    @Test
+    public void testEviction ()
+    {
+        for (OffHeapCache.Eviction eviction : OffHeapCache.Eviction.values()) {
+            // room for 64 one block values
+            OffHeapCache<Integer,String> cache =
+                new OffHeapCache<Integer,String>(64 * 128, 128, eviction, STRINGS);
+            final List<String> removed = new ArrayList<String>();
+            cache.setRemovalObserver(new OffHeapCache.RemovalObserver<Integer,String>() {
+                public void removedFromMap (OffHeapCache<Integer,String> cache, String item) {
+                    removed.add(item);
+                }
+            });
+
+            for (int ii = 0; ii < 64; ii++) {
+                cache.put(ii, "v" + ii);
+            }
+            assertEquals(64, cache.size());
+            assertEquals(0, removed.size());
+
+            // use the first half, then add more: the unused half should be evicted
+            for (int ii = 0; ii < 32; ii++) {
+                assertEquals("v" + ii, cache.get(ii));
+            }
+            for (int ii = 64; ii < 96; ii++) {
+                cache.put(ii, "v" + ii);
+            }
+            assertEquals(64, cache.size());
+            assertEquals(32, removed.size());
+            for (int ii = 0; ii < 32; ii++) {
+                assertEquals("v" + ii, cache.get(ii));
+            }
+            assertTrue(cache.getAllocatedBytes() <= 64 * 128);
+
+            // a value spanning many blocks evicts enough to fit
+            String big = randomString(new Random(42), 40 * 120);
+            cache.put(-1, big);
+            assertEquals(big, cache.get(-1));
+            // 4800 bytes in 124 byte chunks requires 39 blocks
+            assertEquals(64 - 39 + 1, cache.size());
+            assertEquals(64 * 128, cache.getUsedBytes());
+
+            // replacing a value notifies the observer
+            removed.clear();
+            cache.put(-1, "small");
+            assertEquals(1, removed.size());
+            assertEquals(big, removed.get(0));
+        }
+    }
+
+    @Test
+    public void testManySlabs ()
+    {
+        for (OffHeapCache.Eviction eviction : OffHeapCache.Eviction.values()) {
+            // four one megabyte slabs of 256 byte blocks
+            OffHeapCache<Integer,String> cache =
+                new OffHeapCache<Integer,String>(4 << 20, 256, eviction, STRINGS);
+            Random rando = new Random(42);
+            for (int ii = 0; ii < 8192; ii++) {
+                cache.put(ii, randomString(rando, 200));
+            }
+            assertEquals(8192, cache.size());
+            assertEquals(2 << 20, cache.getAllocatedBytes());
+
+            // freeing more than one slab's worth of blocks at once must not overflow the free list
+            cache.clear();
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.getUsedBytes());
+
+            // refill past our budget, evicting as we go, and check that we can still read
+            for (int ii = 0; ii < 20000; ii++) {
+                cache.put(ii, "v" + ii + randomString(rando, 200));
+            }
+            assertEquals(4 << 20, cache.getAllocatedBytes());
+            assertEquals(16384, cache.size());
+            assertTrue(cache.get(19999).startsWith("v19999"));
+            for (int ii = 0; ii < 20000; ii += 1000) {
+                cache.remove(ii);
+            }
+            cache.clear();
+            assertEquals(0, cache.getUsedBytes());
+        }
+    }
+
+    protected static String randomString (Random rando, int length)
+    {
+        StringBuilder buf = new StringBuilder();
+        for (int ii = 0; ii < length; ii++) {
+            buf.append((char)('a' + rando.nextInt(26)));
+        }
+        return buf.toString();
+    }
+
+    protected static final OffHeapCache.Serializer<String> STRINGS =
+        new OffHeapCache.Serializer<String>() {
+        public byte[] serialize (String value) {
+            try {
+                return value.getBytes("UTF-8");
+            } catch (java.io.UnsupportedEncodingException uee) {
+                throw new AssertionError(uee);
+            }
+        }
+        public String deserialize (byte[] data) {
+            try {
+                return new String(data, "UTF-8");
+            } catch (java.io.UnsupportedEncodingException uee) {
+                throw new AssertionError(uee);
+            }
+        }
+    };
+}
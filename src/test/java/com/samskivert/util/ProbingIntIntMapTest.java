@@ -0,0 +1,54 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ProbingIntIntMapTest
+{
+    @Test
+    public void testAgainstHashMap ()
+    {
+        ProbingIntIntMap map = new ProbingIntIntMap();
+        Map<Integer,Integer> jmap = new HashMap<Integer,Integer>();
+        Random rando = new Random(42);
+        for (int ii = 0; ii < 50000; ii++) {
+            int key = rando.nextInt(2000) - 1000;
+            Integer ovalue = jmap.get(key);
+            switch (rando.nextInt(4)) {
+            case 0:
+                map.put(key, ii);
+                jmap.put(key, ii);
+                break;
+            case 1:
+                int amount = rando.nextInt(10);
+                int expect = (ovalue == null ? 0 : ovalue) + amount;
+                assertEquals(expect, map.increment(key, amount));
+                jmap.put(key, expect);
+                break;
+            case 2:
+                jmap.remove(key);
+                assertEquals(ovalue == null ? Integer.MIN_VALUE : ovalue.intValue(),
+                             map.removeOrElse(key, Integer.MIN_VALUE));
+                break;
+            default:
+                assertEquals(ovalue == null ? Integer.MIN_VALUE : ovalue.intValue(),
+                             map.getOrElse(key, Integer.MIN_VALUE));
+                break;
+            }
+            assertEquals(jmap.size(), map.size());
+        }
+        assertEquals(jmap.keySet(), map.keySet());
+        for (IntIntMap.IntIntEntry entry : map.entrySet()) {
+            assertEquals(jmap.get(entry.getIntKey()).intValue(), entry.getIntValue());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ProbingIntMapTest
+{
+    @Test
+    public void testAgainstHashMap ()
+    {
+        ProbingIntMap<Integer> map = new ProbingIntMap<Integer>();
+        Map<Integer,Integer> jmap = new HashMap<Integer,Integer>();
+        Random rando = new Random(42);
+        for (int ii = 0; ii < 50000; ii++) {
+            // use a narrow range so that we get lots of collisions, removals and zero keys
+            int key = rando.nextInt(2000) - 1000;
+            switch (rando.nextInt(3)) {
+            case 0:
+                assertEquals(jmap.put(key, ii), map.put(key, Integer.valueOf(ii)));
+                break;
+            case 1:
+                assertEquals(jmap.remove(key), map.remove(key));
+                break;
+            default:
+                assertEquals(jmap.get(key), map.get(key));
+                assertEquals(jmap.containsKey(key), map.containsKey(key));
+                break;
+            }
+            assertEquals(jmap.size(), map.size());
+        }
+        assertEquals(jmap, map);
+        assertEquals(jmap.keySet(), map.intKeySet());
+    }
+
+    @Test
+    public void testIteratorRemove ()
+    {
+        ProbingIntMap<Integer> map = new ProbingIntMap<Integer>();
+        for (int ii = -500; ii < 500; ii++) {
+            map.put(ii, Integer.valueOf(ii));
+        }
+
+        // remove the odd keys while iterating and make sure every key is visited exactly once
+        ArrayIntSet seen = new ArrayIntSet();
+        for (Interator it = map.keys(); it.hasNext(); ) {
+            int key = it.nextInt();
+            assertTrue("duplicate " + key, seen.add(key));
+            if ((key & 1) != 0) {
+                it.remove();
+            }
+        }
+        assertEquals(1000, seen.size());
+        assertEquals(500, map.size());
+        for (int ii = -500; ii < 500; ii++) {
+            assertEquals((ii & 1) == 0, map.containsKey(ii));
+        }
+
+        // then remove the rest via the entry set
+        for (Iterator<IntMap.IntEntry<Integer>> it = map.intEntrySet().iterator(); it.hasNext(); ) {
+            IntMap.IntEntry<Integer> entry = it.next();
+            assertEquals(entry.getIntKey(), entry.getValue().intValue());
+            it.remove();
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testSerialization ()
+        throws Exception
+    {
+        ProbingIntMap<String> map = new ProbingIntMap<String>();
+        for (int ii = 0; ii < 100; ii++) {
+            map.put(ii * 7, String.valueOf(ii));
+        }
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bout);
+        out.writeObject(map);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bout.toByteArray()));
+        @SuppressWarnings("unchecked") ProbingIntMap<String> rmap =
+            (ProbingIntMap<String>)in.readObject();
+        in.close();
+        assertEquals(map, rmap);
+        assertEquals(map, map.clone());
+    }
+}
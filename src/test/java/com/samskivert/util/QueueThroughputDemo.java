@@ -0,0 +1,64 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+/**
+ * Compares the throughput of {@link Queue} and {@link SingleConsumerQueue} with a single
+ * consumer and 1, 4 and 16 producers.
+ */
+public class QueueThroughputDemo
+{
+    public static void main (String[] args)
+        throws Exception
+    {
+        int items = (args.length > 0) ? Integer.parseInt(args[0]) : 4000000;
+        for (int round = 0; round < 2; round++) { // the first round warms up the JIT
+            for (int producers : new int[] { 1, 4, 16 }) {
+                long locked = run(new Queue<Object>(), producers, items);
+                long lockFree = run(new SingleConsumerQueue<Object>(), producers, items);
+                if (round > 0) {
+                    System.out.println(producers + " producers: Queue " + rate(items, locked) +
+                                       " items/ms, SingleConsumerQueue " +
+                                       rate(items, lockFree) + " items/ms");
+                }
+            }
+        }
+    }
+
+    protected static long run (final Queue<Object> queue, int producers, int items)
+        throws Exception
+    {
+        final int perProducer = items / producers;
+        final Object item = new Object();
+        Thread[] threads = new Thread[producers];
+        for (int ii = 0; ii < producers; ii++) {
+            threads[ii] = new Thread() {
+                @Override public void run () {
+                    for (int jj = 0; jj < perProducer; jj++) {
+                        queue.append(item);
+                    }
+                }
+            };
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (int ii = 0, count = perProducer * producers; ii < count; ii++) {
+            queue.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return elapsed;
+    }
+
+    protected static long rate (int items, long nanos)
+    {
+        return items * 1000000L / Math.max(nanos, 1);
+    }
+}
@@ -0,0 +1,134 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ResultFuture} class and {@link Invoker#submit}.
+ */
+public class ResultFutureTest
+{
+    @Test
+    public void testCompose ()
+        throws Exception
+    {
+        ResultFuture<Integer> source = new ResultFuture<Integer>();
+        ResultFuture<String> mapped = source.map(new ResultFuture.Mapper<Integer,String>() {
+            public String map (Integer value) {
+                return "v" + value;
+            }
+        });
+        ResultFuture<String> chained = mapped.flatMap(
+            new ResultFuture.Chainer<String,String>() {
+                public ResultFuture<String> chain (String value) {
+                    return ResultFuture.completed(value + "!");
+                }
+            });
+        assertFalse(chained.isDone());
+        try {
+            chained.get(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException te) {
+            // expected
+        }
+
+        ResultFuture.toIntResultListener(source).requestCompleted(42);
+        assertEquals("v42!", chained.get());
+
+        // only the first completion counts
+        source.requestFailed(new Exception("too late"));
+        assertEquals(42, source.get().intValue());
+    }
+
+    @Test
+    public void testAll ()
+        throws Exception
+    {
+        List<ResultFuture<Integer>> futures = new ArrayList<ResultFuture<Integer>>();
+        for (int ii = 0; ii < 3; ii++) {
+            futures.add(new ResultFuture<Integer>());
+        }
+        ResultFuture<List<Integer>> all = ResultFuture.all(futures);
+        futures.get(2).requestCompleted(2);
+        futures.get(0).requestCompleted(0);
+        assertFalse(all.isDone());
+        futures.get(1).requestCompleted(1);
+        assertEquals(3, all.get().size());
+        assertEquals(1, all.get().get(1).intValue());
+
+        futures.set(1, ResultFuture.<Integer>failed(new Exception("boom")));
+        try {
+            ResultFuture.all(futures).get();
+            fail();
+        } catch (ExecutionException ee) {
+            assertEquals("boom", ee.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testSubmit ()
+        throws Exception
+    {
+        final BasicRunQueue receiver = new BasicRunQueue();
+        receiver.start();
+        Invoker invoker = new Invoker("test", new RunQueue.AsExecutor(receiver));
+        invoker.start();
+
+        // hold up the receiver until our listener is added, so that it is notified on completion
+        final CountDownLatch added = new CountDownLatch(1);
+        receiver.postRunnable(new Runnable() {
+            public void run () {
+                try {
+                    added.await();
+                } catch (InterruptedException ie) {
+                    // fall through
+                }
+            }
+        });
+        final ResultFuture<Boolean> onReceiver = new ResultFuture<Boolean>();
+        ResultFuture<String> result = invoker.submit(new Callable<String>() {
+            public String call () {
+                return "done";
+            }
+        });
+        result.addListener(new ResultListener<String>() {
+            public void requestCompleted (String value) {
+                onReceiver.requestCompleted(receiver.isDispatchThread());
+            }
+            public void requestFailed (Exception cause) {
+                onReceiver.requestFailed(cause);
+            }
+        });
+        added.countDown();
+        assertEquals("done", result.get(5, TimeUnit.SECONDS));
+        assertTrue(onReceiver.get(5, TimeUnit.SECONDS));
+
+        ResultFuture<String> failure = invoker.submit(new Callable<String>() {
+            public String call () throws Exception {
+                throw new Exception("failed");
+            }
+        });
+        try {
+            failure.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException ee) {
+            assertEquals("failed", ee.getCause().getMessage());
+        }
+
+        invoker.shutdown();
+        receiver.shutdown();
+    }
+}
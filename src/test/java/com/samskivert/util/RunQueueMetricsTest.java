@@ -0,0 +1,157 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link RunQueueMetrics} and {@link ConcurrentHistogram} classes, and the recording of
+ * metrics by the library's run queues.
+ */
+public class RunQueueMetricsTest
+{
+    @Test
+    public void testHistogram ()
+    {
+        ConcurrentHistogram histo = new ConcurrentHistogram();
+        assertEquals(0, histo.getPercentile(50));
+        for (int ii = 1; ii <= 1000; ii++) {
+            histo.record(ii * 1000L);
+        }
+        assertEquals(1000, histo.getCount());
+        assertEquals(1000000L, histo.getMax());
+        assertEquals(500500.0, histo.getMean(), 0.1);
+        // percentiles are accurate to within a sixteenth
+        assertEquals(500000, histo.getPercentile(50), 500000/16);
+        assertEquals(990000, histo.getPercentile(99), 990000/16);
+        assertEquals(1000000L, histo.getPercentile(100));
+
+        // small values are exact, and huge ones are clamped
+        histo.clear();
+        histo.record(7);
+        histo.record(Long.MAX_VALUE);
+        assertEquals(7, histo.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, histo.getMax());
+    }
+
+    @Test
+    public void testBasicRunQueue ()
+        throws Exception
+    {
+        BasicRunQueue queue = new BasicRunQueue("metrics");
+        queue.setMetricsEnabled(true);
+        queue.start();
+
+        final CountDownLatch done = new CountDownLatch(10);
+        List<Runnable> batch = new ArrayList<Runnable>();
+        for (int ii = 0; ii < 10; ii++) {
+            final boolean fail = (ii == 0);
+            batch.add(new Runnable() {
+                public void run () {
+                    done.countDown();
+                    if (fail) {
+                        throw new RuntimeException("Expected failure; please ignore.");
+                    }
+                }
+            });
+        }
+        queue.postRunnables(batch);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        queue.shutdown();
+        queue.join();
+
+        RunQueueMetrics.Snapshot snap = queue.getMetrics().getSnapshot();
+        assertEquals("metrics", snap.name);
+        // the runnable that kicks the queue at shutdown is counted too, but it is only run if the
+        // queue had not yet noticed that it was shut down
+        assertEquals(11, snap.enqueued);
+        assertTrue(snap.completed == 10 || snap.completed == 11);
+        assertEquals(snap.started, snap.completed);
+        assertEquals(1, snap.failed);
+        assertEquals(snap.enqueued - snap.completed, snap.queueDepth);
+        assertTrue(snap.throughput > 0);
+
+        queue.setMetricsEnabled(false);
+        assertNull(queue.getMetrics());
+    }
+
+    @Test
+    public void testInvoker ()
+        throws Exception
+    {
+        Invoker invoker = new Invoker("metrics", new RunQueue.AsExecutor(Interval.RUN_DIRECT));
+        invoker.setMetricsEnabled(true);
+        invoker.start();
+        final CountDownLatch done = new CountDownLatch(5);
+        for (int ii = 0; ii < 5; ii++) {
+            invoker.postRunnable(new Runnable() {
+                public void run () {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException ie) {
+                        // no problem
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        invoker.shutdown();
+        try {
+            invoker.postRunnable(new Runnable() {
+                public void run () {
+                }
+            });
+            fail();
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+        invoker.join();
+
+        RunQueueMetrics.Snapshot snap = invoker.getMetrics().getSnapshot();
+        // our shutdown unit is not counted
+        assertEquals(5, snap.enqueued);
+        assertEquals(5, snap.started);
+        assertEquals(5, snap.completed);
+        assertEquals(1, snap.rejected);
+        assertTrue(snap.runP50 >= TimeUnit.MILLISECONDS.toNanos(2));
+        assertTrue(snap.runMax >= snap.runP90);
+        assertTrue(snap.waitMax > 0);
+    }
+
+    @Test
+    public void testJMX ()
+        throws Exception
+    {
+        RunQueueMetrics metrics = new RunQueueMetrics("test, with \"odd\" name");
+        metrics.noteCompleted(metrics.noteStarted(metrics.noteEnqueued()), false);
+        metrics.noteEnqueued();
+        metrics.noteRejected();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.registerMBean();
+        try {
+            assertEquals(metrics.getName(), server.getAttribute(name, "Name"));
+            assertEquals(1L, server.getAttribute(name, "QueueDepth"));
+            assertEquals(1L, server.getAttribute(name, "Completed"));
+            assertEquals(1L, server.getAttribute(name, "Rejected"));
+        } finally {
+            metrics.unregisterMBean();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
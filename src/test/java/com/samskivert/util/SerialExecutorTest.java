@@ -5,6 +5,9 @@
 
 package com.samskivert.util;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.Executor;
 
 import org.junit.*;
@@ -64,6 +67,33 @@ public class SerialExecutorTest
         assertCount("_doubleints", _doubleints, 0);
     }
 
+    @Test
+    public void testMergeAndReuse ()
+    {
+        SerialExecutor executor = new SerialExecutor(this);
+        executor.setUseVirtualThreads(false);
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+        // the first task starts immediately; the rest queue up behind it
+        executor.addTask(new Keyed(null, threads));
+        Keyed a = new Keyed("a", threads), b = new Keyed("b", threads);
+        executor.addTask(a);
+        executor.addTask(b);
+        executor.addTask(new Keyed("a", threads));
+        executor.addTask(new Keyed("a", threads));
+        executor.addTask(new Keyed("b", threads));
+        assertEquals(2, executor.getQueueSize());
+        assertEquals(3, a.merged);
+        assertEquals(2, b.merged);
+
+        // process the three results, each of which starts the next task
+        for (int ii = 0; ii < 3; ii++) {
+            _queue.get().run();
+        }
+        assertEquals(0, executor.getQueueSize());
+        assertEquals(1, threads.size());
+    }
+
     protected void assertCount (String field, int value, int expected)
     {
         assertTrue(field + " != " + expected + " (" + value + ")",
@@ -140,6 +170,42 @@ public class SerialExecutorTest
         protected boolean _hang;
     }
 
+    protected static class Keyed implements SerialExecutor.KeyedExecutorTask
+    {
+        public int merged = 1;
+
+        public Keyed (Object key, Set<Thread> threads) {
+            _key = key;
+            _threads = threads;
+        }
+
+        public Object getMergeKey () {
+            return _key;
+        }
+
+        public boolean merge (SerialExecutor.ExecutorTask task) {
+            merged++;
+            return true;
+        }
+
+        public long getTimeout () {
+            return 5000L;
+        }
+
+        public void executeTask () {
+            _threads.add(Thread.currentThread());
+        }
+
+        public void resultReceived () {
+        }
+
+        public void timedOut () {
+        }
+
+        protected Object _key;
+        protected Set<Thread> _threads;
+    }
+
     protected Thread _main;
     protected Queue<Runnable> _queue = new Queue<Runnable>();
 
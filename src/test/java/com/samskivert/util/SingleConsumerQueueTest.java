@@ -0,0 +1,88 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link SingleConsumerQueue} class.
+ */
+public class SingleConsumerQueueTest
+{
+    @Test
+    public void testOrdering ()
+    {
+        SingleConsumerQueue<Integer> queue = new SingleConsumerQueue<Integer>();
+        assertNull(queue.getNonBlocking());
+        assertNull(queue.get(10));
+        queue.append(1);
+        queue.append(2);
+        queue.prepend(0);
+        queue.prepend(-1);
+        assertEquals(4, queue.size());
+        for (int ii = -1; ii <= 2; ii++) {
+            assertEquals(Integer.valueOf(ii), queue.get());
+        }
+        assertFalse(queue.hasElements());
+    }
+
+    @Test
+    public void testProducers ()
+        throws Exception
+    {
+        final SingleConsumerQueue<int[]> queue = new SingleConsumerQueue<int[]>();
+        final int producers = 4, count = 50000;
+        for (int ii = 0; ii < producers; ii++) {
+            final int producer = ii;
+            new Thread() {
+                @Override public void run () {
+                    for (int jj = 0; jj < count; jj++) {
+                        queue.append(new int[] { producer, jj });
+                    }
+                }
+            }.start();
+        }
+
+        // each producer's items must arrive in order
+        int[] next = new int[producers];
+        for (int ii = 0; ii < producers * count; ii++) {
+            int[] item = queue.get(10000);
+            assertNotNull(item);
+            assertTrue(queue.size() >= 0);
+            assertEquals(next[item[0]]++, item[1]);
+        }
+        assertNull(queue.getNonBlocking());
+    }
+
+    @Test
+    public void testSilentAppend ()
+        throws Exception
+    {
+        final SingleConsumerQueue<Integer> queue = new SingleConsumerQueue<Integer>();
+        final AtomicInteger got = new AtomicInteger(-1);
+        Thread consumer = new Thread() {
+            @Override public void run () {
+                got.set(queue.get());
+            }
+        };
+        consumer.start();
+        while (queue._consumer == null) {
+            Thread.sleep(1);
+        }
+
+        // a silent append doesn't wake the parked consumer, a loud one does
+        queue.appendSilent(1);
+        Thread.sleep(50);
+        assertEquals(-1, got.get());
+        queue.appendLoud(2);
+        consumer.join(5000);
+        assertEquals(1, got.get());
+        assertEquals(1, queue.size());
+    }
+}
@@ -5,6 +5,8 @@
 
 package com.samskivert.util;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -65,4 +67,104 @@ public class ThrottleTest
         throttle.reinit(10, 1);
         assertEquals(results[4], throttle.opsToString());
     }
+
+    @Test
+    public void testTokenBucket ()
+    {
+        // 4 ops per 100ms: a burst of four, then one more every 25ms
+        TokenBucketThrottle throttle = new TokenBucketThrottle(4, 100);
+        long time = 1000;
+        for (int ii = 0; ii < 4; ii++) {
+            assertFalse(throttle.throttleOp(time));
+        }
+        assertTrue(throttle.throttleOp(time));
+        assertTrue(throttle.wouldThrottle(time + 24));
+        assertFalse(throttle.throttleOp(time + 25));
+        assertTrue(throttle.throttleOp(time + 30));
+        assertEquals(time + 25, throttle.getLatestOperation());
+        assertEquals(4, throttle.getAvailable(time + 125));
+
+        // noted operations don't overdraw the bucket
+        for (int ii = 0; ii < 10; ii++) {
+            throttle.noteOp(time + 200);
+        }
+        assertFalse(throttle.throttleOp(time + 300));
+
+        // doubling the rate keeps the time until the bucket is full (25ms, now two ops)
+        throttle.reinit(8, 100);
+        assertEquals(6, throttle.getAvailable(time + 300));
+
+        // time going backwards doesn't throttle
+        assertFalse(throttle.wouldThrottle(0));
+    }
+
+    @Test
+    public void testSlidingWindow ()
+    {
+        SlidingWindowThrottle throttle = new SlidingWindowThrottle(4, 100);
+        for (int ii = 0; ii < 4; ii++) {
+            assertFalse(throttle.throttleOp(1000 + ii));
+        }
+        assertTrue(throttle.throttleOp(1050));
+        // a quarter into the next window, three quarters of the previous window's four ops count
+        assertFalse(throttle.throttleOp(1125));
+        assertTrue(throttle.wouldThrottle(1125));
+        // halfway through, two of them do
+        assertFalse(throttle.throttleOp(1150));
+        assertTrue(throttle.wouldThrottle(1150));
+        // two windows on, nothing counts
+        assertFalse(throttle.wouldThrottle(1300));
+        assertEquals(1150, throttle.getLatestOperation());
+    }
+
+    @Test
+    public void testConcurrentThrottles ()
+        throws Exception
+    {
+        testConcurrent(new TokenBucketThrottle(1000, 60000L));
+        testConcurrent(new SlidingWindowThrottle(1000, 60000L));
+    }
+
+    @Test
+    public void testThrottleMap ()
+    {
+        ThrottleMap<String> map = new ThrottleMap<String>(2, 100);
+        assertFalse(map.throttleOp("a", 1000));
+        assertFalse(map.throttleOp("a", 1001));
+        assertTrue(map.throttleOp("a", 1002));
+        assertFalse(map.throttleOp("b", 1003));
+        assertTrue(map.wouldThrottle("a", 1003));
+        assertFalse(map.wouldThrottle("c", 1003));
+        assertEquals(2, map.size());
+
+        // "a" has been idle for an idle period by the time "c" comes along, but "b" has not
+        assertFalse(map.throttleOp("c", 1101));
+        assertNull(map.get("a"));
+        assertNotNull(map.get("b"));
+        assertEquals(2, map.prune(1203));
+        assertEquals(0, map.size());
+    }
+
+    protected void testConcurrent (final Throttle throttle)
+        throws Exception
+    {
+        final AtomicInteger allowed = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int ii = 0; ii < threads.length; ii++) {
+            threads[ii] = new Thread() {
+                @Override public void run () {
+                    for (int op = 0; op < 1000; op++) {
+                        if (!throttle.throttleOp(5000)) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[ii].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000, allowed.get());
+    }
 }
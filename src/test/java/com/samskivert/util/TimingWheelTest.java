@@ -0,0 +1,128 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link TimingWheel} class and its use by {@link Interval}.
+ */
+public class TimingWheelTest
+{
+    @Before
+    public void createWheel ()
+    {
+        // a tiny wheel, so that tasks cascade through all of its levels (and beyond)
+        _wheel = new TimingWheel("test", 1L, 4, 3);
+    }
+
+    @After
+    public void shutdownWheel ()
+    {
+        Interval.setTimingWheel(null);
+        _wheel.shutdown();
+    }
+
+    @Test
+    public void testOrdering ()
+        throws Exception
+    {
+        final int count = 20;
+        final CountDownLatch done = new CountDownLatch(count);
+        final long start = System.currentTimeMillis();
+        final AtomicInteger early = new AtomicInteger();
+        for (int ii = count-1; ii >= 0; ii--) {
+            final long delay = ii * 7;
+            _wheel.schedule(new Runnable() {
+                public void run () {
+                    if (System.currentTimeMillis() - start < delay) {
+                        early.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            }, delay);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+
+        TimingWheel.Stats stats = _wheel.getStats();
+        assertEquals(0, stats.pending);
+        assertEquals(count, stats.expired);
+        assertTrue(stats.cascaded > 0);
+    }
+
+    @Test
+    public void testCancelAndRepeat ()
+        throws Exception
+    {
+        final AtomicInteger fired = new AtomicInteger(), repeats = new AtomicInteger();
+        Runnable counter = new Runnable() {
+            public void run () {
+                fired.incrementAndGet();
+            }
+        };
+        TimingWheel.Timeout timeout = _wheel.schedule(counter, 50);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+
+        TimingWheel.Timeout repeater = _wheel.scheduleAtFixedRate(new Runnable() {
+            public void run () {
+                repeats.incrementAndGet();
+            }
+        }, 0, 5);
+        Thread.sleep(100);
+        assertTrue(repeater.cancel());
+        int seen = repeats.get();
+        assertTrue("Repeated " + seen + " times", seen >= 5);
+        Thread.sleep(20);
+        assertEquals(seen, repeats.get());
+        assertEquals(0, fired.get());
+
+        TimingWheel.Stats stats = _wheel.getStats();
+        assertEquals(0, stats.pending);
+        assertEquals(2, stats.cancelled);
+    }
+
+    @Test
+    public void testInterval ()
+        throws Exception
+    {
+        Interval.setTimingWheel(_wheel);
+        BasicRunQueue queue = new BasicRunQueue();
+        queue.start();
+
+        final CountDownLatch expired = new CountDownLatch(3);
+        final AtomicInteger cancelled = new AtomicInteger();
+        Interval ival = Interval.create(queue, new Runnable() {
+            public void run () {
+                expired.countDown();
+            }
+        });
+        ival.schedule(5, true);
+        Interval never = Interval.create(Interval.RUN_DIRECT, new Runnable() {
+            public void run () {
+                cancelled.incrementAndGet();
+            }
+        });
+        never.schedule(10);
+        never.cancel();
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        ival.cancel();
+        Thread.sleep(20);
+        assertEquals(0, cancelled.get());
+        assertEquals(0, _wheel.getStats().pending);
+        queue.shutdown();
+    }
+
+    protected TimingWheel _wheel;
+}
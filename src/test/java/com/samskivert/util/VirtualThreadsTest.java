@@ -0,0 +1,77 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link VirtualThreads} class and the components that use it. The virtual thread
+ * tests only run on JVMs that support them.
+ */
+public class VirtualThreadsTest
+{
+    @Test
+    public void testFallback ()
+    {
+        if (!VirtualThreads.isSupported()) {
+            assertFalse(VirtualThreads.isEnabled());
+            try {
+                VirtualThreads.newVirtualThread("test", new Runnable() {
+                    public void run () {}
+                });
+                fail();
+            } catch (UnsupportedOperationException uoe) {
+                // expected
+            }
+        }
+        assertNotNull(VirtualThreads.newThread("test", new Runnable() {
+            public void run () {}
+        }));
+    }
+
+    @Test
+    public void testInvoker ()
+        throws Exception
+    {
+        Assume.assumeTrue(VirtualThreads.isSupported());
+
+        final Invoker invoker = new Invoker("test", null);
+        invoker.setUseVirtualThread(true);
+        invoker.start();
+        try {
+            invoker.start();
+            fail();
+        } catch (IllegalThreadStateException itse) {
+            // expected
+        }
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger order = new AtomicInteger(), errors = new AtomicInteger();
+        for (int ii = 0; ii < 100; ii++) {
+            final int expect = ii;
+            invoker.postRunnable(new Runnable() {
+                public void run () {
+                    if (order.getAndIncrement() != expect || !invoker.isDispatchThread() ||
+                        Thread.currentThread() == invoker) {
+                        errors.incrementAndGet();
+                    }
+                    if (expect == 99) {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+        assertFalse(invoker.isDispatchThread());
+        invoker.shutdown();
+    }
+}
@@ -0,0 +1,134 @@
+//
+// samskivert library - useful routines for java programs
+// Copyright (C) 2001-2012 Michael Bayne, et al.
+// http://github.com/samskivert/samskivert/blob/master/COPYING
+
+package com.samskivert.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link WorkStealingRunQueue} class.
+ */
+public class WorkStealingRunQueueTest
+{
+    @Before
+    public void startQueue ()
+    {
+        _queue = new WorkStealingRunQueue("test", 4);
+        _queue.start();
+    }
+
+    @After
+    public void stopQueue ()
+        throws Exception
+    {
+        if (_queue.isRunning()) {
+            _queue.shutdown();
+        }
+        _queue.join();
+    }
+
+    @Test
+    public void testPostRunnables ()
+        throws Exception
+    {
+        final int count = 1000;
+        final CountDownLatch done = new CountDownLatch(count * 2);
+        final AtomicInteger offThread = new AtomicInteger();
+        List<Runnable> batch = new ArrayList<Runnable>();
+        for (int ii = 0; ii < count; ii++) {
+            Runnable r = new Runnable() {
+                public void run () {
+                    if (!_queue.isDispatchThread()) {
+                        offThread.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            };
+            batch.add(r);
+            _queue.postRunnable(r);
+        }
+        _queue.postRunnables(batch);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, offThread.get());
+        assertFalse(_queue.isDispatchThread());
+    }
+
+    @Test
+    public void testStealing ()
+        throws Exception
+    {
+        // a batch posted by a worker lands on its own deque, so the others must steal from it
+        final int count = 16;
+        final CountDownLatch done = new CountDownLatch(count);
+        _queue.postRunnable(new Runnable() {
+            public void run () {
+                List<Runnable> batch = new ArrayList<Runnable>();
+                for (int ii = 0; ii < count; ii++) {
+                    batch.add(new Runnable() {
+                        public void run () {
+                            try {
+                                Thread.sleep(10);
+                            } catch (InterruptedException ie) {
+                                // no problem
+                            }
+                            done.countDown();
+                        }
+                    });
+                }
+                _queue.postRunnables(batch);
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(_queue.getSteals() > 0);
+        assertEquals(0, _queue.getPending());
+    }
+
+    @Test
+    public void testIntervalAndShutdown ()
+        throws Exception
+    {
+        final CountDownLatch expired = new CountDownLatch(3);
+        Interval ival = Interval.create(_queue, new Runnable() {
+            public void run () {
+                assertTrue(_queue.isDispatchThread());
+                expired.countDown();
+            }
+        });
+        ival.schedule(5, true);
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        ival.cancel();
+
+        // runnables posted before shutdown are still run
+        final AtomicInteger ran = new AtomicInteger();
+        for (int ii = 0; ii < 100; ii++) {
+            _queue.postRunnable(new Runnable() {
+                public void run () {
+                    ran.incrementAndGet();
+                }
+            });
+        }
+        _queue.shutdown();
+        _queue.join();
+        assertEquals(100, ran.get());
+        try {
+            _queue.postRunnable(new Runnable() {
+                public void run () {
+                }
+            });
+            fail();
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+    }
+
+    protected WorkStealingRunQueue _queue;
+}